@@ -0,0 +1,407 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Set of local containers started and stopped together. All containers are started concurrently,
+ * a container declaring dependencies being started only once all its dependencies are started;
+ * the time needed to start the group is hence the time of its longest dependency chain rather
+ * than the sum of the start times of its containers. Containers are stopped concurrently as well,
+ * a container being stopped only once all the containers depending on it are stopped.
+ * 
+ */
+public class ContainerGroup extends LoggedObject
+{
+    /**
+     * Containers of the group, indexed by name.
+     */
+    private Map<String, LocalContainer> containers = new LinkedHashMap<String, LocalContainer>();
+
+    /**
+     * Names of the containers each container depends on, indexed by container name.
+     */
+    private Map<String, Set<String>> dependencies = new HashMap<String, Set<String>>();
+
+    /**
+     * Adds a container to the group.
+     * 
+     * @param name the name of the container in the group.
+     * @param container the container to add.
+     */
+    public void addContainer(String name, LocalContainer container)
+    {
+        if (this.containers.containsKey(name))
+        {
+            throw new ContainerException("The container group already has a container named ["
+                + name + "]");
+        }
+        this.containers.put(name, container);
+        this.dependencies.put(name, new LinkedHashSet<String>());
+    }
+
+    /**
+     * Declares that a container must only be started once another container of the group is
+     * started, and stopped before it.
+     * 
+     * @param name the name of the dependent container.
+     * @param dependencyName the name of the container it depends on.
+     */
+    public void addDependency(String name, String dependencyName)
+    {
+        getContainer(name);
+        getContainer(dependencyName);
+        this.dependencies.get(name).add(dependencyName);
+    }
+
+    /**
+     * @param name the name of a container of the group.
+     * @return the container with this name.
+     */
+    public LocalContainer getContainer(String name)
+    {
+        LocalContainer container = this.containers.get(name);
+        if (container == null)
+        {
+            throw new ContainerException("The container group has no container named [" + name
+                + "]");
+        }
+        return container;
+    }
+
+    /**
+     * @return the containers of the group, indexed by name, in the order they were added.
+     */
+    public Map<String, LocalContainer> getContainers()
+    {
+        return Collections.unmodifiableMap(this.containers);
+    }
+
+    /**
+     * @param name the name of a container of the group.
+     * @return the names of the containers it depends on.
+     */
+    public Set<String> getDependencies(String name)
+    {
+        getContainer(name);
+        return Collections.unmodifiableSet(this.dependencies.get(name));
+    }
+
+    /**
+     * Configures and starts all containers of the group. If any container fails to start, the
+     * containers which did start are stopped again and a {@link ContainerException} listing all
+     * failures, including the containers which then failed to stop, is thrown.
+     */
+    public void start()
+    {
+        Map<String, Throwable> failures = execute(true, this.containers.keySet());
+        if (!failures.isEmpty())
+        {
+            Set<String> started = new LinkedHashSet<String>(this.containers.keySet());
+            started.removeAll(failures.keySet());
+            Map<String, Throwable> stopFailures = execute(false, started);
+            ContainerException exception = createException("start", failures);
+            if (stopFailures.isEmpty())
+            {
+                throw exception;
+            }
+
+            for (Map.Entry<String, Throwable> stopFailure : stopFailures.entrySet())
+            {
+                getLogger().warn("Failed to stop container [" + stopFailure.getKey()
+                    + "] after the container group failed to start: " + stopFailure.getValue(),
+                        this.getClass().getName());
+            }
+            StringBuilder message = new StringBuilder(exception.getMessage());
+            message.append(". Then failed to stop the started containers:");
+            appendFailures(message, stopFailures);
+            throw new ContainerException(message.toString(), exception.getCause());
+        }
+    }
+
+    /**
+     * Stops all containers of the group. All containers are stopped even if some fail to stop, in
+     * which case a {@link ContainerException} listing all failures is thrown.
+     */
+    public void stop()
+    {
+        Map<String, Throwable> failures = execute(false, this.containers.keySet());
+        if (!failures.isEmpty())
+        {
+            throw createException("stop", failures);
+        }
+    }
+
+    /**
+     * Starts or stops all containers of the group, each container waiting for its dependencies
+     * (when starting) or its dependents (when stopping) first.
+     * 
+     * @param starting <code>true</code> to start the containers, <code>false</code> to stop
+     * them.
+     * @param names the names of the containers to start or stop, the other containers being left
+     * as they are.
+     * @return the containers which failed, with their failures.
+     */
+    private Map<String, Throwable> execute(boolean starting, Set<String> names)
+    {
+        List<String> order = sort();
+        Map<String, Set<String>> prerequisites = this.dependencies;
+        if (!starting)
+        {
+            Collections.reverse(order);
+            prerequisites = getDependents();
+        }
+
+        Map<String, Throwable> failures = new LinkedHashMap<String, Throwable>();
+        if (order.isEmpty())
+        {
+            return failures;
+        }
+
+        Map<String, Future<Object>> results = new LinkedHashMap<String, Future<Object>>();
+        ExecutorService executor = Executors.newFixedThreadPool(order.size());
+        try
+        {
+            // Containers are submitted in order, and the pool has a thread for each of them:
+            // all prerequisites of a container have hence been submitted and can complete.
+            for (String name : order)
+            {
+                Map<String, Future<Object>> containerPrerequisites =
+                    new LinkedHashMap<String, Future<Object>>();
+                for (String prerequisite : prerequisites.get(name))
+                {
+                    containerPrerequisites.put(prerequisite, results.get(prerequisite));
+                }
+                results.put(name, executor.submit(new ContainerAction(name, starting,
+                    !names.contains(name), containerPrerequisites)));
+            }
+
+            for (Map.Entry<String, Future<Object>> result : results.entrySet())
+            {
+                try
+                {
+                    result.getValue().get();
+                }
+                catch (ExecutionException e)
+                {
+                    failures.put(result.getKey(), e.getCause());
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    failures.put(result.getKey(), e);
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return failures;
+    }
+
+    /**
+     * @return the names of the containers of the group, with the names of the containers which
+     * depend on them.
+     */
+    private Map<String, Set<String>> getDependents()
+    {
+        Map<String, Set<String>> dependents = new HashMap<String, Set<String>>();
+        for (String name : this.containers.keySet())
+        {
+            dependents.put(name, new LinkedHashSet<String>());
+        }
+        for (Map.Entry<String, Set<String>> dependency : this.dependencies.entrySet())
+        {
+            for (String dependencyName : dependency.getValue())
+            {
+                dependents.get(dependencyName).add(dependency.getKey());
+            }
+        }
+        return dependents;
+    }
+
+    /**
+     * @return the container names, sorted so that each container comes after its dependencies.
+     */
+    private List<String> sort()
+    {
+        List<String> order = new ArrayList<String>(this.containers.size());
+        Set<String> visiting = new LinkedHashSet<String>();
+        for (String name : this.containers.keySet())
+        {
+            sort(name, order, visiting);
+        }
+        return order;
+    }
+
+    /**
+     * Adds a container to the sorted container names, after its dependencies.
+     * 
+     * @param name the container name.
+     * @param order the sorted container names.
+     * @param visiting the containers whose dependencies are being sorted.
+     */
+    private void sort(String name, List<String> order, Set<String> visiting)
+    {
+        if (order.contains(name))
+        {
+            return;
+        }
+        if (!visiting.add(name))
+        {
+            throw new ContainerException("The container group has a dependency cycle: "
+                + visiting + " -> " + name);
+        }
+        for (String dependencyName : this.dependencies.get(name))
+        {
+            sort(dependencyName, order, visiting);
+        }
+        visiting.remove(name);
+        order.add(name);
+    }
+
+    /**
+     * @param action the action which failed.
+     * @param failures the containers which failed, with their failures.
+     * @return an exception listing all failures, caused by the first one.
+     */
+    private ContainerException createException(String action, Map<String, Throwable> failures)
+    {
+        StringBuilder message = new StringBuilder("Failed to " + action + " the container group:");
+        appendFailures(message, failures);
+        return new ContainerException(message.toString(),
+            failures.values().iterator().next());
+    }
+
+    /**
+     * @param message the message to append the failures to.
+     * @param failures the containers which failed, with their failures.
+     */
+    private static void appendFailures(StringBuilder message, Map<String, Throwable> failures)
+    {
+        for (Map.Entry<String, Throwable> failure : failures.entrySet())
+        {
+            message.append(" [").append(failure.getKey()).append("] ");
+            message.append(failure.getValue().getMessage()).append(';');
+        }
+        message.setLength(message.length() - 1);
+    }
+
+    /**
+     * Starts or stops a container once its prerequisites are done.
+     */
+    private class ContainerAction implements Callable<Object>
+    {
+        /**
+         * Name of the container.
+         */
+        private String name;
+
+        /**
+         * <code>true</code> to start the container, <code>false</code> to stop it.
+         */
+        private boolean starting;
+
+        /**
+         * <code>true</code> to leave the container as it is.
+         */
+        private boolean skipped;
+
+        /**
+         * Results of the actions on the containers to wait for, indexed by container name.
+         */
+        private Map<String, Future<Object>> prerequisites;
+
+        /**
+         * @param name the name of the container.
+         * @param starting <code>true</code> to start the container, <code>false</code> to stop
+         * it.
+         * @param skipped <code>true</code> to leave the container as it is.
+         * @param prerequisites the results of the actions to wait for.
+         */
+        public ContainerAction(String name, boolean starting, boolean skipped,
+            Map<String, Future<Object>> prerequisites)
+        {
+            this.name = name;
+            this.starting = starting;
+            this.skipped = skipped;
+            this.prerequisites = prerequisites;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public Object call() throws Exception
+        {
+            for (Map.Entry<String, Future<Object>> prerequisite : this.prerequisites.entrySet())
+            {
+                try
+                {
+                    prerequisite.getValue().get();
+                }
+                catch (ExecutionException e)
+                {
+                    // A container is never started without its dependencies, but a container
+                    // which failed to stop must not prevent its dependencies from stopping.
+                    if (this.starting)
+                    {
+                        throw new ContainerException("Dependency [" + prerequisite.getKey()
+                            + "] failed to start");
+                    }
+                }
+            }
+
+            LocalContainer container = getContainer(this.name);
+            if (this.skipped)
+            {
+                return null;
+            }
+            else if (this.starting)
+            {
+                getLogger().debug("Starting container [" + this.name + "]",
+                    ContainerGroup.class.getName());
+                container.start();
+            }
+            else
+            {
+                getLogger().debug("Stopping container [" + this.name + "]",
+                    ContainerGroup.class.getName());
+                container.stop();
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.configuration;
+
+/**
+ * A local configuration which can allocate free ports for its container, when its
+ * {@link org.codehaus.cargo.container.property.GeneralPropertySet#PORT_OFFSET port offset} is
+ * <code>auto</code>. This is a separate interface so that existing {@link LocalConfiguration}
+ * implementations keep working; containers use the configured port offset as is when a
+ * configuration does not implement it.
+ * 
+ */
+public interface PortOffsetAllocatingConfiguration extends LocalConfiguration
+{
+    /**
+     * If the port offset is automatic, finds an offset which makes all ports of the configuration
+     * free and sets the port offset to it. The ports are reserved against other Cargo processes
+     * until {@link #releasePortReservation()} is called. The port offset stays set, so that the
+     * container is stopped on the same ports, until {@link #resetAllocatedPortOffset()} is
+     * called. The offset is also stored in the configuration home when the container is
+     * configured, so that it can be read back with {@link #restorePortOffset()} by another
+     * configuration object.
+     */
+    void allocatePortOffset();
+
+    /**
+     * If the port offset is automatic, sets it to the offset stored in the configuration home when
+     * the container was last configured with an allocated offset. To be called before stopping a
+     * container started with another configuration object.
+     * 
+     * @return <code>true</code> if the port offset has been read back, <code>false</code> if the
+     * port offset is not automatic or if no offset is stored.
+     */
+    boolean restorePortOffset();
+
+    /**
+     * Releases the reservation of the ports allocated by {@link #allocatePortOffset()}, keeping
+     * the allocated port offset. To be called once the container has bound its ports.
+     */
+    void releasePortReservation();
+
+    /**
+     * Releases the ports allocated by {@link #allocatePortOffset()}, if any, deletes the port
+     * offset stored in the configuration home and sets the port offset back to automatic so that
+     * new ports are allocated the next time the container starts. To be called once the container
+     * has stopped, or failed to start, and the port offset has been reverted.
+     */
+    void resetAllocatedPortOffset();
+}
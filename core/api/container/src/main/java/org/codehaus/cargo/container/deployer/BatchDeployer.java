@@ -0,0 +1,75 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.deployer;
+
+import java.util.List;
+
+import org.codehaus.cargo.container.deployable.Deployable;
+
+/**
+ * A deployer which can deploy and redeploy several {@link Deployable}s as a batch. This is a
+ * separate interface so that existing {@link Deployer} implementations keep working; callers
+ * deploy the deployables one after the other when a deployer does not implement it.
+ * 
+ */
+public interface BatchDeployer extends Deployer
+{
+    /**
+     * Deploy several {@link Deployable}s to the running container and make them available for
+     * requests. Deployers able to do so transfer the deployables concurrently.
+     * 
+     * @param deployables the {@link Deployable}s to deploy
+     */
+    void deploy(List<Deployable> deployables);
+
+    /**
+     * Deploy several {@link Deployable}s to the running container and make them available for
+     * requests. Waits for all {@link Deployable}s to be fully deployed before returning.
+     * 
+     * @param deployables the {@link Deployable}s to deploy
+     * @param monitors the monitors that check for the deployment status of each deployable, in
+     * the same order as the deployables; a deployable whose monitor is <code>null</code> is not
+     * waited for, and a failure to deploy the deployables is then not left to the monitors to
+     * judge but thrown
+     */
+    void deploy(List<Deployable> deployables, List<DeployableMonitor> monitors);
+
+    /**
+     * Redeploy several {@link Deployable}s already deployed to the running container.
+     * Deployers able to do so transfer the deployables concurrently.
+     * 
+     * @param deployables the {@link Deployable}s to redeploy
+     * @see Deployer#redeploy(Deployable)
+     */
+    void redeploy(List<Deployable> deployables);
+
+    /**
+     * Redeploy several {@link Deployable}s already deployed to the running container. Waits for
+     * all {@link Deployable}s to be fully redeployed before returning.
+     * 
+     * @param deployables the {@link Deployable}s to redeploy
+     * @param monitors the monitors that check for the deployment status of each deployable, in
+     * the same order as the deployables; a deployable whose monitor is <code>null</code> is not
+     * waited for, and a failure to redeploy the deployables is then not left to the monitors to
+     * judge but thrown
+     * @see Deployer#redeploy(Deployable, DeployableMonitor)
+     */
+    void redeploy(List<Deployable> deployables, List<DeployableMonitor> monitors);
+}
@@ -0,0 +1,303 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.installer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.codehaus.cargo.util.FileHandler;
+import org.codehaus.cargo.util.log.Logger;
+
+/**
+ * Installations sharing the same extract directory, each registered by a timestamp file. Reads
+ * and writes the timestamp files, computes the checksums of the downloaded archives they record
+ * and evicts the least recently used installations.
+ * 
+ */
+final class InstallationCache
+{
+    /**
+     * Size of the buffer used when computing checksums.
+     */
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * File utility class.
+     */
+    private final FileHandler fileHandler;
+
+    /**
+     * Logger of the installer.
+     */
+    private final Logger logger;
+
+    /**
+     * @param fileHandler the file utility class to use for performing all file I/O.
+     * @param logger the logger of the installer.
+     */
+    InstallationCache(FileHandler fileHandler, Logger logger)
+    {
+        this.fileHandler = fileHandler;
+        this.logger = logger;
+    }
+
+    /**
+     * Reads the properties stored in an installation timestamp file.
+     * 
+     * @param timestampFile the timestamp file to read.
+     * @return the properties of the timestamp file, empty if it cannot be read.
+     */
+    Properties readTimestamp(String timestampFile)
+    {
+        Properties timestamp = new Properties();
+        try
+        {
+            InputStream is = this.fileHandler.getInputStream(timestampFile);
+            try
+            {
+                timestamp.load(is);
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+        catch (Exception e)
+        {
+            this.logger.debug("Cannot read timestamp file [" + timestampFile + "]: " + e,
+                this.getClass().getName());
+        }
+        return timestamp;
+    }
+
+    /**
+     * Writes an installation timestamp file.
+     * 
+     * @param timestampFile the timestamp file to write.
+     * @param timestamp the properties to store in the timestamp file.
+     */
+    void writeTimestamp(String timestampFile, Properties timestamp)
+    {
+        try
+        {
+            OutputStream os = this.fileHandler.getOutputStream(timestampFile);
+            try
+            {
+                timestamp.store(os, "Do not remove this file");
+            }
+            finally
+            {
+                os.close();
+            }
+        }
+        catch (IOException e)
+        {
+            this.logger.debug("Cannot write timestamp file [" + timestampFile + "]: " + e,
+                this.getClass().getName());
+        }
+    }
+
+    /**
+     * Computes the SHA-1 checksum of a file.
+     * 
+     * @param file the file to compute the checksum of.
+     * @return the checksum, in hexadecimal form.
+     * @throws IOException If the file cannot be read.
+     * @throws NoSuchAlgorithmException If SHA-1 is not supported by the JVM.
+     */
+    String computeChecksum(String file) throws IOException, NoSuchAlgorithmException
+    {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        InputStream is = this.fileHandler.getInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = is.read(buffer)) != -1)
+            {
+                digest.update(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            is.close();
+        }
+
+        StringBuilder checksum = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            checksum.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+        }
+        return checksum.toString();
+    }
+
+    /**
+     * Removes the least recently used installations of an extract directory until their total
+     * size, including their downloaded archives, fits within a maximum size. Installations
+     * currently being installed by another thread or process are left alone.
+     * 
+     * @param extractRoot the extract directory.
+     * @param current the installation being installed, which is never evicted.
+     * @param maxSize the maximum size in bytes of all installations.
+     */
+    void evict(String extractRoot, String current, long maxSize)
+    {
+        if (!this.fileHandler.isDirectory(extractRoot))
+        {
+            return;
+        }
+
+        final Map<String, Long> lastUsed = new HashMap<String, Long>();
+        Map<String, Long> sizes = new HashMap<String, Long>();
+        List<String> installations = new ArrayList<String>();
+        long totalSize = 0;
+        for (String child : this.fileHandler.getChildren(extractRoot))
+        {
+            String timestampFile =
+                this.fileHandler.append(child, ZipURLInstaller.TIMESTAMP_FILE);
+            if (this.fileHandler.isDirectory(child) && this.fileHandler.exists(timestampFile))
+            {
+                Properties timestamp = readTimestamp(timestampFile);
+                long size = getDiskUsage(child)
+                    + getDiskUsage(timestamp.getProperty(ZipURLInstaller.ARCHIVE_PROPERTY));
+                installations.add(child);
+                lastUsed.put(child, Long.valueOf(getLastUsed(timestamp)));
+                sizes.put(child, Long.valueOf(size));
+                totalSize += size;
+            }
+        }
+
+        Collections.sort(installations, new Comparator<String>()
+        {
+            public int compare(String installation1, String installation2)
+            {
+                return lastUsed.get(installation1).compareTo(lastUsed.get(installation2));
+            }
+        });
+
+        String currentName = this.fileHandler.getName(current);
+        for (String installation : installations)
+        {
+            if (totalSize <= maxSize)
+            {
+                break;
+            }
+            if (!this.fileHandler.getName(installation).equals(currentName)
+                && evictInstallation(installation))
+            {
+                totalSize -= sizes.get(installation).longValue();
+            }
+        }
+    }
+
+    /**
+     * Evicts an installation unless it is in use. Installations which neither this JVM nor, for
+     * local paths, other processes are installing are not in use.
+     * 
+     * @param installation the installation directory.
+     * @return <code>true</code> if the installation has been evicted.
+     */
+    private boolean evictInstallation(String installation)
+    {
+        InstallationLock lock = InstallationLock.tryLock(this.fileHandler,
+            installation + ZipURLInstaller.LOCK_FILE_SUFFIX, this.logger);
+        if (lock == null)
+        {
+            this.logger.debug("Installation [" + installation + "] is in use, not evicting it",
+                this.getClass().getName());
+            return false;
+        }
+        try
+        {
+            this.logger.info("Evicting least recently used installation [" + installation
+                + "] from the installation cache", this.getClass().getName());
+
+            // Delete the timestamp first, so that an interrupted eviction causes a reinstall
+            String timestampFile =
+                this.fileHandler.append(installation, ZipURLInstaller.TIMESTAMP_FILE);
+            String archive =
+                readTimestamp(timestampFile).getProperty(ZipURLInstaller.ARCHIVE_PROPERTY);
+            this.fileHandler.delete(timestampFile);
+            if (archive != null)
+            {
+                this.fileHandler.delete(archive);
+            }
+            this.fileHandler.delete(installation);
+            return true;
+        }
+        finally
+        {
+            lock.release();
+        }
+    }
+
+    /**
+     * @param timestamp the properties of an installation timestamp file.
+     * @return when the installation has last been used, <code>0</code> for timestamp files written
+     * by older versions of CARGO.
+     */
+    private static long getLastUsed(Properties timestamp)
+    {
+        try
+        {
+            return Long.parseLong(timestamp.getProperty(ZipURLInstaller.LAST_USED_PROPERTY, "0"));
+        }
+        catch (NumberFormatException e)
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * @param path a file or directory, may be <code>null</code>.
+     * @return the total size in bytes of the file or of all files in the directory,
+     * <code>0</code> if it does not exist.
+     */
+    private long getDiskUsage(String path)
+    {
+        long size = 0;
+        if (path == null)
+        {
+            return size;
+        }
+        if (this.fileHandler.isDirectory(path))
+        {
+            for (String child : this.fileHandler.getChildren(path))
+            {
+                size += getDiskUsage(child);
+            }
+        }
+        else if (this.fileHandler.exists(path))
+        {
+            size = this.fileHandler.getSize(path);
+        }
+        return size;
+    }
+}
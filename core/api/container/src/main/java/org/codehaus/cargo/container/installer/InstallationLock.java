@@ -0,0 +1,226 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.internal.util.LockFile;
+import org.codehaus.cargo.util.FileHandler;
+import org.codehaus.cargo.util.log.Logger;
+
+/**
+ * Lock of an installation, held by one thread of one process at a time. Threads of this JVM
+ * synchronize on an in-JVM lock, and processes on a lock file. Lock files are only used for local
+ * paths; installations in other file systems (for example VFS paths) are only locked within this
+ * JVM.
+ * 
+ */
+final class InstallationLock
+{
+    /**
+     * In-JVM locks of the lock files used by this JVM, so that its threads also synchronize among
+     * themselves when the installation is not on the local file system and cannot be locked.
+     */
+    private static final Map<String, ReentrantLock> LOCAL_LOCKS =
+        new HashMap<String, ReentrantLock>();
+
+    /**
+     * In-JVM lock held.
+     */
+    private final ReentrantLock localLock;
+
+    /**
+     * Lock file held, <code>null</code> if the lock file could not be locked.
+     */
+    private final LockFile lockFile;
+
+    /**
+     * Logger used to report lock files which cannot be locked or released.
+     */
+    private final Logger logger;
+
+    /**
+     * @param localLock the in-JVM lock held.
+     * @param lockFile the lock file held, may be <code>null</code>.
+     * @param logger the logger used to report lock files which cannot be released.
+     */
+    private InstallationLock(ReentrantLock localLock, LockFile lockFile, Logger logger)
+    {
+        this.localLock = localLock;
+        this.lockFile = lockFile;
+        this.logger = logger;
+    }
+
+    /**
+     * Acquires the lock of an installation, waiting until it is available. If the lock file cannot
+     * be locked, the installation proceeds without cross-process coordination.
+     * 
+     * @param fileHandler the file handler of the installation.
+     * @param lockFile the path of the lock file, created if necessary.
+     * @param logger the logger used to report lock files which cannot be locked.
+     * @return the acquired lock.
+     */
+    static InstallationLock lock(FileHandler fileHandler, String lockFile, Logger logger)
+    {
+        ReentrantLock localLock = getLocalLock(fileHandler.getAbsolutePath(lockFile));
+        localLock.lock();
+        boolean locked = false;
+        try
+        {
+            InstallationLock lock = new InstallationLock(localLock,
+                lockFile(fileHandler, lockFile, true, logger), logger);
+            locked = true;
+            return lock;
+        }
+        finally
+        {
+            if (!locked)
+            {
+                localLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Acquires the lock of an installation if it is available.
+     * 
+     * @param fileHandler the file handler of the installation.
+     * @param lockFile the path of the lock file, created if necessary.
+     * @param logger the logger used to report lock files which cannot be locked.
+     * @return the acquired lock, <code>null</code> if another thread of this JVM or, for local
+     * paths, another process holds it.
+     */
+    static InstallationLock tryLock(FileHandler fileHandler, String lockFile, Logger logger)
+    {
+        ReentrantLock localLock = getLocalLock(fileHandler.getAbsolutePath(lockFile));
+        if (!localLock.tryLock())
+        {
+            return null;
+        }
+        boolean locked = false;
+        try
+        {
+            LockFile lock = lockFile(fileHandler, lockFile, false, logger);
+            if (lock == null && ZipURLInstaller.isLocalPath(lockFile))
+            {
+                return null;
+            }
+            locked = true;
+            return new InstallationLock(localLock, lock, logger);
+        }
+        finally
+        {
+            if (!locked)
+            {
+                localLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Deletes the lock file and releases the lock.
+     */
+    void release()
+    {
+        try
+        {
+            if (this.lockFile != null)
+            {
+                this.lockFile.release();
+            }
+        }
+        catch (IOException e)
+        {
+            this.logger.debug("Cannot release installation lock: " + e,
+                this.getClass().getName());
+        }
+        finally
+        {
+            this.localLock.unlock();
+        }
+    }
+
+    /**
+     * @param lockFile the absolute path of a lock file.
+     * @return the lock threads of this JVM acquire before locking <code>lockFile</code>.
+     */
+    private static ReentrantLock getLocalLock(String lockFile)
+    {
+        synchronized (LOCAL_LOCKS)
+        {
+            ReentrantLock localLock = LOCAL_LOCKS.get(lockFile);
+            if (localLock == null)
+            {
+                localLock = new ReentrantLock();
+                LOCAL_LOCKS.put(lockFile, localLock);
+            }
+            return localLock;
+        }
+    }
+
+    /**
+     * Acquires an exclusive lock on a lock file, in order to coordinate with other processes.
+     * 
+     * @param fileHandler the file handler of the installation.
+     * @param lockFile the path of the lock file, created if necessary.
+     * @param wait <code>true</code> to wait until the lock is available, <code>false</code> to
+     * return immediately if the lock is held by someone else.
+     * @param logger the logger used to report lock files which cannot be locked.
+     * @return the acquired lock, <code>null</code> if the lock is not available or if the lock file
+     * cannot be locked.
+     */
+    private static LockFile lockFile(FileHandler fileHandler, String lockFile, boolean wait,
+        Logger logger)
+    {
+        if (!ZipURLInstaller.isLocalPath(lockFile))
+        {
+            return null;
+        }
+
+        File file = new File(fileHandler.getAbsolutePath(lockFile));
+        try
+        {
+            if (wait)
+            {
+                logger.debug("Acquiring installation lock [" + file + "]",
+                    InstallationLock.class.getName());
+                return LockFile.lock(file);
+            }
+            return LockFile.tryLock(file);
+        }
+        catch (InterruptedIOException e)
+        {
+            throw new ContainerException("Interrupted while waiting for installation lock ["
+                + file + "]", e);
+        }
+        catch (IOException e)
+        {
+            logger.debug("Cannot lock [" + file + "], continuing without lock: " + e,
+                InstallationLock.class.getName());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.installer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.codehaus.cargo.util.ArchiveExtractor;
+import org.codehaus.cargo.util.Base64;
+
+/**
+ * Downloads a tar archive and extracts it at the same time: a download thread writes the archive
+ * both to a file and to a pipe the archive is extracted from, so that network transfer, archive
+ * write and extraction overlap.
+ * 
+ */
+final class StreamingDownload
+{
+    /**
+     * Size of the buffers used when downloading and extracting.
+     */
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * URL of the archive.
+     */
+    private final URL remoteLocation;
+
+    /**
+     * URL of the archive without any user information, for error messages.
+     */
+    private final String location;
+
+    /**
+     * @param remoteLocation URL of the archive, its user information (if any) being used for
+     * basic authentication.
+     * @param location URL of the archive without any user information, for error messages.
+     */
+    StreamingDownload(URL remoteLocation, String location)
+    {
+        this.remoteLocation = remoteLocation;
+        this.location = location;
+    }
+
+    /**
+     * Downloads the archive to a temporary file while extracting it. The temporary file is
+     * renamed to the archive once both download and extraction are complete.
+     * 
+     * @param targetFile the archive in the download directory.
+     * @param partFile the temporary file the archive is downloaded to.
+     * @param targetDir the directory the archive is extracted to.
+     * @throws Exception If the download or the extraction fails.
+     */
+    void downloadAndExtract(File targetFile, File partFile, File targetDir) throws Exception
+    {
+        URLConnection connection = openConnection();
+        Pipe pipe = Pipe.open();
+        ArchiveDownloader downloader = new ArchiveDownloader(
+            Channels.newChannel(connection.getInputStream()), partFile, pipe.sink());
+        Thread downloaderThread = new Thread(downloader, "Download " + targetFile.getName());
+        downloaderThread.setDaemon(true);
+        downloaderThread.start();
+
+        InputStream archive = Channels.newInputStream(pipe.source());
+        try
+        {
+            new ArchiveExtractor().extractTar(archive, targetFile.getName(), targetDir);
+
+            // Read the end of the archive after the tar trailer, so that the download completes
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (archive.read(buffer) != -1)
+            {
+                continue;
+            }
+        }
+        finally
+        {
+            // If extraction failed, this makes the downloader stop with an error
+            archive.close();
+            downloaderThread.join();
+        }
+
+        if (downloader.getError() != null)
+        {
+            throw downloader.getError();
+        }
+        if (!partFile.renameTo(targetFile))
+        {
+            throw new IOException("Cannot rename [" + partFile + "] to [" + targetFile + "]");
+        }
+        if (connection.getLastModified() > 0)
+        {
+            targetFile.setLastModified(connection.getLastModified());
+        }
+    }
+
+    /**
+     * Opens a connection to the remote location, using the user information in the URL (if any)
+     * for basic authentication.
+     * 
+     * @return the opened connection.
+     * @throws IOException If the connection cannot be opened or the server returns an error.
+     */
+    private URLConnection openConnection() throws IOException
+    {
+        URLConnection connection = this.remoteLocation.openConnection();
+        String userInfo = this.remoteLocation.getUserInfo();
+        if (userInfo != null)
+        {
+            // As with the Ant Get task, a user without password has an empty password
+            String credentials = userInfo.indexOf(':') > 0 ? userInfo : userInfo + ":";
+            connection.setRequestProperty("Authorization", "Basic " + Base64.encode(credentials));
+        }
+        connection.connect();
+
+        if (connection instanceof HttpURLConnection)
+        {
+            int responseCode = ((HttpURLConnection) connection).getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK)
+            {
+                throw new IOException("Server returned HTTP response code [" + responseCode
+                    + "] for [" + this.location + "]");
+            }
+        }
+
+        return connection;
+    }
+
+    /**
+     * @param closeable the file or channel to close, may be <code>null</code>.
+     */
+    private static void closeQuietly(Closeable closeable)
+    {
+        if (closeable != null)
+        {
+            try
+            {
+                closeable.close();
+            }
+            catch (IOException ignored)
+            {
+                // Ignored
+            }
+        }
+    }
+
+    /**
+     * Copies the downloaded bytes both to the archive file and to the pipe the archive is
+     * extracted from.
+     */
+    private static class ArchiveDownloader implements Runnable
+    {
+        /**
+         * Channel of the remote location.
+         */
+        private final ReadableByteChannel source;
+
+        /**
+         * File the archive is downloaded to.
+         */
+        private final File archive;
+
+        /**
+         * Pipe the extraction reads the archive from.
+         */
+        private final WritableByteChannel pipe;
+
+        /**
+         * Error the download has failed with, if any.
+         */
+        private volatile Exception error;
+
+        /**
+         * @param source channel of the remote location.
+         * @param archive file the archive is downloaded to.
+         * @param pipe pipe the extraction reads the archive from.
+         */
+        public ArchiveDownloader(ReadableByteChannel source, File archive,
+            WritableByteChannel pipe)
+        {
+            this.source = source;
+            this.archive = archive;
+            this.pipe = pipe;
+        }
+
+        /**
+         * @return the error the download has failed with, <code>null</code> if none.
+         */
+        public Exception getError()
+        {
+            return this.error;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void run()
+        {
+            try
+            {
+                FileChannel archiveChannel = new FileOutputStream(this.archive).getChannel();
+                try
+                {
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                    while (this.source.read(buffer) != -1)
+                    {
+                        buffer.flip();
+                        ByteBuffer pipeBuffer = buffer.duplicate();
+                        while (buffer.hasRemaining())
+                        {
+                            archiveChannel.write(buffer);
+                        }
+                        while (pipeBuffer.hasRemaining())
+                        {
+                            this.pipe.write(pipeBuffer);
+                        }
+                        buffer.clear();
+                    }
+                }
+                finally
+                {
+                    archiveChannel.close();
+                }
+            }
+            catch (Exception e)
+            {
+                this.error = e;
+            }
+            finally
+            {
+                closeQuietly(this.pipe);
+                closeQuietly(this.source);
+            }
+        }
+    }
+}
@@ -19,20 +19,19 @@
  */
 package org.codehaus.cargo.container.installer;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Properties;
 
-import org.apache.tools.ant.BuildException;
-import org.apache.tools.ant.taskdefs.Expand;
 import org.apache.tools.ant.taskdefs.Get;
-import org.apache.tools.ant.taskdefs.Untar;
-import org.apache.tools.ant.taskdefs.Untar.UntarCompressionMethod;
 import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.util.AntTaskFactory;
 import org.codehaus.cargo.util.AntUtils;
+import org.codehaus.cargo.util.ArchiveExtractor;
 import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.ExtendedFileHandler;
 import org.codehaus.cargo.util.FileHandler;
 import org.codehaus.cargo.util.log.LoggedObject;
 
@@ -42,6 +41,27 @@ import org.codehaus.cargo.util.log.LoggedObject;
  */
 public class ZipURLInstaller extends LoggedObject implements Installer
 {
+    /**
+     * Name of the timestamp file registering a successful installation.
+     */
+    static final String TIMESTAMP_FILE = ".cargo";
+
+    /**
+     * Suffix of the lock file, created next to the extract directory, used to coordinate
+     * concurrent installations of the same container.
+     */
+    static final String LOCK_FILE_SUFFIX = ".lock";
+
+    /**
+     * Timestamp file property holding the path of the downloaded archive.
+     */
+    static final String ARCHIVE_PROPERTY = "archive";
+
+    /**
+     * Timestamp file property holding when the installation has last been used, in milliseconds.
+     */
+    static final String LAST_USED_PROPERTY = "lastUsed";
+
     /**
      * Archive types supported.
      */
@@ -53,6 +73,31 @@ public class ZipURLInstaller extends LoggedObject implements Installer
         ".tar.gz",
     };
 
+    /**
+     * Timestamp file property holding the URL the installation has been downloaded from.
+     */
+    private static final String URL_PROPERTY = "url";
+
+    /**
+     * Timestamp file property holding the SHA-1 checksum of the downloaded archive.
+     */
+    private static final String CHECKSUM_PROPERTY = "sha1";
+
+    /**
+     * Timestamp file property holding the size of the downloaded archive.
+     */
+    private static final String SIZE_PROPERTY = "size";
+
+    /**
+     * Timestamp file property holding the modification time of the downloaded archive.
+     */
+    private static final String LAST_MODIFIED_PROPERTY = "lastModified";
+
+    /**
+     * Suffix of the archive while it is being downloaded in streaming mode.
+     */
+    private static final String PART_FILE_SUFFIX = ".part";
+
     /**
      * URL where the zipped container is located.
      */
@@ -83,6 +128,22 @@ public class ZipURLInstaller extends LoggedObject implements Installer
      */
     private FileHandler fileHandler;
 
+    /**
+     * Maximum size in bytes of all installations sharing the same extract directory, negative
+     * for unlimited.
+     */
+    private long maxCacheSize = -1;
+
+    /**
+     * Whether tar archives are extracted while being downloaded.
+     */
+    private boolean streaming;
+
+    /**
+     * Directory in which a copy-on-write clone of the container home is created, if any.
+     */
+    private String cloneDir;
+
     /**
      * @param remoteLocation URL where the zipped container is located
      */
@@ -151,17 +212,6 @@ public class ZipURLInstaller extends LoggedObject implements Installer
      */
     public String getExtractDir()
     {
-        String extractDir;
-
-        if (this.extractDir == null)
-        {
-            extractDir = getFileHandler().getTmpPath("installs");
-        }
-        else
-        {
-            extractDir = this.extractDir;
-        }
-
         String name = getSourceFileName();
 
         for (String element : ARCHIVE_ENDINGS)
@@ -174,7 +224,87 @@ public class ZipURLInstaller extends LoggedObject implements Installer
             }
         }
 
-        return getFileHandler().append(extractDir, name);
+        return getFileHandler().append(getExtractRoot(), name);
+    }
+
+    /**
+     * @return The directory in which all installations sharing the same cache are extracted.
+     */
+    private String getExtractRoot()
+    {
+        if (this.extractDir == null)
+        {
+            return getFileHandler().getTmpPath("installs");
+        }
+        else
+        {
+            return this.extractDir;
+        }
+    }
+
+    /**
+     * @param maxCacheSize the maximum size in bytes of all installations (including their
+     * downloaded archives) sharing the same extract directory. When a new installation makes the
+     * total go above this size, the least recently used installations are removed. Use a negative
+     * value for an unlimited size, which is the default.
+     */
+    public void setMaxCacheSize(long maxCacheSize)
+    {
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * @return the maximum size in bytes of all installations sharing the same extract directory,
+     * negative for unlimited.
+     */
+    public long getMaxCacheSize()
+    {
+        return this.maxCacheSize;
+    }
+
+    /**
+     * @param streaming <code>true</code> to extract tar archives (<code>.tar</code>,
+     * <code>.tar.gz</code>, <code>.tgz</code> and <code>.bz2</code>) while they are being
+     * downloaded, instead of first downloading and then unpacking them. The archive is still saved
+     * in the download directory for later reuse. If anything goes wrong, the installer falls back
+     * to downloading and then unpacking the archive.
+     */
+    public void setStreaming(boolean streaming)
+    {
+        this.streaming = streaming;
+    }
+
+    /**
+     * @return <code>true</code> if tar archives are extracted while they are being downloaded.
+     */
+    public boolean isStreaming()
+    {
+        return this.streaming;
+    }
+
+    /**
+     * @param cloneDir directory in which each {@link #install()} creates a fresh copy-on-write
+     * clone of the container home, <code>null</code> (the default) for not cloning. The clone is
+     * a tree of hard links to the files of the installation (copies if the file handler is not an
+     * {@link ExtendedFileHandler}) and is returned by {@link #getHome()}, hence each run gets an
+     * isolated container home in the time it takes to create the links. Files must only be
+     * modified through CARGO's file handler, which replaces linked files rather than writing
+     * through them: the installer does not know which files the container modifies in place, and
+     * any such write (for example a container started with an existing configuration located in
+     * its home) modifies the installation and all its clones.
+     */
+    public void setCloneDir(String cloneDir)
+    {
+        this.cloneDir = cloneDir;
+    }
+
+    /**
+     * @return the directory in which a copy-on-write clone of the container home is created,
+     * <code>null</code> for not cloning.
+     */
+    public String getCloneDir()
+    {
+        return this.cloneDir;
     }
 
     /**
@@ -205,66 +335,238 @@ public class ZipURLInstaller extends LoggedObject implements Installer
     }
 
     /**
+     * {@inheritDoc}. Concurrent installations of the same container, be it by other threads or by
+     * other processes sharing the same extract directory, are coordinated using a lock file: one of
+     * them downloads and unpacks the container while the others wait and then reuse it. Lock files
+     * are only used for local paths; installations in other file systems (for example VFS paths)
+     * are only coordinated within this JVM.
+     * 
      * @see Installer#install()
      */
     public void install()
     {
-        if (!isAlreadyExtracted())
+        InstallationLock lock = InstallationLock.lock(getFileHandler(),
+            getExtractDir() + LOCK_FILE_SUFFIX, getLogger());
+        try
         {
-            getLogger().debug("Container [" + getSourceFileName() + "] is not yet installed.",
-                this.getClass().getName());
+            doInstall();
 
-            if (!isAlreadyDownloaded())
+            if (this.cloneDir != null)
             {
-                getLogger().debug("Container [" + getSourceFileName() + "] is not yet downloaded.",
-                    this.getClass().getName());
-
-                download();
+                cloneHome();
             }
+        }
+        finally
+        {
+            lock.release();
+        }
+    }
+
+    /**
+     * Downloads and unpacks the container unless already installed. Must be called with the
+     * installation lock held.
+     */
+    private void doInstall()
+    {
+        Properties timestamp =
+            getCache().readTimestamp(getFileHandler().append(getExtractDir(), TIMESTAMP_FILE));
+        if (isAlreadyExtracted() && isArchiveUnchanged(timestamp))
+        {
+            getLogger().debug("Container [" + getSourceFileName() + "] is already installed",
+                this.getClass().getName());
+            getLogger().debug("Using container installation dir [" + getExtractDir() + "]",
+                getClass().getName());
+
+            // Mark the installation as recently used, so that it is evicted last
+            timestamp.setProperty(LAST_USED_PROPERTY, Long.toString(System.currentTimeMillis()));
+            writeTimestamp(timestamp);
+            return;
+        }
+
+        getLogger().debug("Container [" + getSourceFileName() + "] is not yet installed.",
+            this.getClass().getName());
+
+        boolean downloaded = isAlreadyDownloaded();
+        if (getFileHandler().exists(getExtractDir()))
+        {
+            // Do not let files of a previous installation survive in the new one
+            getFileHandler().delete(getExtractDir());
+        }
+
+        boolean unpacked = false;
+        if (!downloaded)
+        {
+            unpacked = downloadArchive();
+        }
+        if (!unpacked)
+        {
+            unpackDownloaded();
+        }
+
+        getLogger().debug("Container [" + getSourceFileName()
+            + "] is unpacked, now registering.", this.getClass().getName());
+
+        registerInstallation();
+
+        if (this.maxCacheSize >= 0)
+        {
+            getCache().evict(getExtractRoot(), getExtractDir(), this.maxCacheSize);
+        }
+    }
+
+    /**
+     * Downloads the archive, extracting it at the same time in streaming mode if possible.
+     * 
+     * @return <code>true</code> if the archive has also been unpacked.
+     */
+    private boolean downloadArchive()
+    {
+        getLogger().debug("Container [" + getSourceFileName() + "] is not yet downloaded.",
+            this.getClass().getName());
+
+        if (getFileHandler().exists(getDownloadFile()))
+        {
+            // Downloaded from another URL, which the download would not notice if older
+            getFileHandler().delete(getDownloadFile());
+        }
+        if (this.streaming && isTarArchive() && downloadAndUnpack())
+        {
+            return true;
+        }
+        download();
+        return false;
+    }
+
+    /**
+     * Unpacks the downloaded archive, downloading it again if it is broken.
+     */
+    private void unpackDownloaded()
+    {
+        try
+        {
+            getLogger().debug("Container [" + getSourceFileName()
+                + "] is downloaded, now unpacking.", this.getClass().getName());
 
+            unpack();
+        }
+        catch (IOException e)
+        {
+            getLogger().debug("Container [" + getSourceFileName() + "] is broken: " + e,
+                this.getClass().getName());
+
+            getFileHandler().delete(getExtractDir());
+            download();
             try
             {
-                getLogger().debug("Container [" + getSourceFileName()
-                    + "] is downloaded, now unpacking.", this.getClass().getName());
-
                 unpack();
             }
-            catch (BuildException e)
+            catch (IOException ee)
             {
-                getLogger().debug("Container [" + getSourceFileName() + "] is broken.",
-                    this.getClass().getName());
-
-                download();
-                unpack();
+                throw new ContainerException("Failed to unpack [" + getDownloadFile() + "]", ee);
             }
+        }
+    }
 
-            getLogger().debug("Container [" + getSourceFileName()
-                + "] is unpacked, now registering.", this.getClass().getName());
+    /**
+     * Checks that the downloaded archive is still the one the installation has been extracted
+     * from. When the size and modification time of the archive are the ones recorded in the
+     * timestamp file, it is; else, its SHA-1 checksum is compared with the recorded one, so that
+     * archives replaced by another download of the same file name are detected. Archives which
+     * have only been touched get their new modification time recorded in <code>timestamp</code>.
+     * 
+     * @param timestamp the properties of the timestamp file of the installation.
+     * @return <code>false</code> if the downloaded archive has a different checksum than the one
+     * recorded, <code>true</code> otherwise (including when the archive or its checksum is not
+     * available anymore).
+     */
+    private boolean isArchiveUnchanged(Properties timestamp)
+    {
+        String archive = getDownloadFile();
+        String checksum = timestamp.getProperty(CHECKSUM_PROPERTY);
+        if (checksum == null || !getFileHandler().exists(archive))
+        {
+            return true;
+        }
 
-            registerInstallation();
+        String size = Long.toString(getFileHandler().getSize(archive));
+        String lastModified = getLastModified(archive);
+        if (size.equals(timestamp.getProperty(SIZE_PROPERTY)) && lastModified != null
+            && lastModified.equals(timestamp.getProperty(LAST_MODIFIED_PROPERTY)))
+        {
+            return true;
         }
-        else
+
+        boolean unchanged;
+        try
         {
-            getLogger().debug("Container [" + getSourceFileName() + "] is already installed",
+            unchanged = checksum.equals(getCache().computeChecksum(archive));
+        }
+        catch (Exception e)
+        {
+            getLogger().debug("Cannot compute the checksum of [" + archive + "]: " + e,
                 this.getClass().getName());
-            getLogger().debug("Using container installation dir [" + getExtractDir() + "]",
-                getClass().getName());
+            return true;
+        }
+
+        if (!unchanged)
+        {
+            getLogger().info("Archive [" + archive + "] does not match the checksum of the "
+                + "installation in [" + getExtractDir() + "], reinstalling it",
+                this.getClass().getName());
+        }
+        else if (lastModified != null)
+        {
+            timestamp.setProperty(SIZE_PROPERTY, size);
+            timestamp.setProperty(LAST_MODIFIED_PROPERTY, lastModified);
         }
+        return unchanged;
+    }
+
+    /**
+     * @param file a file.
+     * @return the modification time of the file, <code>null</code> if the file handler cannot
+     * tell it.
+     */
+    private String getLastModified(String file)
+    {
+        if (getFileHandler() instanceof ExtendedFileHandler)
+        {
+            return Long.toString(((ExtendedFileHandler) getFileHandler()).getLastModified(file));
+        }
+        return null;
     }
 
     /**
      * Create timestamp file to register that the installation has been successful. This allows to
-     * prevent installing again next time. If the remote URL changes, then the container will be
+     * prevent installing again next time. The timestamp file records the remote URL and the
+     * checksum of the downloaded archive; if the remote URL changes, then the container will be
      * reinstalled.
      */
     public void registerInstallation()
     {
         try
         {
-            File timestampFile = new File(getExtractDir(), ".cargo");
-            BufferedWriter bw = new BufferedWriter(new FileWriter(timestampFile));
-            bw.write("Do not remove this file");
-            bw.close();
+            Properties timestamp = new Properties();
+            timestamp.setProperty(URL_PROPERTY, getRemoteLocationKey());
+            timestamp.setProperty(LAST_USED_PROPERTY, Long.toString(System.currentTimeMillis()));
+            String archive = getDownloadFile();
+            if (getFileHandler().exists(archive))
+            {
+                if (isLocalPath(archive))
+                {
+                    archive = getFileHandler().getAbsolutePath(archive);
+                }
+                timestamp.setProperty(ARCHIVE_PROPERTY, archive);
+                timestamp.setProperty(CHECKSUM_PROPERTY, getCache().computeChecksum(archive));
+                timestamp.setProperty(SIZE_PROPERTY,
+                    Long.toString(getFileHandler().getSize(archive)));
+                String lastModified = getLastModified(archive);
+                if (lastModified != null)
+                {
+                    timestamp.setProperty(LAST_MODIFIED_PROPERTY, lastModified);
+                }
+            }
+            writeTimestamp(timestamp);
         }
         catch (Exception e)
         {
@@ -274,7 +576,28 @@ public class ZipURLInstaller extends LoggedObject implements Installer
     }
 
     /**
-     * @return true if the container has already been downloaded, false otherwise
+     * Writes the timestamp file of the installation.
+     * 
+     * @param timestamp the properties to store in the timestamp file.
+     */
+    private void writeTimestamp(Properties timestamp)
+    {
+        getCache().writeTimestamp(getFileHandler().append(getExtractDir(), TIMESTAMP_FILE),
+            timestamp);
+    }
+
+    /**
+     * @return the installations sharing the same extract directory as this installer.
+     */
+    private InstallationCache getCache()
+    {
+        return new InstallationCache(getFileHandler(), getLogger());
+    }
+
+    /**
+     * @return true if the container has already been downloaded, false otherwise. An archive
+     * with the same file name which the timestamp file of the installation records as downloaded
+     * from another URL is not considered downloaded.
      */
     public boolean isAlreadyDownloaded()
     {
@@ -282,7 +605,10 @@ public class ZipURLInstaller extends LoggedObject implements Installer
         String targetFile = getFileHandler().append(getDownloadDir(), getSourceFileName());
         if (getFileHandler().exists(targetFile))
         {
-            isDownloaded = true;
+            // Archives copied in the download directory by the user have no timestamp file
+            String url = getCache().readTimestamp(
+                getFileHandler().append(getExtractDir(), TIMESTAMP_FILE)).getProperty(URL_PROPERTY);
+            isDownloaded = url == null || url.equals(getRemoteLocationKey());
         }
 
         return isDownloaded;
@@ -294,20 +620,97 @@ public class ZipURLInstaller extends LoggedObject implements Installer
     public boolean isAlreadyExtracted()
     {
         boolean isExtracted = false;
-        String timestampFile = getFileHandler().append(getExtractDir(), ".cargo");
+        String timestampFile = getFileHandler().append(getExtractDir(), TIMESTAMP_FILE);
         if (getFileHandler().exists(timestampFile))
         {
-            isExtracted = true;
+            // Timestamp files written by older versions of CARGO do not record the URL
+            String url = getCache().readTimestamp(timestampFile).getProperty(URL_PROPERTY);
+            if (url == null || url.equals(getRemoteLocationKey()))
+            {
+                isExtracted = true;
+            }
+            else
+            {
+                getLogger().debug("Container installation dir [" + getExtractDir()
+                    + "] has been installed from [" + url + "]", this.getClass().getName());
+            }
         }
 
         return isExtracted;
     }
 
     /**
-     * {@inheritDoc}
+     * @return the remote location without any user information, so that passwords never end up in
+     * the timestamp file.
+     */
+    private String getRemoteLocationKey()
+    {
+        if (this.remoteLocation.getUserInfo() == null)
+        {
+            return this.remoteLocation.toString();
+        }
+
+        try
+        {
+            return new URL(this.remoteLocation.getProtocol(), this.remoteLocation.getHost(),
+                this.remoteLocation.getPort(), this.remoteLocation.getFile()).toString();
+        }
+        catch (MalformedURLException e)
+        {
+            throw new ContainerException("Invalid URL [" + this.remoteLocation + "]", e);
+        }
+    }
+
+    /**
+     * @param path a path of the file handler.
+     * @return <code>true</code> if <code>path</code> is a path of the local file system, as
+     * opposed to a URI such as <code>ram:///tmp</code> used with VFS file handlers.
+     */
+    static boolean isLocalPath(String path)
+    {
+        // Single letter prefixes are Windows drives
+        return !path.matches("[a-zA-Z][a-zA-Z0-9+.-]+:.*");
+    }
+
+    /**
+     * Creates a fresh copy-on-write clone of the container home in the clone directory. Must be
+     * called with the installation lock held, so that the installation is not evicted meanwhile.
+     */
+    private void cloneHome()
+    {
+        String home = getInstalledHome();
+        getLogger().info("Cloning container home [" + home + "] in [" + this.cloneDir + "]",
+            this.getClass().getName());
+
+        getFileHandler().delete(this.cloneDir);
+        if (getFileHandler() instanceof ExtendedFileHandler)
+        {
+            ((ExtendedFileHandler) getFileHandler()).linkDirectory(home, this.cloneDir);
+        }
+        else
+        {
+            getFileHandler().copyDirectory(home, this.cloneDir);
+        }
+    }
+
+    /**
+     * {@inheritDoc}. If a clone directory is set, the clone of the container home is returned.
      * @see Installer#getHome()
      */
     public String getHome()
+    {
+        String home = getInstalledHome();
+        if (this.cloneDir != null)
+        {
+            home = this.cloneDir;
+        }
+        return home;
+    }
+
+    /**
+     * @return the home of the container installation in the extract directory.
+     */
+    private String getInstalledHome()
     {
         String home;
 
@@ -346,60 +749,90 @@ public class ZipURLInstaller extends LoggedObject implements Installer
 
     /**
      * Unpacks the zip file containing the container files.
+     * 
+     * @throws IOException If the archive is broken.
      */
-    private void unpack()
+    private void unpack() throws IOException
     {
         File targetDir = new File(getExtractDir());
 
         getLogger().info("Installing container in [" + targetDir.getPath() + "]",
             getClass().getName());
 
-        Expand expandTask = createExpandTask();
-        expandTask.setSrc(new File(getDownloadDir(), getSourceFileName()));
-        expandTask.setDest(targetDir);
-        expandTask.execute();
+        new ArchiveExtractor().extract(new File(getDownloadDir(), getSourceFileName()), targetDir);
     }
 
     /**
-     * Create an ant Expand task.
-     * @return The expand task
+     * @return <code>true</code> if the archive is a (possibly compressed) tar archive, which can be
+     * extracted while it is being downloaded.
      */
-    private Expand createExpandTask()
+    private boolean isTarArchive()
     {
         String archivename = getSourceFileName().toLowerCase();
-        Expand expand = null;
-        if (archivename.endsWith(".zip"))
-        {
-            expand = (Expand) this.antUtils.createAntTask("unzip");
-        }
-        else if (archivename.endsWith(".tar"))
-        {
-            expand = (Expand) this.antUtils.createAntTask("untar");
-        }
-        else if (archivename.endsWith(".tgz") || archivename.endsWith(".tar.gz"))
+        return archivename.endsWith(".tar") || archivename.endsWith(".tgz")
+            || archivename.endsWith(".tar.gz") || archivename.endsWith(".bz2");
+    }
+
+    /**
+     * Downloads the archive and extracts it at the same time. Failures are not fatal: any partial
+     * download or extraction is removed, so that the caller can fall back to downloading and then
+     * unpacking the archive.
+     * 
+     * @return <code>true</code> if the container has been downloaded and unpacked,
+     * <code>false</code> otherwise.
+     */
+    private boolean downloadAndUnpack()
+    {
+        File targetFile = new File(getDownloadDir(), getSourceFileName());
+        File partFile = new File(targetFile.getPath() + PART_FILE_SUFFIX);
+        try
         {
-            Untar untar = (Untar) this.antUtils.createAntTask("untar");
-            UntarCompressionMethod compressionMethod = new Untar.UntarCompressionMethod();
-            compressionMethod.setValue("gzip");
-            untar.setCompression(compressionMethod);
-            expand = untar;
+            if (this.proxy != null)
+            {
+                this.proxy.configure();
+            }
+            doDownloadAndUnpack(targetFile, partFile);
+            return true;
         }
-        else if (archivename.endsWith(".bz2"))
+        catch (Exception e)
         {
-            Untar untar = (Untar) this.antUtils.createAntTask("untar");
-            UntarCompressionMethod compressionMethod = new Untar.UntarCompressionMethod();
-            compressionMethod.setValue("bzip2");
-            untar.setCompression(compressionMethod);
-            expand = untar;
+            getLogger().info("Failed to download and unpack [" + this.remoteLocation
+                + "] at the same time, downloading it first: " + e, this.getClass().getName());
+
+            partFile.delete();
+            getFileHandler().delete(getExtractDir());
+            if (this.proxy != null)
+            {
+                this.proxy.clear();
+            }
+            return false;
         }
-        else
+    }
+
+    /**
+     * Downloads the archive to a temporary file while extracting it from a pipe fed by the
+     * download thread, so that network transfer, archive write and extraction overlap. The
+     * temporary file is renamed to the archive once both download and extraction are complete.
+     * 
+     * @param targetFile the archive in the download directory.
+     * @param partFile the temporary file the archive is downloaded to.
+     * @throws Exception If the download or the extraction fails.
+     */
+    private void doDownloadAndUnpack(File targetFile, File partFile) throws Exception
+    {
+        String downloadDir = getDownloadDir();
+        if (!getFileHandler().exists(downloadDir))
         {
-            String errorMessage = "Unsupported archive type: [" + archivename + "]";
-            getLogger().warn(errorMessage, getClass().getName());
-            throw new IllegalArgumentException(errorMessage);
+            getFileHandler().mkdirs(downloadDir);
         }
+        File targetDir = new File(getExtractDir());
+
+        getLogger().info("Downloading container from [" + this.remoteLocation + "] to ["
+            + targetFile + "] and installing it in [" + targetDir.getPath() + "]",
+            getClass().getName());
 
-        return expand;
+        new StreamingDownload(this.remoteLocation, getRemoteLocationKey())
+            .downloadAndExtract(targetFile, partFile, targetDir);
     }
 
     /**
@@ -0,0 +1,237 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.spi.jvm.JvmLauncher;
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+
+/**
+ * Class data sharing archive of a container JVM, holding the classes loaded by a first run so that
+ * later runs map them instead of loading them again. Java 13 and above dump the archive when the
+ * JVM exits; Java 19 and above also check it and dump it again when it does not match the JVM and
+ * classpath anymore. For Java 13 to 18, the size and modification time of the classpath entries
+ * of the run which dumped the archive are recorded next to it and the archive is dumped again if
+ * any of them changed.
+ * 
+ */
+public class ClassDataSharingArchive
+{
+    /**
+     * First Java version able to dump an archive when the JVM exits.
+     */
+    public static final int MIN_JAVA_VERSION = 13;
+
+    /**
+     * First Java version able to check and dump the archive by itself.
+     */
+    private static final int AUTO_CREATE_JAVA_VERSION = 19;
+
+    /**
+     * Encoding of the key and of the classpath file.
+     */
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * File utility class.
+     */
+    private FileHandler fileHandler = new DefaultFileHandler();
+
+    /**
+     * The archive file.
+     */
+    private File archive;
+
+    /**
+     * File recording the state of the classpath entries of the run which dumped the archive.
+     */
+    private File classpathFile;
+
+    /**
+     * Whether the next run dumps the archive.
+     */
+    private boolean dumping;
+
+    /**
+     * Creates the archive of a JVM, identified by everything its classes come from.
+     * 
+     * @param directory the directory holding the archives.
+     * @param values the values identifying the JVM, such as the container id and JVM arguments.
+     * @param files the files identifying the JVM, such as the container home and the Java
+     * executable, identified by their path, size and modification time.
+     */
+    public ClassDataSharingArchive(File directory, List<String> values, List<String> files)
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-1");
+            for (String value : values)
+            {
+                digest.update((value + '\n').getBytes(ENCODING));
+            }
+            for (String file : files)
+            {
+                digest.update((describe(file) + '\n').getBytes(ENCODING));
+            }
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new ContainerException("Cannot compute the class data sharing archive key", e);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new ContainerException("Cannot compute the class data sharing archive key", e);
+        }
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            key.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+        }
+        this.archive = new File(directory, key + ".jsa");
+        this.classpathFile = new File(directory, key + ".classpath");
+    }
+
+    /**
+     * @return the archive file.
+     */
+    public File getArchive()
+    {
+        return this.archive;
+    }
+
+    /**
+     * Adds the JVM arguments using the archive, or dumping it if it is missing or out of date.
+     * Nothing is added for Java versions below {@link #MIN_JAVA_VERSION}.
+     * 
+     * @param java the JVM launcher.
+     * @param javaVersion the major version of the JVM.
+     */
+    public void addJvmArguments(JvmLauncher java, int javaVersion)
+    {
+        this.dumping = false;
+        if (javaVersion < MIN_JAVA_VERSION)
+        {
+            return;
+        }
+
+        this.archive.getParentFile().mkdirs();
+        if (javaVersion >= AUTO_CREATE_JAVA_VERSION)
+        {
+            java.addJvmArguments("-XX:+AutoCreateSharedArchive",
+                "-XX:SharedArchiveFile=" + this.archive.getAbsolutePath());
+        }
+        else if (this.archive.isFile() && isClasspathUnchanged())
+        {
+            java.addJvmArguments("-XX:SharedArchiveFile=" + this.archive.getAbsolutePath());
+        }
+        else
+        {
+            this.archive.delete();
+            this.classpathFile.delete();
+            this.dumping = true;
+            java.addJvmArguments("-XX:ArchiveClassesAtExit=" + this.archive.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Records the classpath of the run dumping the archive, so that the archive is dumped again
+     * when any of its entries change.
+     * 
+     * @param classpath the classpath of the JVM.
+     */
+    public void recordClasspath(String classpath)
+    {
+        if (!this.dumping || classpath == null)
+        {
+            return;
+        }
+
+        StringBuilder state = new StringBuilder();
+        for (String entry : classpath.split(File.pathSeparator))
+        {
+            if (entry.length() > 0)
+            {
+                state.append(describe(entry)).append('\n');
+            }
+        }
+        this.fileHandler.writeTextFile(this.classpathFile.getAbsolutePath(), state.toString(),
+            ENCODING);
+    }
+
+    /**
+     * @return <code>true</code> if none of the classpath entries of the run which dumped the
+     * archive changed.
+     */
+    private boolean isClasspathUnchanged()
+    {
+        if (!this.classpathFile.isFile())
+        {
+            return false;
+        }
+
+        String state;
+        try
+        {
+            state = this.fileHandler.readTextFile(this.classpathFile.getAbsolutePath(), ENCODING);
+        }
+        catch (RuntimeException e)
+        {
+            return false;
+        }
+        for (String line : state.split("\n"))
+        {
+            int separator = line.lastIndexOf('=');
+            if (line.length() > 0
+                && (separator == -1 || !line.equals(describe(line.substring(0, separator)))))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param path a file path.
+     * @return the path, size and modification time of the file.
+     */
+    private static String describe(String path)
+    {
+        File file = new File(path);
+        try
+        {
+            file = file.getCanonicalFile();
+        }
+        catch (IOException e)
+        {
+            file = file.getAbsoluteFile();
+        }
+        return file.getPath() + '=' + file.length() + '@' + file.lastModified();
+    }
+}
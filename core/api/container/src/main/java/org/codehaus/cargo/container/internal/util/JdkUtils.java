@@ -23,7 +23,13 @@
 package org.codehaus.cargo.container.internal.util;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.codehaus.cargo.container.ContainerException;
 
@@ -33,6 +39,23 @@ import org.codehaus.cargo.container.ContainerException;
  */
 public class JdkUtils
 {
+    /**
+     * Major versions of the Java installations already looked at by this JVM, keyed by the path
+     * and the modification time of their <code>java</code> executable.
+     */
+    private static final Map<String, Integer> MAJOR_VERSIONS =
+        new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * Name of the file of Java installations (Java 7 and above) which holds their version.
+     */
+    private static final String RELEASE_FILE = "release";
+
+    /**
+     * Property of the {@link #RELEASE_FILE} holding the Java version.
+     */
+    private static final String RELEASE_JAVA_VERSION = "JAVA_VERSION";
+
     /**
      * Returns the file containing the JDK tools (such as the compiler). This method must not be
      * called on Mac OSX as there is no tools.jar file on that platform (everything is included in
@@ -86,6 +109,146 @@ public class JdkUtils
         return System.getProperty("mrj.version") != null;
     }
 
+    /**
+     * Returns the major version of a Java installation without launching it: from the cache of
+     * the versions already found by this JVM, from the version of this JVM if it is the same
+     * installation, else from the <code>release</code> file of the installation.
+     * 
+     * @param javaHome The installation directory of the JRE/JDK, must not be {@code null}.
+     * @return The major version (for example 6 for Java 1.6 or 11 for Java 11), or {@code -1} if
+     *         it cannot be found without launching the <code>java</code> executable.
+     */
+    public int getMajorJavaVersion(String javaHome)
+    {
+        String key = getVersionKey(javaHome);
+        Integer cached = MAJOR_VERSIONS.get(key);
+        if (cached != null)
+        {
+            return cached.intValue();
+        }
+
+        File home = new File(javaHome).getAbsoluteFile();
+        File currentHome = new File(System.getProperty("java.home")).getAbsoluteFile();
+        String version = null;
+        if (home.equals(currentHome)
+            || "jre".equals(currentHome.getName()) && home.equals(currentHome.getParentFile()))
+        {
+            version = System.getProperty("java.version");
+        }
+        else
+        {
+            version = readReleaseVersion(new File(home, RELEASE_FILE));
+            if (version == null && "jre".equals(home.getName()))
+            {
+                version = readReleaseVersion(new File(home.getParentFile(), RELEASE_FILE));
+            }
+        }
+
+        int majorVersion = parseMajorJavaVersion(version);
+        if (majorVersion != -1)
+        {
+            MAJOR_VERSIONS.put(key, Integer.valueOf(majorVersion));
+        }
+        return majorVersion;
+    }
+
+    /**
+     * Remembers the major version of a Java installation, for instance found by launching its
+     * <code>java</code> executable, for later calls to {@link #getMajorJavaVersion(String)}.
+     * 
+     * @param javaHome The installation directory of the JRE/JDK, must not be {@code null}.
+     * @param majorVersion The major version of the installation.
+     */
+    public void setMajorJavaVersion(String javaHome, int majorVersion)
+    {
+        MAJOR_VERSIONS.put(getVersionKey(javaHome), Integer.valueOf(majorVersion));
+    }
+
+    /**
+     * Parses the major version out of a Java version, for example 6 out of <code>1.6.0_45</code>
+     * or 11 out of <code>11.0.2</code>.
+     * 
+     * @param version The Java version, may be {@code null}.
+     * @return The major version, or {@code -1} if the version cannot be parsed.
+     */
+    public static int parseMajorJavaVersion(String version)
+    {
+        if (version == null)
+        {
+            return -1;
+        }
+        String major = version.trim();
+        if (major.startsWith("1."))
+        {
+            major = major.substring(2);
+        }
+        int end = 0;
+        while (end < major.length() && Character.isDigit(major.charAt(end)))
+        {
+            end++;
+        }
+        if (end == 0)
+        {
+            return -1;
+        }
+        return Integer.parseInt(major.substring(0, end));
+    }
+
+    /**
+     * @param javaHome The installation directory of the JRE/JDK.
+     * @return The key of the installation in the cache of versions.
+     */
+    private static String getVersionKey(String javaHome)
+    {
+        File bin = new File(new File(javaHome).getAbsoluteFile(), "bin");
+        File java = new File(bin, "java");
+        if (!java.isFile())
+        {
+            java = new File(bin, "java.exe");
+        }
+        return java.getPath() + "@" + java.lastModified();
+    }
+
+    /**
+     * Reads the Java version from the <code>release</code> file of a Java installation.
+     * 
+     * @param releaseFile The <code>release</code> file.
+     * @return The Java version, or {@code null} if it cannot be read.
+     */
+    private static String readReleaseVersion(File releaseFile)
+    {
+        if (!releaseFile.isFile())
+        {
+            return null;
+        }
+
+        Properties release = new Properties();
+        try
+        {
+            InputStream in = new FileInputStream(releaseFile);
+            try
+            {
+                release.load(in);
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+
+        String version = release.getProperty(RELEASE_JAVA_VERSION);
+        if (version != null && version.length() > 1 && version.startsWith("\"")
+            && version.endsWith("\""))
+        {
+            version = version.substring(1, version.length() - 1);
+        }
+        return version;
+    }
+
     /**
      * Pauses the current thread for the specified amount.
      * 
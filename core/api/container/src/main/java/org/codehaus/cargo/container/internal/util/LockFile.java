@@ -0,0 +1,297 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Exclusive lock on a file of the local file system, held by one thread of one process at a time.
+ * Lock files are deleted when released.<br>
+ * <br>
+ * On POSIX systems, closing any descriptor of a file drops all the locks the process holds on it.
+ * Therefore, a lock file is only ever opened once per JVM: threads of this JVM wait for each other
+ * before opening it, and the holder never opens it again. A lock acquired on a file which its
+ * previous holder has deleted meanwhile is detected by reading the locked file itself, in which
+ * the previous holder has written a release marker after deleting it, and the lock is then
+ * acquired again on the new file.
+ * 
+ */
+public final class LockFile
+{
+    /**
+     * Marker written in lock files which have been released and deleted.
+     */
+    private static final String RELEASED = "released";
+
+    /**
+     * Canonical paths of the lock files opened by this JVM.
+     */
+    private static final Set<String> OPENED_PATHS = new HashSet<String>();
+
+    /**
+     * The lock file.
+     */
+    private final File file;
+
+    /**
+     * Canonical path of the lock file.
+     */
+    private final String path;
+
+    /**
+     * The opened and locked file.
+     */
+    private final RandomAccessFile lockedFile;
+
+    /**
+     * @param file the lock file.
+     * @param path canonical path of the lock file.
+     * @param lockedFile the opened and locked file.
+     */
+    private LockFile(File file, String path, RandomAccessFile lockedFile)
+    {
+        this.file = file;
+        this.path = path;
+        this.lockedFile = lockedFile;
+    }
+
+    /**
+     * Acquires the lock on a file, waiting until it is available.
+     * 
+     * @param file the lock file, created if necessary.
+     * @return the acquired lock.
+     * @throws IOException If the file cannot be locked, or if the current thread is interrupted
+     * while waiting for the lock.
+     */
+    public static LockFile lock(File file) throws IOException
+    {
+        return acquire(file, true);
+    }
+
+    /**
+     * Acquires the lock on a file if it is available.
+     * 
+     * @param file the lock file, created if necessary.
+     * @return the acquired lock, <code>null</code> if another thread or process holds it.
+     * @throws IOException If the file cannot be locked.
+     */
+    public static LockFile tryLock(File file) throws IOException
+    {
+        return acquire(file, false);
+    }
+
+    /**
+     * @return the lock file.
+     */
+    public File getFile()
+    {
+        return this.file;
+    }
+
+    /**
+     * Deletes the lock file and releases the lock.
+     * 
+     * @throws IOException If the lock file cannot be closed.
+     */
+    public void release() throws IOException
+    {
+        try
+        {
+            // Delete while still holding the lock and only then mark the file as released, so
+            // that a marked file is never the one at the path. Deleting an opened file fails on
+            // Windows, where lock files therefore stay.
+            if (this.file.delete())
+            {
+                this.lockedFile.seek(0);
+                this.lockedFile.writeUTF(RELEASED);
+            }
+        }
+        finally
+        {
+            try
+            {
+                // Closing the file releases its lock
+                this.lockedFile.close();
+            }
+            finally
+            {
+                closed(this.path);
+            }
+        }
+    }
+
+    /**
+     * @param file the lock file.
+     * @param wait <code>true</code> to wait until the lock is available, <code>false</code> to
+     * return <code>null</code> if it is not.
+     * @return the acquired lock, <code>null</code> if not available.
+     * @throws IOException If the file cannot be locked.
+     */
+    private static LockFile acquire(File file, boolean wait) throws IOException
+    {
+        String path = file.getCanonicalPath();
+        if (!open(path, wait))
+        {
+            return null;
+        }
+
+        LockFile lock = null;
+        try
+        {
+            lock = lockOpened(file, path, wait);
+            return lock;
+        }
+        finally
+        {
+            if (lock == null)
+            {
+                closed(path);
+            }
+        }
+    }
+
+    /**
+     * Locks a file no other thread of this JVM has opened.
+     * 
+     * @param file the lock file.
+     * @param path canonical path of the lock file.
+     * @param wait <code>true</code> to wait until the lock is available, <code>false</code> to
+     * return <code>null</code> if it is not.
+     * @return the acquired lock, <code>null</code> if not available.
+     * @throws IOException If the file cannot be locked.
+     */
+    private static LockFile lockOpened(File file, String path, boolean wait) throws IOException
+    {
+        while (true)
+        {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null)
+            {
+                parent.mkdirs();
+            }
+            RandomAccessFile lockedFile = new RandomAccessFile(file, "rw");
+            boolean locked = false;
+            try
+            {
+                FileLock lock;
+                if (wait)
+                {
+                    lock = lockedFile.getChannel().lock();
+                }
+                else
+                {
+                    lock = lockedFile.getChannel().tryLock();
+                }
+                if (lock == null)
+                {
+                    return null;
+                }
+
+                // A released file has been deleted by its previous holder, lock the new one
+                locked = !isReleased(lockedFile);
+                if (locked)
+                {
+                    return new LockFile(file, path, lockedFile);
+                }
+            }
+            finally
+            {
+                if (!locked)
+                {
+                    lockedFile.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param lockedFile a locked file.
+     * @return <code>true</code> if the file has been marked as released.
+     * @throws IOException If the file cannot be read.
+     */
+    private static boolean isReleased(RandomAccessFile lockedFile) throws IOException
+    {
+        try
+        {
+            lockedFile.seek(0);
+            return RELEASED.equals(lockedFile.readUTF());
+        }
+        catch (EOFException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Registers a lock file as opened by the current thread.
+     * 
+     * @param path canonical path of the lock file.
+     * @param wait <code>true</code> to wait until no other thread of this JVM has the file opened,
+     * <code>false</code> to return immediately if one does.
+     * @return <code>true</code> if the file has been registered.
+     * @throws InterruptedIOException If the current thread is interrupted while waiting.
+     */
+    private static boolean open(String path, boolean wait) throws InterruptedIOException
+    {
+        synchronized (OPENED_PATHS)
+        {
+            while (OPENED_PATHS.contains(path))
+            {
+                if (!wait)
+                {
+                    return false;
+                }
+                try
+                {
+                    OPENED_PATHS.wait();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the lock of "
+                        + path);
+                }
+            }
+            OPENED_PATHS.add(path);
+            return true;
+        }
+    }
+
+    /**
+     * Unregisters a lock file opened by the current thread.
+     * 
+     * @param path canonical path of the lock file.
+     */
+    private static void closed(String path)
+    {
+        synchronized (OPENED_PATHS)
+        {
+            OPENED_PATHS.remove(path);
+            OPENED_PATHS.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.cargo.util.CargoException;
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Allocates a block of free ports of the local host, by finding an offset which makes free all
+ * the ports of a configuration. The allocated ports are reserved with a lock file per port, which
+ * all Cargo processes of the host honour, until {@link #release()} is called or the process
+ * exits. Lock files are deleted when released. The reservation only protects the ports from
+ * other Cargo processes, so it should be held until the container has bound its ports.
+ * 
+ */
+public class PortAllocator extends LoggedObject
+{
+    /**
+     * Offsets are tried in multiples of this number of ports, so that the allocated ports keep
+     * their last digits.
+     */
+    private static final int OFFSET_STEP = 100;
+
+    /**
+     * Highest port number.
+     */
+    private static final int MAX_PORT = 65535;
+
+    /**
+     * Directory of the lock files.
+     */
+    private File lockDirectory;
+
+    /**
+     * Lock files currently held.
+     */
+    private List<LockFile> lockFiles = new ArrayList<LockFile>();
+
+    /**
+     * Creates an allocator sharing its lock files with all Cargo processes of the current user.
+     */
+    public PortAllocator()
+    {
+        this(new File(System.getProperty("java.io.tmpdir"), "cargo-ports"));
+    }
+
+    /**
+     * @param lockDirectory directory of the lock files, shared by the processes allocating ports.
+     */
+    public PortAllocator(File lockDirectory)
+    {
+        this.lockDirectory = lockDirectory;
+    }
+
+    /**
+     * Finds and reserves the smallest offset which makes all ports free. The offset is a multiple
+     * of {@link #OFFSET_STEP} at least as large as the range of the ports, so that the ports keep
+     * their order and last digits.
+     * 
+     * @param ports the ports, without any offset.
+     * @return the offset to apply to the ports.
+     */
+    public synchronized int reserve(Collection<Integer> ports)
+    {
+        release();
+        if (ports.isEmpty())
+        {
+            return 0;
+        }
+
+        int minPort = Collections.min(ports).intValue();
+        int maxPort = Collections.max(ports).intValue();
+        int step = ((maxPort - minPort) / OFFSET_STEP + 1) * OFFSET_STEP;
+        PortProbe portProbe = new PortProbe();
+        portProbe.setLogger(getLogger());
+        portProbe.setBindTest(true);
+
+        this.lockDirectory.mkdirs();
+        for (int offset = 0; maxPort + offset <= MAX_PORT; offset += step)
+        {
+            List<Integer> candidates = new ArrayList<Integer>(ports.size());
+            for (Integer port : ports)
+            {
+                candidates.add(port.intValue() + offset);
+            }
+            boolean reserved = false;
+            try
+            {
+                reserved = lock(candidates) && portProbe.getBusyPorts(candidates, 0).isEmpty();
+            }
+            finally
+            {
+                if (!reserved)
+                {
+                    release();
+                }
+            }
+            if (reserved)
+            {
+                getLogger().debug("Reserved ports " + candidates, this.getClass().getName());
+                return offset;
+            }
+        }
+
+        throw new CargoException("No free block of ports found for the ports " + ports);
+    }
+
+    /**
+     * Releases the reserved ports, if any, and deletes their lock files.
+     */
+    public synchronized void release()
+    {
+        for (LockFile lockFile : this.lockFiles)
+        {
+            try
+            {
+                lockFile.release();
+            }
+            catch (IOException e)
+            {
+                getLogger().debug("Failed to release lock file [" + lockFile.getFile() + "]: "
+                    + e, this.getClass().getName());
+            }
+        }
+        this.lockFiles.clear();
+    }
+
+    /**
+     * Locks the lock files of ports.
+     * 
+     * @param ports the ports.
+     * @return <code>true</code> if all ports have been locked, <code>false</code> if another
+     * process, or another allocator of this process, holds the lock of one of them.
+     */
+    private boolean lock(List<Integer> ports)
+    {
+        for (Integer port : ports)
+        {
+            LockFile lockFile;
+            try
+            {
+                lockFile = LockFile.tryLock(new File(this.lockDirectory, port + ".lock"));
+            }
+            catch (IOException e)
+            {
+                throw new CargoException("Failed to lock port " + port + " in "
+                    + this.lockDirectory, e);
+            }
+            if (lockFile == null)
+            {
+                return false;
+            }
+            this.lockFiles.add(lockFile);
+        }
+        return true;
+    }
+}
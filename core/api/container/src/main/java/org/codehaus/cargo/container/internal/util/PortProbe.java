@@ -0,0 +1,297 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.codehaus.cargo.util.CargoException;
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Checks which ports of a host are in use. All ports are probed at once with non-blocking
+ * connections multiplexed by a single selector, so that checking many ports costs no more than
+ * checking the slowest one.
+ * 
+ */
+public class PortProbe extends LoggedObject
+{
+    /**
+     * Host whose ports are probed.
+     */
+    private String host;
+
+    /**
+     * Whether ports refusing connections are also checked by binding them.
+     */
+    private boolean bindTest;
+
+    /**
+     * Creates a probe of the ports of the local host.
+     */
+    public PortProbe()
+    {
+        this("localhost");
+    }
+
+    /**
+     * @param host host whose ports are probed.
+     */
+    public PortProbe(String host)
+    {
+        this.host = host;
+    }
+
+    /**
+     * @param bindTest <code>true</code> to also try binding the ports refusing connections, so
+     * that ports used by a server listening on another network interface of the local host are
+     * found busy as well. Only meaningful when probing the local host.
+     */
+    public void setBindTest(boolean bindTest)
+    {
+        this.bindTest = bindTest;
+    }
+
+    /**
+     * Probes ports.
+     * 
+     * @param ports the ports to probe.
+     * @param connectTimeout the time to wait for the connections to all ports, in milliseconds,
+     * <code>0</code> to wait until the connection to each port has succeeded or failed. Ports
+     * whose connection is still pending after that time are considered free.
+     * @return the busy ports, in the order they were given.
+     */
+    public Set<Integer> getBusyPorts(Collection<Integer> ports, long connectTimeout)
+    {
+        Set<Integer> busyPorts = new LinkedHashSet<Integer>();
+        if (ports.isEmpty())
+        {
+            return busyPorts;
+        }
+
+        List<SocketChannel> channels = new ArrayList<SocketChannel>(ports.size());
+        Selector selector = null;
+        try
+        {
+            selector = Selector.open();
+            for (Integer port : ports)
+            {
+                if (connect(port, selector, channels))
+                {
+                    busyPorts.add(port);
+                }
+            }
+            finishConnects(selector, connectTimeout, busyPorts);
+        }
+        catch (IOException e)
+        {
+            throw new CargoException("Failed to probe ports " + ports + " of " + this.host, e);
+        }
+        finally
+        {
+            for (SocketChannel channel : channels)
+            {
+                close(channel);
+            }
+            close(selector);
+        }
+
+        if (this.bindTest)
+        {
+            for (Integer port : ports)
+            {
+                if (!busyPorts.contains(port) && !isBindable(port))
+                {
+                    busyPorts.add(port);
+                }
+            }
+        }
+
+        getLogger().debug("Busy ports among " + ports + " of " + this.host + ": " + busyPorts,
+            this.getClass().getName());
+        return sort(busyPorts, ports);
+    }
+
+    /**
+     * Waits for the pending connections to complete.
+     * 
+     * @param selector the selector the pending connections are registered with.
+     * @param connectTimeout the time to wait for the connections, in milliseconds, <code>0</code>
+     * to wait until each connection has succeeded or failed.
+     * @param busyPorts the busy ports, to which the ports of the established connections are
+     * added.
+     * @throws IOException If selecting the connections fails.
+     */
+    private void finishConnects(Selector selector, long connectTimeout, Set<Integer> busyPorts)
+        throws IOException
+    {
+        long deadline = System.currentTimeMillis() + connectTimeout;
+        while (!selector.keys().isEmpty())
+        {
+            long remaining = deadline - System.currentTimeMillis();
+            if (connectTimeout > 0 && remaining <= 0)
+            {
+                break;
+            }
+            selector.select(connectTimeout > 0 ? remaining : 0);
+            for (SelectionKey key : selector.selectedKeys())
+            {
+                key.cancel();
+                if (finishConnect(key))
+                {
+                    busyPorts.add((Integer) key.attachment());
+                }
+            }
+            selector.selectedKeys().clear();
+            // Remove the cancelled keys from the key set
+            selector.selectNow();
+        }
+    }
+
+    /**
+     * Starts a non-blocking connection to a port.
+     * 
+     * @param port the port.
+     * @param selector the selector to register the pending connection with.
+     * @param channels the opened channels, to which the channel of the connection is added.
+     * @return <code>true</code> if the connection has been established immediately.
+     */
+    private boolean connect(Integer port, Selector selector, List<SocketChannel> channels)
+    {
+        try
+        {
+            SocketChannel channel = SocketChannel.open();
+            channels.add(channel);
+            channel.configureBlocking(false);
+            if (channel.connect(new InetSocketAddress(this.host, port.intValue())))
+            {
+                return true;
+            }
+            channel.register(selector, SelectionKey.OP_CONNECT, port);
+            return false;
+        }
+        catch (IOException e)
+        {
+            // Connection refused right away
+            return false;
+        }
+    }
+
+    /**
+     * @param key the key of a connection ready to be completed.
+     * @return <code>true</code> if the connection has been established.
+     */
+    private boolean finishConnect(SelectionKey key)
+    {
+        try
+        {
+            return ((SocketChannel) key.channel()).finishConnect();
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * @param port a port of the local host.
+     * @return <code>true</code> if a server socket can be bound to the port on all interfaces.
+     */
+    private boolean isBindable(Integer port)
+    {
+        ServerSocket serverSocket = null;
+        try
+        {
+            // SO_REUSEADDR is deliberately left to the platform default: on Windows, it lets a
+            // bind succeed over a live listener, which would report a busy port as free
+            serverSocket = new ServerSocket();
+            serverSocket.bind(new InetSocketAddress(port.intValue()));
+            return true;
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+        finally
+        {
+            if (serverSocket != null)
+            {
+                close(serverSocket);
+            }
+        }
+    }
+
+    /**
+     * @param busyPorts the busy ports.
+     * @param ports all probed ports.
+     * @return the busy ports, in the order of the probed ports.
+     */
+    private Set<Integer> sort(Set<Integer> busyPorts, Collection<Integer> ports)
+    {
+        Set<Integer> sorted = new LinkedHashSet<Integer>(busyPorts.size());
+        for (Integer port : ports)
+        {
+            if (busyPorts.contains(port))
+            {
+                sorted.add(port);
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Closes a channel, selector or socket, ignoring errors.
+     * 
+     * @param closeable the object to close, can be <code>null</code>.
+     */
+    private void close(Object closeable)
+    {
+        try
+        {
+            if (closeable instanceof SocketChannel)
+            {
+                ((SocketChannel) closeable).close();
+            }
+            else if (closeable instanceof Selector)
+            {
+                ((Selector) closeable).close();
+            }
+            else if (closeable instanceof ServerSocket)
+            {
+                ((ServerSocket) closeable).close();
+            }
+        }
+        catch (IOException e)
+        {
+            // Ignored, irrelevant
+            getLogger().debug("Failed to close " + closeable + ": " + e,
+                this.getClass().getName());
+        }
+    }
+}
@@ -22,7 +22,6 @@
  */
 package org.codehaus.cargo.container.internal.util;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
@@ -30,16 +29,17 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.URL;
 import java.net.URLDecoder;
-import java.util.Vector;
 
-import org.apache.tools.ant.filters.util.ChainReaderHelper;
 import org.apache.tools.ant.types.FilterChain;
 import org.codehaus.cargo.util.CargoException;
 import org.codehaus.cargo.util.DefaultFileHandler;
 import org.codehaus.cargo.util.FileHandler;
+import org.codehaus.cargo.util.internal.FilterChains;
 import org.codehaus.cargo.util.log.LoggedObject;
 
 /**
@@ -169,44 +169,20 @@ public final class ResourceUtils extends LoggedObject
                 + "] not found in resource loader " + ResourceUtils.resourceLoader);
         }
 
-        BufferedReader in = null;
-        BufferedWriter out = null;
+        Reader in = createReader(resource, encoding);
+        Writer out = null;
         try
         {
-            ChainReaderHelper helper = new ChainReaderHelper();
-            helper.setBufferSize(8192);
-            helper.setPrimaryReader(new BufferedReader(createReader(resource, encoding)));
-            Vector filterChains = new Vector();
-            filterChains.add(filterChain);
-            helper.setFilterChains(filterChains);
-            in = new BufferedReader(helper.getAssembledReader());
-
-            out = new BufferedWriter(new OutputStreamWriter(handler.getOutputStream(destFile)));
-
-            String line;
-            while ((line = in.readLine()) != null)
-            {
-                if (line.length() == 0)
-                {
-                    out.newLine();
-                }
-                else
-                {
-                    out.write(line);
-                    out.newLine();
-                }
-            }
+            out = new BufferedWriter(createWriter(handler.getOutputStream(destFile), encoding));
+            FilterChains.copy(in, out, filterChain);
         }
         finally
         {
-            if (in != null)
-            {
-                in.close();
-            }
             if (out != null)
             {
                 out.close();
             }
+            in.close();
         }
     }
 
@@ -233,6 +209,29 @@ public final class ResourceUtils extends LoggedObject
         return r;
     }
 
+    /**
+     * Creates a new OutputStreamWriter with provided encoding
+     * @param os the stream used to create the writer
+     * @param encoding the encoding used to create the writer. If it is <tt>null</tt> then the
+     * default system encoding will be used.
+     * @return a new writer for provided stream and encoding
+     * @throws UnsupportedEncodingException If the named charset is not supported
+     */
+    private OutputStreamWriter createWriter(OutputStream os, String encoding)
+        throws UnsupportedEncodingException
+    {
+        OutputStreamWriter w;
+        if (encoding != null)
+        {
+            w = new OutputStreamWriter(os, encoding);
+        }
+        else
+        {
+            w = new OutputStreamWriter(os);
+        }
+        return w;
+    }
+
     /**
      * Search for the given resource and return the directory or archive that contains it.
      * 
@@ -0,0 +1,253 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.lifecycle;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.cargo.container.LocalContainer;
+import org.codehaus.cargo.container.deployable.Deployable;
+
+/**
+ * Beginning or end of a lifecycle phase of a local container.
+ * 
+ */
+public class LifecycleEvent
+{
+    /**
+     * Whole container start.
+     */
+    public static final String START = "start";
+
+    /**
+     * Application of the port offset, when starting or stopping.
+     */
+    public static final String APPLY_PORT_OFFSET = "applyPortOffset";
+
+    /**
+     * Creation of the container configuration, when starting.
+     */
+    public static final String CONFIGURE = "configure";
+
+    /**
+     * Check that the container ports are free, when starting.
+     */
+    public static final String CHECK_PORTS = "checkPorts";
+
+    /**
+     * Launch of the container, when starting.
+     */
+    public static final String START_INTERNAL = "startInternal";
+
+    /**
+     * Wait for the container to be started.
+     */
+    public static final String WAIT_FOR_START = "waitForStart";
+
+    /**
+     * Tasks run once the container is started.
+     */
+    public static final String POST_START_TASKS = "postStartTasks";
+
+    /**
+     * Whole container stop.
+     */
+    public static final String STOP = "stop";
+
+    /**
+     * Request to the container to stop.
+     */
+    public static final String STOP_INTERNAL = "stopInternal";
+
+    /**
+     * Wait for the container to be stopped.
+     */
+    public static final String WAIT_FOR_STOP = "waitForStop";
+
+    /**
+     * Deployment of a deployable by a local deployer.
+     */
+    public static final String DEPLOY = "deploy";
+
+    /**
+     * Number of nanoseconds in a millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Sequence numbering the phases in the order they began.
+     */
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /**
+     * The container.
+     */
+    private LocalContainer container;
+
+    /**
+     * The lifecycle phase.
+     */
+    private String phase;
+
+    /**
+     * The deployable the phase applies to, if any.
+     */
+    private Deployable deployable;
+
+    /**
+     * Time at which the phase began, in milliseconds since the epoch.
+     */
+    private long beginTime;
+
+    /**
+     * Value of <code>System.nanoTime()</code> when the phase began.
+     */
+    private long beginNanoTime;
+
+    /**
+     * Rank of the phase among all phases, in the order they began.
+     */
+    private long sequence;
+
+    /**
+     * Duration of the phase in milliseconds, <code>-1</code> for a beginning event.
+     */
+    private long duration = -1;
+
+    /**
+     * Failure of the phase, <code>null</code> if it succeeded or for a beginning event.
+     */
+    private Throwable failure;
+
+    /**
+     * Creates the event of the beginning of a phase.
+     * 
+     * @param container the container.
+     * @param phase the lifecycle phase.
+     * @param deployable the deployable the phase applies to, can be <code>null</code>.
+     */
+    public LifecycleEvent(LocalContainer container, String phase, Deployable deployable)
+    {
+        this.container = container;
+        this.phase = phase;
+        this.deployable = deployable;
+        this.beginTime = System.currentTimeMillis();
+        this.beginNanoTime = System.nanoTime();
+        this.sequence = SEQUENCE.getAndIncrement();
+    }
+
+    /**
+     * @return the event of the successful end of this phase, now.
+     */
+    public LifecycleEvent createEndEvent()
+    {
+        return createEndEvent(null);
+    }
+
+    /**
+     * @param failure the failure which ended this phase, <code>null</code> if it succeeded.
+     * @return the event of the end of this phase, now.
+     */
+    public LifecycleEvent createEndEvent(Throwable failure)
+    {
+        long now = System.nanoTime();
+        LifecycleEvent end = new LifecycleEvent(this.container, this.phase, this.deployable);
+        end.beginTime = this.beginTime;
+        end.beginNanoTime = this.beginNanoTime;
+        end.sequence = this.sequence;
+        end.duration = (now - this.beginNanoTime) / NANOS_PER_MILLI;
+        end.failure = failure;
+        return end;
+    }
+
+    /**
+     * @return the container.
+     */
+    public LocalContainer getContainer()
+    {
+        return this.container;
+    }
+
+    /**
+     * @return the lifecycle phase, one of the constants of this class for the phases of Cargo.
+     */
+    public String getPhase()
+    {
+        return this.phase;
+    }
+
+    /**
+     * @return the deployable the phase applies to, <code>null</code> if none.
+     */
+    public Deployable getDeployable()
+    {
+        return this.deployable;
+    }
+
+    /**
+     * @return the time at which the phase began, in milliseconds since the epoch.
+     */
+    public long getBeginTime()
+    {
+        return this.beginTime;
+    }
+
+    /**
+     * @return the rank of the phase among all phases, in the order they began. Unlike the
+     * beginning time, it tells apart phases that began within the same millisecond, such as a
+     * phase and its first nested phase.
+     */
+    public long getSequence()
+    {
+        return this.sequence;
+    }
+
+    /**
+     * @return <code>true</code> if this event is the end of the phase.
+     */
+    public boolean isEnd()
+    {
+        return this.duration != -1;
+    }
+
+    /**
+     * @return the duration of the phase in milliseconds, <code>-1</code> for a beginning event.
+     */
+    public long getDuration()
+    {
+        return this.duration;
+    }
+
+    /**
+     * @return <code>true</code> if this event is the end of a phase which failed.
+     */
+    public boolean isFailed()
+    {
+        return this.failure != null;
+    }
+
+    /**
+     * @return the failure which ended the phase, <code>null</code> if it succeeded or for a
+     * beginning event.
+     */
+    public Throwable getFailure()
+    {
+        return this.failure;
+    }
+}
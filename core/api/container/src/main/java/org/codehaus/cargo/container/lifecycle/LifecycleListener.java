@@ -0,0 +1,43 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.lifecycle;
+
+/**
+ * Listener notified when a local container begins and ends the phases of its lifecycle, such as
+ * configuring, starting, stopping or deploying. Listeners are called from the thread running the
+ * phase and should return quickly.
+ * 
+ */
+public interface LifecycleListener
+{
+    /**
+     * A lifecycle phase has begun.
+     * 
+     * @param event the event describing the phase.
+     */
+    void phaseBegun(LifecycleEvent event);
+
+    /**
+     * A lifecycle phase has ended, successfully or not.
+     * 
+     * @param event the event describing the phase, with its duration.
+     */
+    void phaseEnded(LifecycleEvent event);
+}
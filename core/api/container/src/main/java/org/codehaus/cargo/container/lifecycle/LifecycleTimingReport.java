@@ -0,0 +1,232 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.lifecycle;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+
+/**
+ * Lifecycle listener collecting the duration of the lifecycle phases of containers, and writing
+ * them as a CSV or JSON timing report.
+ * 
+ */
+public class LifecycleTimingReport implements LifecycleListener
+{
+    /**
+     * Extension of the files written as CSV; all other files are written as JSON.
+     */
+    private static final String CSV_EXTENSION = ".csv";
+
+    /**
+     * Encoding of the report files.
+     */
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * Ended phases, in the order they ended.
+     */
+    private final List<LifecycleEvent> phases = new ArrayList<LifecycleEvent>();
+
+    /**
+     * File utility class.
+     */
+    private FileHandler fileHandler = new DefaultFileHandler();
+
+    /**
+     * {@inheritDoc}
+     */
+    public void phaseBegun(LifecycleEvent event)
+    {
+        // Phases are reported once they end
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void phaseEnded(LifecycleEvent event)
+    {
+        synchronized (this.phases)
+        {
+            this.phases.add(event);
+        }
+    }
+
+    /**
+     * @return the ended phases, in the order they began.
+     */
+    public List<LifecycleEvent> getPhases()
+    {
+        List<LifecycleEvent> sorted;
+        synchronized (this.phases)
+        {
+            sorted = new ArrayList<LifecycleEvent>(this.phases);
+        }
+        Collections.sort(sorted, new Comparator<LifecycleEvent>()
+        {
+            public int compare(LifecycleEvent event, LifecycleEvent otherEvent)
+            {
+                return event.getSequence() < otherEvent.getSequence() ? -1
+                    : event.getSequence() == otherEvent.getSequence() ? 0 : 1;
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * Writes the timing report, as CSV if the file name ends with <code>.csv</code> and as JSON
+     * otherwise. Each phase has the id of its container, its name, the file of its deployable if
+     * any, its beginning time, its duration in milliseconds and whether it failed.
+     * 
+     * @param file the report file.
+     */
+    public void write(String file)
+    {
+        String parent = this.fileHandler.getParent(file);
+        if (parent != null)
+        {
+            this.fileHandler.mkdirs(parent);
+        }
+        String report;
+        if (file.toLowerCase().endsWith(CSV_EXTENSION))
+        {
+            report = toCsv();
+        }
+        else
+        {
+            report = toJson();
+        }
+        this.fileHandler.writeTextFile(file, report, ENCODING);
+    }
+
+    /**
+     * @return the timing report as CSV.
+     */
+    public String toCsv()
+    {
+        StringBuilder csv =
+            new StringBuilder("container,phase,deployable,begin,duration,failed\n");
+        for (LifecycleEvent phase : getPhases())
+        {
+            csv.append(toCsvValue(phase.getContainer().getId())).append(',');
+            csv.append(toCsvValue(phase.getPhase())).append(',');
+            csv.append(toCsvValue(getDeployableFile(phase))).append(',');
+            csv.append(formatTime(phase.getBeginTime())).append(',');
+            csv.append(phase.getDuration()).append(',');
+            csv.append(phase.isFailed()).append('\n');
+        }
+        return csv.toString();
+    }
+
+    /**
+     * @return the timing report as JSON.
+     */
+    public String toJson()
+    {
+        StringBuilder json = new StringBuilder("[");
+        for (LifecycleEvent phase : getPhases())
+        {
+            if (json.length() > 1)
+            {
+                json.append(',');
+            }
+            json.append("\n  {\"container\": ").append(toJsonValue(phase.getContainer().getId()));
+            json.append(", \"phase\": ").append(toJsonValue(phase.getPhase()));
+            json.append(", \"deployable\": ").append(toJsonValue(getDeployableFile(phase)));
+            json.append(", \"begin\": ").append(toJsonValue(formatTime(phase.getBeginTime())));
+            json.append(", \"duration\": ").append(phase.getDuration());
+            json.append(", \"failed\": ").append(phase.isFailed()).append('}');
+        }
+        return json.append("\n]\n").toString();
+    }
+
+    /**
+     * @param phase a phase.
+     * @return the file of the deployable of the phase, <code>null</code> if none.
+     */
+    private static String getDeployableFile(LifecycleEvent phase)
+    {
+        return phase.getDeployable() == null ? null : phase.getDeployable().getFile();
+    }
+
+    /**
+     * @param time a time in milliseconds since the epoch.
+     * @return the time in ISO 8601 format, in UTC.
+     */
+    private static String formatTime(long time)
+    {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(time));
+    }
+
+    /**
+     * @param value a value, can be <code>null</code>.
+     * @return the value as a CSV field, quoted if needed.
+     */
+    private static String toCsvValue(String value)
+    {
+        if (value == null)
+        {
+            return "";
+        }
+        if (value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1)
+        {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * @param value a value, can be <code>null</code>.
+     * @return the value as a JSON string.
+     */
+    private static String toJsonValue(String value)
+    {
+        if (value == null)
+        {
+            return "null";
+        }
+        StringBuilder json = new StringBuilder("\"");
+        for (char c : value.toCharArray())
+        {
+            if (c == '"' || c == '\\')
+            {
+                json.append('\\').append(c);
+            }
+            else if (c < ' ')
+            {
+                json.append(String.format("\\u%04x", Integer.valueOf(c)));
+            }
+            else
+            {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+}
@@ -76,6 +76,21 @@ public interface GeneralPropertySet
      */
     String SPAWN_PROCESS = "cargo.process.spawn";
 
+    /**
+     * Specify how installed local containers launch JVMs: <code>ant</code> (default) uses the Ant
+     * Java task, <code>process</code> uses a <code>java.lang.ProcessBuilder</code>, which can
+     * kill the container process and wait for its termination. Ignored when a JVM launcher
+     * factory has been set on the container.
+     */
+    String JVM_LAUNCHER = "cargo.process.launcher";
+
+    /**
+     * Specify if installed local containers should be started with a class data sharing archive
+     * of the classes they load, dumped by their first run with a given container home, JVM and
+     * classpath. Needs Java 13 or above, ignored otherwise.
+     */
+    String CLASS_DATA_SHARING = "cargo.process.cds";
+
     /**
      * Specify if CARGO's configuration generator for standalone containers should ignore when a
      * property cannot be replaced because it does not exist in the source file.
@@ -83,7 +98,56 @@ public interface GeneralPropertySet
     String IGNORE_NON_EXISTING_PROPERTIES = "cargo.standalone.ignoreNonExistingProperties";
 
     /**
-     * The port offset to apply to the container ports.
+     * The port offset to apply to the container ports. When set to <code>auto</code>, an offset
+     * making all the container ports free is allocated when the container starts, and reserved
+     * against other Cargo processes of the host until the container has bound its ports. This
+     * property then holds the allocated offset until the container is stopped. The offset is also
+     * stored in the configuration home, so that stopping or configuring the container again
+     * from another Cargo execution uses the same ports.
      */
     String PORT_OFFSET = "cargo.port.offset";
+
+    /**
+     * Specify if the check that the container ports are free before starting a local container
+     * should also try binding them, so that ports used by a server listening on another network
+     * interface than the loopback one are found busy as well.
+     */
+    String PORT_BIND_TEST = "cargo.port.bindTest";
+
+    /**
+     * Specify if CARGO's configuration generator for standalone containers should create the files
+     * it takes from the container installation as hard links rather than copies. Files modified by
+     * CARGO are then replaced, keeping the container installation pristine. Files each container
+     * is known to modify in place (for example the JBoss 7.x <code>configuration</code> directory
+     * or the Tomcat <code>tomcat-users.xml</code> file) are still copied; any other file written
+     * in place by the container or by the user modifies the container installation.
+     */
+    String HARD_LINKS = "cargo.standalone.hardLinks";
+
+    /**
+     * Specify if CARGO's configuration generator for standalone containers should keep an existing
+     * configuration directory when nothing it is created from (properties, deployables,
+     * configuration files, XML replacements, datasources, resources and container) has changed
+     * since it was last created, instead of deleting and creating it again.
+     */
+    String FINGERPRINT = "cargo.standalone.fingerprint";
+
+    /**
+     * Specify if the deployers copying deployables to a directory of a local container should
+     * copy each deployable to a staging location next to that directory first, then move it into
+     * place. The move being a rename, the container's hot deployment scanner never sees a
+     * partially copied deployable.
+     */
+    String DEPLOYABLE_STAGING = "cargo.deployable.staging";
+
+    /**
+     * Specify if the deployers copying deployables to a directory of a local container should
+     * create hard links to archive deployables rather than copies, so that several containers
+     * can share one copy of a large archive. The links point to a snapshot of the archive,
+     * taken once per version of the archive into a <code>.cargo-deployables</code> directory
+     * next to the configuration home, so that rewriting the archive in place, as build tools do,
+     * never changes a deployed archive. Archives are copied when the snapshot and the container
+     * are not on the same file system.
+     */
+    String DEPLOYABLE_HARD_LINKS = "cargo.deployable.hardLinks";
 }
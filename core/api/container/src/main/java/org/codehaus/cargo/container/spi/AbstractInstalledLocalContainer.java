@@ -26,7 +26,6 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -40,6 +39,7 @@ import org.codehaus.cargo.container.ContainerType;
 import org.codehaus.cargo.container.InstalledLocalContainer;
 import org.codehaus.cargo.container.configuration.LocalConfiguration;
 import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.internal.util.ClassDataSharingArchive;
 import org.codehaus.cargo.container.internal.util.HttpUtils;
 import org.codehaus.cargo.container.internal.util.JdkUtils;
 import org.codehaus.cargo.container.internal.util.ResourceUtils;
@@ -49,6 +49,8 @@ import org.codehaus.cargo.container.spi.jvm.DefaultJvmLauncherFactory;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncher;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncherFactory;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncherRequest;
+import org.codehaus.cargo.container.spi.jvm.ProcessJvmLauncherFactory;
+import org.codehaus.cargo.container.spi.jvm.TrackableJvmLauncher;
 import org.codehaus.cargo.util.AntUtils;
 import org.codehaus.cargo.util.log.Logger;
 
@@ -59,6 +61,12 @@ import org.codehaus.cargo.util.log.Logger;
 public abstract class AbstractInstalledLocalContainer extends AbstractLocalContainer implements
     InstalledLocalContainer
 {
+    /**
+     * Value of the {@link GeneralPropertySet#JVM_LAUNCHER} property selecting the
+     * {@link ProcessJvmLauncherFactory}.
+     */
+    private static final String PROCESS_LAUNCHER = "process";
+
     /**
      * List of system properties to set in the container JVM.
      */
@@ -105,6 +113,17 @@ public abstract class AbstractInstalledLocalContainer extends AbstractLocalConta
      */
     private JvmLauncherFactory jvmLauncherFactory;
 
+    /**
+     * Whether the JVM launcher factory has been set explicitly, in which case the
+     * {@link GeneralPropertySet#JVM_LAUNCHER} property is ignored.
+     */
+    private boolean jvmLauncherFactorySet;
+
+    /**
+     * JVM launcher factory selected with the {@link GeneralPropertySet#JVM_LAUNCHER} property.
+     */
+    private JvmLauncherFactory processJvmLauncherFactory;
+
     /**
      * JVM launcher that started the container.
      */
@@ -263,6 +282,25 @@ public abstract class AbstractInstalledLocalContainer extends AbstractLocalConta
     public void setJvmLauncherFactory(JvmLauncherFactory jvmLauncherFactory)
     {
         this.jvmLauncherFactory = jvmLauncherFactory;
+        this.jvmLauncherFactorySet = true;
+    }
+
+    /**
+     * @return the JVM launcher factory to use: the one set on this container if any, else the one
+     * selected with the {@link GeneralPropertySet#JVM_LAUNCHER} property.
+     */
+    private JvmLauncherFactory getLauncherFactory()
+    {
+        if (!this.jvmLauncherFactorySet && PROCESS_LAUNCHER.equals(
+                getConfiguration().getPropertyValue(GeneralPropertySet.JVM_LAUNCHER)))
+        {
+            if (this.processJvmLauncherFactory == null)
+            {
+                this.processJvmLauncherFactory = new ProcessJvmLauncherFactory();
+            }
+            return this.processJvmLauncherFactory;
+        }
+        return this.jvmLauncherFactory;
     }
 
     /**
@@ -298,7 +336,59 @@ public abstract class AbstractInstalledLocalContainer extends AbstractLocalConta
             jvmStartLauncher.setAppendOutput(isAppend());
         }
         addMemoryArguments(jvmStartLauncher);
+        ClassDataSharingArchive classDataSharingArchive = createClassDataSharingArchive();
+        if (classDataSharingArchive != null)
+        {
+            classDataSharingArchive.addJvmArguments(jvmStartLauncher, jvmMajorVersion);
+        }
         doStart(jvmStartLauncher);
+        if (classDataSharingArchive != null)
+        {
+            classDataSharingArchive.recordClasspath(jvmStartLauncher.getClasspath());
+        }
+    }
+
+    /**
+     * Creates the class data sharing archive of the container JVM if the
+     * {@link GeneralPropertySet#CLASS_DATA_SHARING} property is set. The archive is identified by
+     * the container, its home, the Java installation, the JVM arguments and the extra and shared
+     * classpath.
+     * 
+     * @return the class data sharing archive, <code>null</code> if none is to be used.
+     */
+    private ClassDataSharingArchive createClassDataSharingArchive()
+    {
+        if (!Boolean.valueOf(getConfiguration().getPropertyValue(
+                GeneralPropertySet.CLASS_DATA_SHARING)).booleanValue()
+            || getConfiguration().getPropertyValue(SSHPropertySet.HOST) != null)
+        {
+            return null;
+        }
+        if (jvmMajorVersion < ClassDataSharingArchive.MIN_JAVA_VERSION)
+        {
+            getLogger().debug("Java " + jvmMajorVersion + " cannot dump class data sharing "
+                + "archives, starting without", this.getClass().getName());
+            return null;
+        }
+
+        List<String> values = new ArrayList<String>();
+        values.add(getId());
+        values.add(getJavaHome());
+        values.add(Integer.toString(jvmMajorVersion));
+        values.add(getConfiguration().getPropertyValue(GeneralPropertySet.JVMARGS));
+
+        List<String> files = new ArrayList<String>();
+        files.add(getHome());
+        files.add(getFileHandler().append(getFileHandler().append(getJavaHome(), "bin"),
+            Os.isFamily("windows") ? "java.exe" : "java"));
+        files.addAll(extraClasspath);
+        files.addAll(sharedClasspath);
+
+        ClassDataSharingArchive archive = new ClassDataSharingArchive(
+            new File(getFileHandler().getTmpPath("cds")), values, files);
+        getLogger().debug("Using the class data sharing archive [" + archive.getArchive() + "]",
+            this.getClass().getName());
+        return archive;
     }
 
     /**
@@ -322,6 +412,31 @@ public abstract class AbstractInstalledLocalContainer extends AbstractLocalConta
         }
     }
 
+    /**
+     * {@inheritDoc}. Asks the JVM launcher which started the container, which may not know.
+     */
+    @Override
+    protected boolean waitForProcessTermination(long millis) throws InterruptedException
+    {
+        if (!(jvmStartLauncher instanceof TrackableJvmLauncher))
+        {
+            return super.waitForProcessTermination(millis);
+        }
+
+        long start = System.currentTimeMillis();
+        if (((TrackableJvmLauncher) jvmStartLauncher).waitFor(millis))
+        {
+            return true;
+        }
+        long remaining = millis - (System.currentTimeMillis() - start);
+        if (remaining > 0)
+        {
+            // The JVM launcher cannot track its process
+            Thread.sleep(remaining);
+        }
+        return false;
+    }
+
     /**
      * Creates a preinitialized instance of a JVM launcher to be used for starting, stopping and
      * controlling the container.
@@ -336,84 +451,29 @@ public abstract class AbstractInstalledLocalContainer extends AbstractLocalConta
 
         if (jvmMajorVersion == -1)
         {
-            JvmLauncherRequest request = new JvmLauncherRequest(false, this, ssh);
-            JvmLauncher java = jvmLauncherFactory.createJvmLauncher(request);
-            if (ssh)
+            // The version of a remote JVM can only be found by launching it
+            if (!ssh)
             {
-                addSshProperties(java);
+                jvmMajorVersion = getJdkUtils().getMajorJavaVersion(getJavaHome());
             }
-            setJvmToLaunchContainerIn(java);
-
-            // Read the real JVM version
-            BufferedReader br = null;
-            String jvmVersion;
-            try
+            if (jvmMajorVersion == -1)
             {
-                File jvmVersionFile = File.createTempFile("cargo-jvm-version-", ".txt");
-                java.setOutputFile(jvmVersionFile);
-                java.setAppendOutput(true);
-                java.setMainClass("-version");
-
-                // We need to use java.start and not java.execute since the latter, which calls
-                // org.apache.tools.ant.taskdefs.Java.executeJava() method, doesn't set up
-                // stderr / stdout properly
-                java.start();
-
-                // Give 15 seconds to read the version
-                for (int i = 0; i < 150; i++)
-                {
-                    if (jvmVersionFile.length() > 0)
-                    {
-                        break;
-                    }
-                    Thread.sleep(100);
-                }
-                br = new BufferedReader(new FileReader(jvmVersionFile));
-                jvmVersion = br.readLine();
-                if (jvmVersion != null && jvmVersion.startsWith("java version \""))
+                jvmMajorVersion = probeJvmMajorVersion(ssh);
+                if (jvmMajorVersion == -1)
                 {
-                    jvmVersion = jvmVersion.substring(jvmVersion.indexOf('"') + 1);
+                    jvmMajorVersion = JdkUtils.parseMajorJavaVersion(
+                        System.getProperty("java.version"));
                 }
-                else
+                else if (!ssh)
                 {
-                    throw new IOException("Can't read JVM version from line: " + jvmVersion);
+                    getJdkUtils().setMajorJavaVersion(getJavaHome(), jvmMajorVersion);
                 }
             }
-            catch (Throwable t)
-            {
-                jvmVersion = System.getProperty("java.version");
-            }
-            finally
-            {
-                if (br != null)
-                {
-                    try
-                    {
-                        br.close();
-                    }
-                    catch (IOException ignored)
-                    {
-                        // Ignored
-                    }
-                    br = null;
-                    System.gc();
-                }
-            }
-            if (jvmVersion.startsWith("1."))
-            {
-                jvmVersion = jvmVersion.substring(2);
-            }
-            int dot = jvmVersion.indexOf('.');
-            if (dot > 0)
-            {
-                jvmVersion = jvmVersion.substring(0, dot);
-            }
-            jvmMajorVersion = Integer.parseInt(jvmVersion);
         }
 
         JvmLauncherRequest request = new JvmLauncherRequest(server, this, ssh);
 
-        JvmLauncher java = jvmLauncherFactory.createJvmLauncher(request);
+        JvmLauncher java = getLauncherFactory().createJvmLauncher(request);
 
         // Most container configurations assume that the container would be started from the same
         // working directory as the configuration; so set this here.
@@ -460,6 +520,88 @@ public abstract class AbstractInstalledLocalContainer extends AbstractLocalConta
         return java;
     }
 
+    /**
+     * Finds the major version of the JVM which will run the container by launching it with the
+     * <code>-version</code> argument.
+     * 
+     * @param ssh {@code true} if the JVM runs on a remote host.
+     * @return The major version of the JVM, or {@code -1} if it cannot be found.
+     */
+    private int probeJvmMajorVersion(boolean ssh)
+    {
+        JvmLauncherRequest request = new JvmLauncherRequest(false, this, ssh);
+        JvmLauncher java = getLauncherFactory().createJvmLauncher(request);
+        if (ssh)
+        {
+            addSshProperties(java);
+        }
+        setJvmToLaunchContainerIn(java);
+
+        File jvmVersionFile = null;
+        try
+        {
+            jvmVersionFile = File.createTempFile("cargo-jvm-version-", ".txt");
+            java.setOutputFile(jvmVersionFile);
+            java.setAppendOutput(true);
+            java.setMainClass("-version");
+
+            // We need to use java.start and not java.execute since the latter, which calls
+            // org.apache.tools.ant.taskdefs.Java.executeJava() method, doesn't set up
+            // stderr / stdout properly
+            java.start();
+
+            // Give 15 seconds to read the version; if the launcher cannot tell when the JVM has
+            // terminated, wait for its output instead
+            long deadline = System.currentTimeMillis() + 15000;
+            if (!(java instanceof TrackableJvmLauncher)
+                || !((TrackableJvmLauncher) java).waitFor(15000))
+            {
+                while (jvmVersionFile.length() == 0 && System.currentTimeMillis() < deadline)
+                {
+                    Thread.sleep(100);
+                }
+            }
+
+            BufferedReader br = new BufferedReader(new FileReader(jvmVersionFile));
+            try
+            {
+                for (String line = br.readLine(); line != null; line = br.readLine())
+                {
+                    int version = line.indexOf(" version \"");
+                    if (version != -1)
+                    {
+                        return JdkUtils.parseMajorJavaVersion(
+                            line.substring(version + " version \"".length()));
+                    }
+                }
+            }
+            finally
+            {
+                br.close();
+            }
+            getLogger().debug("Cannot read JVM version from " + jvmVersionFile,
+                this.getClass().getName());
+        }
+        catch (InterruptedException e)
+        {
+            // Let the caller notice the interruption
+            Thread.currentThread().interrupt();
+            getLogger().debug("Interrupted while reading JVM version", this.getClass().getName());
+        }
+        catch (Exception e)
+        {
+            getLogger().debug("Cannot read JVM version: " + e, this.getClass().getName());
+        }
+        finally
+        {
+            if (jvmVersionFile != null)
+            {
+                jvmVersionFile.delete();
+            }
+        }
+        return -1;
+    }
+
     /**
      * Adds in parameters necessary to identify this as a cargo-launched container.
      * 
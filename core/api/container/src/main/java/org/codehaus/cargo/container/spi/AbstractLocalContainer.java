@@ -19,20 +19,21 @@
  */
 package org.codehaus.cargo.container.spi;
 
-import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.container.LocalContainer;
 import org.codehaus.cargo.container.State;
 import org.codehaus.cargo.container.configuration.LocalConfiguration;
-import org.codehaus.cargo.container.deployer.DeployableMonitor;
-import org.codehaus.cargo.container.deployer.URLDeployableMonitor;
+import org.codehaus.cargo.container.configuration.PortOffsetAllocatingConfiguration;
+import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.lifecycle.LifecycleEvent;
+import org.codehaus.cargo.container.lifecycle.LifecycleListener;
 import org.codehaus.cargo.container.property.ServletPropertySet;
-import org.codehaus.cargo.container.spi.deployer.DeployerWatchdog;
-import org.codehaus.cargo.container.spi.util.ContainerUtils;
+import org.codehaus.cargo.container.spi.startup.PingReadinessStrategy;
+import org.codehaus.cargo.container.spi.startup.ReadinessStrategy;
 import org.codehaus.cargo.util.CargoException;
 import org.codehaus.cargo.util.DefaultFileHandler;
 import org.codehaus.cargo.util.FileHandler;
@@ -43,6 +44,21 @@ import org.codehaus.cargo.util.FileHandler;
  */
 public abstract class AbstractLocalContainer extends AbstractContainer implements LocalContainer
 {
+    /**
+     * Initial time between two probes of the container ports when stopping, in milliseconds.
+     */
+    private static final long MIN_SHUTDOWN_BACKOFF = 50;
+
+    /**
+     * Maximum time between two probes of the container ports when stopping, in milliseconds.
+     */
+    private static final long MAX_SHUTDOWN_BACKOFF = 1000;
+
+    /**
+     * Connect timeout used when probing the container ports when stopping, in milliseconds.
+     */
+    private static final int SHUTDOWN_CONNECT_TIMEOUT = 250;
+
     /**
      * The file to which output of the container should be written.
      */
@@ -74,6 +90,17 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
      */
     private FileHandler fileHandler;
 
+    /**
+     * Strategy used to find out when the container has finished starting.
+     */
+    private ReadinessStrategy readinessStrategy;
+
+    /**
+     * Listeners notified of the lifecycle phases of the container.
+     */
+    private List<LifecycleListener> lifecycleListeners =
+        new CopyOnWriteArrayList<LifecycleListener>();
+
     /**
      * Default constructor.
      * @param configuration the configuration to associate to this container. It can be changed
@@ -188,49 +215,11 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
 
         getLogger().info(getName() + " starting...", this.getClass().getName());
 
+        LifecycleEvent startPhase = beginLifecyclePhase(LifecycleEvent.START, null);
+        Throwable failure = null;
         try
         {
-            this.getConfiguration().applyPortOffset();
-
-            verify();
-
-            // Ensure that the configuration is done before starting the container.
-            getConfiguration().configure(this);
-
-            // CARGO-365: Check if ports are in use
-            for (Map.Entry<String, String> property
-                : getConfiguration().getProperties().entrySet())
-            {
-                if (property.getKey().endsWith(".port") && property.getValue() != null)
-                {
-                    try
-                    {
-                        int port = Integer.parseInt(property.getValue());
-                        if (!isPortShutdown(port, 0))
-                        {
-                            throw new ContainerException("Port number " + property.getValue()
-                                + " (defined with the property " + property.getKey() + ") is "
-                                    + "in use. Please free it on the system or set it to a "
-                                        + "different port in the container configuration.");
-                        }
-                    }
-                    catch (NumberFormatException e) 
-                    {
-                        // We do nothing
-                    }
-                }
-            }
-
-            startInternal();
-
-            // CARGO-712: If timeout is 0, don't wait at all
-            if (getTimeout() != 0)
-            {
-                // Wait until the container is fully started
-                waitForCompletion(true);
-            }
-
-            executePostStartTasks();
+            startPhases();
 
             setState(State.STARTED);
             getLogger().info(getName() + " started on port ["
@@ -239,6 +228,7 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
         }
         catch (CargoException e)
         {
+            failure = e;
             setState(State.UNKNOWN);
             getLogger().warn(e.toString(), this.getClass().getName());
 
@@ -246,6 +236,7 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
         }
         catch (Throwable t)
         {
+            failure = t;
             setState(State.UNKNOWN);
             getLogger().warn(t.toString(), this.getClass().getName());
 
@@ -256,37 +247,102 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
         finally 
         {
             this.getConfiguration().revertPortOffset();
+            if (getConfiguration() instanceof PortOffsetAllocatingConfiguration)
+            {
+                PortOffsetAllocatingConfiguration configuration =
+                    (PortOffsetAllocatingConfiguration) getConfiguration();
+                configuration.releasePortReservation();
+                if (getState() != State.STARTED)
+                {
+                    configuration.resetAllocatedPortOffset();
+                }
+            }
+            endLifecyclePhase(startPhase, failure);
         }
     }
 
     /**
-     * {@inheritDoc}
-     * @see LocalContainer#stop()
+     * Runs the phases of the start phase one after the other. A failing phase is ended as failed.
+     * 
+     * @throws Exception if any phase fails.
      */
-    public final void stop()
+    private void startPhases() throws Exception
     {
-        setState(State.STOPPING);
-        getLogger().info(getName() + " is stopping...", this.getClass().getName());
-
-        final boolean isAppend = isAppend();
-
+        // Phase running, null between phases
+        LifecycleEvent phase = null;
+        Throwable failure = null;
         try
         {
+            phase = beginLifecyclePhase(LifecycleEvent.APPLY_PORT_OFFSET, null);
+            if (getConfiguration() instanceof PortOffsetAllocatingConfiguration)
+            {
+                ((PortOffsetAllocatingConfiguration) getConfiguration()).allocatePortOffset();
+            }
             this.getConfiguration().applyPortOffset();
+            phase = nextLifecyclePhase(phase, null);
 
             verify();
 
-            // CARGO-520: Always set append to "true" when stopping
-            setAppend(true);
+            // Ensure that the configuration is done before starting the container.
+            phase = nextLifecyclePhase(phase, LifecycleEvent.CONFIGURE);
+            getConfiguration().configure(this);
 
-            stopInternal();
+            // CARGO-365: Check if ports are in use
+            phase = nextLifecyclePhase(phase, LifecycleEvent.CHECK_PORTS);
+            new ContainerPorts(getConfiguration(), getLogger()).checkFree();
+
+            phase = nextLifecyclePhase(phase, LifecycleEvent.START_INTERNAL);
+            getReadinessStrategy().prepare(this);
+            startInternal();
+            phase = nextLifecyclePhase(phase, null);
 
             // CARGO-712: If timeout is 0, don't wait at all
             if (getTimeout() != 0)
             {
-                // Wait until the container is fully stopped
-                waitForCompletion(false);
+                // Wait until the container is fully started
+                phase = beginLifecyclePhase(LifecycleEvent.WAIT_FOR_START, null);
+                waitForCompletion(true);
+            }
+
+            phase = nextLifecyclePhase(phase, LifecycleEvent.POST_START_TASKS);
+            executePostStartTasks();
+            phase = nextLifecyclePhase(phase, null);
+        }
+        catch (Exception e)
+        {
+            failure = e;
+            throw e;
+        }
+        catch (Error e)
+        {
+            failure = e;
+            throw e;
+        }
+        finally
+        {
+            if (phase != null)
+            {
+                endLifecyclePhase(phase, failure);
             }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see LocalContainer#stop()
+     */
+    public final void stop()
+    {
+        setState(State.STOPPING);
+        getLogger().info(getName() + " is stopping...", this.getClass().getName());
+
+        final boolean isAppend = isAppend();
+
+        LifecycleEvent stopPhase = beginLifecyclePhase(LifecycleEvent.STOP, null);
+        Throwable failure = null;
+        try
+        {
+            stopPhases();
 
             // Force the container to stop, should it not already be stopped.
             // At this point, the container should already be stopped,
@@ -296,8 +352,14 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
             setState(State.STOPPED);
             getLogger().info(getName() + " is stopped", this.getClass().getName());
         }
+        catch (Error e)
+        {
+            failure = e;
+            throw e;
+        }
         catch (Exception e)
         {
+            failure = e;
             setState(State.UNKNOWN);
             throw new ContainerException("Failed to stop the " + getName() + " container."
                 + (getOutput() == null ? "" : " Check the [" + getOutput() + "] file "
@@ -307,6 +369,178 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
         {
             setAppend(isAppend);
             this.getConfiguration().revertPortOffset();
+            if (getConfiguration() instanceof PortOffsetAllocatingConfiguration)
+            {
+                ((PortOffsetAllocatingConfiguration) getConfiguration())
+                    .resetAllocatedPortOffset();
+            }
+            endLifecyclePhase(stopPhase, failure);
+        }
+    }
+
+    /**
+     * Runs the phases of the stop phase one after the other. A failing phase is ended as failed.
+     * 
+     * @throws Exception if any phase fails.
+     */
+    private void stopPhases() throws Exception
+    {
+        // Phase running, null between phases
+        LifecycleEvent phase = null;
+        Throwable failure = null;
+        try
+        {
+            phase = beginLifecyclePhase(LifecycleEvent.APPLY_PORT_OFFSET, null);
+            if (getConfiguration() instanceof PortOffsetAllocatingConfiguration)
+            {
+                // The container may have been started with another configuration object
+                ((PortOffsetAllocatingConfiguration) getConfiguration()).restorePortOffset();
+            }
+            this.getConfiguration().applyPortOffset();
+            phase = nextLifecyclePhase(phase, null);
+
+            verify();
+
+            // CARGO-520: Always set append to "true" when stopping
+            setAppend(true);
+
+            phase = beginLifecyclePhase(LifecycleEvent.STOP_INTERNAL, null);
+            stopInternal();
+            phase = nextLifecyclePhase(phase, null);
+
+            // CARGO-712: If timeout is 0, don't wait at all
+            if (getTimeout() != 0)
+            {
+                // Wait until the container is fully stopped
+                phase = beginLifecyclePhase(LifecycleEvent.WAIT_FOR_STOP, null);
+                waitForCompletion(false);
+                phase = nextLifecyclePhase(phase, null);
+            }
+        }
+        catch (Exception e)
+        {
+            failure = e;
+            throw e;
+        }
+        catch (Error e)
+        {
+            failure = e;
+            throw e;
+        }
+        finally
+        {
+            if (phase != null)
+            {
+                endLifecyclePhase(phase, failure);
+            }
+        }
+    }
+
+    /**
+     * Ends the running lifecycle phase, if any, and begins the next one, if any.
+     * 
+     * @param running the event of the beginning of the running phase, can be <code>null</code>.
+     * @param next the next lifecycle phase, <code>null</code> for none.
+     * @return the event of the beginning of the next phase, <code>null</code> if none.
+     */
+    private LifecycleEvent nextLifecyclePhase(LifecycleEvent running, String next)
+    {
+        if (running != null)
+        {
+            endLifecyclePhase(running);
+        }
+        if (next == null)
+        {
+            return null;
+        }
+        return beginLifecyclePhase(next, null);
+    }
+
+    /**
+     * Adds a listener notified of the lifecycle phases of this container.
+     * 
+     * @param listener the listener to add.
+     */
+    public void addLifecycleListener(LifecycleListener listener)
+    {
+        this.lifecycleListeners.add(listener);
+    }
+
+    /**
+     * @param listener the listener to remove.
+     */
+    public void removeLifecycleListener(LifecycleListener listener)
+    {
+        this.lifecycleListeners.remove(listener);
+    }
+
+    /**
+     * @return the listeners notified of the lifecycle phases of this container.
+     */
+    public List<LifecycleListener> getLifecycleListeners()
+    {
+        return new ArrayList<LifecycleListener>(this.lifecycleListeners);
+    }
+
+    /**
+     * Notifies the lifecycle listeners that a phase begins. The phase must be ended with
+     * {@link #endLifecyclePhase(LifecycleEvent, Throwable)} whether it succeeds or not.
+     * 
+     * @param phase the lifecycle phase, see the constants of {@link LifecycleEvent}.
+     * @param deployable the deployable the phase applies to, can be <code>null</code>.
+     * @return the event of the beginning of the phase, to give to
+     * {@link #endLifecyclePhase(LifecycleEvent)}.
+     */
+    public LifecycleEvent beginLifecyclePhase(String phase, Deployable deployable)
+    {
+        LifecycleEvent event = new LifecycleEvent(this, phase, deployable);
+        for (LifecycleListener listener : this.lifecycleListeners)
+        {
+            try
+            {
+                listener.phaseBegun(event);
+            }
+            catch (RuntimeException e)
+            {
+                getLogger().warn("Lifecycle listener failed: " + e, this.getClass().getName());
+            }
+        }
+        return event;
+    }
+
+    /**
+     * Notifies the lifecycle listeners that a phase ends successfully.
+     * 
+     * @param begin the event of the beginning of the phase.
+     */
+    public void endLifecyclePhase(LifecycleEvent begin)
+    {
+        endLifecyclePhase(begin, null);
+    }
+
+    /**
+     * Notifies the lifecycle listeners that a phase ends.
+     * 
+     * @param begin the event of the beginning of the phase.
+     * @param failure the failure which ended the phase, <code>null</code> if it succeeded.
+     */
+    public void endLifecyclePhase(LifecycleEvent begin, Throwable failure)
+    {
+        if (this.lifecycleListeners.isEmpty())
+        {
+            return;
+        }
+        LifecycleEvent event = begin.createEndEvent(failure);
+        for (LifecycleListener listener : this.lifecycleListeners)
+        {
+            try
+            {
+                listener.phaseEnded(event);
+            }
+            catch (RuntimeException e)
+            {
+                getLogger().warn("Lifecycle listener failed: " + e, this.getClass().getName());
+            }
         }
     }
 
@@ -330,7 +564,7 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
     }
 
     /**
-     * Ping the WAR CPC to verify if the container is started or stopped.
+     * Wait for the container to be started, using its {@link ReadinessStrategy}, or stopped.
      * 
      * @param waitForStarting if true then wait for container start, if false wait for container
      * stop
@@ -338,89 +572,82 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
      */
     protected void waitForCompletion(boolean waitForStarting) throws InterruptedException
     {
-        LocalConfiguration config = getConfiguration();
-
         if (waitForStarting)
         {
-            DeployableMonitor monitor =
-                new URLDeployableMonitor(ContainerUtils.getCPCURL(config), getTimeout(),
-                    "Cargo Ping Component used to verify if the container is started.");
-            monitor.setLogger(getLogger());
-            DeployerWatchdog watchdog = new DeployerWatchdog(monitor);
-            watchdog.setLogger(getLogger());
-
-            watchdog.watch(waitForStarting);
+            ReadinessStrategy strategy = getReadinessStrategy();
+            strategy.setLogger(getLogger());
+            strategy.waitForReadiness(this);
         }
         else
         {
-            long deadline = System.currentTimeMillis() + getTimeout();
-
-            int connectTimeout = 0;
-            for (Map.Entry<String, String> property : getConfiguration().getProperties().entrySet())
-            {
-                if (!property.getKey().endsWith(".port") || property.getValue() == null)
-                {
-                    continue;
-                }
-                int port;
-                try
-                {
-                    port = Integer.parseInt(property.getValue());
-                }
-                catch (NumberFormatException e)
-                {
-                    continue;
-                }
-                if (port < 1 || port > 65535)
-                {
-                    continue;
-                }
-
-                waitForPortShutdown(port, connectTimeout, deadline);
-                getLogger().debug("\tPort " + port + " is shutdown", this.getClass().getName());
-
-                connectTimeout = 250;
-                continue;
-            }
-
-            // Many container do not fully stop even after having destroyed all their sockets;
-            // as a result wait 5 more seconds
-            Thread.sleep(5000);
+            waitForShutdown();
         }
     }
 
     /**
-     * Waits for the shutdown of the specified server port.
+     * Waits for the container to be stopped, that is for all its ports to be shut down or for its
+     * process to terminate. All ports are probed at once, with a backoff growing from
+     * {@link #MIN_SHUTDOWN_BACKOFF} to {@link #MAX_SHUTDOWN_BACKOFF} between probes; the
+     * termination of the container process ends the wait as soon as it happens.
      * 
-     * @param port The port number.
-     * @param connectTimeout The connect timeout.
-     * @param deadline The deadline for the port to shutdown.
-     * @throws InterruptedException If the thread was interrupted while waiting for the port
-     *             shutdown.
+     * @throws InterruptedException if the thread is interrupted while waiting.
      */
-    private void waitForPortShutdown(int port, int connectTimeout, long deadline)
-        throws InterruptedException
+    private void waitForShutdown() throws InterruptedException
     {
-        getLogger().debug("Waiting for port " + port + " to shutdown, deadline " + deadline,
+        long deadline = System.currentTimeMillis() + getTimeout();
+
+        ContainerPorts containerPorts = new ContainerPorts(getConfiguration(), getLogger());
+        List<Integer> ports = containerPorts.getPorts();
+        getLogger().debug("Waiting for ports " + ports + " to shutdown, deadline " + deadline,
             this.getClass().getName());
 
-        while (true)
+        // A process which has already terminated, for example a script which launched the
+        // container in another process, does not tell anything about the container
+        boolean processRunning = !waitForProcessTermination(0);
+
+        long backoff = MIN_SHUTDOWN_BACKOFF;
+        while (!ports.isEmpty())
         {
-            if (isPortShutdown(port, connectTimeout))
+            containerPorts.removeShutdownPorts(ports, SHUTDOWN_CONNECT_TIMEOUT);
+            if (ports.isEmpty())
             {
                 break;
             }
 
             if (System.currentTimeMillis() > deadline)
             {
-                throw new ContainerException("Server port " + port
+                throw new ContainerException("Server port " + ports.get(0)
                     + " did not shutdown within the timeout period [" + getTimeout() + "]");
             }
 
-            Thread.sleep(1000);
+            if (waitForProcessTermination(backoff) && processRunning)
+            {
+                getLogger().debug("\tContainer process has terminated",
+                    this.getClass().getName());
+                break;
+            }
+            backoff = Math.min(backoff * 2, MAX_SHUTDOWN_BACKOFF);
         }
     }
 
+    /**
+     * Waits for the process running the container to terminate, if the container knows about it.
+     * The default implementation only sleeps for the specified time.
+     * 
+     * @param millis the maximum time to wait, in milliseconds.
+     * @return <code>true</code> if the process running the container has terminated,
+     * <code>false</code> if it is still running after the specified time or is unknown.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    protected boolean waitForProcessTermination(long millis) throws InterruptedException
+    {
+        if (millis > 0)
+        {
+            Thread.sleep(millis);
+        }
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      * @see LocalContainer#setConfiguration(LocalConfiguration)
@@ -448,6 +675,41 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
         this.timeout = timeout;
     }
 
+    /**
+     * @return the strategy used to find out when the container has finished starting, created
+     * with {@link #createReadinessStrategy()} unless set with
+     * {@link #setReadinessStrategy(ReadinessStrategy)}.
+     */
+    public ReadinessStrategy getReadinessStrategy()
+    {
+        if (this.readinessStrategy == null)
+        {
+            this.readinessStrategy = createReadinessStrategy();
+        }
+        return this.readinessStrategy;
+    }
+
+    /**
+     * @param readinessStrategy the strategy to use to find out when the container has finished
+     * starting.
+     */
+    public void setReadinessStrategy(ReadinessStrategy readinessStrategy)
+    {
+        this.readinessStrategy = readinessStrategy;
+    }
+
+    /**
+     * Creates the default strategy used to find out when the container has finished starting.
+     * Containers logging a specific line once started should return a
+     * {@link org.codehaus.cargo.container.spi.startup.LogPatternReadinessStrategy} matching it.
+     * 
+     * @return a {@link PingReadinessStrategy}.
+     */
+    protected ReadinessStrategy createReadinessStrategy()
+    {
+        return new PingReadinessStrategy();
+    }
+
     /**
      * {@inheritDoc}
      * @see LocalContainer#getTimeout()
@@ -491,81 +753,4 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
     {
         this.fileHandler = fileHandler;
     }
-
-
-    /**
-     * Checks if the specified server port is shutdown.
-     * 
-     * @param port The port number.
-     * @param connectTimeout The connect timeout.
-     * @return <code>true</code> if <code>port</code> is shut down, <code>false</code> otherwise.
-     */
-    private boolean isPortShutdown(int port, int connectTimeout)
-    {
-        Socket s = new Socket();
-        try
-        {
-            getLogger().debug("\tConnection attempt with socket " + s + ", current time is "
-                + System.currentTimeMillis(), this.getClass().getName());
-
-            s.bind(null);
-
-            // If the remote port is closed, s.connect will throw an exception
-            s.connect(new InetSocketAddress("localhost", port), connectTimeout);
-            getLogger().debug("\tSocket " + s + " for port " + port + " managed to connect",
-                this.getClass().getName());
-
-            try
-            {
-                s.shutdownOutput();
-            }
-            catch (IOException e)
-            {
-                // ignored, irrelevant
-                getLogger().debug("\tFailed to shutdown output for socket " + s + ": " + e,
-                    this.getClass().getName());
-            }
-            try
-            {
-                s.shutdownInput();
-            }
-            catch (IOException e)
-            {
-                // ignored, irrelevant
-                getLogger().debug("\tFailed to shutdown input for socket " + s + ": " + e,
-                    this.getClass().getName());
-            }
-
-            getLogger().debug("\tSocket " + s + " for port " + port + " shutdown",
-                this.getClass().getName());
-        }
-        catch (IOException ignored)
-        {
-            // If an IOException has occured, this means port is shut down
-            return true;
-        }
-        finally
-        {
-            try
-            {
-                s.close();
-            }
-            catch (IOException e)
-            {
-                // ignored, irrelevant
-                getLogger().debug("\tFailed to close socket " + s + ": " + e,
-                    this.getClass().getName());
-            }
-            finally
-            {
-                getLogger().debug("\tSocket " + s + " for port " + port + " closed",
-                    this.getClass().getName());
-
-                s = null;
-                System.gc();
-            }
-        }
-
-        return false;
-    }
 }
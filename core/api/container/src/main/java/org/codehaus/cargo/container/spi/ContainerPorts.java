@@ -0,0 +1,152 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.configuration.LocalConfiguration;
+import org.codehaus.cargo.container.internal.util.PortProbe;
+import org.codehaus.cargo.container.property.GeneralPropertySet;
+import org.codehaus.cargo.util.log.Logger;
+
+/**
+ * Ports of a local container, which are the valid values of the configuration properties whose
+ * name ends with <code>.port</code>.
+ * 
+ */
+final class ContainerPorts
+{
+    /**
+     * The ports, with the property defining them.
+     */
+    private final Map<Integer, String> ports = new LinkedHashMap<Integer, String>();
+
+    /**
+     * Whether ports are also probed by binding them, see {@link GeneralPropertySet#PORT_BIND_TEST}.
+     */
+    private final boolean bindTest;
+
+    /**
+     * Logger of the container.
+     */
+    private final Logger logger;
+
+    /**
+     * @param configuration the configuration of the container.
+     * @param logger the logger of the container.
+     */
+    ContainerPorts(LocalConfiguration configuration, Logger logger)
+    {
+        for (Map.Entry<String, String> property : configuration.getProperties().entrySet())
+        {
+            if (!property.getKey().endsWith(".port") || property.getValue() == null)
+            {
+                continue;
+            }
+            try
+            {
+                int port = Integer.parseInt(property.getValue());
+                if (port >= 1 && port <= 65535 && !this.ports.containsKey(port))
+                {
+                    this.ports.put(port, property.getKey());
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                // We do nothing
+                continue;
+            }
+        }
+        this.bindTest = Boolean.parseBoolean(
+            configuration.getPropertyValue(GeneralPropertySet.PORT_BIND_TEST));
+        this.logger = logger;
+    }
+
+    /**
+     * @return the ports.
+     */
+    List<Integer> getPorts()
+    {
+        return new ArrayList<Integer>(this.ports.keySet());
+    }
+
+    /**
+     * Checks that none of the ports is in use.
+     * 
+     * @throws ContainerException if any port is in use.
+     */
+    void checkFree()
+    {
+        PortProbe portProbe = new PortProbe();
+        portProbe.setLogger(this.logger);
+        portProbe.setBindTest(this.bindTest);
+        Set<Integer> busyPorts = portProbe.getBusyPorts(this.ports.keySet(), 0);
+        if (busyPorts.isEmpty())
+        {
+            return;
+        }
+
+        StringBuilder message = new StringBuilder();
+        for (Integer port : busyPorts)
+        {
+            message.append(message.length() == 0 ? "Port number " : ", port number ");
+            message.append(port + " (defined with the property " + this.ports.get(port) + ")");
+        }
+        if (busyPorts.size() == 1)
+        {
+            message.append(" is in use. Please free it on the system or set it to a different "
+                + "port in the container configuration.");
+        }
+        else
+        {
+            message.append(" are in use. Please free them on the system or set them to "
+                + "different ports in the container configuration.");
+        }
+        throw new ContainerException(message.toString());
+    }
+
+    /**
+     * Probes ports for shutdown, all at once.
+     * 
+     * @param busyPorts the ports which are not shut down yet, from which the ports found shut
+     * down are removed.
+     * @param connectTimeout the connect timeout, in milliseconds.
+     */
+    void removeShutdownPorts(List<Integer> busyPorts, int connectTimeout)
+    {
+        PortProbe portProbe = new PortProbe();
+        portProbe.setLogger(this.logger);
+        Set<Integer> stillBusyPorts = portProbe.getBusyPorts(busyPorts, connectTimeout);
+        for (int i = busyPorts.size() - 1; i >= 0; i--)
+        {
+            if (!stillBusyPorts.contains(busyPorts.get(i)))
+            {
+                this.logger.debug("\tPort " + busyPorts.get(i) + " is shutdown",
+                    this.getClass().getName());
+                busyPorts.remove(i);
+            }
+        }
+    }
+}
@@ -31,10 +31,12 @@ import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.container.LocalContainer;
 import org.codehaus.cargo.container.configuration.FileConfig;
 import org.codehaus.cargo.container.configuration.LocalConfiguration;
+import org.codehaus.cargo.container.configuration.PortOffsetAllocatingConfiguration;
 import org.codehaus.cargo.container.configuration.builder.ConfigurationEntryType;
 import org.codehaus.cargo.container.configuration.entry.DataSource;
 import org.codehaus.cargo.container.configuration.entry.Resource;
 import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.internal.util.PortAllocator;
 import org.codehaus.cargo.container.internal.util.ResourceUtils;
 import org.codehaus.cargo.container.property.DataSourceConverter;
 import org.codehaus.cargo.container.property.DatasourcePropertySet;
@@ -55,13 +57,25 @@ import org.codehaus.cargo.util.log.Logger;
  * 
  */
 public abstract class AbstractLocalConfiguration extends AbstractConfiguration implements
-    LocalConfiguration
+    PortOffsetAllocatingConfiguration
 {
     /**
      * The path under which the container resources are stored in the JAR.
      */
     public static final String RESOURCE_PATH = "org/codehaus/cargo/container/internal/resources/";
 
+    /**
+     * Value of the {@link GeneralPropertySet#PORT_OFFSET} property asking for a port offset
+     * allocated when the container starts.
+     */
+    public static final String AUTO_PORT_OFFSET = "auto";
+
+    /**
+     * File of the configuration home holding the port offset allocated when the port offset is
+     * {@link #AUTO_PORT_OFFSET}, so that a later stop uses the same ports.
+     */
+    private static final String PORT_OFFSET_FILE = ".cargo-port-offset";
+
     /**
      * Property key to flag ports which have already an offset applied.
      */
@@ -115,6 +129,17 @@ public abstract class AbstractLocalConfiguration extends AbstractConfiguration i
      */
     private List<DataSource> dataSources;
 
+    /**
+     * Allocator of the ports, when the port offset is allocated automatically.
+     */
+    private PortAllocator portAllocator;
+
+    /**
+     * Whether the port offset has been allocated, or read back from the configuration home,
+     * because it was set to {@link #AUTO_PORT_OFFSET}.
+     */
+    private boolean portOffsetAllocated;
+
     /**
      * @param home the home directory where the container will be set up to start and where it will
      * deploy its deployables. <b>IMPORTANT</b>: While some containers can deal with this parameter
@@ -247,9 +272,29 @@ public abstract class AbstractLocalConfiguration extends AbstractConfiguration i
             setProperty(GeneralPropertySet.JAVA_HOME, System.getProperty("java.home"));
         }
 
+        if (AUTO_PORT_OFFSET.equals(getPropertyValue(GeneralPropertySet.PORT_OFFSET)))
+        {
+            // Configuring without starting, the configuration must use the offset of the running
+            // container if any, else a free one
+            if (!restorePortOffset())
+            {
+                allocatePortOffset();
+                releasePortReservation();
+            }
+        }
+
         parsePropertiesForPendingConfiguration();
         verify();
 
+        if (isUpToDate(container))
+        {
+            getLogger().info("The " + container.getName() + " " + getType().getType()
+                + " configuration in [" + getHome() + "] is up to date, not creating it again",
+                    this.getClass().getName());
+            writePortOffset();
+            return;
+        }
+
         try
         {
             doConfigure(container);
@@ -261,6 +306,33 @@ public abstract class AbstractLocalConfiguration extends AbstractConfiguration i
         }
 
         configureFiles(getFilterChain(), container);
+        markUpToDate(container);
+        writePortOffset();
+    }
+
+    /**
+     * Checks whether the configuration directory already holds the configuration that would be
+     * created for the container, in which case {@link #configure(LocalContainer)} leaves it as
+     * is. The default implementation always returns <code>false</code>.
+     * 
+     * @param container the container to configure.
+     * @return <code>true</code> if the configuration does not need to be created again.
+     */
+    protected boolean isUpToDate(LocalContainer container)
+    {
+        return false;
+    }
+
+    /**
+     * Called once the configuration has been successfully created for the container, so that
+     * later calls to {@link #isUpToDate(LocalContainer)} can detect it. The default
+     * implementation does nothing.
+     * 
+     * @param container the container the configuration has been created for.
+     */
+    protected void markUpToDate(LocalContainer container)
+    {
+        // Nothing to remember by default
     }
 
     /**
@@ -674,10 +746,9 @@ public abstract class AbstractLocalConfiguration extends AbstractConfiguration i
             && this.getPropertyValue(name) != null 
             && !isOffsetApplied(name)) 
         {
+            int portOffset = getPortOffset();
             try 
             {
-                int portOffset = Integer.parseInt(this.getPropertyValue(
-                    GeneralPropertySet.PORT_OFFSET));
                 int value = Integer.parseInt(this.getPropertyValue(name));
                 this.setProperty(name, Integer.toString(value + portOffset));
                 flagOffestApplied(name, true);
@@ -700,10 +771,9 @@ public abstract class AbstractLocalConfiguration extends AbstractConfiguration i
                 && this.getPropertyValue(name) != null
                 && isOffsetApplied(name)) 
         {
+            int portOffset = getPortOffset();
             try 
             {
-                int portOffset = Integer.parseInt(this.getPropertyValue(
-                    GeneralPropertySet.PORT_OFFSET));
                 int value = Integer.parseInt(this.getPropertyValue(name));
                 this.setProperty(name, Integer.toString(value - portOffset));
                 flagOffestApplied(name, false);
@@ -715,6 +785,159 @@ public abstract class AbstractLocalConfiguration extends AbstractConfiguration i
         }
     }
 
+    /**
+     * @return the port offset.
+     * @throws ContainerException if the port offset is not a number, for example if it is
+     * {@link #AUTO_PORT_OFFSET} and no offset has been allocated yet.
+     */
+    protected int getPortOffset()
+    {
+        String portOffset = getPropertyValue(GeneralPropertySet.PORT_OFFSET);
+        try
+        {
+            return Integer.parseInt(portOffset);
+        }
+        catch (NumberFormatException e)
+        {
+            if (AUTO_PORT_OFFSET.equals(portOffset))
+            {
+                throw new ContainerException("The port offset is [" + AUTO_PORT_OFFSET
+                    + "] but no port offset has been allocated for the configuration in ["
+                    + getHome() + "]. Start the container with this configuration first.");
+            }
+            throw new ContainerException("Invalid port offset [" + portOffset + "]", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}. The port offset is automatic when it is {@link #AUTO_PORT_OFFSET}.
+     * @see PortOffsetAllocatingConfiguration#allocatePortOffset()
+     */
+    public void allocatePortOffset()
+    {
+        if (!AUTO_PORT_OFFSET.equals(getPropertyValue(GeneralPropertySet.PORT_OFFSET)))
+        {
+            return;
+        }
+
+        List<Integer> ports = new ArrayList<Integer>();
+        for (Map.Entry<String, String> property : getProperties().entrySet())
+        {
+            if (property.getKey().endsWith(".port") && property.getValue() != null)
+            {
+                try
+                {
+                    ports.add(Integer.valueOf(property.getValue()));
+                }
+                catch (NumberFormatException e)
+                {
+                    // We do nothing
+                }
+            }
+        }
+
+        this.portAllocator = new PortAllocator();
+        this.portAllocator.setLogger(getLogger());
+        int portOffset = this.portAllocator.reserve(ports);
+        setProperty(GeneralPropertySet.PORT_OFFSET, Integer.toString(portOffset));
+        this.portOffsetAllocated = true;
+        getLogger().info("Allocated port offset [" + portOffset + "] for ports " + ports,
+            this.getClass().getName());
+    }
+
+    /**
+     * {@inheritDoc}. The port offset is automatic when it is {@link #AUTO_PORT_OFFSET}.
+     * @see PortOffsetAllocatingConfiguration#restorePortOffset()
+     */
+    public boolean restorePortOffset()
+    {
+        if (!AUTO_PORT_OFFSET.equals(getPropertyValue(GeneralPropertySet.PORT_OFFSET)))
+        {
+            return false;
+        }
+
+        String portOffsetFile = getPortOffsetFile();
+        if (portOffsetFile == null || !getFileHandler().exists(portOffsetFile))
+        {
+            return false;
+        }
+
+        String portOffset = getFileHandler().readTextFile(portOffsetFile, "UTF-8").trim();
+        try
+        {
+            Integer.parseInt(portOffset);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ContainerException("Invalid port offset [" + portOffset + "] in ["
+                + portOffsetFile + "]", e);
+        }
+        setProperty(GeneralPropertySet.PORT_OFFSET, portOffset);
+        this.portOffsetAllocated = true;
+        getLogger().debug("Read back port offset [" + portOffset + "] from [" + portOffsetFile
+            + "]", this.getClass().getName());
+        return true;
+    }
+
+    /**
+     * Stores the allocated port offset, if any, in the configuration home.
+     */
+    private void writePortOffset()
+    {
+        if (this.portOffsetAllocated && getPortOffsetFile() != null)
+        {
+            getFileHandler().writeTextFile(getPortOffsetFile(),
+                getPropertyValue(GeneralPropertySet.PORT_OFFSET), "UTF-8");
+        }
+    }
+
+    /**
+     * @return the file of the configuration home holding the allocated port offset,
+     * <code>null</code> if the configuration has no home.
+     */
+    private String getPortOffsetFile()
+    {
+        if (getHome() == null)
+        {
+            return null;
+        }
+        return getFileHandler().append(getHome(), PORT_OFFSET_FILE);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see PortOffsetAllocatingConfiguration#releasePortReservation()
+     */
+    public void releasePortReservation()
+    {
+        if (this.portAllocator != null)
+        {
+            this.portAllocator.release();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see PortOffsetAllocatingConfiguration#resetAllocatedPortOffset()
+     */
+    public void resetAllocatedPortOffset()
+    {
+        if (this.portAllocator != null)
+        {
+            this.portAllocator.release();
+            this.portAllocator = null;
+        }
+        if (this.portOffsetAllocated)
+        {
+            this.portOffsetAllocated = false;
+            if (getPortOffsetFile() != null)
+            {
+                getFileHandler().delete(getPortOffsetFile());
+            }
+            setProperty(GeneralPropertySet.PORT_OFFSET, AUTO_PORT_OFFSET);
+        }
+    }
+
     /**
      * Checks whether the offset is already applied or not 
      * @param name the name of the property to be checked
@@ -42,6 +42,11 @@ public abstract class AbstractLocalConfigurationCapability extends AbstractConfi
         this.defaultSupportsMap.put(ServletPropertySet.PORT, Boolean.TRUE);
         this.defaultSupportsMap.put(GeneralPropertySet.JAVA_HOME, Boolean.TRUE);
         this.defaultSupportsMap.put(GeneralPropertySet.SPAWN_PROCESS, Boolean.TRUE);
+        this.defaultSupportsMap.put(GeneralPropertySet.JVM_LAUNCHER, Boolean.TRUE);
+        this.defaultSupportsMap.put(GeneralPropertySet.CLASS_DATA_SHARING, Boolean.TRUE);
         this.defaultSupportsMap.put(GeneralPropertySet.PORT_OFFSET, Boolean.TRUE);
+        this.defaultSupportsMap.put(GeneralPropertySet.PORT_BIND_TEST, Boolean.TRUE);
+        this.defaultSupportsMap.put(GeneralPropertySet.DEPLOYABLE_STAGING, Boolean.TRUE);
+        this.defaultSupportsMap.put(GeneralPropertySet.DEPLOYABLE_HARD_LINKS, Boolean.TRUE);
     }
 }
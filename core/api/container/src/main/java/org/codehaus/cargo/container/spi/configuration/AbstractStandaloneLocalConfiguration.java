@@ -35,6 +35,7 @@ import org.codehaus.cargo.container.configuration.StandaloneLocalConfiguration;
 import org.codehaus.cargo.container.property.GeneralPropertySet;
 import org.codehaus.cargo.container.property.LoggingLevel;
 import org.codehaus.cargo.util.CargoException;
+import org.codehaus.cargo.util.ExtendedFileHandler;
 import org.codehaus.cargo.util.FileHandler.XmlReplacementDetails;
 import org.codehaus.cargo.util.XmlReplacement;
 
@@ -45,6 +46,20 @@ import org.codehaus.cargo.util.XmlReplacement;
 public abstract class AbstractStandaloneLocalConfiguration extends AbstractLocalConfiguration
     implements StandaloneLocalConfiguration
 {
+    /**
+     * Name of the Cargo timestamp file, marking directories created by Cargo.
+     */
+    private static final String TIMESTAMP_FILE = ".cargo";
+
+    /**
+     * Name of the file storing the configuration fingerprint, next to the Cargo timestamp file.
+     */
+    private static final String FINGERPRINT_FILE = ".cargo-fingerprint";
+
+    /**
+     * Encoding of the configuration fingerprint.
+     */
+    private static final String FINGERPRINT_ENCODING = "UTF-8";
 
     /**
      * The XML replacements for the configuration files. The first map's key is the file name,
@@ -53,6 +68,12 @@ public abstract class AbstractStandaloneLocalConfiguration extends AbstractLocal
      */
     private Map<String, Map<XmlReplacementDetails, String>> xmlReplacements;
 
+    /**
+     * Fingerprint of the configuration being created, <code>null</code> unless the
+     * {@link GeneralPropertySet#FINGERPRINT} property is set to <code>true</code>.
+     */
+    private String fingerprint;
+
     /**
      * {@inheritDoc}
      * @see AbstractLocalConfiguration#AbstractLocalConfiguration(String)
@@ -130,7 +151,7 @@ public abstract class AbstractStandaloneLocalConfiguration extends AbstractLocal
      */
     protected void setupConfigurationDir() throws IOException
     {
-        String timestampFile = getFileHandler().append(getHome(), ".cargo");
+        String timestampFile = getFileHandler().append(getHome(), TIMESTAMP_FILE);
 
         // Start by cleaning the configuration directory. Do it only if there's already a Cargo
         // timestamp or if the configuration directory exists but is empty or if the configuration
@@ -155,6 +176,140 @@ public abstract class AbstractStandaloneLocalConfiguration extends AbstractLocal
         }
     }
 
+    /**
+     * Copies a directory of the container installation into the configuration directory. If the
+     * {@link GeneralPropertySet#HARD_LINKS} property is set to <code>true</code>, files are hard
+     * linked instead of copied, which makes creating many configurations from the same
+     * installation much faster; files later modified by CARGO are replaced rather than written
+     * through. Files modified in place by the container must be passed as <code>copies</code>,
+     * else the container modifies its installation through the links. Files are always copied
+     * when the file handler is not an {@link ExtendedFileHandler}.
+     * 
+     * @param source the directory of the container installation.
+     * @param target the directory of the configuration.
+     */
+    protected void copyContainerDirectory(String source, String target)
+    {
+        copyContainerDirectory(source, target, new ArrayList<String>());
+    }
+
+    /**
+     * Copies a directory of the container installation into the configuration directory, linking
+     * files instead of copying them if the {@link GeneralPropertySet#HARD_LINKS} property is set
+     * to <code>true</code>, except for the files the container modifies in place.
+     * 
+     * @param source the directory of the container installation.
+     * @param target the directory of the configuration.
+     * @param copies the Ant patterns, relative to <code>source</code>, of the files the container
+     * modifies in place, which are always copied.
+     * @see #copyContainerDirectory(String, String)
+     */
+    protected void copyContainerDirectory(String source, String target, List<String> copies)
+    {
+        if (Boolean.valueOf(getPropertyValue(GeneralPropertySet.HARD_LINKS)).booleanValue()
+            && getFileHandler() instanceof ExtendedFileHandler)
+        {
+            ((ExtendedFileHandler) getFileHandler()).linkDirectory(source, target, copies);
+        }
+        else
+        {
+            getFileHandler().copyDirectory(source, target);
+        }
+    }
+
+    /**
+     * {@inheritDoc}. If the {@link GeneralPropertySet#FINGERPRINT} property is set to
+     * <code>true</code>, the configuration is up to date when the Cargo timestamp file exists and
+     * the fingerprint stored next to it when the configuration was last created matches the one
+     * {@link #computeFingerprint(LocalContainer) computed} now.
+     */
+    @Override
+    protected boolean isUpToDate(LocalContainer container)
+    {
+        this.fingerprint = null;
+        if (!Boolean.valueOf(getPropertyValue(GeneralPropertySet.FINGERPRINT)).booleanValue())
+        {
+            return false;
+        }
+
+        this.fingerprint = computeFingerprint(container);
+        String fingerprintFile = getFileHandler().append(getHome(), FINGERPRINT_FILE);
+        if (getFileHandler().exists(fingerprintFile))
+        {
+            if (getFileHandler().exists(getFileHandler().append(getHome(), TIMESTAMP_FILE))
+                && this.fingerprint.equals(
+                    getFileHandler().readTextFile(fingerprintFile, FINGERPRINT_ENCODING).trim()))
+            {
+                return true;
+            }
+
+            // Make sure a configuration that fails to be created is never seen as up to date
+            getFileHandler().delete(fingerprintFile);
+            getLogger().debug("Configuration fingerprint changed to " + this.fingerprint,
+                this.getClass().getName());
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}. Stores the configuration fingerprint next to the Cargo timestamp file if the
+     * {@link GeneralPropertySet#FINGERPRINT} property is set to <code>true</code>.
+     */
+    @Override
+    protected void markUpToDate(LocalContainer container)
+    {
+        if (this.fingerprint != null)
+        {
+            getFileHandler().writeTextFile(getFileHandler().append(getHome(), FINGERPRINT_FILE),
+                this.fingerprint, FINGERPRINT_ENCODING);
+            this.fingerprint = null;
+        }
+    }
+
+    /**
+     * Computes the fingerprint of everything this configuration is created from, deployables
+     * included.
+     * 
+     * @param container the container to configure.
+     * @return the fingerprint, in hexadecimal form.
+     * @see #computeFingerprint(LocalContainer, boolean)
+     */
+    protected String computeFingerprint(LocalContainer container)
+    {
+        return computeFingerprint(container, true);
+    }
+
+    /**
+     * Computes the fingerprint of everything this configuration is created from: the container,
+     * the configuration properties, the deployables, the configuration files, the XML
+     * replacements, the datasources and the resources. Files and directories are represented by
+     * the size and modification time of the files they are made of, not by their contents.
+     * Subclasses creating their configuration from other inputs should override this method and
+     * combine its result with these inputs.
+     * 
+     * @param container the container to configure.
+     * @param includeDeployables <code>false</code> to leave the deployables out of the
+     * fingerprint, for example to find out whether a running container can be reused by only
+     * redeploying its deployables.
+     * @return the fingerprint, in hexadecimal form.
+     */
+    public String computeFingerprint(LocalContainer container, boolean includeDeployables)
+    {
+        ConfigurationFingerprint fingerprint = new ConfigurationFingerprint();
+        fingerprint.add("configuration", this.getClass().getName());
+        fingerprint.addContainer(container);
+        fingerprint.addProperties(this);
+        if (includeDeployables)
+        {
+            fingerprint.addDeployables(getDeployables());
+        }
+        fingerprint.addFileConfigs(getFileProperties());
+        fingerprint.addXmlReplacements(this.xmlReplacements);
+        fingerprint.addDataSources(getDataSources());
+        fingerprint.addResources(getResources());
+        return fingerprint.getValue();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -44,6 +44,8 @@ public abstract class AbstractStandaloneLocalConfigurationCapability
 
         this.defaultSupportsMap.put(GeneralPropertySet.IGNORE_NON_EXISTING_PROPERTIES,
             Boolean.TRUE);
+        this.defaultSupportsMap.put(GeneralPropertySet.HARD_LINKS, Boolean.TRUE);
+        this.defaultSupportsMap.put(GeneralPropertySet.FINGERPRINT, Boolean.TRUE);
 
         this.defaultSupportsMap.put(ServletPropertySet.USERS, Boolean.TRUE);
     }
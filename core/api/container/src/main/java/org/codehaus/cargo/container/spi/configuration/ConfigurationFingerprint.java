@@ -0,0 +1,281 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.configuration;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.InstalledLocalContainer;
+import org.codehaus.cargo.container.LocalContainer;
+import org.codehaus.cargo.container.configuration.Configuration;
+import org.codehaus.cargo.container.configuration.FileConfig;
+import org.codehaus.cargo.container.configuration.entry.DataSource;
+import org.codehaus.cargo.container.configuration.entry.Resource;
+import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.deployable.WAR;
+import org.codehaus.cargo.util.FileHandler.XmlReplacementDetails;
+
+/**
+ * SHA-1 fingerprint of the inputs a standalone local configuration is created from. Files and
+ * directories are represented by the size and modification time of the files they are made of,
+ * not by their contents.
+ * 
+ * @see AbstractStandaloneLocalConfiguration#computeFingerprint(LocalContainer, boolean)
+ */
+final class ConfigurationFingerprint
+{
+    /**
+     * Encoding of the fingerprinted values.
+     */
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * Digest the values are added to.
+     */
+    private MessageDigest digest;
+
+    /**
+     * Creates an empty fingerprint.
+     */
+    ConfigurationFingerprint()
+    {
+        try
+        {
+            this.digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new ContainerException("Cannot compute the configuration fingerprint", e);
+        }
+    }
+
+    /**
+     * Adds a named value to the fingerprint.
+     * 
+     * @param name the name of the value.
+     * @param value the value, may be <code>null</code>.
+     */
+    void add(String name, Object value)
+    {
+        try
+        {
+            this.digest.update((name + '=' + value + '\n').getBytes(ENCODING));
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new ContainerException("Cannot compute the configuration fingerprint", e);
+        }
+    }
+
+    /**
+     * Adds a file or a directory to the fingerprint, using the size and modification time of the
+     * files. Paths that are not local files only contribute their path.
+     * 
+     * @param path the file or directory, may be <code>null</code>.
+     */
+    void addFile(String path)
+    {
+        add("file", path);
+        if (path != null)
+        {
+            addFile(new File(path));
+        }
+    }
+
+    /**
+     * Adds a local file or directory, and recursively its children in name order.
+     * 
+     * @param file the file or directory.
+     */
+    private void addFile(File file)
+    {
+        if (file.isDirectory())
+        {
+            add("directory", file.getPath());
+            String[] children = file.list();
+            if (children != null)
+            {
+                Arrays.sort(children);
+                for (String child : children)
+                {
+                    addFile(new File(file, child));
+                }
+            }
+        }
+        else if (file.isFile())
+        {
+            add(file.getPath(), file.length() + "@" + file.lastModified());
+        }
+    }
+
+    /**
+     * Adds the identity of a container to the fingerprint.
+     * 
+     * @param container the container.
+     */
+    void addContainer(LocalContainer container)
+    {
+        add("container", container.getId());
+        add("containerName", container.getName());
+        if (container instanceof InstalledLocalContainer)
+        {
+            add("containerHome", ((InstalledLocalContainer) container).getHome());
+        }
+    }
+
+    /**
+     * Adds the properties of a configuration to the fingerprint, in name order.
+     * 
+     * @param configuration the configuration.
+     */
+    void addProperties(Configuration configuration)
+    {
+        for (String name : new TreeSet<String>(configuration.getProperties().keySet()))
+        {
+            add(name, configuration.getPropertyValue(name));
+        }
+    }
+
+    /**
+     * Adds deployables, their files or directories included, to the fingerprint.
+     * 
+     * @param deployables the deployables.
+     */
+    void addDeployables(List<Deployable> deployables)
+    {
+        for (Deployable deployable : deployables)
+        {
+            addDeployable(deployable);
+        }
+    }
+
+    /**
+     * Adds a deployable, its file or directory included, to the fingerprint.
+     * 
+     * @param deployable the deployable.
+     */
+    private void addDeployable(Deployable deployable)
+    {
+        add("deployable", deployable.getClass().getName());
+        add("deployableType", deployable.getType());
+        add("deployableExpanded", deployable.isExpanded());
+        if (deployable instanceof WAR)
+        {
+            add("context", ((WAR) deployable).getContext());
+            add("extraClasspath", Arrays.asList(((WAR) deployable).getExtraClasspath()));
+        }
+        addFile(deployable.getFile());
+    }
+
+    /**
+     * Adds configuration files, their source files included, to the fingerprint.
+     * 
+     * @param fileConfigs the configuration files.
+     */
+    void addFileConfigs(List<FileConfig> fileConfigs)
+    {
+        for (FileConfig fileConfig : fileConfigs)
+        {
+            add("toDir", fileConfig.getToDir());
+            add("toFile", fileConfig.getToFile());
+            add("overwrite", fileConfig.getOverwrite());
+            add("configfile", fileConfig.getConfigfile());
+            add("encoding", fileConfig.getEncoding());
+            addFile(fileConfig.getFile());
+        }
+    }
+
+    /**
+     * Adds XML replacements to the fingerprint, independently of the order of the maps.
+     * 
+     * @param xmlReplacements the XML replacements, by file name.
+     */
+    void addXmlReplacements(Map<String, Map<XmlReplacementDetails, String>> xmlReplacements)
+    {
+        Set<String> entries = new TreeSet<String>();
+        for (Map.Entry<String, Map<XmlReplacementDetails, String>> fileReplacements
+            : xmlReplacements.entrySet())
+        {
+            for (Map.Entry<XmlReplacementDetails, String> replacement
+                : fileReplacements.getValue().entrySet())
+            {
+                entries.add(fileReplacements.getKey() + '|'
+                    + replacement.getKey().getXpathExpression() + '|'
+                    + replacement.getKey().getAttributeName() + '|'
+                    + replacement.getKey().isIgnoreIfNonExisting() + '|'
+                    + replacement.getValue());
+            }
+        }
+        add("xmlReplacements", entries);
+    }
+
+    /**
+     * Adds datasources to the fingerprint.
+     * 
+     * @param dataSources the datasources.
+     */
+    void addDataSources(List<DataSource> dataSources)
+    {
+        for (DataSource dataSource : dataSources)
+        {
+            add("dataSource", Arrays.asList(dataSource.getId(), dataSource.getJndiLocation(),
+                dataSource.getConnectionType(), dataSource.getTransactionSupport(),
+                dataSource.getDriverClass(), dataSource.getUrl(), dataSource.getUsername(),
+                dataSource.getPassword(),
+                new TreeMap<Object, Object>(dataSource.getConnectionProperties())));
+        }
+    }
+
+    /**
+     * Adds resources to the fingerprint.
+     * 
+     * @param resources the resources.
+     */
+    void addResources(List<Resource> resources)
+    {
+        for (Resource resource : resources)
+        {
+            add("resource", Arrays.asList(resource.getName(), resource.getType(),
+                resource.getClassName(), new TreeMap<String, String>(resource.getParameters())));
+        }
+    }
+
+    /**
+     * @return the fingerprint, in hexadecimal form. The fingerprint cannot be added to anymore.
+     */
+    String getValue()
+    {
+        StringBuilder value = new StringBuilder();
+        for (byte b : this.digest.digest())
+        {
+            value.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+        }
+        return value.toString();
+    }
+}
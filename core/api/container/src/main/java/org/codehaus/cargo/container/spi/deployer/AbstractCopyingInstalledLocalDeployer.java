@@ -25,6 +25,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.container.LocalContainer;
@@ -33,7 +34,10 @@ import org.codehaus.cargo.container.deployable.DeployableType;
 import org.codehaus.cargo.container.deployable.EAR;
 import org.codehaus.cargo.container.deployable.RAR;
 import org.codehaus.cargo.container.deployable.WAR;
+import org.codehaus.cargo.container.lifecycle.LifecycleEvent;
+import org.codehaus.cargo.container.spi.AbstractLocalContainer;
 import org.codehaus.cargo.util.CargoException;
+import org.codehaus.cargo.util.internal.ParallelTasks;
 
 /**
  * Local deployer that deploys deployables to a <code>deployable</code> directory of the given
@@ -45,6 +49,13 @@ import org.codehaus.cargo.util.CargoException;
 public abstract class AbstractCopyingInstalledLocalDeployer extends
     AbstractInstalledLocalDeployer
 {
+    /**
+     * Maximum number of deployables copied at the same time by the deployers which can copy
+     * concurrently. Copies mostly wait for the file system, so this does not depend on the number
+     * of processors.
+     */
+    protected static final int CONCURRENT_DEPLOYMENTS = 4;
+
     /**
      * Contains those DeployableTypes that should not be deployed expanded. Default is to allow
      * expanded deployment and the exceptions to that rule are set here.
@@ -56,6 +67,12 @@ public abstract class AbstractCopyingInstalledLocalDeployer extends
      */
     private List<Deployable> deployedDeployables;
 
+    /**
+     * Whether the deployable being deployed by the current thread is redeployed, in which case
+     * expanded deployables are synchronized rather than copied.
+     */
+    private final ThreadLocal<Boolean> redeploying = new ThreadLocal<Boolean>();
+
     /**
      * {@inheritDoc}
      * 
@@ -106,25 +123,270 @@ public abstract class AbstractCopyingInstalledLocalDeployer extends
      * @see org.codehaus.cargo.container.deployer.Deployer#deploy(Deployable)
      */
     @Override
-    public synchronized void deploy(Deployable deployable)
+    public void deploy(Deployable deployable)
+    {
+        deployAll(Collections.singletonList(deployable), false);
+    }
+
+    /**
+     * {@inheritDoc}. The deployables are all checked before any of them is copied, then copied
+     * up to {@link #getConcurrentDeployments()} at a time.
+     * 
+     * @see org.codehaus.cargo.container.deployer.BatchDeployer#deploy(List)
+     */
+    @Override
+    public void deploy(List<Deployable> deployables)
+    {
+        deployAll(deployables, false);
+    }
+
+    /**
+     * {@inheritDoc}. Expanded deployables are redeployed incrementally when the file handler is
+     * an {@link org.codehaus.cargo.util.ExtendedFileHandler}: instead of being copied again, only
+     * the files which have changed since the last deployment are copied and the files which have
+     * been removed are deleted. The deployed directory is synchronized in place when staging is
+     * disabled and the deployer does not override {@link #undeploy(Deployable)}. Otherwise, a
+     * hard linked clone of the deployed directory is synchronized at the staging location, then
+     * the deployable is undeployed and the clone moved to its target.
+     * 
+     * @see org.codehaus.cargo.container.deployer.Deployer#redeploy(Deployable)
+     */
+    @Override
+    public void redeploy(Deployable deployable)
+    {
+        redeploy(Collections.singletonList(deployable));
+    }
+
+    /**
+     * {@inheritDoc}. The deployables which are not redeployed incrementally are undeployed first,
+     * then all deployables are copied up to {@link #getConcurrentDeployments()} at a time.
+     * 
+     * @see #redeploy(Deployable)
+     */
+    @Override
+    public void redeploy(List<Deployable> deployables)
+    {
+        for (Deployable deployable : deployables)
+        {
+            if (!isSynchronized(deployable))
+            {
+                undeployForRedeploy(deployable);
+            }
+        }
+        synchronized (this.deployedDeployables)
+        {
+            this.deployedDeployables.removeAll(deployables);
+        }
+        deployAll(deployables, true);
+    }
+
+    /**
+     * Undeploys a deployable as the first phase of its redeployment, which goes on if the
+     * undeployment fails.
+     * 
+     * @param deployable the deployable.
+     */
+    private void undeployForRedeploy(Deployable deployable)
+    {
+        try
+        {
+            undeploy(deployable);
+        }
+        catch (Throwable t)
+        {
+            getLogger().info("The undeployment phase of the redeploy action has failed: "
+                + t.toString(), this.getClass().getName());
+        }
+    }
+
+    /**
+     * @param deployable a deployable.
+     * @return <code>true</code> if the deployable is redeployed incrementally, by synchronizing
+     * its deployed directory rather than copying it again. Its undeployment is then part of
+     * {@link #doDeploy(String, Deployable)}.
+     */
+    private boolean isSynchronized(Deployable deployable)
+    {
+        return deployable.isExpanded() && shouldDeployExpanded(deployable.getType())
+            && getCopier().canSynchronize();
+    }
+
+    /**
+     * @return the copier of the deployables, which uses the file handler and the configuration of
+     * this deployer.
+     */
+    private DeployableCopier getCopier()
+    {
+        DeployableCopier copier =
+            new DeployableCopier(getFileHandler(), getContainer().getConfiguration());
+        copier.setLogger(getLogger());
+        return copier;
+    }
+
+    /**
+     * @return the maximum number of deployables copied at the same time by {@link #deploy(List)}
+     * and {@link #redeploy(List)}. The copy of this class can run concurrently, hence deployers
+     * which do not override {@link #doDeploy(String, Deployable)} copy up to
+     * {@link #CONCURRENT_DEPLOYMENTS} deployables at a time. Overrides of
+     * {@link #doDeploy(String, Deployable)} are not required to be thread safe, so the other
+     * deployers copy the deployables one after the other unless they override this method.
+     */
+    protected int getConcurrentDeployments()
     {
-        if (!canBeDeployed(deployable))
+        if (isOverridden("doDeploy", String.class, Deployable.class))
         {
-            throw new ContainerException("Failed to deploy [" + deployable.getFile() + "] to ["
-                + getDeployableDir(deployable) + "]. The required web context is already in use"
-                + " by another application.");
+            return 1;
         }
+        return CONCURRENT_DEPLOYMENTS;
+    }
 
-        // Check that the container supports the deployable type to deploy
-        if (!getContainer().getCapability().supportsDeployableType(deployable.getType()))
+    /**
+     * @param name the name of a method of this class or of its superclasses.
+     * @param parameterTypes the parameter types of the method.
+     * @return <code>true</code> if a subclass of this class overrides the method.
+     */
+    private boolean isOverridden(String name, Class<?>... parameterTypes)
+    {
+        for (Class<?> deployerClass = getClass();
+            deployerClass != AbstractCopyingInstalledLocalDeployer.class;
+            deployerClass = deployerClass.getSuperclass())
         {
-            throw new ContainerException(deployable.getType().getType().toUpperCase()
-                + " archives are not supported for deployment in [" + getContainer().getId()
-                + "]. Got [" + deployable.getFile() + "]");
+            try
+            {
+                deployerClass.getDeclaredMethod(name, parameterTypes);
+                return true;
+            }
+            catch (NoSuchMethodException e)
+            {
+                // Not overridden by this class
+            }
         }
+        return false;
+    }
 
-        String deployableDir = getDeployableDir(deployable);
+    /**
+     * Deploys deployables: checks them all and registers them as deployed, then copies them up to
+     * {@link #getConcurrentDeployments()} at a time. The deployables which fail to be copied are
+     * registered as not deployed.
+     * 
+     * @param deployables the deployables.
+     * @param redeploy whether the deployables are redeployed, in which case the expanded ones are
+     * synchronized rather than copied.
+     */
+    private void deployAll(List<Deployable> deployables, final boolean redeploy)
+    {
+        checkCanBeDeployed(deployables);
 
+        final List<Deployable> copied =
+            Collections.synchronizedList(new ArrayList<Deployable>(deployables.size()));
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(deployables.size());
+        for (final Deployable deployable : deployables)
+        {
+            tasks.add(new Callable<Object>()
+            {
+                public Object call()
+                {
+                    copyDeployable(deployable, redeploy);
+                    copied.add(deployable);
+                    return null;
+                }
+            });
+        }
+
+        boolean succeeded = false;
+        try
+        {
+            ParallelTasks.execute(tasks, getConcurrentDeployments(), "Deployment");
+            succeeded = true;
+        }
+        catch (CargoException e)
+        {
+            if (e.getCause() instanceof CargoException)
+            {
+                throw (CargoException) e.getCause();
+            }
+            throw e;
+        }
+        catch (Exception e)
+        {
+            // The copies throw no checked exception, this is the IOException of ParallelTasks
+            throw new ContainerException("Failed to deploy " + deployables, e);
+        }
+        finally
+        {
+            if (!succeeded)
+            {
+                synchronized (this.deployedDeployables)
+                {
+                    for (Deployable deployable : deployables)
+                    {
+                        if (!copied.contains(deployable))
+                        {
+                            this.deployedDeployables.remove(deployable);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that deployables can be deployed, and registers them as deployed. Each deployable is
+     * checked against the deployed ones with {@link #canBeDeployed(Deployable)}, and the
+     * deployables must not use the same web context either.
+     * 
+     * @param deployables the deployables.
+     */
+    private void checkCanBeDeployed(List<Deployable> deployables)
+    {
+        synchronized (this.deployedDeployables)
+        {
+            Set<String> batchWebContexts = new HashSet<String>();
+            for (Deployable deployable : deployables)
+            {
+                boolean webContextInUse = !canBeDeployed(deployable);
+                for (String webContext : getWebContexts(deployable))
+                {
+                    webContextInUse |= !batchWebContexts.add(webContext);
+                }
+                if (webContextInUse)
+                {
+                    throw new ContainerException("Failed to deploy [" + deployable.getFile()
+                        + "] to [" + getDeployableDir(deployable) + "]. The required web "
+                        + "context is already in use by another application.");
+                }
+
+                // Check that the container supports the deployable type to deploy
+                if (!getContainer().getCapability().supportsDeployableType(deployable.getType()))
+                {
+                    throw new ContainerException(deployable.getType().getType().toUpperCase()
+                        + " archives are not supported for deployment in ["
+                        + getContainer().getId() + "]. Got [" + deployable.getFile() + "]");
+                }
+            }
+
+            this.deployedDeployables.addAll(deployables);
+        }
+    }
+
+    /**
+     * Copies a deployable to its deployable directory.
+     * 
+     * @param deployable the deployable.
+     * @param redeploy whether the deployable is redeployed.
+     */
+    private void copyDeployable(Deployable deployable, boolean redeploy)
+    {
+        LifecycleEvent phase = null;
+        if (getContainer() instanceof AbstractLocalContainer)
+        {
+            phase = ((AbstractLocalContainer) getContainer()).beginLifecyclePhase(
+                LifecycleEvent.DEPLOY, deployable);
+        }
+
+        String deployableDir = getDeployableDir(deployable);
+        this.redeploying.set(Boolean.valueOf(redeploy));
+        Throwable failure = null;
         try
         {
             if (deployable.isExpanded())
@@ -144,18 +406,32 @@ public abstract class AbstractCopyingInstalledLocalDeployer extends
 
             doDeploy(deployableDir, deployable);
         }
+        catch (Error e)
+        {
+            failure = e;
+            throw e;
+        }
         catch (Exception e)
         {
-            throw new ContainerException("Failed to deploy [" + deployable.getFile() + "] to ["
-                + deployableDir + "]", e);
+            ContainerException exception = new ContainerException("Failed to deploy ["
+                + deployable.getFile() + "] to [" + deployableDir + "]", e);
+            failure = exception;
+            throw exception;
+        }
+        finally
+        {
+            this.redeploying.remove();
+            if (phase != null)
+            {
+                ((AbstractLocalContainer) getContainer()).endLifecyclePhase(phase, failure);
+            }
         }
-
-        this.deployedDeployables.add(deployable);
     }
 
     /**
      * Checks whether the given Deployable can actually be deployed and whether a deployable has a
-     * web context path that already exist in another previously deployed Deployable.
+     * web context path that already exist in another previously deployed Deployable. Called for
+     * each deployable to deploy, with the lock of the deployed deployables held.
      * 
      * @param newDeployable deployable
      * @return true, if the deployable can be deployed
@@ -163,13 +439,16 @@ public abstract class AbstractCopyingInstalledLocalDeployer extends
     protected boolean canBeDeployed(Deployable newDeployable)
     {
         final Set<String> newDeployableContextSet = getWebContextsSet(newDeployable);
-        for (Deployable deployedDeployable : this.deployedDeployables)
+        synchronized (this.deployedDeployables)
         {
-            for (String webContext : getWebContexts(deployedDeployable))
+            for (Deployable deployedDeployable : this.deployedDeployables)
             {
-                if (newDeployableContextSet.contains(webContext))
+                for (String webContext : getWebContexts(deployedDeployable))
                 {
-                    return false;
+                    if (newDeployableContextSet.contains(webContext))
+                    {
+                        return false;
+                    }
                 }
             }
         }
@@ -252,7 +531,14 @@ public abstract class AbstractCopyingInstalledLocalDeployer extends
                 getFileHandler().delete(target);
             }
 
-            getFileHandler().copyDirectory(deployable.getFile(), target);
+            if (Boolean.TRUE.equals(this.redeploying.get()) && isSynchronized(deployable))
+            {
+                synchronize(deployable, deployableDir, target);
+            }
+            else
+            {
+                getCopier().copy(deployable, deployableDir, target);
+            }
         }
         else
         {
@@ -263,7 +549,41 @@ public abstract class AbstractCopyingInstalledLocalDeployer extends
                 getFileHandler().delete(target);
             }
 
-            getFileHandler().copyFile(deployable.getFile(), target, true);
+            getCopier().copy(deployable, deployableDir, target);
+        }
+    }
+
+    /**
+     * Redeploys an expanded deployable by synchronizing its deployed directory, see
+     * {@link #redeploy(Deployable)}. If the deployable has not been deployed as a directory, it is
+     * undeployed and copied instead.
+     * 
+     * @param deployable Expanded deployable to redeploy.
+     * @param deployableDir Directory in which to deploy.
+     * @param target Deployed directory.
+     */
+    private void synchronize(Deployable deployable, String deployableDir, String target)
+    {
+        DeployableCopier copier = getCopier();
+        boolean inPlace = !copier.isStaging() && !isOverridden("undeploy", Deployable.class);
+        if (!getFileHandler().isDirectory(target))
+        {
+            if (!inPlace)
+            {
+                undeployForRedeploy(deployable);
+            }
+            copier.copy(deployable, deployableDir, target);
+        }
+        else if (inPlace)
+        {
+            copier.synchronize(deployable.getFile(), target);
+        }
+        else
+        {
+            String staged = copier.getStagingLocation(deployableDir, target);
+            copier.synchronizeClone(deployable.getFile(), target, staged);
+            undeployForRedeploy(deployable);
+            copier.move(staged, target);
         }
     }
 
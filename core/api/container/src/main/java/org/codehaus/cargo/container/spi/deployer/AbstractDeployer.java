@@ -27,8 +27,8 @@ import java.util.List;
 import org.codehaus.cargo.container.Container;
 import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.deployer.BatchDeployer;
 import org.codehaus.cargo.container.deployer.DeployableMonitor;
-import org.codehaus.cargo.container.deployer.Deployer;
 import org.codehaus.cargo.util.log.LogLevel;
 import org.codehaus.cargo.util.log.LoggedObject;
 
@@ -36,7 +36,7 @@ import org.codehaus.cargo.util.log.LoggedObject;
  * Base deployer for local and remote deployments.
  * 
  */
-public abstract class AbstractDeployer extends LoggedObject implements Deployer
+public abstract class AbstractDeployer extends LoggedObject implements BatchDeployer
 {
     /**
      * @param container the container into which to perform deployment operations
@@ -60,7 +60,35 @@ public abstract class AbstractDeployer extends LoggedObject implements Deployer
 
     /**
      * {@inheritDoc}
-     * @see Deployer#deploy(Deployable, DeployableMonitor)
+     * @see #deploy(List)
+     */
+    public void deploy(List<Deployable> deployables, List<DeployableMonitor> monitors)
+    {
+        checkMonitors(deployables, monitors);
+        if (monitors.contains(null))
+        {
+            // No watchdog can tell whether all deployables are deployed, let failures through
+            deploy(deployables);
+        }
+        else
+        {
+            try
+            {
+                deploy(deployables);
+            }
+            catch (Throwable t)
+            {
+                // CARGO-1100: Let the watchdogs tell whether the deployment is complete
+                logFailure("The deployment of the deployables has failed: ", t);
+            }
+        }
+
+        watchForAvailability(monitors);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see org.codehaus.cargo.container.deployer.Deployer#deploy(Deployable, DeployableMonitor)
      */
     public void deploy(Deployable deployable, DeployableMonitor monitor)
     {
@@ -73,14 +101,7 @@ public abstract class AbstractDeployer extends LoggedObject implements Deployer
             // CARGO-1100: When the deployment action has failed, log the failure and then wait for
             // the watchdog to return. If deployment was indeed complete, the watchdog will detect
             // it; else it will make the method fail.
-            getLogger().info("The deployment has failed: " + t.toString(),
-                this.getClass().getName());
-            if (getLogger().getLevel() == LogLevel.DEBUG)
-            {
-                Writer stackTrace = new StringWriter();
-                t.printStackTrace(new PrintWriter(stackTrace));
-                getLogger().debug(stackTrace.toString(), this.getClass().getName());
-            }
+            logFailure("The deployment has failed: ", t);
         }
 
         // Wait for the Deployable to be deployed
@@ -91,7 +112,7 @@ public abstract class AbstractDeployer extends LoggedObject implements Deployer
 
     /**
      * {@inheritDoc}
-     * @see Deployer#undeploy(Deployable, DeployableMonitor)
+     * @see org.codehaus.cargo.container.deployer.Deployer#undeploy(Deployable, DeployableMonitor)
      */
     public void undeploy(Deployable deployable, DeployableMonitor monitor)
     {
@@ -104,14 +125,7 @@ public abstract class AbstractDeployer extends LoggedObject implements Deployer
             // CARGO-1100: When the undeployment action has failed, log the failure and then wait
             // for the watchdog to return. If undeployment was indeed complete, the watchdog will
             // detect it; else it will make the method fail.
-            getLogger().info("The undeployment has failed: " + t.toString(),
-                this.getClass().getName());
-            if (getLogger().getLevel() == LogLevel.DEBUG)
-            {
-                Writer stackTrace = new StringWriter();
-                t.printStackTrace(new PrintWriter(stackTrace));
-                getLogger().debug(stackTrace.toString(), this.getClass().getName());
-            }
+            logFailure("The undeployment has failed: ", t);
         }
 
         // Wait for the Deployable to be undeployed
@@ -134,7 +148,34 @@ public abstract class AbstractDeployer extends LoggedObject implements Deployer
 
     /**
      * {@inheritDoc}
-     * @see Deployer#redeploy(Deployable, DeployableMonitor)
+     * @see #redeploy(List)
+     */
+    public void redeploy(List<Deployable> deployables, List<DeployableMonitor> monitors)
+    {
+        checkMonitors(deployables, monitors);
+        if (monitors.contains(null))
+        {
+            // No watchdog can tell whether all deployables are redeployed, let failures through
+            redeploy(deployables);
+        }
+        else
+        {
+            try
+            {
+                redeploy(deployables);
+            }
+            catch (Throwable t)
+            {
+                logFailure("The redeployment of the deployables has failed: ", t);
+            }
+        }
+
+        watchForAvailability(monitors);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see org.codehaus.cargo.container.deployer.Deployer#redeploy(Deployable, DeployableMonitor)
      */
     public void redeploy(Deployable deployable, DeployableMonitor monitor)
     {
@@ -144,14 +185,7 @@ public abstract class AbstractDeployer extends LoggedObject implements Deployer
         }
         catch (Throwable t)
         {
-            getLogger().info("The undeployment phase of the redeploy action has failed: "
-                + t.toString(), this.getClass().getName());
-            if (getLogger().getLevel() == LogLevel.DEBUG)
-            {
-                Writer stackTrace = new StringWriter();
-                t.printStackTrace(new PrintWriter(stackTrace));
-                getLogger().debug(stackTrace.toString(), this.getClass().getName());
-            }
+            logFailure("The undeployment phase of the redeploy action has failed: ", t);
         }
 
         // Wait for the Deployable to be undeployed
@@ -164,7 +198,7 @@ public abstract class AbstractDeployer extends LoggedObject implements Deployer
 
     /**
      * {@inheritDoc}
-     * @see Deployer#start(Deployable, DeployableMonitor)
+     * @see org.codehaus.cargo.container.deployer.Deployer#start(Deployable, DeployableMonitor)
      */
     public void start(Deployable deployable, DeployableMonitor monitor)
     {
@@ -178,7 +212,7 @@ public abstract class AbstractDeployer extends LoggedObject implements Deployer
 
     /**
      * {@inheritDoc}
-     * @see Deployer#stop(Deployable, DeployableMonitor)
+     * @see org.codehaus.cargo.container.deployer.Deployer#stop(Deployable, DeployableMonitor)
      */
     public void stop(Deployable deployable, DeployableMonitor monitor)
     {
@@ -192,7 +226,7 @@ public abstract class AbstractDeployer extends LoggedObject implements Deployer
 
     /**
      * {@inheritDoc}
-     * @see Deployer#deploy(Deployable)
+     * @see org.codehaus.cargo.container.deployer.Deployer#deploy(Deployable)
      */
     public void deploy(Deployable deployable)
     {
@@ -201,7 +235,7 @@ public abstract class AbstractDeployer extends LoggedObject implements Deployer
 
     /**
      * {@inheritDoc}
-     * @see Deployer#start(org.codehaus.cargo.container.deployable.Deployable)
+     * @see org.codehaus.cargo.container.deployer.Deployer#start(org.codehaus.cargo.container.deployable.Deployable)
      */
     public void start(Deployable deployable)
     {
@@ -210,7 +244,7 @@ public abstract class AbstractDeployer extends LoggedObject implements Deployer
 
     /**
      * {@inheritDoc}
-     * @see Deployer#stop(org.codehaus.cargo.container.deployable.Deployable)
+     * @see org.codehaus.cargo.container.deployer.Deployer#stop(org.codehaus.cargo.container.deployable.Deployable)
      */
     public void stop(Deployable deployable)
     {
@@ -219,7 +253,7 @@ public abstract class AbstractDeployer extends LoggedObject implements Deployer
 
     /**
      * {@inheritDoc}
-     * @see Deployer#undeploy(org.codehaus.cargo.container.deployable.Deployable)
+     * @see org.codehaus.cargo.container.deployer.Deployer#undeploy(org.codehaus.cargo.container.deployable.Deployable)
      */
     public void undeploy(Deployable deployable)
     {
@@ -228,7 +262,7 @@ public abstract class AbstractDeployer extends LoggedObject implements Deployer
 
     /**
      * {@inheritDoc}
-     * @see Deployer#redeploy(Deployable)
+     * @see org.codehaus.cargo.container.deployer.Deployer#redeploy(Deployable)
      */
     public void redeploy(Deployable deployable)
     {
@@ -244,4 +278,55 @@ public abstract class AbstractDeployer extends LoggedObject implements Deployer
 
         deploy(deployable);
     }
+
+    /**
+     * Checks that there is a monitor, possibly <code>null</code>, for each deployable.
+     * 
+     * @param deployables the deployables.
+     * @param monitors the monitors of the deployables.
+     */
+    private void checkMonitors(List<Deployable> deployables, List<DeployableMonitor> monitors)
+    {
+        if (monitors.size() != deployables.size())
+        {
+            throw new ContainerException("Got " + monitors.size() + " monitors for "
+                + deployables.size() + " deployables");
+        }
+    }
+
+    /**
+     * Waits for deployables to be available, all of them concurrently.
+     * 
+     * @param monitors the monitors of the deployables, <code>null</code> monitors are ignored.
+     */
+    private void watchForAvailability(List<DeployableMonitor> monitors)
+    {
+        DeployerWatchdogGroup watchdog = new DeployerWatchdogGroup();
+        watchdog.setLogger(getLogger());
+        for (DeployableMonitor monitor : monitors)
+        {
+            if (monitor != null)
+            {
+                watchdog.addMonitor(monitor);
+            }
+        }
+        watchdog.watchForAvailability();
+    }
+
+    /**
+     * Logs the failure of a deployment action, with its stack trace at debug level.
+     * 
+     * @param message the message describing the failed action.
+     * @param t the failure.
+     */
+    private void logFailure(String message, Throwable t)
+    {
+        getLogger().info(message + t.toString(), this.getClass().getName());
+        if (getLogger().getLevel() == LogLevel.DEBUG)
+        {
+            Writer stackTrace = new StringWriter();
+            t.printStackTrace(new PrintWriter(stackTrace));
+            getLogger().debug(stackTrace.toString(), this.getClass().getName());
+        }
+    }
 }
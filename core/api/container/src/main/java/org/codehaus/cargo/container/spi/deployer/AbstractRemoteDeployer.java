@@ -19,8 +19,17 @@
  */
 package org.codehaus.cargo.container.spi.deployer;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
 import org.codehaus.cargo.container.Container;
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.deployable.Deployable;
 import org.codehaus.cargo.container.deployer.DeployerType;
+import org.codehaus.cargo.util.CargoException;
+import org.codehaus.cargo.util.internal.ParallelTasks;
 
 /**
  * Base deployer to deploy to containers without any reference to where the container is installed
@@ -45,4 +54,82 @@ public abstract class AbstractRemoteDeployer extends AbstractDeployer
     {
         return DeployerType.REMOTE;
     }
+
+    /**
+     * {@inheritDoc}. The uploads are pipelined: up to {@link #getConcurrentDeployments()}
+     * deployables are deployed at the same time.
+     */
+    @Override
+    public void deploy(List<Deployable> deployables)
+    {
+        executeConcurrently(deployables, false);
+    }
+
+    /**
+     * {@inheritDoc}. Up to {@link #getConcurrentDeployments()} deployables are redeployed at the
+     * same time.
+     */
+    @Override
+    public void redeploy(List<Deployable> deployables)
+    {
+        executeConcurrently(deployables, true);
+    }
+
+    /**
+     * @return the maximum number of deployables deployed at the same time by
+     * {@link #deploy(List)} and {@link #redeploy(List)}. Defaults to 1, that is to deploying the
+     * deployables one after the other; deployers whose remote API accepts concurrent deployments
+     * override it.
+     */
+    protected int getConcurrentDeployments()
+    {
+        return 1;
+    }
+
+    /**
+     * Deploys or redeploys deployables concurrently.
+     * 
+     * @param deployables the deployables.
+     * @param redeploy <code>true</code> to redeploy the deployables, <code>false</code> to deploy
+     * them.
+     */
+    private void executeConcurrently(List<Deployable> deployables, final boolean redeploy)
+    {
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(deployables.size());
+        for (final Deployable deployable : deployables)
+        {
+            tasks.add(new Callable<Object>()
+            {
+                public Object call()
+                {
+                    if (redeploy)
+                    {
+                        redeploy(deployable);
+                    }
+                    else
+                    {
+                        deploy(deployable);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        try
+        {
+            ParallelTasks.execute(tasks, getConcurrentDeployments(), "Remote deployment");
+        }
+        catch (IOException e)
+        {
+            throw new ContainerException("Failed to deploy " + deployables, e);
+        }
+        catch (CargoException e)
+        {
+            if (e.getCause() instanceof CargoException)
+            {
+                throw (CargoException) e.getCause();
+            }
+            throw e;
+        }
+    }
 }
@@ -0,0 +1,294 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.deployer;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.configuration.LocalConfiguration;
+import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.property.GeneralPropertySet;
+import org.codehaus.cargo.util.ExtendedFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+import org.codehaus.cargo.util.SyncSummary;
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Copies deployables to their target for {@link AbstractCopyingInstalledLocalDeployer}, staging
+ * them and hard linking archives when the configuration asks for it. Staging, hard links and
+ * synchronizations require an {@link ExtendedFileHandler}.
+ * 
+ */
+final class DeployableCopier extends LoggedObject
+{
+    /**
+     * Prefix of the name of the staging copy of a deployable, when staging is enabled.
+     */
+    private static final String STAGING_PREFIX = ".cargo-staging-";
+
+    /**
+     * Directory of the snapshots of the archives deployed as hard links, created next to the
+     * configuration home.
+     */
+    private static final String SNAPSHOTS_DIRECTORY = ".cargo-deployables";
+
+    /**
+     * Maximum number of attempts to copy an archive to its snapshot while the archive is being
+     * rewritten.
+     */
+    private static final int SNAPSHOT_ATTEMPTS = 5;
+
+    /**
+     * File handler used to copy the deployables.
+     */
+    private final FileHandler fileHandler;
+
+    /**
+     * Configuration of the container the deployables are deployed to.
+     */
+    private final LocalConfiguration configuration;
+
+    /**
+     * @param fileHandler the file handler used to copy the deployables.
+     * @param configuration the configuration of the container the deployables are deployed to.
+     */
+    DeployableCopier(FileHandler fileHandler, LocalConfiguration configuration)
+    {
+        this.fileHandler = fileHandler;
+        this.configuration = configuration;
+    }
+
+    /**
+     * @return <code>true</code> if the file handler can synchronize directories, see
+     * {@link #synchronize(String, String)}.
+     */
+    boolean canSynchronize()
+    {
+        return this.fileHandler instanceof ExtendedFileHandler;
+    }
+
+    /**
+     * @return <code>true</code> if deployables are copied to a staging location then moved to
+     * their target, see {@link GeneralPropertySet#DEPLOYABLE_STAGING}.
+     */
+    boolean isStaging()
+    {
+        return Boolean.valueOf(this.configuration.getPropertyValue(
+            GeneralPropertySet.DEPLOYABLE_STAGING)).booleanValue() && canSynchronize();
+    }
+
+    /**
+     * Gets the staging location of a deployable, next to the deployable directory, and deletes
+     * what a failed deployment may have left there.
+     * 
+     * @param deployableDir Directory in which to deploy.
+     * @param target File or directory to deploy to.
+     * @return Staging location of the deployable.
+     */
+    String getStagingLocation(String deployableDir, String target)
+    {
+        String staged = this.fileHandler.append(this.fileHandler.getParent(deployableDir),
+            STAGING_PREFIX + this.fileHandler.getName(target));
+        if (this.fileHandler.exists(staged))
+        {
+            this.fileHandler.delete(staged);
+        }
+        return staged;
+    }
+
+    /**
+     * Copies a deployable to its target. If the {@link GeneralPropertySet#DEPLOYABLE_STAGING}
+     * property is set to <code>true</code>, the deployable is copied to a staging location next
+     * to the deployable directory, on the same file system, then moved to its target so that it
+     * appears there complete, in a single step. If the
+     * {@link GeneralPropertySet#DEPLOYABLE_HARD_LINKS} property is set to <code>true</code>,
+     * archives are hard linked to a {@link #getArchiveSnapshot(String) snapshot} rather than
+     * copied when possible.
+     * 
+     * @param deployable Deployable to copy.
+     * @param deployableDir Directory in which to deploy.
+     * @param target File or directory to copy the deployable to.
+     */
+    void copy(Deployable deployable, String deployableDir, String target)
+    {
+        String destination = target;
+        boolean staging = isStaging();
+        if (staging)
+        {
+            destination = getStagingLocation(deployableDir, target);
+        }
+
+        if (deployable.isExpanded())
+        {
+            this.fileHandler.copyDirectory(deployable.getFile(), destination);
+        }
+        else if (Boolean.valueOf(this.configuration.getPropertyValue(
+            GeneralPropertySet.DEPLOYABLE_HARD_LINKS)).booleanValue() && canSynchronize())
+        {
+            ((ExtendedFileHandler) this.fileHandler).linkFile(
+                getArchiveSnapshot(deployable.getFile()), destination);
+        }
+        else
+        {
+            this.fileHandler.copyFile(deployable.getFile(), destination, true);
+        }
+
+        if (staging)
+        {
+            move(destination, target);
+        }
+    }
+
+    /**
+     * Synchronizes a deployed directory in place with the directory of an expanded deployable.
+     * 
+     * @param source Directory of the expanded deployable.
+     * @param target Deployed directory.
+     */
+    void synchronize(String source, String target)
+    {
+        SyncSummary summary = ((ExtendedFileHandler) this.fileHandler).syncDirectory(source,
+            target);
+        getLogger().info("Synchronized [" + target + "]: " + summary, this.getClass().getName());
+    }
+
+    /**
+     * Clones a deployed directory at its staging location with hard links, then synchronizes the
+     * clone with the directory of an expanded deployable. The files written by the
+     * synchronization break their links with the deployed ones, so the deployed directory is left
+     * untouched.
+     * 
+     * @param source Directory of the expanded deployable.
+     * @param target Deployed directory.
+     * @param staged Staging location of the deployed directory.
+     */
+    void synchronizeClone(String source, String target, String staged)
+    {
+        ExtendedFileHandler extendedFileHandler = (ExtendedFileHandler) this.fileHandler;
+        extendedFileHandler.linkDirectory(target, staged);
+        SyncSummary summary = extendedFileHandler.syncDirectory(source, staged);
+        getLogger().info("Synchronized [" + target + "] at [" + staged + "]: " + summary,
+            this.getClass().getName());
+    }
+
+    /**
+     * Moves a staged deployable to its target.
+     * 
+     * @param staged Staging location of the deployable.
+     * @param target File or directory to deploy to.
+     */
+    void move(String staged, String target)
+    {
+        ((ExtendedFileHandler) this.fileHandler).move(staged, target);
+    }
+
+    /**
+     * Gets the snapshot of an archive to hard link to. Linking to the archive itself would make
+     * the deployed archive the very file that builds rewrite in place, under the feet of the
+     * container and regardless of staging. A snapshot is therefore copied once per version of the
+     * archive, identified by its modification time and size, into a directory next to the
+     * configuration home; configurations created in the same directory share it. A new version of
+     * the archive gets a new snapshot, which breaks the links with the previous version, and the
+     * snapshots of previous versions are deleted.
+     * 
+     * @param archive Archive to deploy.
+     * @return Snapshot of the archive.
+     * @throws ContainerException If the archive keeps being rewritten while it is copied.
+     */
+    private String getArchiveSnapshot(String archive)
+    {
+        ExtendedFileHandler extendedFileHandler = (ExtendedFileHandler) this.fileHandler;
+        String snapshots = extendedFileHandler.append(extendedFileHandler.getParent(
+            this.configuration.getHome()), SNAPSHOTS_DIRECTORY);
+        String prefix = getSnapshotPrefix(extendedFileHandler.getAbsolutePath(archive));
+
+        for (int attempt = 0; attempt < SNAPSHOT_ATTEMPTS; attempt++)
+        {
+            String version = extendedFileHandler.getLastModified(archive) + "-"
+                + extendedFileHandler.getSize(archive);
+            String snapshotDir = extendedFileHandler.append(snapshots, prefix + version);
+            String snapshot =
+                extendedFileHandler.append(snapshotDir, extendedFileHandler.getName(archive));
+            if (extendedFileHandler.exists(snapshot))
+            {
+                return snapshot;
+            }
+
+            // Copy under a unique name then move, so that a snapshot is always complete
+            String copy = extendedFileHandler.append(snapshots, STAGING_PREFIX + prefix
+                + Long.toHexString(System.nanoTime()));
+            extendedFileHandler.copyFile(archive, copy, true);
+            if (!version.equals(extendedFileHandler.getLastModified(archive) + "-"
+                + extendedFileHandler.getSize(archive)))
+            {
+                // The archive has been rewritten while being copied
+                extendedFileHandler.delete(copy);
+                continue;
+            }
+            extendedFileHandler.move(copy, snapshot);
+
+            for (String child : extendedFileHandler.getChildren(snapshots))
+            {
+                String name = extendedFileHandler.getName(child);
+                if (name.startsWith(prefix) && !name.equals(prefix + version))
+                {
+                    extendedFileHandler.delete(child);
+                }
+            }
+            getLogger().debug("Created snapshot [" + snapshot + "] of [" + archive + "]",
+                this.getClass().getName());
+            return snapshot;
+        }
+        throw new ContainerException("Failed to create a snapshot of [" + archive + "] to hard "
+            + "link to: the archive has been rewritten during each of " + SNAPSHOT_ATTEMPTS
+            + " attempts to copy it");
+    }
+
+    /**
+     * @param archive Absolute path of an archive.
+     * @return Prefix of the names of the snapshots of the archive: the SHA-1 checksum of its path,
+     * so that archives with different paths never share snapshots.
+     */
+    private static String getSnapshotPrefix(String archive)
+    {
+        byte[] checksum;
+        try
+        {
+            checksum = MessageDigest.getInstance("SHA-1").digest(archive.getBytes("UTF-8"));
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new ContainerException("Cannot compute the checksum of [" + archive + "]", e);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new ContainerException("Cannot compute the checksum of [" + archive + "]", e);
+        }
+
+        StringBuilder prefix = new StringBuilder();
+        for (byte b : checksum)
+        {
+            prefix.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+        }
+        return prefix.append('-').toString();
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.deployer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.deployer.Deployer;
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Keeps deployed deployables in sync with their files. The files of the deployables are polled
+ * at a fixed interval; once a burst of changes is over, that is once the files have not changed
+ * during a whole interval, the deployable is redeployed. Copying deployers redeploy expanded
+ * deployables incrementally, so that only the changed files are copied.<br>
+ * Changes to classes, libraries and deployment descriptors can optionally make the deployable be
+ * reloaded as well, by stopping and starting it with a reload deployer.
+ * 
+ */
+public class DeployableWatcher extends LoggedObject implements Runnable
+{
+    /**
+     * Default interval between two polls of the deployable files, in milliseconds.
+     */
+    public static final long DEFAULT_INTERVAL = 1000;
+
+    /**
+     * Deployer redeploying the changed deployables.
+     */
+    private Deployer deployer;
+
+    /**
+     * Deployer reloading the deployables, <code>null</code> not to reload them.
+     */
+    private Deployer reloadDeployer;
+
+    /**
+     * Watched deployables.
+     */
+    private List<Deployable> deployables;
+
+    /**
+     * Interval between two polls of the deployable files, in milliseconds.
+     */
+    private long interval = DEFAULT_INTERVAL;
+
+    /**
+     * State of the files of each deployable when it was last deployed.
+     */
+    private Map<Deployable, Map<String, String>> deployed =
+        new HashMap<Deployable, Map<String, String>>();
+
+    /**
+     * State of the files of each deployable when they were last found changed.
+     */
+    private Map<Deployable, Map<String, String>> changed =
+        new HashMap<Deployable, Map<String, String>>();
+
+    /**
+     * Thread polling the deployable files, <code>null</code> when not started.
+     */
+    private Thread thread;
+
+    /**
+     * Whether polling should stop. The polling thread is never interrupted, as interrupting a
+     * redeployment would leave half copied files behind.
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Lock the polling thread waits on between two polls, notified when stopping.
+     */
+    private final Object sleepLock = new Object();
+
+    /**
+     * @param deployer Deployer redeploying the changed deployables.
+     * @param deployables Deployables to watch.
+     */
+    public DeployableWatcher(Deployer deployer, List<Deployable> deployables)
+    {
+        this.deployer = deployer;
+        this.deployables = new ArrayList<Deployable>(deployables);
+    }
+
+    /**
+     * @param interval Interval between two polls of the deployable files, in milliseconds.
+     */
+    public void setInterval(long interval)
+    {
+        this.interval = interval;
+    }
+
+    /**
+     * @param reloadDeployer Deployer stopping and starting the deployables after changes to their
+     * classes, libraries or deployment descriptors, <code>null</code> (the default) to only
+     * redeploy them.
+     */
+    public void setReloadDeployer(Deployer reloadDeployer)
+    {
+        this.reloadDeployer = reloadDeployer;
+    }
+
+    /**
+     * Takes the initial state of the deployable files, then starts polling them in a daemon
+     * thread.
+     */
+    public synchronized void start()
+    {
+        for (Deployable deployable : this.deployables)
+        {
+            this.deployed.put(deployable, snapshot(deployable));
+        }
+
+        this.stopped = false;
+        this.thread = new Thread(this, "Cargo deployable watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stops polling the deployable files, waiting for any ongoing redeployment to finish.
+     */
+    public void stop()
+    {
+        Thread watcherThread;
+        synchronized (this)
+        {
+            watcherThread = this.thread;
+            this.thread = null;
+        }
+        if (watcherThread != null)
+        {
+            synchronized (this.sleepLock)
+            {
+                this.stopped = true;
+                this.sleepLock.notifyAll();
+            }
+            try
+            {
+                watcherThread.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Polls the deployable files until stopped.
+     */
+    public void run()
+    {
+        try
+        {
+            while (!this.stopped)
+            {
+                synchronized (this.sleepLock)
+                {
+                    if (!this.stopped)
+                    {
+                        this.sleepLock.wait(this.interval);
+                    }
+                }
+                if (!this.stopped)
+                {
+                    check();
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // Interrupted by someone else than stop(), stop polling as well
+        }
+        getLogger().debug("Deployable watcher stopped", this.getClass().getName());
+    }
+
+    /**
+     * Polls the deployable files once, redeploying the deployables whose files have changed since
+     * they were last deployed but not since the previous poll.
+     */
+    public synchronized void check()
+    {
+        for (Deployable deployable : this.deployables)
+        {
+            Map<String, String> files = snapshot(deployable);
+            Map<String, String> deployedFiles = this.deployed.get(deployable);
+            if (deployedFiles == null)
+            {
+                this.deployed.put(deployable, files);
+            }
+            else if (files.equals(deployedFiles))
+            {
+                this.changed.remove(deployable);
+            }
+            else if (files.equals(this.changed.get(deployable)))
+            {
+                this.changed.remove(deployable);
+                this.deployed.put(deployable, files);
+                redeploy(deployable, getChangedFiles(deployedFiles, files));
+            }
+            else
+            {
+                // Changes still in progress, wait for the next poll
+                this.changed.put(deployable, files);
+            }
+        }
+    }
+
+    /**
+     * Redeploys a deployable, then reloads it if needed. Failures are logged, the next changes
+     * will trigger a new redeployment.
+     * 
+     * @param deployable Deployable to redeploy.
+     * @param changedFiles Paths of the changed files, relative to the deployable and separated by
+     * <code>/</code>.
+     */
+    protected void redeploy(Deployable deployable, Set<String> changedFiles)
+    {
+        getLogger().info("[" + changedFiles.size() + "] files of [" + deployable.getFile()
+            + "] have changed, redeploying it", this.getClass().getName());
+        try
+        {
+            this.deployer.redeploy(deployable);
+
+            if (this.reloadDeployer != null && requiresReload(changedFiles))
+            {
+                getLogger().info("Reloading [" + deployable.getFile() + "]",
+                    this.getClass().getName());
+                this.reloadDeployer.stop(deployable);
+                this.reloadDeployer.start(deployable);
+            }
+        }
+        catch (Exception e)
+        {
+            getLogger().warn("Failed to redeploy [" + deployable.getFile() + "]: " + e,
+                this.getClass().getName());
+        }
+    }
+
+    /**
+     * @param changedFiles Paths of the changed files, relative to the deployable and separated by
+     * <code>/</code>, empty for an archive.
+     * @return <code>true</code> if the changes are to classes, libraries or deployment
+     * descriptors, which the container only takes into account when reloading the deployable.
+     */
+    protected boolean requiresReload(Set<String> changedFiles)
+    {
+        for (String changedFile : changedFiles)
+        {
+            String path = changedFile.toLowerCase();
+            boolean descriptor = path.endsWith(".xml")
+                && (path.startsWith("web-inf/") || path.startsWith("meta-inf/"));
+            if (descriptor || path.endsWith(".class") || path.endsWith(".jar"))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param before State of the files before the changes.
+     * @param after State of the files after the changes.
+     * @return Paths of the added, modified and removed files.
+     */
+    private static Set<String> getChangedFiles(Map<String, String> before,
+        Map<String, String> after)
+    {
+        Set<String> changedFiles = new HashSet<String>();
+        for (Map.Entry<String, String> file : after.entrySet())
+        {
+            if (!file.getValue().equals(before.get(file.getKey())))
+            {
+                changedFiles.add(file.getKey());
+            }
+        }
+        for (String file : before.keySet())
+        {
+            if (!after.containsKey(file))
+            {
+                changedFiles.add(file);
+            }
+        }
+        return changedFiles;
+    }
+
+    /**
+     * @param deployable Deployable.
+     * @return Modification time and size of each file of the deployable, by path relative to the
+     * deployable. An archive is a single file with an empty path.
+     */
+    private static Map<String, String> snapshot(Deployable deployable)
+    {
+        Map<String, String> files = new HashMap<String, String>();
+        snapshot(new File(deployable.getFile()), "", files);
+        return files;
+    }
+
+    /**
+     * @param file File or directory.
+     * @param path Path of the file relative to the deployable.
+     * @param files Modification time and size of each file, by relative path.
+     */
+    private static void snapshot(File file, String path, Map<String, String> files)
+    {
+        if (file.isDirectory())
+        {
+            File[] children = file.listFiles();
+            if (children != null)
+            {
+                for (File child : children)
+                {
+                    snapshot(child, path + child.getName() + (child.isDirectory() ? "/" : ""),
+                        files);
+                }
+            }
+        }
+        else if (file.isFile())
+        {
+            files.put(path, file.lastModified() + ":" + file.length());
+        }
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.deployer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.deployer.DeployableMonitor;
+import org.codehaus.cargo.container.deployer.DeployableMonitorListener;
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Wait for several deployables to be deployed. Unlike a sequence of {@link DeployerWatchdog}s,
+ * all deployables are monitored concurrently, on a shared pool of threads, so that waiting for
+ * several deployables takes as long as the slowest one. Each deployable has to be deployed within
+ * the timeout of its monitor, and all of them within the timeout of the group, if any.
+ * 
+ */
+public class DeployerWatchdogGroup extends LoggedObject
+{
+    /**
+     * Delay between two checks of a deployable, in milliseconds.
+     */
+    private static final long POLL_DELAY = 100;
+
+    /**
+     * Maximum number of threads checking deployables.
+     */
+    private static final int MAX_THREADS = 8;
+
+    /**
+     * Watches of the monitored deployables.
+     */
+    private List<Watch> watches = new ArrayList<Watch>();
+
+    /**
+     * Global timeout in milliseconds, <code>0</code> for none.
+     */
+    private long timeout;
+
+    /**
+     * Time each deployable took to be deployed or undeployed, by deployable name.
+     */
+    private Map<String, Long> readinessTimes = new LinkedHashMap<String, Long>();
+
+    /**
+     * Watch of one deployable, run repeatedly until the expected state or the monitor timeout is
+     * reached.
+     */
+    private final class Watch implements Runnable, DeployableMonitorListener
+    {
+        /**
+         * Monitor of the deployable.
+         */
+        private final DeployableMonitor monitor;
+
+        /**
+         * Status flag set to true when the deployable is deployed.
+         */
+        private volatile boolean isDeployed;
+
+        /**
+         * Whether to wait for deployment or for undeployment.
+         */
+        private boolean availability;
+
+        /**
+         * Time when the watch started, in milliseconds.
+         */
+        private long startTime;
+
+        /**
+         * Counted down once the watch is finished.
+         */
+        private CountDownLatch finished;
+
+        /**
+         * Whether the watch is finished.
+         */
+        private volatile boolean done;
+
+        /**
+         * Time the deployable took to reach the expected state, in milliseconds,
+         * <code>-1</code> if not reached.
+         */
+        private volatile long readinessTime = -1;
+
+        /**
+         * Failure of the monitor, <code>null</code> if none.
+         */
+        private volatile RuntimeException failure;
+
+        /**
+         * @param monitor Monitor of the deployable.
+         */
+        private Watch(DeployableMonitor monitor)
+        {
+            this.monitor = monitor;
+            monitor.registerListener(this);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void deployed()
+        {
+            this.isDeployed = true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void undeployed()
+        {
+            this.isDeployed = false;
+        }
+
+        /**
+         * Checks the deployable once.
+         */
+        public void run()
+        {
+            if (this.done)
+            {
+                return;
+            }
+
+            try
+            {
+                this.monitor.monitor();
+            }
+            catch (RuntimeException e)
+            {
+                this.failure = e;
+                finish();
+                return;
+            }
+
+            long elapsed = System.currentTimeMillis() - this.startTime;
+            if (this.isDeployed == this.availability)
+            {
+                this.readinessTime = elapsed;
+                finish();
+            }
+            else if (elapsed > this.monitor.getTimeout())
+            {
+                finish();
+            }
+        }
+
+        /**
+         * Marks the watch as finished.
+         */
+        private void finish()
+        {
+            this.done = true;
+            this.finished.countDown();
+        }
+    }
+
+    /**
+     * Adds a deployable to monitor.
+     * 
+     * @param monitor the monitor to use to monitor the
+     * {@link org.codehaus.cargo.container.deployable.Deployable}.
+     */
+    public void addMonitor(DeployableMonitor monitor)
+    {
+        this.watches.add(new Watch(monitor));
+    }
+
+    /**
+     * @param timeout Global timeout in milliseconds, <code>0</code> (the default) to only use the
+     * timeout of each deployable monitor.
+     */
+    public void setTimeout(long timeout)
+    {
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return the time each deployable took to be deployed or undeployed during the last watch, in
+     * milliseconds, by deployable name.
+     */
+    public Map<String, Long> getReadinessTimes()
+    {
+        return this.readinessTimes;
+    }
+
+    /**
+     * Wait till all the monitored deployables are made available or throw an exception if a
+     * timeout period is reached.
+     */
+    public void watchForAvailability()
+    {
+        watch(true);
+    }
+
+    /**
+     * Wait till all the monitored deployables are made unavailable or throw an exception if a
+     * timeout period is reached.
+     */
+    public void watchForUnavailability()
+    {
+        watch(false);
+    }
+
+    /**
+     * @param shouldWatchForAvailability if true then wait till the deployables are made
+     * available, if false wait till they are made unavailable
+     */
+    public void watch(boolean shouldWatchForAvailability)
+    {
+        this.readinessTimes.clear();
+        if (this.watches.isEmpty())
+        {
+            return;
+        }
+
+        CountDownLatch finished = new CountDownLatch(this.watches.size());
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+            Math.min(this.watches.size(), MAX_THREADS), new ThreadFactory()
+            {
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "Cargo deployer watchdog");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        try
+        {
+            long startTime = System.currentTimeMillis();
+            for (Watch watch : this.watches)
+            {
+                watch.availability = shouldWatchForAvailability;
+                watch.startTime = startTime;
+                watch.finished = finished;
+                watch.readinessTime = -1;
+                watch.failure = null;
+                watch.done = false;
+                scheduler.scheduleWithFixedDelay(watch, POLL_DELAY, POLL_DELAY,
+                    TimeUnit.MILLISECONDS);
+            }
+
+            if (this.timeout > 0)
+            {
+                finished.await(this.timeout, TimeUnit.MILLISECONDS);
+            }
+            else
+            {
+                finished.await();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            throw new ContainerException("Failed to monitor deployment", e);
+        }
+        finally
+        {
+            scheduler.shutdownNow();
+        }
+
+        checkReadiness(shouldWatchForAvailability);
+    }
+
+    /**
+     * Records and logs the readiness time of each deployable, and fails if any deployable has not
+     * reached the expected state.
+     * 
+     * @param shouldWatchForAvailability whether the deployables were expected to be available.
+     */
+    private void checkReadiness(boolean shouldWatchForAvailability)
+    {
+        String action = shouldWatchForAvailability ? "deploying" : "undeploying";
+        List<String> failed = new ArrayList<String>();
+        for (Watch watch : this.watches)
+        {
+            String name = watch.monitor.getDeployableName();
+            if (watch.failure != null)
+            {
+                throw new ContainerException("Failed to monitor deployable [" + name + "]",
+                    watch.failure);
+            }
+            else if (watch.readinessTime < 0)
+            {
+                failed.add(name);
+            }
+            else
+            {
+                this.readinessTimes.put(name, Long.valueOf(watch.readinessTime));
+                getLogger().info("Deployable [" + name + "] finished " + action + " in ["
+                    + watch.readinessTime + "] ms", this.getClass().getName());
+            }
+        }
+
+        if (!failed.isEmpty())
+        {
+            String message = "Deployables " + failed + " failed to finish " + action
+                + " within the timeout period. The Deployable state is thus unknown.";
+            getLogger().info(message, this.getClass().getName());
+            throw new ContainerException(message);
+        }
+    }
+}
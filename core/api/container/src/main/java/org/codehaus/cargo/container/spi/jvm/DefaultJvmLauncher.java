@@ -33,7 +33,7 @@ import org.codehaus.cargo.container.internal.AntContainerExecutorThread;
  * The default JVM launcher.
  * 
  */
-class DefaultJvmLauncher implements JvmLauncher
+class DefaultJvmLauncher implements TrackableJvmLauncher
 {
 
     /**
@@ -46,6 +46,11 @@ class DefaultJvmLauncher implements JvmLauncher
      */
     private boolean spawn;
 
+    /**
+     * Thread running the Ant Java task, {@code null} until {@link #start()} is called.
+     */
+    private Thread runner;
+
     /**
      * List of extra environment variables. Ant's Java task doesn't offer a getter for the
      * environment variable, forcing us to keep track of them ourselves.
@@ -288,6 +293,28 @@ class DefaultJvmLauncher implements JvmLauncher
         // Not supported by Ant Java Task
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public long getPid()
+    {
+        // Not supported by Ant Java Task
+        return -1;
+    }
+
+    /**
+     * {@inheritDoc}. Unless spawned, the process is run by the thread started by
+     * {@link #start()}, which terminates with it.
+     */
+    public boolean waitFor(long millis) throws InterruptedException
+    {
+        if (this.runner == null || this.spawn)
+        {
+            return false;
+        }
+        this.runner.join(Math.max(millis, 1));
+        return !this.runner.isAlive();
+    }
 
     /**
      * {@inheritDoc}
@@ -317,8 +344,8 @@ class DefaultJvmLauncher implements JvmLauncher
      */
     public void start() throws JvmLauncherException
     {
-        Thread runner = new AntContainerExecutorThread(this.java, this.spawn);
-        runner.start();
+        this.runner = new AntContainerExecutorThread(this.java, this.spawn);
+        this.runner.start();
     }
 
     /**
@@ -0,0 +1,790 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.jvm;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tools.ant.types.Commandline;
+import org.apache.tools.ant.util.JavaEnvUtils;
+import org.codehaus.cargo.util.log.Loggable;
+
+/**
+ * JVM launcher starting the JVM with a {@link ProcessBuilder}, hence able to track, wait for and
+ * kill the launched process. On Java 7 and above, the output of the JVM is redirected to the
+ * output file by the operating system; else it is copied by a thread.
+ * 
+ */
+class ProcessJvmLauncher implements TrackableJvmLauncher
+{
+    /**
+     * Time given to the process to terminate after having been asked to, in milliseconds, before
+     * it gets forcibly killed.
+     */
+    private static final long KILL_TIMEOUT = 10000;
+
+    /**
+     * Size of the buffer used when copying the output of the JVM.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The object to forward the output of the JVM to, when no output file is set.
+     */
+    private final Loggable loggable;
+
+    /**
+     * The working directory.
+     */
+    private File workingDirectory;
+
+    /**
+     * The JVM executable.
+     */
+    private String executable = JavaEnvUtils.getJreExecutable("java");
+
+    /**
+     * The JVM arguments, system properties included.
+     */
+    private final List<String> jvmArguments = new ArrayList<String>();
+
+    /**
+     * The classpath entries.
+     */
+    private final List<String> classpath = new ArrayList<String>();
+
+    /**
+     * The extra environment variables.
+     */
+    private final Map<String, String> environmentVariables = new HashMap<String, String>();
+
+    /**
+     * The JAR file to execute.
+     */
+    private File jarFile;
+
+    /**
+     * The main class to execute.
+     */
+    private String mainClass;
+
+    /**
+     * The application arguments.
+     */
+    private final List<String> appArguments = new ArrayList<String>();
+
+    /**
+     * The file the output of the JVM is redirected to.
+     */
+    private File outputFile;
+
+    /**
+     * Whether the output of the JVM is appended to the output file.
+     */
+    private boolean appendOutput;
+
+    /**
+     * Time after which the process gets killed, non-positive to let it run.
+     */
+    private long timeout;
+
+    /**
+     * Whether the process should outlive this JVM.
+     */
+    private boolean spawn;
+
+    /**
+     * The launched process, {@code null} until started.
+     */
+    private Process process;
+
+    /**
+     * Counted down once the launched process has terminated.
+     */
+    private CountDownLatch terminated;
+
+    /**
+     * Exit code of the launched process, valid once terminated.
+     */
+    private volatile int exitCode;
+
+    /**
+     * Creates a new launcher.
+     * 
+     * @param loggable The object to forward the output of the JVM to when no output file is set,
+     * must not be {@code null}.
+     */
+    public ProcessJvmLauncher(Loggable loggable)
+    {
+        this.loggable = loggable;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setWorkingDirectory(File workingDirectory)
+    {
+        this.workingDirectory = workingDirectory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setJvm(String command)
+    {
+        if (command != null && command.length() > 0)
+        {
+            this.executable = command;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addJvmArgument(File file)
+    {
+        if (file != null)
+        {
+            this.jvmArguments.add(file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addJvmArguments(String... values)
+    {
+        if (values != null)
+        {
+            for (String value : values)
+            {
+                this.jvmArguments.add(value);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addJvmArgumentLine(String line)
+    {
+        if (line != null)
+        {
+            addJvmArguments(Commandline.translateCommandline(line));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addClasspathEntries(String... paths)
+    {
+        if (paths != null)
+        {
+            for (String path : paths)
+            {
+                this.classpath.add(path);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addClasspathEntries(File... paths)
+    {
+        if (paths != null)
+        {
+            for (File path : paths)
+            {
+                this.classpath.add(path.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getClasspath()
+    {
+        StringBuilder result = new StringBuilder();
+        for (String path : this.classpath)
+        {
+            if (result.length() > 0)
+            {
+                result.append(File.pathSeparatorChar);
+            }
+            result.append(path);
+        }
+        return result.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setSystemProperty(String name, String value)
+    {
+        if (name != null && name.length() > 0)
+        {
+            this.jvmArguments.add("-D" + name + "=" + (value != null ? value : ""));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setEnvironmentVariable(String name, String value)
+    {
+        if (name != null && name.length() > 0)
+        {
+            this.environmentVariables.put(name, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getEnvironmentVariable(String name)
+    {
+        String value = this.environmentVariables.get(name);
+        if (value == null)
+        {
+            value = System.getenv(name);
+        }
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setJarFile(File jarFile)
+    {
+        if (jarFile != null)
+        {
+            this.jarFile = jarFile;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setMainClass(String mainClass)
+    {
+        if (mainClass != null)
+        {
+            this.mainClass = mainClass;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addAppArgument(File file)
+    {
+        if (file != null)
+        {
+            this.appArguments.add(file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addAppArguments(String... values)
+    {
+        if (values != null)
+        {
+            for (String value : values)
+            {
+                this.appArguments.add(value);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addAppArgumentLine(String line)
+    {
+        if (line != null)
+        {
+            addAppArguments(Commandline.translateCommandline(line));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setOutputFile(File outputFile)
+    {
+        this.outputFile = outputFile;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setAppendOutput(boolean appendOutput)
+    {
+        this.appendOutput = appendOutput;
+    }
+
+    /**
+     * Builds the command line launching the JVM.
+     * 
+     * @return The command line tokens.
+     */
+    private List<String> buildCommandLine()
+    {
+        List<String> commandLine = new ArrayList<String>();
+        commandLine.add(this.executable);
+        commandLine.addAll(this.jvmArguments);
+        if (!this.classpath.isEmpty())
+        {
+            commandLine.add("-classpath");
+            commandLine.add(getClasspath());
+        }
+        if (this.jarFile != null)
+        {
+            commandLine.add("-jar");
+            commandLine.add(this.jarFile.getAbsolutePath());
+        }
+        else if (this.mainClass != null)
+        {
+            commandLine.add(this.mainClass);
+        }
+        commandLine.addAll(this.appArguments);
+        return commandLine;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getCommandLine()
+    {
+        StringBuilder result = new StringBuilder();
+        for (String token : buildCommandLine())
+        {
+            if (result.length() > 0)
+            {
+                result.append(' ');
+            }
+            result.append(token);
+        }
+        return result.toString();
+    }
+
+    /**
+     * {@inheritDoc}. The process is first asked to terminate, then forcibly killed if it does not
+     * terminate in time.
+     */
+    public void kill()
+    {
+        Process process = this.process;
+        if (process == null)
+        {
+            return;
+        }
+
+        try
+        {
+            process.destroy();
+            if (!waitFor(KILL_TIMEOUT))
+            {
+                destroyForcibly(process);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            destroyForcibly(process);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Forcibly kills a process, using <code>Process.destroyForcibly()</code> where available
+     * (Java 8 and above) and <code>kill -9</code> on other UNIX JVMs.
+     * 
+     * @param process The process to kill.
+     */
+    private void destroyForcibly(Process process)
+    {
+        try
+        {
+            Process.class.getMethod("destroyForcibly").invoke(process);
+            return;
+        }
+        catch (Exception e)
+        {
+            // Java 7 or below
+        }
+
+        long pid = getPid();
+        if (pid != -1 && File.separatorChar == '/')
+        {
+            try
+            {
+                Runtime.getRuntime().exec(new String[] {"kill", "-9", Long.toString(pid)});
+            }
+            catch (IOException e)
+            {
+                this.loggable.getLogger().warn("Cannot kill process " + pid + ": " + e,
+                    this.getClass().getName());
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}. Uses <code>Process.pid()</code> where available (Java 9 and above) and the
+     * internal process identifier of UNIX JVMs otherwise.
+     */
+    public long getPid()
+    {
+        Process process = this.process;
+        if (process == null)
+        {
+            return -1;
+        }
+
+        try
+        {
+            return ((Number) Process.class.getMethod("pid").invoke(process)).longValue();
+        }
+        catch (Exception e)
+        {
+            // Java 8 or below
+        }
+        try
+        {
+            Field pid = process.getClass().getDeclaredField("pid");
+            pid.setAccessible(true);
+            return pid.getLong(process);
+        }
+        catch (Exception e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean waitFor(long millis) throws InterruptedException
+    {
+        if (this.terminated == null)
+        {
+            return false;
+        }
+        return this.terminated.await(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setTimeout(long millis)
+    {
+        this.timeout = millis;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setSpawn(boolean spawn)
+    {
+        this.spawn = spawn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void start() throws JvmLauncherException
+    {
+        ProcessBuilder builder = new ProcessBuilder(buildCommandLine());
+        builder.directory(this.workingDirectory);
+        builder.redirectErrorStream(true);
+        for (Map.Entry<String, String> variable : this.environmentVariables.entrySet())
+        {
+            if (variable.getValue() == null)
+            {
+                builder.environment().remove(variable.getKey());
+            }
+            else
+            {
+                builder.environment().put(variable.getKey(), variable.getValue());
+            }
+        }
+        boolean redirected = this.outputFile != null && redirectOutput(builder);
+
+        final Process process;
+        try
+        {
+            process = builder.start();
+        }
+        catch (IOException e)
+        {
+            throw new JvmLauncherException("Failed to launch " + getCommandLine(), e);
+        }
+        this.process = process;
+        this.terminated = new CountDownLatch(1);
+
+        try
+        {
+            process.getOutputStream().close();
+        }
+        catch (IOException ignored)
+        {
+            // Nothing to write to the process anyway
+        }
+        if (!redirected)
+        {
+            startDaemon(new OutputCopier(process.getInputStream()), "output");
+        }
+        final Thread destroyer;
+        if (this.spawn)
+        {
+            destroyer = null;
+        }
+        else
+        {
+            // Like Ant does for forked JVMs, do not let the process outlive this JVM
+            destroyer = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    process.destroy();
+                }
+            };
+            Runtime.getRuntime().addShutdownHook(destroyer);
+        }
+        startDaemon(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    ProcessJvmLauncher.this.exitCode = process.waitFor();
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+                removeShutdownHook(destroyer);
+                ProcessJvmLauncher.this.terminated.countDown();
+            }
+        }, "reaper");
+
+        if (this.timeout > 0)
+        {
+            startDaemon(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        if (!waitFor(ProcessJvmLauncher.this.timeout))
+                        {
+                            kill();
+                        }
+                    }
+                    catch (InterruptedException e)
+                    {
+                        return;
+                    }
+                }
+            }, "timeout");
+        }
+    }
+
+    /**
+     * Removes the shutdown hook destroying the process once it has terminated, so that hooks do
+     * not pile up in long running JVMs.
+     * 
+     * @param destroyer The shutdown hook, may be {@code null}.
+     */
+    private static void removeShutdownHook(Thread destroyer)
+    {
+        if (destroyer != null)
+        {
+            try
+            {
+                Runtime.getRuntime().removeShutdownHook(destroyer);
+            }
+            catch (IllegalStateException e)
+            {
+                // This JVM is shutting down, the hook runs anyway
+            }
+        }
+    }
+
+    /**
+     * Makes the operating system redirect the output of the JVM to the output file, which
+     * requires <code>ProcessBuilder.Redirect</code> (Java 7 and above).
+     * 
+     * @param builder The process builder.
+     * @return {@code true} if the output is redirected, {@code false} if it has to be copied.
+     */
+    private boolean redirectOutput(ProcessBuilder builder)
+    {
+        try
+        {
+            Class<?> redirectClass = Class.forName("java.lang.ProcessBuilder$Redirect");
+            Object redirect = redirectClass.getMethod(this.appendOutput ? "appendTo" : "to",
+                File.class).invoke(null, this.outputFile);
+            ProcessBuilder.class.getMethod("redirectOutput", redirectClass).invoke(builder,
+                redirect);
+            return true;
+        }
+        catch (Exception e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Starts a daemon thread for the launched process.
+     * 
+     * @param runnable What the thread runs.
+     * @param name Name of the thread, qualified by the launched process.
+     */
+    private void startDaemon(Runnable runnable, String name)
+    {
+        Thread thread = new Thread(runnable, "JVM launcher " + name + " for " + this.executable);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int execute() throws JvmLauncherException
+    {
+        start();
+        try
+        {
+            this.terminated.await();
+        }
+        catch (InterruptedException e)
+        {
+            throw new JvmLauncherException("Interrupted while waiting for " + getCommandLine(),
+                e);
+        }
+        return this.exitCode;
+    }
+
+    /**
+     * Copies the output of the JVM to the output file if it cannot be redirected by the operating
+     * system, else to the logger.
+     */
+    private class OutputCopier implements Runnable
+    {
+        /**
+         * Output of the JVM.
+         */
+        private final InputStream output;
+
+        /**
+         * @param output Output of the JVM.
+         */
+        public OutputCopier(InputStream output)
+        {
+            this.output = output;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void run()
+        {
+            try
+            {
+                try
+                {
+                    if (ProcessJvmLauncher.this.outputFile != null)
+                    {
+                        copyToFile();
+                    }
+                    else
+                    {
+                        copyToLogger();
+                    }
+                }
+                finally
+                {
+                    this.output.close();
+                }
+            }
+            catch (IOException e)
+            {
+                ProcessJvmLauncher.this.loggable.getLogger().debug(
+                    "Stopped copying the JVM output: " + e, this.getClass().getName());
+            }
+        }
+
+        /**
+         * Copies the output of the JVM to the output file.
+         * @throws IOException If anything goes wrong.
+         */
+        private void copyToFile() throws IOException
+        {
+            OutputStream file = new FileOutputStream(ProcessJvmLauncher.this.outputFile,
+                ProcessJvmLauncher.this.appendOutput);
+            try
+            {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                for (int read = this.output.read(buffer); read != -1;
+                    read = this.output.read(buffer))
+                {
+                    file.write(buffer, 0, read);
+                    file.flush();
+                }
+            }
+            finally
+            {
+                file.close();
+            }
+        }
+
+        /**
+         * Copies the output of the JVM to the logger, line by line.
+         * @throws IOException If anything goes wrong.
+         */
+        private void copyToLogger() throws IOException
+        {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(this.output));
+            Loggable loggable = ProcessJvmLauncher.this.loggable;
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+            {
+                loggable.getLogger().info(line, loggable.getClass().getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.jvm;
+
+/**
+ * JVM launcher factory creating launchers based on {@link ProcessBuilder}, which unlike the
+ * launchers of the {@link DefaultJvmLauncherFactory} can kill the JVM they launched, tell its
+ * process identifier and wait for its termination. Since they cannot launch JVMs on remote hosts,
+ * requests for SSH launches are handed over to a {@link DefaultJvmLauncherFactory}.
+ * 
+ */
+public class ProcessJvmLauncherFactory implements JvmLauncherFactory
+{
+
+    /**
+     * Factory creating the launchers for SSH launches.
+     */
+    private final JvmLauncherFactory sshFactory = new DefaultJvmLauncherFactory();
+
+    /**
+     * {@inheritDoc}
+     */
+    public JvmLauncher createJvmLauncher(JvmLauncherRequest request)
+    {
+        if (request.isSsh())
+        {
+            return this.sshFactory.createJvmLauncher(request);
+        }
+        return new ProcessJvmLauncher(request.getLoggable());
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.jvm;
+
+/**
+ * A JVM launcher which can tell the process identifier of the JVM it launched and wait for its
+ * termination. This is a separate interface so that existing {@link JvmLauncher} implementations
+ * keep working; CARGO falls back to polling when a launcher does not implement it.
+ * 
+ */
+public interface TrackableJvmLauncher extends JvmLauncher
+{
+    /**
+     * Gets the identifier of the process that was launched, if supported by the JvmLauncher
+     * implementation.
+     * 
+     * @return The process identifier, or {@code -1} if no process was launched or its identifier
+     * is unknown.
+     */
+    long getPid();
+
+    /**
+     * Waits for the process that was launched to terminate, if supported by the JvmLauncher
+     * implementation.
+     * 
+     * @param millis The maximum time to wait, in milliseconds.
+     * @return {@code true} if the process has terminated, {@code false} if it is still running
+     * after the specified time or if its termination cannot be tracked.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    boolean waitFor(long millis) throws InterruptedException;
+}
@@ -0,0 +1,292 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.startup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.regex.Pattern;
+
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.LocalContainer;
+import org.codehaus.cargo.container.deployer.DeployableMonitor;
+import org.codehaus.cargo.container.deployer.DeployableMonitorListener;
+
+/**
+ * {@link ReadinessStrategy} which tails the container output for the line the container logs
+ * once it has started, for example <code>Server startup in</code> for Tomcat. The container is
+ * ready as soon as that line appears. The Cargo Ping Component is still pinged, less often, so
+ * that containers that do not log that line (or whose output is not redirected to a file) are
+ * detected as well.
+ * 
+ */
+public class LogPatternReadinessStrategy extends PingReadinessStrategy
+    implements DeployableMonitorListener
+{
+    /**
+     * Default interval between two reads of the container output, in milliseconds.
+     */
+    public static final long DEFAULT_POLL_INTERVAL = 50;
+
+    /**
+     * Default interval between two pings of the Cargo Ping Component, in milliseconds.
+     */
+    public static final long DEFAULT_PING_INTERVAL = 1000;
+
+    /**
+     * Maximum number of characters of a line that are kept to be matched.
+     */
+    private static final int MAX_LINE_LENGTH = 8192;
+
+    /**
+     * Size of the buffer used to read the container output.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Pattern of the line the container logs once started.
+     */
+    private Pattern pattern;
+
+    /**
+     * Interval between two reads of the container output, in milliseconds.
+     */
+    private long pollInterval = DEFAULT_POLL_INTERVAL;
+
+    /**
+     * Interval between two pings of the Cargo Ping Component, in milliseconds.
+     */
+    private long pingInterval = DEFAULT_PING_INTERVAL;
+
+    /**
+     * Position in the container output up to which lines have been read.
+     */
+    private long offset;
+
+    /**
+     * Characters of the line currently being read.
+     */
+    private StringBuilder line = new StringBuilder();
+
+    /**
+     * Whether the Cargo Ping Component has answered.
+     */
+    private boolean pinged;
+
+    /**
+     * @param pattern regular expression matching (part of) the line the container logs once
+     * started.
+     */
+    public LogPatternReadinessStrategy(String pattern)
+    {
+        this.pattern = Pattern.compile(pattern);
+    }
+
+    /**
+     * @return the pattern of the line the container logs once started.
+     */
+    public Pattern getPattern()
+    {
+        return this.pattern;
+    }
+
+    /**
+     * @param pollInterval interval between two reads of the container output, in milliseconds.
+     */
+    public void setPollInterval(long pollInterval)
+    {
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * @param pingInterval interval between two pings of the Cargo Ping Component, in
+     * milliseconds.
+     */
+    public void setPingInterval(long pingInterval)
+    {
+        this.pingInterval = pingInterval;
+    }
+
+    /**
+     * {@inheritDoc}. Skips what the container output already contains if it is appended to, else
+     * empties it right away rather than when the container is launched, so that the lines of a
+     * previous run are never matched.
+     */
+    @Override
+    public void prepare(LocalContainer container)
+    {
+        this.line.setLength(0);
+        this.offset = 0;
+        if (container.getOutput() == null)
+        {
+            return;
+        }
+
+        File output = new File(container.getOutput());
+        if (container.isAppend())
+        {
+            this.offset = output.length();
+        }
+        else if (output.isFile())
+        {
+            try
+            {
+                new FileOutputStream(output).close();
+            }
+            catch (IOException e)
+            {
+                throw new ContainerException("Cannot empty container output [" + output + "]", e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void waitForReadiness(LocalContainer container) throws InterruptedException
+    {
+        if (container.getOutput() == null)
+        {
+            super.waitForReadiness(container);
+            return;
+        }
+
+        File output = new File(container.getOutput());
+        DeployableMonitor monitor = createMonitor(container);
+        monitor.registerListener(this);
+        this.pinged = false;
+
+        long startTime = System.currentTimeMillis();
+        long nextPing = startTime + this.pingInterval;
+        while (true)
+        {
+            if (readOutput(output))
+            {
+                getLogger().debug("Container output matches [" + this.pattern + "]",
+                    this.getClass().getName());
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            if (now >= nextPing)
+            {
+                monitor.monitor();
+                if (this.pinged)
+                {
+                    return;
+                }
+                nextPing = now + this.pingInterval;
+            }
+
+            if (now - startTime > monitor.getTimeout())
+            {
+                String message = "Container did neither log a line matching [" + this.pattern
+                    + "] in [" + output + "] nor answer to the "
+                    + monitor.getDeployableName() + " within the timeout period ["
+                    + monitor.getTimeout() + "]";
+                getLogger().info(message, this.getClass().getName());
+                throw new ContainerException(message);
+            }
+
+            Thread.sleep(this.pollInterval);
+        }
+    }
+
+    /**
+     * Reads what has been added to the container output since the last call.
+     * 
+     * @param output the container output.
+     * @return <code>true</code> if a line matching the pattern has been read.
+     */
+    protected boolean readOutput(File output)
+    {
+        long length = output.length();
+        if (length < this.offset)
+        {
+            // The output file has been truncated, start over
+            this.offset = 0;
+            this.line.setLength(0);
+        }
+        if (length == this.offset)
+        {
+            return false;
+        }
+
+        try
+        {
+            RandomAccessFile file = new RandomAccessFile(output, "r");
+            try
+            {
+                file.seek(this.offset);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                for (int read = file.read(buffer); read != -1; read = file.read(buffer))
+                {
+                    this.offset += read;
+                    for (int i = 0; i < read; i++)
+                    {
+                        if (buffer[i] == '\n')
+                        {
+                            if (this.pattern.matcher(this.line).find())
+                            {
+                                return true;
+                            }
+                            this.line.setLength(0);
+                        }
+                        else if (this.line.length() < MAX_LINE_LENGTH)
+                        {
+                            this.line.append((char) (buffer[i] & 0xff));
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                file.close();
+            }
+        }
+        catch (IOException e)
+        {
+            getLogger().debug("Cannot read container output [" + output + "]: " + e,
+                this.getClass().getName());
+            return false;
+        }
+
+        // The line being written may already match
+        return this.pattern.matcher(this.line).find();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void deployed()
+    {
+        this.pinged = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void undeployed()
+    {
+        this.pinged = false;
+    }
+}
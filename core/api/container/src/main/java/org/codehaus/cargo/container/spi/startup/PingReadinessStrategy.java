@@ -0,0 +1,70 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.startup;
+
+import org.codehaus.cargo.container.LocalContainer;
+import org.codehaus.cargo.container.deployer.DeployableMonitor;
+import org.codehaus.cargo.container.deployer.URLDeployableMonitor;
+import org.codehaus.cargo.container.spi.deployer.DeployerWatchdog;
+import org.codehaus.cargo.container.spi.util.ContainerUtils;
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Default {@link ReadinessStrategy}, which pings the Cargo Ping Component deployed in the
+ * container until it answers.
+ * 
+ */
+public class PingReadinessStrategy extends LoggedObject implements ReadinessStrategy
+{
+    /**
+     * {@inheritDoc}
+     */
+    public void prepare(LocalContainer container)
+    {
+        // Nothing to prepare
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void waitForReadiness(LocalContainer container) throws InterruptedException
+    {
+        DeployerWatchdog watchdog = new DeployerWatchdog(createMonitor(container));
+        watchdog.setLogger(getLogger());
+
+        watchdog.watch(true);
+    }
+
+    /**
+     * Creates the monitor pinging the Cargo Ping Component.
+     * 
+     * @param container the container being started.
+     * @return the monitor.
+     */
+    protected DeployableMonitor createMonitor(LocalContainer container)
+    {
+        DeployableMonitor monitor =
+            new URLDeployableMonitor(ContainerUtils.getCPCURL(container.getConfiguration()),
+                container.getTimeout(),
+                    "Cargo Ping Component used to verify if the container is started.");
+        monitor.setLogger(getLogger());
+        return monitor;
+    }
+}
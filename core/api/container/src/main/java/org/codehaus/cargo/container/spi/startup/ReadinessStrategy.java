@@ -0,0 +1,48 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.startup;
+
+import org.codehaus.cargo.container.LocalContainer;
+import org.codehaus.cargo.util.log.Loggable;
+
+/**
+ * Strategy used by local containers to find out when they have finished starting.
+ * 
+ */
+public interface ReadinessStrategy extends Loggable
+{
+    /**
+     * Called just before the container is started, for instance to remember what its output
+     * already contains.
+     * 
+     * @param container the container about to be started.
+     */
+    void prepare(LocalContainer container);
+
+    /**
+     * Waits until the container is ready or its timeout period is reached.
+     * 
+     * @param container the container being started.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     * @throws org.codehaus.cargo.container.ContainerException if the container is not ready
+     * within its timeout period.
+     */
+    void waitForReadiness(LocalContainer container) throws InterruptedException;
+}
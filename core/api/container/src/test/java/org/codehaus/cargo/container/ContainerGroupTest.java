@@ -0,0 +1,254 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.stub.EmbeddedLocalContainerStub;
+
+/**
+ * Unit tests for {@link ContainerGroup}.
+ * 
+ */
+public class ContainerGroupTest extends TestCase
+{
+    /**
+     * Time each container takes to start or stop.
+     */
+    private static final long DELAY = 500;
+
+    /**
+     * Actions done on the containers, in order.
+     */
+    private List<String> actions = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * Container group to test.
+     */
+    private ContainerGroup group;
+
+    /**
+     * Creates the container group. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.group = new ContainerGroup();
+    }
+
+    /**
+     * Test that containers without dependencies are started and stopped concurrently.
+     */
+    public void testStartAndStopConcurrently()
+    {
+        this.group.addContainer("app", new SlowContainer("app", false));
+        this.group.addContainer("auth", new SlowContainer("auth", false));
+        this.group.addContainer("backend", new SlowContainer("backend", false));
+
+        long start = System.currentTimeMillis();
+        this.group.start();
+        assertTrue(System.currentTimeMillis() - start < 2 * DELAY);
+        assertEquals(3, this.actions.size());
+        for (LocalContainer container : this.group.getContainers().values())
+        {
+            assertEquals(State.STARTED, container.getState());
+        }
+
+        start = System.currentTimeMillis();
+        this.group.stop();
+        assertTrue(System.currentTimeMillis() - start < 2 * DELAY);
+        assertEquals(6, this.actions.size());
+        for (LocalContainer container : this.group.getContainers().values())
+        {
+            assertEquals(State.STOPPED, container.getState());
+        }
+    }
+
+    /**
+     * Test that containers are started after their dependencies and stopped before them.
+     */
+    public void testDependencies()
+    {
+        this.group.addContainer("app", new SlowContainer("app", false));
+        this.group.addContainer("auth", new SlowContainer("auth", false));
+        this.group.addContainer("backend", new SlowContainer("backend", false));
+        this.group.addDependency("app", "auth");
+        this.group.addDependency("auth", "backend");
+
+        this.group.start();
+        assertEquals("[start backend, start auth, start app]", this.actions.toString());
+
+        this.actions.clear();
+        this.group.stop();
+        assertEquals("[stop app, stop auth, stop backend]", this.actions.toString());
+    }
+
+    /**
+     * Test that failures are aggregated, that containers depending on a failed container are not
+     * started and that the containers which started are stopped again.
+     */
+    public void testStartFailure()
+    {
+        this.group.addContainer("app", new SlowContainer("app", false));
+        this.group.addContainer("auth", new SlowContainer("auth", true));
+        this.group.addContainer("backend", new SlowContainer("backend", false));
+        this.group.addDependency("app", "auth");
+
+        try
+        {
+            this.group.start();
+            fail("The container group should have failed to start");
+        }
+        catch (ContainerException expected)
+        {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("[auth]"));
+            assertTrue(expected.getMessage(), expected.getMessage().contains("[app]"));
+            assertFalse(expected.getMessage(), expected.getMessage().contains("[backend]"));
+        }
+
+        assertFalse(this.actions.contains("start app"));
+        assertEquals(State.STOPPED, this.group.getContainer("backend").getState());
+        assertEquals(State.STOPPED, this.group.getContainer("app").getState());
+    }
+
+    /**
+     * Test that the containers which fail to stop after the group failed to start are reported.
+     */
+    public void testStartFailureThenStopFailure()
+    {
+        this.group.addContainer("auth", new SlowContainer("auth", true));
+        this.group.addContainer("backend", new SlowContainer("backend", false)
+        {
+            @Override
+            public void stop()
+            {
+                throw new ContainerException("Cannot stop backend");
+            }
+        });
+
+        try
+        {
+            this.group.start();
+            fail("The container group should have failed to start");
+        }
+        catch (ContainerException expected)
+        {
+            String message = expected.getMessage();
+            assertTrue(message, message.contains("[auth] Cannot start auth"));
+            assertTrue(message, message.contains("[backend] Cannot stop backend"));
+        }
+    }
+
+    /**
+     * Test that dependency cycles are detected.
+     */
+    public void testDependencyCycle()
+    {
+        this.group.addContainer("app", new SlowContainer("app", false));
+        this.group.addContainer("auth", new SlowContainer("auth", false));
+        this.group.addDependency("app", "auth");
+        this.group.addDependency("auth", "app");
+
+        try
+        {
+            this.group.start();
+            fail("The dependency cycle should have been detected");
+        }
+        catch (ContainerException expected)
+        {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("cycle"));
+        }
+        assertTrue(this.actions.isEmpty());
+    }
+
+    /**
+     * Container stub taking some time to start and stop.
+     */
+    private class SlowContainer extends EmbeddedLocalContainerStub
+    {
+        /**
+         * Name of the container in the group.
+         */
+        private String groupName;
+
+        /**
+         * Whether the container fails to start.
+         */
+        private boolean failing;
+
+        /**
+         * @param groupName the name of the container in the group.
+         * @param failing whether the container fails to start.
+         */
+        public SlowContainer(String groupName, boolean failing)
+        {
+            this.groupName = groupName;
+            this.failing = failing;
+            setState(State.STOPPED);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void start()
+        {
+            pause();
+            if (this.failing)
+            {
+                throw new ContainerException("Cannot start " + this.groupName);
+            }
+            ContainerGroupTest.this.actions.add("start " + this.groupName);
+            setState(State.STARTED);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void stop()
+        {
+            pause();
+            ContainerGroupTest.this.actions.add("stop " + this.groupName);
+            setState(State.STOPPED);
+        }
+
+        /**
+         * Waits for the start or stop delay.
+         */
+        private void pause()
+        {
+            try
+            {
+                Thread.sleep(DELAY);
+            }
+            catch (InterruptedException e)
+            {
+                throw new ContainerException("Interrupted", e);
+            }
+        }
+    }
+}
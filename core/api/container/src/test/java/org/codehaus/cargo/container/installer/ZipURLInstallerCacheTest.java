@@ -0,0 +1,520 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.installer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.taskdefs.Get;
+import org.codehaus.cargo.container.internal.util.TryLockMain;
+import org.codehaus.cargo.util.AntTaskFactory;
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+
+/**
+ * Unit tests for the installation cache of {@link ZipURLInstaller}: concurrent installations,
+ * eviction and reinstallation of changed archives.
+ * 
+ */
+public class ZipURLInstallerCacheTest extends TestCase
+{
+    /**
+     * {@link Get} implementation that copies a local archive instead of downloading it, and counts
+     * how many times it has been executed.
+     */
+    private static class CopyingGet extends Get
+    {
+        /**
+         * Archive to copy.
+         */
+        private final File archive;
+
+        /**
+         * Destinations of all downloads, possibly shared with other instances.
+         */
+        private final List<File> downloads;
+
+        /**
+         * Destination of the download.
+         */
+        private File dest;
+
+        /**
+         * @param archive archive to copy.
+         * @param downloads list to which each download destination is added.
+         */
+        public CopyingGet(File archive, List<File> downloads)
+        {
+            this.archive = archive;
+            this.downloads = downloads;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setDest(File dest)
+        {
+            this.dest = dest;
+        }
+
+        /**
+         * Copies the archive. {@inheritDoc}
+         * @throws BuildException Never thrown.
+         */
+        @Override
+        public void execute() throws BuildException
+        {
+            this.downloads.add(this.dest);
+            new DefaultFileHandler().copyFile(this.archive.getPath(), this.dest.getPath());
+        }
+    }
+
+    /**
+     * Test {@link ZipURLInstaller#install()} from several threads at the same time.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testConcurrentInstalls() throws Exception
+    {
+        FileHandler defaultFileHandler = new DefaultFileHandler();
+        String workDir = defaultFileHandler.createUniqueTmpDirectory();
+        try
+        {
+            final File archive = createZip(new File(workDir, "resin-3.0.18.zip"), "resin");
+            final String installs = workDir + "/installs";
+            final List<File> downloads = Collections.synchronizedList(new ArrayList<File>());
+            final List<String> homes = Collections.synchronizedList(new ArrayList<String>());
+
+            Thread[] threads = new Thread[4];
+            for (int i = 0; i < threads.length; i++)
+            {
+                threads[i] = new Thread()
+                {
+                    @Override
+                    public void run()
+                    {
+                        ZipURLInstaller concurrentInstaller =
+                            createCopyingInstaller(archive, installs, downloads);
+                        concurrentInstaller.install();
+                        homes.add(concurrentInstaller.getHome());
+                    }
+                };
+                threads[i].start();
+            }
+            for (Thread thread : threads)
+            {
+                thread.join();
+            }
+
+            assertEquals(1, downloads.size());
+            assertEquals(threads.length, homes.size());
+            assertEquals("resin", defaultFileHandler.readTextFile(
+                homes.get(0) + "/bin/start.sh", "UTF-8"));
+            assertFalse(new File(installs, "resin-3.0.18.lock").exists());
+        }
+        finally
+        {
+            defaultFileHandler.delete(workDir);
+        }
+    }
+
+    /**
+     * Test {@link ZipURLInstaller#install()} keeps other processes out of the installation while
+     * it downloads the container.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testInstallLocksOtherProcessesOut() throws Exception
+    {
+        FileHandler defaultFileHandler = new DefaultFileHandler();
+        String workDir = defaultFileHandler.createUniqueTmpDirectory();
+        try
+        {
+            final File archive = createZip(new File(workDir, "resin-3.0.18.zip"), "resin");
+            String installs = workDir + "/installs";
+            final File lockFile = new File(installs, "resin-3.0.18.lock");
+            final List<File> downloads = new ArrayList<File>();
+            final List<Boolean> lockable = new ArrayList<Boolean>();
+            ZipURLInstaller lockingInstaller = createCopyingInstaller(archive, installs, downloads);
+            lockingInstaller.setAntTaskFactory(
+                new AntTaskFactory()
+                {
+                    public Task createTask(String taskName)
+                    {
+                        return new CopyingGet(archive, downloads)
+                        {
+                            @Override
+                            public void execute() throws BuildException
+                            {
+                                try
+                                {
+                                    lockable.add(Boolean.valueOf(
+                                        TryLockMain.isLockableByAnotherProcess(lockFile)));
+                                }
+                                catch (Exception e)
+                                {
+                                    throw new BuildException(e);
+                                }
+                                super.execute();
+                            }
+                        };
+                    }
+                });
+            lockingInstaller.install();
+
+            assertEquals(1, downloads.size());
+            assertEquals(Collections.singletonList(Boolean.FALSE), lockable);
+            assertFalse(lockFile.exists());
+        }
+        finally
+        {
+            defaultFileHandler.delete(workDir);
+        }
+    }
+
+    /**
+     * Test {@link ZipURLInstaller#install()} evicts the least recently used installation when the
+     * cache is full.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testEvictsLeastRecentlyUsedInstallation() throws Exception
+    {
+        FileHandler defaultFileHandler = new DefaultFileHandler();
+        String workDir = defaultFileHandler.createUniqueTmpDirectory();
+        try
+        {
+            String installs = workDir + "/installs";
+            List<File> downloads = new ArrayList<File>();
+            ZipURLInstaller installer1 = createCopyingInstaller(
+                createZip(new File(workDir, "resin-1.zip"), "resin 1"), installs, downloads);
+            ZipURLInstaller installer2 = createCopyingInstaller(
+                createZip(new File(workDir, "resin-2.zip"), "resin 2"), installs, downloads);
+            ZipURLInstaller installer3 = createCopyingInstaller(
+                createZip(new File(workDir, "resin-3.zip"), "resin 3"), installs, downloads);
+
+            installer1.install();
+            Thread.sleep(10);
+            installer2.install();
+            long twoInstallations = getDiskUsage(new File(installs));
+            Thread.sleep(10);
+
+            // Using the first installation again makes the second one the least recently used
+            installer1.install();
+            Thread.sleep(10);
+            installer3.setMaxCacheSize(twoInstallations + twoInstallations / 4);
+            installer3.install();
+
+            assertTrue(installer1.isAlreadyExtracted());
+            assertFalse(installer2.isAlreadyExtracted());
+            assertFalse(new File(installer2.getExtractDir()).exists());
+            assertFalse(new File(installer2.getDownloadFile()).exists());
+            assertTrue(installer3.isAlreadyExtracted());
+            assertEquals(3, downloads.size());
+            assertFalse(new File(installs, "resin-2.lock").exists());
+        }
+        finally
+        {
+            defaultFileHandler.delete(workDir);
+        }
+    }
+
+    /**
+     * Test {@link ZipURLInstaller#install()} does not evict an installation another thread of
+     * this JVM is using.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testDoesNotEvictInstallationInUse() throws Exception
+    {
+        FileHandler defaultFileHandler = new DefaultFileHandler();
+        String workDir = defaultFileHandler.createUniqueTmpDirectory();
+        try
+        {
+            String installs = workDir + "/installs";
+            List<File> downloads = Collections.synchronizedList(new ArrayList<File>());
+            final ZipURLInstaller installer1 = createCopyingInstaller(
+                createZip(new File(workDir, "resin-1.zip"), "resin 1"), installs, downloads);
+            ZipURLInstaller installer2 = createCopyingInstaller(
+                createZip(new File(workDir, "resin-2.zip"), "resin 2"), installs, downloads);
+            ZipURLInstaller installer3 = createCopyingInstaller(
+                createZip(new File(workDir, "resin-3.zip"), "resin 3"), installs, downloads);
+            installer1.install();
+            installer2.install();
+
+            // Keep the first installation in use while cloning it
+            final CountDownLatch cloning = new CountDownLatch(1);
+            final CountDownLatch evicted = new CountDownLatch(1);
+            installer1.setCloneDir(workDir + "/clone");
+            installer1.setFileHandler(new DefaultFileHandler()
+            {
+                @Override
+                public void linkDirectory(String source, String target)
+                {
+                    cloning.countDown();
+                    try
+                    {
+                        evicted.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        throw new IllegalStateException(e);
+                    }
+                    super.linkDirectory(source, target);
+                }
+            });
+            Thread thread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    installer1.install();
+                }
+            };
+            thread.start();
+            cloning.await();
+            try
+            {
+                installer3.setMaxCacheSize(0);
+                installer3.install();
+            }
+            finally
+            {
+                evicted.countDown();
+                thread.join();
+            }
+
+            assertTrue(installer1.isAlreadyExtracted());
+            assertFalse(installer2.isAlreadyExtracted());
+            assertTrue(installer3.isAlreadyExtracted());
+            assertEquals("resin 1", defaultFileHandler.readTextFile(
+                installer1.getHome() + "/bin/start.sh", "UTF-8"));
+        }
+        finally
+        {
+            defaultFileHandler.delete(workDir);
+        }
+    }
+
+    /**
+     * Test {@link ZipURLInstaller#install()} reinstalls the container when the downloaded archive
+     * does not match the checksum recorded at installation time.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testReinstallsWhenArchiveChanged() throws Exception
+    {
+        FileHandler defaultFileHandler = new DefaultFileHandler();
+        String workDir = defaultFileHandler.createUniqueTmpDirectory();
+        try
+        {
+            List<File> downloads = new ArrayList<File>();
+            ZipURLInstaller checkedInstaller = createCopyingInstaller(
+                createZip(new File(workDir, "resin-3.0.18.zip"), "old"), workDir + "/installs",
+                    downloads);
+            checkedInstaller.install();
+            assertEquals("old", defaultFileHandler.readTextFile(
+                checkedInstaller.getHome() + "/bin/start.sh", "UTF-8"));
+
+            // Same size as the old archive, a later modification time makes it checksummed
+            File archive = new File(checkedInstaller.getDownloadFile());
+            long lastModified = archive.lastModified();
+            createZip(archive, "new");
+            assertTrue(archive.setLastModified(lastModified + 60000));
+            checkedInstaller.install();
+
+            assertEquals("new", defaultFileHandler.readTextFile(
+                checkedInstaller.getHome() + "/bin/start.sh", "UTF-8"));
+            assertEquals(1, downloads.size());
+        }
+        finally
+        {
+            defaultFileHandler.delete(workDir);
+        }
+    }
+
+    /**
+     * Test that an archive which has only been touched does not reinstall the container, and
+     * that its new modification time is recorded so that it is not checksummed again.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testKeepsInstallationWhenArchiveTouched() throws Exception
+    {
+        FileHandler defaultFileHandler = new DefaultFileHandler();
+        String workDir = defaultFileHandler.createUniqueTmpDirectory();
+        try
+        {
+            List<File> downloads = new ArrayList<File>();
+            ZipURLInstaller touchedInstaller = createCopyingInstaller(
+                createZip(new File(workDir, "resin-3.0.18.zip"), "old"), workDir + "/installs",
+                    downloads);
+            touchedInstaller.install();
+            String marker = touchedInstaller.getHome() + "/marker.txt";
+            defaultFileHandler.writeTextFile(marker, "marker", "UTF-8");
+
+            File archive = new File(touchedInstaller.getDownloadFile());
+            long lastModified = archive.lastModified() + 60000;
+            assertTrue(archive.setLastModified(lastModified));
+            touchedInstaller.install();
+
+            assertTrue(defaultFileHandler.exists(marker));
+            String timestamp = defaultFileHandler.readTextFile(
+                touchedInstaller.getExtractDir() + "/.cargo", "ISO-8859-1");
+            assertTrue(timestamp, timestamp.contains("lastModified=" + archive.lastModified()));
+            assertEquals(1, downloads.size());
+        }
+        finally
+        {
+            defaultFileHandler.delete(workDir);
+        }
+    }
+
+    /**
+     * Test that changing the URL to an archive with the same file name downloads the new archive
+     * and replaces the previous installation instead of extracting the previous archive again.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testReinstallsWhenUrlChanged() throws Exception
+    {
+        FileHandler defaultFileHandler = new DefaultFileHandler();
+        String workDir = defaultFileHandler.createUniqueTmpDirectory();
+        try
+        {
+            List<File> downloads = new ArrayList<File>();
+            ZipURLInstaller oldInstaller = createCopyingInstaller("http://some/url/",
+                createZip(new File(workDir, "resin-3.0.18.zip"), "old"), workDir + "/installs",
+                    downloads);
+            oldInstaller.install();
+            String marker = oldInstaller.getHome() + "/marker.txt";
+            defaultFileHandler.writeTextFile(marker, "marker", "UTF-8");
+
+            File newArchive = new File(workDir + "/new", "resin-3.0.18.zip");
+            newArchive.getParentFile().mkdirs();
+            ZipURLInstaller newInstaller = createCopyingInstaller("http://other/url/",
+                createZip(newArchive, "new"), workDir + "/installs", downloads);
+            newInstaller.install();
+
+            assertEquals("new", defaultFileHandler.readTextFile(
+                newInstaller.getHome() + "/bin/start.sh", "UTF-8"));
+            assertFalse(defaultFileHandler.exists(marker));
+            assertEquals(2, downloads.size());
+        }
+        finally
+        {
+            defaultFileHandler.delete(workDir);
+        }
+    }
+
+    /**
+     * @param archive local archive the installer downloads.
+     * @param installs directory in which the archive is downloaded and extracted.
+     * @param downloads list to which each download destination is added.
+     * @return an installer copying the archive instead of downloading it.
+     */
+    private static ZipURLInstaller createCopyingInstaller(File archive, String installs,
+        List<File> downloads)
+    {
+        return createCopyingInstaller("http://some/url/", archive, installs, downloads);
+    }
+
+    /**
+     * @param baseUrl URL of the directory from which the installer downloads the archive.
+     * @param archive local archive the installer downloads.
+     * @param installs directory in which the archive is downloaded and extracted.
+     * @param downloads list to which each download destination is added.
+     * @return an installer copying the archive instead of downloading it.
+     */
+    private static ZipURLInstaller createCopyingInstaller(String baseUrl, final File archive,
+        String installs, final List<File> downloads)
+    {
+        ZipURLInstaller copyingInstaller;
+        try
+        {
+            copyingInstaller = new ZipURLInstaller(
+                new URL(baseUrl + archive.getName()), installs, installs);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalArgumentException(e.toString());
+        }
+        copyingInstaller.setAntTaskFactory(
+            new AntTaskFactory()
+            {
+                public Task createTask(String taskName)
+                {
+                    return new CopyingGet(archive, downloads);
+                }
+            });
+        return copyingInstaller;
+    }
+
+    /**
+     * Creates a zip archive with a single <code>bin/start.sh</code> file in a root directory.
+     * @param archive the archive to create.
+     * @param content the content of the file.
+     * @return <code>archive</code>.
+     * @throws IOException If anything goes wrong.
+     */
+    private static File createZip(File archive, String content) throws IOException
+    {
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive));
+        try
+        {
+            zip.putNextEntry(new ZipEntry("resin/bin/start.sh"));
+            zip.write(content.getBytes("UTF-8"));
+            zip.closeEntry();
+        }
+        finally
+        {
+            zip.close();
+        }
+        return archive;
+    }
+
+    /**
+     * @param file a file or directory.
+     * @return the total size in bytes of the file or of all files in the directory.
+     */
+    private static long getDiskUsage(File file)
+    {
+        long size = 0;
+        File[] children = file.listFiles();
+        if (children == null)
+        {
+            size = file.length();
+        }
+        else
+        {
+            for (File child : children)
+            {
+                size += getDiskUsage(child);
+            }
+        }
+        return size;
+    }
+}
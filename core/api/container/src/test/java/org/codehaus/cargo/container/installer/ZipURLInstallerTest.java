@@ -19,7 +19,10 @@
  */
 package org.codehaus.cargo.container.installer;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.net.URL;
+import java.util.zip.GZIPOutputStream;
 
 import junit.framework.TestCase;
 
@@ -28,7 +31,10 @@ import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Task;
 import org.apache.tools.ant.taskdefs.Get;
 import org.codehaus.cargo.container.ContainerException;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarOutputStream;
 import org.codehaus.cargo.util.AntTaskFactory;
+import org.codehaus.cargo.util.DefaultFileHandler;
 import org.codehaus.cargo.util.FileHandler;
 import org.codehaus.cargo.util.VFSFileHandler;
 
@@ -249,4 +255,96 @@ public class ZipURLInstallerTest extends TestCase
 
         assertEquals("ram:///tmp/resin-3.0.18/resin-3.0.18", this.installer.getHome());
     }
+
+    /**
+     * Test {@link ZipURLInstaller#isAlreadyExtracted()} when the timestamp file has been written by
+     * an older version of CARGO.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testIsAlreadyExtractedWithLegacyTimestamp() throws Exception
+    {
+        this.fileHandler.writeTextFile("ram:///tmp/resin-3.0.18/.cargo", "Do not remove this file",
+            null);
+
+        this.installer.setExtractDir("ram:///tmp");
+
+        assertTrue(this.installer.isAlreadyExtracted());
+    }
+
+    /**
+     * Test {@link ZipURLInstaller#isAlreadyExtracted()} when the container has been installed from
+     * the same URL.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testIsAlreadyExtractedFromSameUrl() throws Exception
+    {
+        this.fileHandler.writeTextFile("ram:///tmp/resin-3.0.18/.cargo",
+            "url=http\\://some/url/resin-3.0.18.zip", null);
+
+        this.installer.setExtractDir("ram:///tmp");
+
+        assertTrue(this.installer.isAlreadyExtracted());
+    }
+
+    /**
+     * Test {@link ZipURLInstaller#isAlreadyExtracted()} when the container has been installed from
+     * a different URL.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testIsAlreadyExtractedFromDifferentUrl() throws Exception
+    {
+        this.fileHandler.writeTextFile("ram:///tmp/resin-3.0.18/.cargo",
+            "url=http\\://some/other/url/resin-3.0.18.zip", null);
+
+        this.installer.setExtractDir("ram:///tmp");
+
+        assertFalse(this.installer.isAlreadyExtracted());
+    }
+
+    /**
+     * Test {@link ZipURLInstaller#install()} when extracting a tar.gz archive while downloading it.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testStreamingInstall() throws Exception
+    {
+        FileHandler defaultFileHandler = new DefaultFileHandler();
+        String workDir = defaultFileHandler.createUniqueTmpDirectory();
+        try
+        {
+            File archive = new File(workDir, "jetty-7.6.0.tar.gz");
+            TarOutputStream tar =
+                new TarOutputStream(new GZIPOutputStream(new FileOutputStream(archive)));
+            try
+            {
+                tar.putNextEntry(new TarEntry("jetty-7.6.0/bin/"));
+                tar.closeEntry();
+                byte[] content = "#!/bin/sh".getBytes("UTF-8");
+                TarEntry script = new TarEntry("jetty-7.6.0/bin/jetty.sh");
+                script.setSize(content.length);
+                tar.putNextEntry(script);
+                tar.write(content);
+                tar.closeEntry();
+            }
+            finally
+            {
+                tar.close();
+            }
+
+            ZipURLInstaller streamingInstaller = new ZipURLInstaller(archive.toURI().toURL(),
+                workDir + "/downloads", workDir + "/installs");
+            streamingInstaller.setStreaming(true);
+            streamingInstaller.install();
+
+            assertTrue(streamingInstaller.isAlreadyExtracted());
+            assertTrue(streamingInstaller.isAlreadyDownloaded());
+            assertEquals(archive.length(), new File(streamingInstaller.getDownloadFile()).length());
+            assertFalse(new File(streamingInstaller.getDownloadFile() + ".part").exists());
+            assertEquals("#!/bin/sh", defaultFileHandler.readTextFile(
+                streamingInstaller.getHome() + "/bin/jetty.sh", "UTF-8"));
+        }
+        finally
+        {
+            defaultFileHandler.delete(workDir);
+        }
+    }
 }
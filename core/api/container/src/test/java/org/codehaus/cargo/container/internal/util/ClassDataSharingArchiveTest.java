@@ -0,0 +1,141 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.stub.JvmLauncherStub;
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+
+/**
+ * Unit tests for {@link ClassDataSharingArchive}.
+ * 
+ */
+public class ClassDataSharingArchiveTest extends TestCase
+{
+    /**
+     * File utility class.
+     */
+    private FileHandler fileHandler = new DefaultFileHandler();
+
+    /**
+     * Directory holding the archives and the classpath entry.
+     */
+    private File directory;
+
+    /**
+     * Classpath entry of the JVM.
+     */
+    private File jar;
+
+    /**
+     * Archive to test.
+     */
+    private ClassDataSharingArchive archive;
+
+    /**
+     * Creates the archive. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.directory = new File(this.fileHandler.createUniqueTmpDirectory());
+        this.jar = new File(this.directory, "server.jar");
+        this.fileHandler.writeTextFile(this.jar.getPath(), "classes", "UTF-8");
+        this.archive = new ClassDataSharingArchive(this.directory,
+            Arrays.asList("container", "-Xmx256m"),
+            Collections.singletonList(this.directory.getPath()));
+    }
+
+    /**
+     * Deletes the archive directory. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        this.fileHandler.delete(this.directory.getPath());
+        super.tearDown();
+    }
+
+    /**
+     * Test that the archive is dumped by a first run, used by the next ones and dumped again when
+     * the classpath changes.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testDumpAndUseArchive() throws Exception
+    {
+        String archivePath = this.archive.getArchive().getAbsolutePath();
+
+        JvmLauncherStub java = new JvmLauncherStub();
+        this.archive.addJvmArguments(java, 17);
+        assertEquals(Arrays.asList("-XX:ArchiveClassesAtExit=" + archivePath),
+            java.getJvmArguments());
+        this.archive.recordClasspath(this.jar.getPath());
+        this.fileHandler.writeTextFile(archivePath, "archive", "UTF-8");
+
+        java = new JvmLauncherStub();
+        this.archive.addJvmArguments(java, 17);
+        assertEquals(Arrays.asList("-XX:SharedArchiveFile=" + archivePath),
+            java.getJvmArguments());
+
+        this.jar.setLastModified(this.jar.lastModified() - 10000);
+        java = new JvmLauncherStub();
+        this.archive.addJvmArguments(java, 17);
+        assertEquals(Arrays.asList("-XX:ArchiveClassesAtExit=" + archivePath),
+            java.getJvmArguments());
+        assertFalse(this.archive.getArchive().exists());
+    }
+
+    /**
+     * Test the arguments for Java versions checking the archive by themselves and for Java
+     * versions unable to dump it.
+     */
+    public void testJavaVersions()
+    {
+        JvmLauncherStub java = new JvmLauncherStub();
+        this.archive.addJvmArguments(java, 21);
+        assertEquals(Arrays.asList("-XX:+AutoCreateSharedArchive",
+            "-XX:SharedArchiveFile=" + this.archive.getArchive().getAbsolutePath()),
+            java.getJvmArguments());
+
+        java = new JvmLauncherStub();
+        this.archive.addJvmArguments(java, 11);
+        assertTrue(java.getJvmArguments().isEmpty());
+    }
+
+    /**
+     * Test that the archive depends on the JVM it is created for.
+     */
+    public void testArchiveKey()
+    {
+        ClassDataSharingArchive other = new ClassDataSharingArchive(this.directory,
+            Arrays.asList("container", "-Xmx512m"),
+            Collections.singletonList(this.directory.getPath()));
+        assertFalse(this.archive.getArchive().equals(other.getArchive()));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+
+/**
+ * Unit tests for {@link JdkUtils}.
+ * 
+ */
+public class JdkUtilsTest extends TestCase
+{
+    /**
+     * Test the parsing of Java versions.
+     */
+    public void testParseMajorJavaVersion()
+    {
+        assertEquals(5, JdkUtils.parseMajorJavaVersion("1.5.0_22"));
+        assertEquals(8, JdkUtils.parseMajorJavaVersion("1.8.0_392"));
+        assertEquals(11, JdkUtils.parseMajorJavaVersion("11.0.2"));
+        assertEquals(17, JdkUtils.parseMajorJavaVersion("17"));
+        assertEquals(9, JdkUtils.parseMajorJavaVersion("9-ea"));
+        assertEquals(-1, JdkUtils.parseMajorJavaVersion("unknown"));
+        assertEquals(-1, JdkUtils.parseMajorJavaVersion(null));
+    }
+
+    /**
+     * Test that Java versions are found without launching Java.
+     */
+    public void testGetMajorJavaVersion()
+    {
+        JdkUtils jdkUtils = new JdkUtils();
+        assertEquals(JdkUtils.parseMajorJavaVersion(System.getProperty("java.version")),
+            jdkUtils.getMajorJavaVersion(System.getProperty("java.home")));
+
+        FileHandler fileHandler = new DefaultFileHandler();
+        String javaHome = fileHandler.createUniqueTmpDirectory();
+        try
+        {
+            assertEquals(-1, jdkUtils.getMajorJavaVersion(javaHome));
+
+            fileHandler.writeTextFile(fileHandler.append(javaHome, "release"),
+                "JAVA_VERSION=\"1.7.0_80\"\nOS_NAME=\"Linux\"\n", null);
+            assertEquals(7, jdkUtils.getMajorJavaVersion(javaHome));
+
+            jdkUtils.setMajorJavaVersion(javaHome, 6);
+            assertEquals(6, jdkUtils.getMajorJavaVersion(javaHome));
+        }
+        finally
+        {
+            fileHandler.delete(javaHome);
+        }
+        assertFalse(new File(javaHome).exists());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link LockFile}.
+ *
+ */
+public class LockFileTest extends TestCase
+{
+    /**
+     * Lock file.
+     */
+    private File file;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.file = File.createTempFile("cargo-lock-file-test", ".lock");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        this.file.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Test that a lock keeps other processes out until it is released, and that the lock file is
+     * then deleted.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testLockKeepsOtherProcessesOut() throws Exception
+    {
+        LockFile lock = LockFile.lock(this.file);
+        try
+        {
+            assertFalse(TryLockMain.isLockableByAnotherProcess(this.file));
+        }
+        finally
+        {
+            lock.release();
+        }
+        assertFalse(this.file.exists());
+    }
+
+    /**
+     * Test that trying to lock a file held by another thread of the same JVM neither acquires
+     * the lock nor drops the lock of the holder.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testTryLockHeldBySameJvm() throws Exception
+    {
+        LockFile lock = LockFile.lock(this.file);
+        try
+        {
+            assertNull(LockFile.tryLock(this.file));
+            assertFalse(TryLockMain.isLockableByAnotherProcess(this.file));
+        }
+        finally
+        {
+            lock.release();
+        }
+
+        LockFile relock = LockFile.tryLock(this.file);
+        assertNotNull(relock);
+        relock.release();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link PortAllocator}.
+ * 
+ */
+public class PortAllocatorTest extends TestCase
+{
+    /**
+     * Directory of the lock files.
+     */
+    private File lockDirectory;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.lockDirectory = File.createTempFile("cargo-ports", null);
+        this.lockDirectory.delete();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        File[] lockFiles = this.lockDirectory.listFiles();
+        if (lockFiles != null)
+        {
+            for (File lockFile : lockFiles)
+            {
+                lockFile.delete();
+            }
+        }
+        this.lockDirectory.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Test that reserved ports are skipped by another allocator and that their lock files are
+     * deleted once released.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testReserveAndRelease() throws Exception
+    {
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+        List<Integer> ports = Arrays.asList(new Integer[] {port});
+
+        PortAllocator allocator1 = new PortAllocator(this.lockDirectory);
+        PortAllocator allocator2 = new PortAllocator(this.lockDirectory);
+        int offset1 = allocator1.reserve(ports);
+        try
+        {
+            assertTrue(new File(this.lockDirectory, (port + offset1) + ".lock").isFile());
+            int offset2 = allocator2.reserve(ports);
+            assertTrue("Both allocators got the offset " + offset1, offset1 != offset2);
+            allocator2.release();
+        }
+        finally
+        {
+            allocator1.release();
+        }
+
+        assertEquals(0, this.lockDirectory.list().length);
+    }
+
+    /**
+     * Test that reserved ports stay locked for other processes while reserved, including after
+     * another allocator of this process has tried to reserve them.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testReserveLocksOtherProcessesOut() throws Exception
+    {
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+        List<Integer> ports = Arrays.asList(new Integer[] {port});
+
+        PortAllocator allocator1 = new PortAllocator(this.lockDirectory);
+        PortAllocator allocator2 = new PortAllocator(this.lockDirectory);
+        int offset = allocator1.reserve(ports);
+        File lockFile = new File(this.lockDirectory, (port + offset) + ".lock");
+        try
+        {
+            assertFalse(TryLockMain.isLockableByAnotherProcess(lockFile));
+            allocator2.reserve(ports);
+            allocator2.release();
+            assertFalse(TryLockMain.isLockableByAnotherProcess(lockFile));
+        }
+        finally
+        {
+            allocator1.release();
+        }
+        assertFalse(lockFile.exists());
+    }
+}
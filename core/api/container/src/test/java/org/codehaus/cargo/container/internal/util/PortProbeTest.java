@@ -0,0 +1,73 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link PortProbe}.
+ * 
+ */
+public class PortProbeTest extends TestCase
+{
+    /**
+     * Test that only the ports with a listening server are found busy, in one probe.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testGetBusyPorts() throws Exception
+    {
+        ServerSocket busy1 = new ServerSocket(0);
+        ServerSocket busy2 = new ServerSocket(0);
+        ServerSocket free = new ServerSocket(0);
+        int freePort = free.getLocalPort();
+        free.close();
+        try
+        {
+            PortProbe probe = new PortProbe();
+            Set<Integer> busyPorts = probe.getBusyPorts(Arrays.asList(new Integer[] {
+                busy2.getLocalPort(), freePort, busy1.getLocalPort()}), 1000);
+            assertEquals(Arrays.asList(new Integer[] {busy2.getLocalPort(), busy1.getLocalPort()}),
+                Arrays.asList(busyPorts.toArray()));
+
+            probe.setBindTest(true);
+            busyPorts = probe.getBusyPorts(Arrays.asList(new Integer[] {
+                freePort, busy1.getLocalPort()}), 0);
+            assertEquals(1, busyPorts.size());
+            assertTrue(busyPorts.contains(busy1.getLocalPort()));
+        }
+        finally
+        {
+            busy1.close();
+            busy2.close();
+        }
+    }
+
+    /**
+     * Test that probing no port finds no busy port.
+     */
+    public void testGetBusyPortsWithoutPorts()
+    {
+        assertTrue(new PortProbe().getBusyPorts(Arrays.asList(new Integer[0]), 0).isEmpty());
+    }
+}
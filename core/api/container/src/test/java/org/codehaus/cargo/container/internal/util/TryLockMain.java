@@ -0,0 +1,108 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * Tries to lock a file from another JVM. File locks are held on behalf of the whole process, so
+ * tests checking that a lock keeps other processes out need a second JVM.
+ * 
+ */
+public final class TryLockMain
+{
+    /**
+     * Exit code of the second JVM when it has locked the file.
+     */
+    private static final int LOCKED = 0;
+
+    /**
+     * Exit code of the second JVM when another process holds the lock of the file.
+     */
+    private static final int BUSY = 1;
+
+    /**
+     * Utility class.
+     */
+    private TryLockMain()
+    {
+        // Nothing
+    }
+
+    /**
+     * @param file the file to lock.
+     * @return <code>true</code> if a second JVM can lock the file.
+     * @throws Exception If the second JVM cannot be run or fails.
+     */
+    public static boolean isLockableByAnotherProcess(File file) throws Exception
+    {
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+            TryLockMain.class.getName(), file.getAbsolutePath()).redirectErrorStream(true).start();
+        process.getOutputStream().close();
+        StringBuilder output = new StringBuilder();
+        InputStream is = process.getInputStream();
+        try
+        {
+            int c;
+            while ((c = is.read()) != -1)
+            {
+                output.append((char) c);
+            }
+        }
+        finally
+        {
+            is.close();
+        }
+
+        int exitCode = process.waitFor();
+        if (exitCode != LOCKED && exitCode != BUSY)
+        {
+            throw new IllegalStateException("Failed to lock [" + file + "] from another JVM: "
+                + output);
+        }
+        return exitCode == LOCKED;
+    }
+
+    /**
+     * Tries to lock a file, exiting with {@link #LOCKED} if the lock has been acquired and with
+     * {@link #BUSY} if another process holds it.
+     * 
+     * @param args the path of the file to lock.
+     * @throws IOException If the file cannot be opened.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(args[0], "rw");
+        boolean locked;
+        try
+        {
+            locked = file.getChannel().tryLock() != null;
+        }
+        finally
+        {
+            file.close();
+        }
+        System.exit(locked ? LOCKED : BUSY);
+    }
+}
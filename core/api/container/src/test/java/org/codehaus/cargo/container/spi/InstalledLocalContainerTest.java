@@ -22,15 +22,24 @@
  */
 package org.codehaus.cargo.container.spi;
 
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 import org.apache.commons.vfs.impl.StandardFileSystemManager;
 import org.codehaus.cargo.container.ContainerCapability;
+import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.container.LocalContainer;
 import org.codehaus.cargo.container.configuration.ConfigurationCapability;
 import org.codehaus.cargo.container.configuration.LocalConfiguration;
 import org.codehaus.cargo.container.configuration.entry.Resource;
+import org.codehaus.cargo.container.lifecycle.LifecycleEvent;
+import org.codehaus.cargo.container.lifecycle.LifecycleTimingReport;
 import org.codehaus.cargo.container.property.GeneralPropertySet;
+import org.codehaus.cargo.container.property.ServletPropertySet;
 import org.codehaus.cargo.container.spi.configuration.AbstractStandaloneLocalConfiguration;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncher;
 import org.codehaus.cargo.container.stub.JvmLauncherStub;
@@ -193,6 +202,51 @@ public class InstalledLocalContainerTest extends TestCase
 
     }
 
+    /**
+     * {@link AbstractInstalledLocalContainerStub} which can be told to fail when starting, for
+     * testing the lifecycle of the container.
+     */
+    public class LifecycleContainerStub extends AbstractInstalledLocalContainerStub
+    {
+        /**
+         * Exception thrown when starting, <code>null</code> to start normally.
+         */
+        private Exception startFailure;
+
+        /**
+         * {@inheritDoc}
+         * @param configuration Container configuration.
+         */
+        public LifecycleContainerStub(LocalConfiguration configuration)
+        {
+            super(configuration);
+        }
+
+        /**
+         * @param startFailure Exception to throw when starting, <code>null</code> to start
+         * normally.
+         */
+        public void setStartFailure(Exception startFailure)
+        {
+            this.startFailure = startFailure;
+        }
+
+        /**
+         * Throws the start failure if any. {@inheritDoc}
+         * @param java Java instance.
+         * @throws Exception The start failure.
+         */
+        @Override
+        protected void doStart(JvmLauncher java) throws Exception
+        {
+            if (this.startFailure != null)
+            {
+                throw this.startFailure;
+            }
+            super.doStart(java);
+        }
+    }
+
     /**
      * Tests that <code>tools.jar</code> is not set on MacOS X.
      * @throws Exception If anything goes wrong.
@@ -529,6 +583,123 @@ public class InstalledLocalContainerTest extends TestCase
         checkString(commandLine, "-XX:MaxPermSize=256m");
     }
 
+    /**
+     * Test that waiting for the container to stop ends as soon as its ports are shut down.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testWaitForShutdown() throws Exception
+    {
+        LifecycleContainerStub container = new LifecycleContainerStub(configuration);
+        final ServerSocket serverSocket = new ServerSocket(0);
+        container.getConfiguration().setProperty(ServletPropertySet.PORT,
+            Integer.toString(serverSocket.getLocalPort()));
+        container.setTimeout(20000);
+
+        Thread closer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(500);
+                    serverSocket.close();
+                }
+                catch (Exception e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        long start = System.currentTimeMillis();
+        closer.start();
+        container.waitForCompletion(false);
+        long duration = System.currentTimeMillis() - start;
+        closer.join();
+
+        assertTrue("Stopped after " + duration + " ms", serverSocket.isClosed());
+        assertTrue("Stopped after " + duration + " ms", duration < 5000);
+    }
+
+    /**
+     * Test that the lifecycle phases of the container are reported to its listeners.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testLifecyclePhases() throws Exception
+    {
+        LifecycleContainerStub container = new LifecycleContainerStub(configuration);
+        container.setFileHandler(fileHandler);
+        fileHandler.mkdirs("ram:/Install/home");
+        container.setHome("ram:/Install/home");
+        container.setTimeout(0);
+        LifecycleTimingReport report = new LifecycleTimingReport();
+        container.addLifecycleListener(report);
+
+        container.start();
+        container.stop();
+
+        List<String> phases = new ArrayList<String>();
+        for (LifecycleEvent phase : report.getPhases())
+        {
+            assertTrue(phase.isEnd());
+            assertTrue(phase.getDuration() >= 0);
+            assertFalse(phase.isFailed());
+            phases.add(phase.getPhase());
+        }
+        assertEquals(Arrays.asList(LifecycleEvent.START, LifecycleEvent.APPLY_PORT_OFFSET,
+            LifecycleEvent.CONFIGURE, LifecycleEvent.CHECK_PORTS, LifecycleEvent.START_INTERNAL,
+            LifecycleEvent.POST_START_TASKS, LifecycleEvent.STOP,
+            LifecycleEvent.APPLY_PORT_OFFSET, LifecycleEvent.STOP_INTERNAL), phases);
+
+        String csv = report.toCsv();
+        assertTrue(csv, csv.startsWith("container,phase,deployable,begin,duration,failed\n"));
+        assertTrue(csv, csv.contains(",configure,,"));
+        String json = report.toJson();
+        assertTrue(json, json.contains("\"phase\": \"startInternal\""));
+    }
+
+    /**
+     * Test that a lifecycle phase which fails is ended and reported as failed, as is the start
+     * phase containing it.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testFailedLifecyclePhase() throws Exception
+    {
+        LifecycleContainerStub container = new LifecycleContainerStub(configuration);
+        container.setStartFailure(new Exception("Cannot start"));
+        container.setFileHandler(fileHandler);
+        fileHandler.mkdirs("ram:/Install/home");
+        container.setHome("ram:/Install/home");
+        container.setTimeout(0);
+        LifecycleTimingReport report = new LifecycleTimingReport();
+        container.addLifecycleListener(report);
+
+        try
+        {
+            container.start();
+            fail("Should have thrown a ContainerException here");
+        }
+        catch (ContainerException expected)
+        {
+            // Expected
+        }
+
+        List<String> failedPhases = new ArrayList<String>();
+        for (LifecycleEvent phase : report.getPhases())
+        {
+            if (phase.isFailed())
+            {
+                failedPhases.add(phase.getPhase());
+            }
+        }
+        assertEquals(5, report.getPhases().size());
+        assertEquals(Arrays.asList(LifecycleEvent.START, LifecycleEvent.START_INTERNAL),
+            failedPhases);
+        String csv = report.toCsv();
+        assertTrue(csv, csv.contains(",startInternal,,"));
+        assertTrue(csv, csv.trim().endsWith(",true"));
+    }
+
     /**
      * Check if <code>haystack</code> contains <code>needle</code>. A JUnit assertion will fail
      * otherwise.
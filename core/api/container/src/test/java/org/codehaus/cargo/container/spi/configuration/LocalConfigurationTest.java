@@ -19,15 +19,19 @@
  */
 package org.codehaus.cargo.container.spi.configuration;
 
+import java.io.File;
+import java.net.ServerSocket;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 import junit.framework.TestCase;
 
+import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.container.LocalContainer;
 import org.codehaus.cargo.container.configuration.ConfigurationCapability;
 import org.codehaus.cargo.container.configuration.ConfigurationType;
+import org.codehaus.cargo.container.configuration.PortOffsetAllocatingConfiguration;
 import org.codehaus.cargo.container.configuration.entry.ConfigurationFixtureFactory;
 import org.codehaus.cargo.container.property.DatasourcePropertySet;
 import org.codehaus.cargo.container.property.GeneralPropertySet;
@@ -58,7 +62,18 @@ public class LocalConfigurationTest extends TestCase
          */
         public LocalConfigurationThatSupportsProperty(List<String> supportedProperties)
         {
-            super(null);
+            this(null, supportedProperties);
+        }
+
+        /**
+         * Constructor which sets the home and the list of supported properties.
+         * @param home The configuration home.
+         * @param supportedProperties The list of supported properties.
+         */
+        public LocalConfigurationThatSupportsProperty(String home,
+            List<String> supportedProperties)
+        {
+            super(home);
             this.supportedProperties = supportedProperties;
         }
 
@@ -333,4 +348,108 @@ public class LocalConfigurationTest extends TestCase
         assertEquals("1099", configuration.getPropertyValue(GeneralPropertySet.RMI_PORT));
         assertEquals("8080", configuration.getPropertyValue(ServletPropertySet.PORT));
     }
+
+    /**
+     * Test the allocation of the port offset.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testAllocatePortOffset() throws Exception
+    {
+        ServerSocket busySocket = new ServerSocket(0);
+        try
+        {
+            String busyPort = Integer.toString(busySocket.getLocalPort());
+            PortOffsetAllocatingConfiguration configuration1 =
+                new LocalConfigurationThatSupportsProperty(Arrays.asList(new String[] {
+                    GeneralPropertySet.PORT_OFFSET, ServletPropertySet.PORT}));
+            configuration1.setProperty(GeneralPropertySet.PORT_OFFSET,
+                AbstractLocalConfiguration.AUTO_PORT_OFFSET);
+            configuration1.setProperty(ServletPropertySet.PORT, busyPort);
+            PortOffsetAllocatingConfiguration configuration2 =
+                new LocalConfigurationThatSupportsProperty(Arrays.asList(new String[] {
+                    GeneralPropertySet.PORT_OFFSET, ServletPropertySet.PORT}));
+            configuration2.setProperty(GeneralPropertySet.PORT_OFFSET,
+                AbstractLocalConfiguration.AUTO_PORT_OFFSET);
+            configuration2.setProperty(ServletPropertySet.PORT, busyPort);
+
+            configuration1.allocatePortOffset();
+            configuration2.allocatePortOffset();
+            int offset1 = Integer.parseInt(
+                configuration1.getPropertyValue(GeneralPropertySet.PORT_OFFSET));
+            int offset2 = Integer.parseInt(
+                configuration2.getPropertyValue(GeneralPropertySet.PORT_OFFSET));
+            assertTrue(offset1 > 0);
+            assertEquals(0, offset1 % 100);
+            assertTrue("Both configurations got the offset " + offset1, offset1 != offset2);
+
+            configuration1.applyPortOffset();
+            assertEquals(Integer.toString(busySocket.getLocalPort() + offset1),
+                configuration1.getPropertyValue(ServletPropertySet.PORT));
+            configuration1.revertPortOffset();
+            configuration1.resetAllocatedPortOffset();
+            configuration2.resetAllocatedPortOffset();
+            assertEquals(busyPort, configuration1.getPropertyValue(ServletPropertySet.PORT));
+            assertEquals(AbstractLocalConfiguration.AUTO_PORT_OFFSET,
+                configuration1.getPropertyValue(GeneralPropertySet.PORT_OFFSET));
+        }
+        finally
+        {
+            busySocket.close();
+        }
+    }
+
+    /**
+     * Test that a port offset allocated by a configuration is read back by another configuration
+     * with the same home, for example to stop the container.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testRestoreAllocatedPortOffset() throws Exception
+    {
+        File home = File.createTempFile("cargo-port-offset", null);
+        home.delete();
+        home.mkdirs();
+        List<String> supportedProperties = Arrays.asList(new String[] {
+            GeneralPropertySet.PORT_OFFSET, ServletPropertySet.PORT});
+        try
+        {
+            PortOffsetAllocatingConfiguration configuration1 =
+                new LocalConfigurationThatSupportsProperty(home.getPath(), supportedProperties);
+            configuration1.setProperty(GeneralPropertySet.PORT_OFFSET,
+                AbstractLocalConfiguration.AUTO_PORT_OFFSET);
+            configuration1.setProperty(ServletPropertySet.PORT, "8080");
+            configuration1.configure(null);
+            String portOffset = configuration1.getPropertyValue(GeneralPropertySet.PORT_OFFSET);
+            Integer.parseInt(portOffset);
+
+            PortOffsetAllocatingConfiguration configuration2 =
+                new LocalConfigurationThatSupportsProperty(home.getPath(), supportedProperties);
+            configuration2.setProperty(GeneralPropertySet.PORT_OFFSET,
+                AbstractLocalConfiguration.AUTO_PORT_OFFSET);
+            configuration2.setProperty(ServletPropertySet.PORT, "8080");
+            assertTrue(configuration2.restorePortOffset());
+            assertEquals(portOffset,
+                configuration2.getPropertyValue(GeneralPropertySet.PORT_OFFSET));
+            configuration2.resetAllocatedPortOffset();
+            assertEquals(AbstractLocalConfiguration.AUTO_PORT_OFFSET,
+                configuration2.getPropertyValue(GeneralPropertySet.PORT_OFFSET));
+
+            // Once the container has stopped, nothing is read back and stopping again must fail
+            assertFalse(configuration2.restorePortOffset());
+            try
+            {
+                configuration2.applyPortOffset();
+                fail("The unallocated port offset has been applied");
+            }
+            catch (ContainerException expected)
+            {
+                assertTrue(expected.getMessage(),
+                    expected.getMessage().contains(AbstractLocalConfiguration.AUTO_PORT_OFFSET));
+            }
+        }
+        finally
+        {
+            new File(home, ".cargo-port-offset").delete();
+            home.delete();
+        }
+    }
 }
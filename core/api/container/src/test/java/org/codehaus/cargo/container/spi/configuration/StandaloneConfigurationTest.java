@@ -19,6 +19,7 @@
  */
 package org.codehaus.cargo.container.spi.configuration;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
 
@@ -33,6 +34,7 @@ import org.codehaus.cargo.container.configuration.ConfigurationCapability;
 import org.codehaus.cargo.container.property.GeneralPropertySet;
 import org.codehaus.cargo.container.property.LoggingLevel;
 import org.codehaus.cargo.container.property.ServletPropertySet;
+import org.codehaus.cargo.container.stub.InstalledLocalContainerStub;
 import org.codehaus.cargo.util.VFSFileHandler;
 
 /**
@@ -96,6 +98,53 @@ public class StandaloneConfigurationTest extends TestCase
         }
     }
 
+    /**
+     * {@link TestableAbstractStandaloneConfiguration} which sets up its directory and counts how
+     * many times it has been created.
+     */
+    public class CountingStandaloneConfiguration extends TestableAbstractStandaloneConfiguration
+    {
+        /**
+         * Number of times the configuration has been created.
+         */
+        private int creations;
+
+        /**
+         * {@inheritDoc}
+         * @param dir Configuration directory.
+         */
+        public CountingStandaloneConfiguration(String dir)
+        {
+            super(dir);
+        }
+
+        /**
+         * Only sets up the configuration directory. {@inheritDoc}
+         * @param container Ignored.
+         */
+        @Override
+        protected void doConfigure(LocalContainer container)
+        {
+            try
+            {
+                setupConfigurationDir();
+            }
+            catch (IOException e)
+            {
+                throw new ContainerException("Cannot set up the configuration directory", e);
+            }
+            this.creations++;
+        }
+
+        /**
+         * @return Number of times the configuration has been created.
+         */
+        public int getCreations()
+        {
+            return this.creations;
+        }
+    }
+
     /**
      * Test the creation of a config directory when the target directory does not exist yet.
      * @throws Exception If anything goes wrong.
@@ -168,6 +217,35 @@ public class StandaloneConfigurationTest extends TestCase
         }
     }
 
+    /**
+     * Test that a configuration is only created again when its fingerprint changes.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testConfigureWithFingerprint() throws Exception
+    {
+        String configDir = "ram:///cargo/testConfigureWithFingerprint";
+        VFS.getManager().resolveFile(configDir).delete(new AllFileSelector());
+
+        CountingStandaloneConfiguration configuration =
+            new CountingStandaloneConfiguration(configDir);
+        configuration.setFileHandler(new VFSFileHandler());
+        configuration.setProperty(GeneralPropertySet.FINGERPRINT, "true");
+        InstalledLocalContainerStub container = new InstalledLocalContainerStub(configuration);
+
+        configuration.configure(container);
+        configuration.configure(container);
+        assertEquals(1, configuration.getCreations());
+
+        configuration.setProperty(ServletPropertySet.PORT, "8081");
+        configuration.configure(container);
+        configuration.configure(container);
+        assertEquals(2, configuration.getCreations());
+
+        configuration.setProperty(GeneralPropertySet.FINGERPRINT, "false");
+        configuration.configure(container);
+        assertEquals(3, configuration.getCreations());
+    }
+
     /**
      * Test the setting of default properties.
      * @throws Exception If anything goes wrong.
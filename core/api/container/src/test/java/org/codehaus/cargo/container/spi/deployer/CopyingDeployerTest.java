@@ -19,6 +19,13 @@
  */
 package org.codehaus.cargo.container.spi.deployer;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.commons.vfs.impl.StandardFileSystemManager;
 import org.codehaus.cargo.container.ContainerCapability;
 import org.codehaus.cargo.container.ContainerException;
@@ -27,8 +34,11 @@ import org.codehaus.cargo.container.configuration.LocalConfiguration;
 import org.codehaus.cargo.container.deployable.Deployable;
 import org.codehaus.cargo.container.deployable.DeployableType;
 import org.codehaus.cargo.container.deployable.WAR;
+import org.codehaus.cargo.container.property.GeneralPropertySet;
 import org.codehaus.cargo.util.CargoException;
+import org.codehaus.cargo.util.DefaultFileHandler;
 import org.codehaus.cargo.util.FileHandler;
+import org.codehaus.cargo.util.SyncSummary;
 import org.codehaus.cargo.util.VFSFileHandler;
 import org.codehaus.cargo.util.log.NullLogger;
 import org.jmock.Mock;
@@ -50,6 +60,17 @@ public class CopyingDeployerTest extends MockObjectTestCase
      */
     private FileHandler fileHandler;
 
+    /**
+     * Value of the {@link GeneralPropertySet#DEPLOYABLE_STAGING} property of the mock containers.
+     */
+    private String staging;
+
+    /**
+     * Value of the {@link GeneralPropertySet#DEPLOYABLE_HARD_LINKS} property of the mock
+     * containers.
+     */
+    private String hardLinks;
+
     /**
      * Creates the test file system manager. {@inheritDoc}
      * @throws Exception If anything goes wrong.
@@ -137,7 +158,7 @@ public class CopyingDeployerTest extends MockObjectTestCase
      */
     public void testShouldDeployExpanded()
     {
-        AbstractCopyingInstalledLocalDeployer deployer = new TestableCopyingDeployer(
+        TestableCopyingDeployer deployer = new TestableCopyingDeployer(
             createContainer(createContainerCapability(DeployableType.WAR), null));
 
         assertTrue(deployer.shouldDeployExpanded(DeployableType.WAR));
@@ -155,7 +176,7 @@ public class CopyingDeployerTest extends MockObjectTestCase
      */
     public void testCanBeDeployedWhenTwoWARsInSameWebContext() throws Exception
     {
-        AbstractCopyingInstalledLocalDeployer deployer = new TestableCopyingDeployer(
+        TestableCopyingDeployer deployer = new TestableCopyingDeployer(
             createContainer(createContainerCapability(DeployableType.WAR), null));
 
         // Create WARs and make sure the wrapped files exist
@@ -183,12 +204,332 @@ public class CopyingDeployerTest extends MockObjectTestCase
         }
     }
 
+    /**
+     * Test the deployment of a list of WARs, which is checked for context collisions as a whole
+     * before anything gets copied.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testDeployList() throws Exception
+    {
+        TestableCopyingDeployer deployer = new TestableCopyingDeployer(
+            createContainer(createContainerCapability(DeployableType.WAR), null));
+
+        List<Deployable> deployables = new ArrayList<Deployable>();
+        for (int i = 1; i <= 3; i++)
+        {
+            WAR war = new WAR("ram:///path/war" + i + ".war");
+            this.fsManager.resolveFile(war.getFile()).createFile();
+            deployables.add(war);
+        }
+        deployer.deploy(deployables);
+        for (int i = 1; i <= 3; i++)
+        {
+            assertTrue(this.fsManager.resolveFile("ram:///webapps/war" + i + ".war").exists());
+        }
+
+        WAR war4 = new WAR("ram:///path/war4.war");
+        this.fsManager.resolveFile(war4.getFile()).createFile();
+        WAR war5 = new WAR("ram:///path/war5.war");
+        war5.setContext("war4");
+        this.fsManager.resolveFile(war5.getFile()).createFile();
+        deployables.clear();
+        deployables.add(war4);
+        deployables.add(war5);
+        try
+        {
+            deployer.deploy(deployables);
+            fail("Expected ContainerException because the list has two WARs with the same "
+                + "context name.");
+        }
+        catch (ContainerException expected)
+        {
+            assertFalse(this.fsManager.resolveFile("ram:///webapps/war4.war").exists());
+        }
+
+        deployables.clear();
+        deployables.add(war4);
+        deployer.deploy(deployables);
+        assertTrue(this.fsManager.resolveFile("ram:///webapps/war4.war").exists());
+    }
+
+    /**
+     * Test that a deployer which does not override
+     * {@link AbstractCopyingInstalledLocalDeployer#doDeploy(String, Deployable)} copies the
+     * deployables of a list concurrently, and that one which does copies them one at a time.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testDeployListCopiesConcurrently() throws Exception
+    {
+        final CountDownLatch copying = new CountDownLatch(2);
+        final List<Boolean> overlapping = Collections.synchronizedList(new ArrayList<Boolean>());
+        this.fileHandler = new VFSFileHandler(this.fsManager)
+        {
+            @Override
+            public void copyFile(String source, String target, boolean overwrite)
+            {
+                copying.countDown();
+                try
+                {
+                    overlapping.add(Boolean.valueOf(copying.await(2, TimeUnit.SECONDS)));
+                }
+                catch (InterruptedException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+                super.copyFile(source, target, overwrite);
+            }
+        };
+        List<Deployable> deployables = new ArrayList<Deployable>();
+        for (int i = 1; i <= 2; i++)
+        {
+            WAR war = new WAR("ram:///path/war" + i + ".war");
+            this.fsManager.resolveFile(war.getFile()).createFile();
+            deployables.add(war);
+        }
+
+        TestableCopyingDeployer deployer = new TestableCopyingDeployer(
+            createContainer(createContainerCapability(DeployableType.WAR), null));
+        assertTrue(deployer.getConcurrentDeployments() > 1);
+        deployer.deploy(deployables);
+        assertEquals(Arrays.asList(new Boolean[] {Boolean.TRUE, Boolean.TRUE}), overlapping);
+
+        TestableCopyingDeployer sequentialDeployer = new TestableCopyingDeployer(
+            createContainer(createContainerCapability(DeployableType.WAR), null))
+        {
+            @Override
+            protected void doDeploy(String deployableDir, Deployable deployable)
+            {
+                super.doDeploy(deployableDir, deployable);
+            }
+        };
+        assertEquals(1, sequentialDeployer.getConcurrentDeployments());
+    }
+
+    /**
+     * Test that deployables rejected by an overridden
+     * {@link AbstractCopyingInstalledLocalDeployer#canBeDeployed(Deployable)} are not deployed.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testDeployHonoursCanBeDeployed() throws Exception
+    {
+        TestableCopyingDeployer deployer = new TestableCopyingDeployer(
+            createContainer(createContainerCapability(DeployableType.WAR), null))
+        {
+            /**
+             * {@inheritDoc}
+             * @return <code>false</code>.
+             */
+            @Override
+            protected boolean canBeDeployed(Deployable newDeployable)
+            {
+                return false;
+            }
+        };
+
+        WAR war = new WAR("ram:///path/warfile.war");
+        this.fsManager.resolveFile(war.getFile()).createFile();
+        try
+        {
+            deployer.deploy(Arrays.asList(new Deployable[] {war}));
+            fail("Expected ContainerException because the deployer rejects all deployables.");
+        }
+        catch (ContainerException expected)
+        {
+            assertFalse(this.fsManager.resolveFile("ram:///webapps/warfile.war").exists());
+        }
+    }
+
+    /**
+     * Test that staged deployables are moved to the deployable directory, replacing the deployed
+     * ones.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testDeployWithStaging() throws Exception
+    {
+        this.staging = "true";
+        TestableCopyingDeployer deployer = new TestableCopyingDeployer(
+            createContainer(createContainerCapability(DeployableType.WAR), null));
+
+        WAR war = new WAR("ram:///some/warfile.war");
+        this.fileHandler.writeTextFile(war.getFile(), "new", "UTF-8");
+        this.fileHandler.writeTextFile("ram:///webapps/warfile.war", "old", "UTF-8");
+        deployer.deploy(war);
+        assertEquals("new", this.fileHandler.readTextFile("ram:///webapps/warfile.war", "UTF-8"));
+        assertFalse(this.fsManager.resolveFile("ram:///.cargo-staging-warfile.war").exists());
+
+        WAR expandedWar = new WAR("ram:///some/expanded/warfile");
+        expandedWar.setContext("context");
+        expandedWar.setFileHandler(this.fileHandler);
+        this.fileHandler.writeTextFile("ram:///some/expanded/warfile/index.html", "new", "UTF-8");
+        deployer.deploy(expandedWar);
+        assertEquals("new",
+            this.fileHandler.readTextFile("ram:///webapps/context/index.html", "UTF-8"));
+        assertFalse(this.fsManager.resolveFile("ram:///.cargo-staging-context").exists());
+    }
+
+    /**
+     * Test deployment of a WAR with hard links and staging both enabled.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testDeployWithHardLinks() throws Exception
+    {
+        this.staging = "true";
+        this.hardLinks = "true";
+        this.fsManager.resolveFile("ram:///home").createFolder();
+        TestableCopyingDeployer deployer = new TestableCopyingDeployer(
+            createContainer(createContainerCapability(DeployableType.WAR), "ram:///home"));
+
+        WAR war = new WAR("ram:///some/warfile.war");
+        this.fileHandler.writeTextFile(war.getFile(), "war", "UTF-8");
+        deployer.deploy(war);
+        assertEquals("war", this.fileHandler.readTextFile("ram:///webapps/warfile.war", "UTF-8"));
+        assertTrue(this.fsManager.resolveFile(war.getFile()).exists());
+        String[] snapshots = this.fileHandler.getChildren("ram:///.cargo-deployables");
+        assertEquals(1, snapshots.length);
+        assertTrue(this.fileHandler.getName(snapshots[0]).matches("[0-9a-f]{40}-.*"));
+
+        // A new version of the archive gets a new snapshot, replacing the previous one
+        this.fileHandler.writeTextFile(war.getFile(), "war2", "UTF-8");
+        deployer.redeploy(war);
+        assertEquals("war2", this.fileHandler.readTextFile("ram:///webapps/warfile.war", "UTF-8"));
+        assertEquals(1, this.fileHandler.getChildren("ram:///.cargo-deployables").length);
+    }
+
+    /**
+     * Test that the snapshot of an archive which is rewritten during every copy fails after a
+     * few attempts.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testDeployWithHardLinksWhenArchiveKeepsChanging() throws Exception
+    {
+        this.hardLinks = "true";
+        this.fileHandler = new VFSFileHandler(this.fsManager)
+        {
+            private long lastModified;
+
+            @Override
+            public long getLastModified(String file)
+            {
+                return ++this.lastModified;
+            }
+        };
+        this.fsManager.resolveFile("ram:///home").createFolder();
+        TestableCopyingDeployer deployer = new TestableCopyingDeployer(
+            createContainer(createContainerCapability(DeployableType.WAR), "ram:///home"));
+
+        WAR war = new WAR("ram:///some/warfile.war");
+        this.fileHandler.writeTextFile(war.getFile(), "war", "UTF-8");
+        try
+        {
+            deployer.deploy(war);
+            fail("Should have thrown a ContainerException here");
+        }
+        catch (ContainerException expected)
+        {
+            assertTrue(expected.getCause().getMessage().contains("rewritten"));
+        }
+        assertEquals(0, this.fileHandler.getChildren("ram:///.cargo-deployables").length);
+    }
+
+    /**
+     * Test that redeploying an expanded WAR right after deploying it copies none of its files.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testRedeployExpandedAfterDeploy() throws Exception
+    {
+        final List<SyncSummary> summaries = new ArrayList<SyncSummary>();
+        this.fileHandler = new DefaultFileHandler()
+        {
+            @Override
+            public SyncSummary syncDirectory(String source, String target,
+                List<String> excludes, boolean compareContents)
+            {
+                SyncSummary summary =
+                    super.syncDirectory(source, target, excludes, compareContents);
+                summaries.add(summary);
+                return summary;
+            }
+        };
+        final String root = this.fileHandler.createUniqueTmpDirectory();
+        this.fileHandler.writeTextFile(root + "/war/index.html", "index", "UTF-8");
+        this.fileHandler.writeTextFile(root + "/war/WEB-INF/web.xml", "<web-app/>", "UTF-8");
+        this.fileHandler.mkdirs(root + "/webapps");
+        this.fileHandler.mkdirs(root + "/home");
+        TestableCopyingDeployer deployer = new TestableCopyingDeployer(
+            createContainer(createContainerCapability(DeployableType.WAR), root + "/home"))
+        {
+            @Override
+            public String getDeployableDir(Deployable deployable)
+            {
+                return root + "/webapps";
+            }
+        };
+
+        WAR war = new WAR(root + "/war");
+        war.setContext("context");
+        war.setFileHandler(this.fileHandler);
+        deployer.deploy(war);
+        deployer.redeploy(war);
+
+        assertEquals(1, summaries.size());
+        assertFalse(summaries.get(0).hasChanges());
+        assertEquals(2, summaries.get(0).getUnchangedFileCount());
+        assertEquals("index",
+            this.fileHandler.readTextFile(root + "/webapps/context/index.html", "UTF-8"));
+    }
+
+    /**
+     * Test that redeploying an expanded WAR with staging synchronizes a staged clone of the
+     * deployed directory, calls the undeployment of the deployer then moves the clone in place.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testRedeployExpandedWithStaging() throws Exception
+    {
+        this.staging = "true";
+        this.fileHandler = new DefaultFileHandler();
+        final String root = this.fileHandler.createUniqueTmpDirectory();
+        this.fileHandler.writeTextFile(root + "/war/index.html", "index", "UTF-8");
+        this.fileHandler.writeTextFile(root + "/war/old.html", "old", "UTF-8");
+        this.fileHandler.mkdirs(root + "/home/webapps");
+        final List<String> undeployed = new ArrayList<String>();
+        TestableCopyingDeployer deployer = new TestableCopyingDeployer(
+            createContainer(createContainerCapability(DeployableType.WAR), root + "/home"))
+        {
+            @Override
+            public String getDeployableDir(Deployable deployable)
+            {
+                return root + "/home/webapps";
+            }
+
+            @Override
+            public void undeploy(Deployable deployable)
+            {
+                undeployed.add(getFileHandler().readTextFile(
+                    root + "/home/webapps/context/index.html", "UTF-8"));
+            }
+        };
+
+        WAR war = new WAR(root + "/war");
+        war.setContext("context");
+        war.setFileHandler(this.fileHandler);
+        deployer.deploy(war);
+        this.fileHandler.writeTextFile(root + "/war/index.html", "new index", "UTF-8");
+        this.fileHandler.delete(root + "/war/old.html");
+        deployer.redeploy(war);
+
+        assertEquals(Collections.singletonList("index"), undeployed);
+        assertEquals("new index",
+            this.fileHandler.readTextFile(root + "/home/webapps/context/index.html", "UTF-8"));
+        assertFalse(this.fileHandler.exists(root + "/home/webapps/context/old.html"));
+        assertFalse(this.fileHandler.exists(root + "/home/.cargo-staging-context"));
+    }
+
     /**
      * Test deployment when the container does not support a given deployable type.
      */
     public void testDeployWhenContainerDoesNotSupportDeployableType()
     {
-        AbstractCopyingInstalledLocalDeployer deployer = new TestableCopyingDeployer(
+        TestableCopyingDeployer deployer = new TestableCopyingDeployer(
             createContainer(createContainerCapability(DeployableType.EAR), null));
 
         try
@@ -214,7 +555,7 @@ public class CopyingDeployerTest extends MockObjectTestCase
 
         war.setContext("context");
 
-        AbstractCopyingInstalledLocalDeployer deployer = new TestableCopyingDeployer(
+        TestableCopyingDeployer deployer = new TestableCopyingDeployer(
             createContainer(createContainerCapability(DeployableType.WAR), null));
 
         assertFalse(this.fsManager.resolveFile("ram:///webapps/context.war").exists());
@@ -231,7 +572,7 @@ public class CopyingDeployerTest extends MockObjectTestCase
         WAR war = new WAR("ram:///some/warfile.war");
         this.fsManager.resolveFile(war.getFile()).createFile();
 
-        AbstractCopyingInstalledLocalDeployer deployer = new TestableCopyingDeployer(
+        TestableCopyingDeployer deployer = new TestableCopyingDeployer(
             createContainer(createContainerCapability(DeployableType.WAR), null));
 
         assertFalse(this.fsManager.resolveFile("ram:///webapps/warfile.war").exists());
@@ -251,7 +592,7 @@ public class CopyingDeployerTest extends MockObjectTestCase
         war.setFileHandler(this.fileHandler);
         this.fsManager.resolveFile(war.getFile()).createFolder();
 
-        AbstractCopyingInstalledLocalDeployer deployer = new TestableCopyingDeployer(
+        TestableCopyingDeployer deployer = new TestableCopyingDeployer(
             createContainer(createContainerCapability(DeployableType.WAR), null));
 
         assertFalse(this.fsManager.resolveFile("ram:///webapps/context").exists());
@@ -268,7 +609,7 @@ public class CopyingDeployerTest extends MockObjectTestCase
         WAR war = new WAR("ram:///some/warfile.war");
         this.fsManager.resolveFile(war.getFile()).createFile();
 
-        AbstractCopyingInstalledLocalDeployer deployer =
+        TestableCopyingDeployerWithDifferentDirectory deployer =
             new TestableCopyingDeployerWithDifferentDirectory(
                 createContainer(createContainerCapability(DeployableType.WAR), null));
 
@@ -292,7 +633,7 @@ public class CopyingDeployerTest extends MockObjectTestCase
         try
         {
             new TestableCopyingDeployer(createContainer(
-                createContainerCapability(DeployableType.WAR), "non-existing"));
+                createContainerCapability(DeployableType.WAR), "ram:///non-existing"));
             fail("Should have thrown a CargoException here");
         }
         catch (CargoException expected)
@@ -320,7 +661,7 @@ public class CopyingDeployerTest extends MockObjectTestCase
     /**
      * Create mock container.
      * @param capability Container capability.
-     * @param home Container home.
+     * @param home Container home, <code>null</code> for the root of the RAM file system.
      * @return Mock container for given capability.
      */
     private InstalledLocalContainer createContainer(ContainerCapability capability, String home)
@@ -328,7 +669,7 @@ public class CopyingDeployerTest extends MockObjectTestCase
         String homeString;
         if (home == null)
         {
-            homeString = "";
+            homeString = "ram:///";
         }
         else
         {
@@ -338,7 +679,11 @@ public class CopyingDeployerTest extends MockObjectTestCase
         Mock mockConfiguration = mock(LocalConfiguration.class);
         Mock mockContainer = mock(InstalledLocalContainer.class);
 
-        mockConfiguration.stubs().method("getHome").will(returnValue("ram:///" + homeString));
+        mockConfiguration.stubs().method("getHome").will(returnValue(homeString));
+        mockConfiguration.stubs().method("getPropertyValue")
+            .with(eq(GeneralPropertySet.DEPLOYABLE_STAGING)).will(returnValue(this.staging));
+        mockConfiguration.stubs().method("getPropertyValue")
+            .with(eq(GeneralPropertySet.DEPLOYABLE_HARD_LINKS)).will(returnValue(this.hardLinks));
         mockContainer.stubs().method("getConfiguration").will(
             returnValue(mockConfiguration.proxy()));
 
@@ -0,0 +1,156 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.deployer;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.deployable.WAR;
+import org.codehaus.cargo.container.deployer.Deployer;
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+import org.jmock.Mock;
+import org.jmock.MockObjectTestCase;
+
+/**
+ * Unit tests for {@link DeployableWatcher}.
+ * 
+ */
+public class DeployableWatcherTest extends MockObjectTestCase
+{
+    /**
+     * File handler.
+     */
+    private FileHandler fileHandler = new DefaultFileHandler();
+
+    /**
+     * Expanded WAR directory.
+     */
+    private String warDirectory;
+
+    /**
+     * Creates an expanded WAR. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.warDirectory = "target/" + UUID.randomUUID().toString() + "/warfile";
+        this.fileHandler.writeTextFile(this.warDirectory + "/index.html", "index", "UTF-8");
+        this.fileHandler.writeTextFile(this.warDirectory + "/WEB-INF/web.xml", "<web-app/>",
+            "UTF-8");
+    }
+
+    /**
+     * Changes a file of the expanded WAR.
+     * @param path Path of the file, relative to the expanded WAR.
+     * @param content New file content.
+     */
+    private void change(String path, String content)
+    {
+        String file = this.warDirectory + "/" + path;
+        this.fileHandler.writeTextFile(file, content, "UTF-8");
+        new File(file).setLastModified(System.currentTimeMillis() + 60000);
+    }
+
+    /**
+     * Test that a deployable is redeployed once its changes are over, and reloaded only when its
+     * classes change.
+     */
+    public void testRedeployAfterChanges()
+    {
+        WAR war = new WAR(this.warDirectory);
+        Mock mockDeployer = mock(Deployer.class);
+        Mock mockReloadDeployer = mock(Deployer.class);
+        DeployableWatcher watcher = new DeployableWatcher((Deployer) mockDeployer.proxy(),
+            Collections.<Deployable>singletonList(war));
+        watcher.setReloadDeployer((Deployer) mockReloadDeployer.proxy());
+        watcher.check();
+
+        // Nothing changed
+        watcher.check();
+
+        // Static file changed: redeployed one poll after the burst of changes, not reloaded
+        change("index.html", "new index");
+        watcher.check();
+        change("style.css", "body {}");
+        watcher.check();
+        mockDeployer.expects(once()).method("redeploy").with(same(war));
+        watcher.check();
+        mockDeployer.verify();
+        watcher.check();
+
+        // Class changed: redeployed and reloaded
+        change("WEB-INF/classes/Servlet.class", "class");
+        watcher.check();
+        mockDeployer.expects(once()).method("redeploy").with(same(war));
+        mockReloadDeployer.expects(once()).method("stop").with(same(war));
+        mockReloadDeployer.expects(once()).method("start").with(same(war));
+        watcher.check();
+    }
+
+    /**
+     * Test that stopping the watcher waits for the ongoing redeployment, without interrupting it.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testStopWaitsForRedeployment() throws Exception
+    {
+        final CountDownLatch redeploying = new CountDownLatch(1);
+        final boolean[] interrupted = new boolean[1];
+        final boolean[] redeployed = new boolean[1];
+        DeployableWatcher watcher = new DeployableWatcher(null,
+            Collections.<Deployable>singletonList(new WAR(this.warDirectory)))
+        {
+            /**
+             * Takes some time to redeploy. {@inheritDoc}
+             * @param deployable Ignored.
+             * @param changedFiles Ignored.
+             */
+            @Override
+            protected void redeploy(Deployable deployable, Set<String> changedFiles)
+            {
+                redeploying.countDown();
+                try
+                {
+                    Thread.sleep(500);
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted[0] = true;
+                }
+                redeployed[0] = true;
+            }
+        };
+        watcher.setInterval(10);
+        watcher.start();
+        change("index.html", "new index");
+        assertTrue(redeploying.await(10, TimeUnit.SECONDS));
+
+        watcher.stop();
+        assertTrue(redeployed[0]);
+        assertFalse(interrupted[0]);
+    }
+}
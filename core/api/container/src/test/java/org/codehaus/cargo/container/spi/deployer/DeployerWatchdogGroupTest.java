@@ -0,0 +1,183 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.deployer;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.deployer.DeployableMonitor;
+import org.codehaus.cargo.container.deployer.DeployableMonitorListener;
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Unit tests for {@link DeployerWatchdogGroup}.
+ * 
+ */
+public class DeployerWatchdogGroupTest extends TestCase
+{
+    /**
+     * Monitor finding its deployable deployed after a given time.
+     */
+    private static class DelayedDeployableMonitor extends LoggedObject
+        implements DeployableMonitor
+    {
+        /**
+         * Deployable name.
+         */
+        private String deployableName;
+
+        /**
+         * Time after which the deployable is deployed, in milliseconds.
+         */
+        private long delay;
+
+        /**
+         * Monitor timeout, in milliseconds.
+         */
+        private long timeout;
+
+        /**
+         * Time of the first check, in milliseconds.
+         */
+        private long startTime;
+
+        /**
+         * Deployable monitor listener.
+         */
+        private DeployableMonitorListener listener;
+
+        /**
+         * @param deployableName Deployable name.
+         * @param delay Time after which the deployable is deployed, in milliseconds.
+         * @param timeout Monitor timeout, in milliseconds.
+         */
+        public DelayedDeployableMonitor(String deployableName, long delay, long timeout)
+        {
+            this.deployableName = deployableName;
+            this.delay = delay;
+            this.timeout = timeout;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public String getDeployableName()
+        {
+            return this.deployableName;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void registerListener(DeployableMonitorListener listener)
+        {
+            this.listener = listener;
+        }
+
+        /**
+         * {@inheritDoc}. Checks take 50 milliseconds, like a slow ping.
+         */
+        public void monitor()
+        {
+            if (this.startTime == 0)
+            {
+                this.startTime = System.currentTimeMillis();
+            }
+            try
+            {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+            if (System.currentTimeMillis() - this.startTime >= this.delay)
+            {
+                this.listener.deployed();
+            }
+            else
+            {
+                this.listener.undeployed();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public long getTimeout()
+        {
+            return this.timeout;
+        }
+    }
+
+    /**
+     * Test that deployables are monitored concurrently.
+     */
+    public void testWatchConcurrently()
+    {
+        DeployerWatchdogGroup group = new DeployerWatchdogGroup();
+        for (int i = 0; i < 5; i++)
+        {
+            group.addMonitor(new DelayedDeployableMonitor("app" + i, 500, 10000));
+        }
+
+        long startTime = System.currentTimeMillis();
+        group.watchForAvailability();
+        long duration = System.currentTimeMillis() - startTime;
+
+        assertTrue("Took " + duration + " ms", duration < 1500);
+        assertEquals(5, group.getReadinessTimes().size());
+        assertTrue(group.getReadinessTimes().get("app0").longValue() >= 500);
+    }
+
+    /**
+     * Test that the deployables which are not deployed in time are reported.
+     */
+    public void testWatchTimeout()
+    {
+        DeployerWatchdogGroup group = new DeployerWatchdogGroup();
+        group.addMonitor(new DelayedDeployableMonitor("fast", 0, 10000));
+        group.addMonitor(new DelayedDeployableMonitor("slow", 10000, 300));
+
+        try
+        {
+            group.watchForAvailability();
+            fail("The slow deployable should have timed out");
+        }
+        catch (ContainerException expected)
+        {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("[slow]"));
+            assertTrue(group.getReadinessTimes().containsKey("fast"));
+        }
+
+        group = new DeployerWatchdogGroup();
+        group.addMonitor(new DelayedDeployableMonitor("slow", 10000, 10000));
+        group.setTimeout(300);
+        try
+        {
+            group.watchForAvailability();
+            fail("The global timeout should have been reached");
+        }
+        catch (ContainerException expected)
+        {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("[slow]"));
+        }
+    }
+}
@@ -19,6 +19,9 @@
  */
 package org.codehaus.cargo.container.spi.deployer;
 
+import java.util.Arrays;
+
+import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.container.RemoteContainer;
 import org.codehaus.cargo.container.deployable.Deployable;
 import org.codehaus.cargo.container.deployable.WAR;
@@ -60,6 +63,30 @@ public class RemoteDeployerTest extends MockObjectTestCase
         }
     }
 
+    /**
+     * {@link AbstractRemoteDeployer} implementation failing to deploy.
+     */
+    private class FailingRemoteDeployer extends AbstractRemoteDeployer
+    {
+        /**
+         * @param container the remote container into which to perform deployment operations
+         */
+        public FailingRemoteDeployer(RemoteContainer container)
+        {
+            super(container);
+        }
+
+        /**
+         * Always fails. {@inheritDoc}
+         * @param deployable Ignored.
+         */
+        @Override
+        public void deploy(Deployable deployable)
+        {
+            throw new ContainerException("Failed to deploy " + deployable.getFile());
+        }
+    }
+
     /**
      * Mock {@link DeployableMonitor} implementation.
      */
@@ -130,6 +157,37 @@ public class RemoteDeployerTest extends MockObjectTestCase
         deployer.deploy(new WAR("some/file"), new DeployableMonitorStub("some/file"));
     }
 
+    /**
+     * Test that a failure to deploy a list of deployables is thrown when a deployable has no
+     * monitor to tell whether it is deployed.
+     */
+    public void testDeployListFailureWithoutMonitorIsThrown()
+    {
+        FailingRemoteDeployer deployer = new FailingRemoteDeployer(createContainer());
+        try
+        {
+            deployer.deploy(Arrays.asList(new Deployable[] {new WAR("some/file"),
+                new WAR("other/file")}), Arrays.asList(new DeployableMonitor[] {
+                    new DeployableMonitorStub("some/file"), null}));
+            fail("The deployment failure has been ignored");
+        }
+        catch (ContainerException expected)
+        {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("some/file"));
+        }
+    }
+
+    /**
+     * Test that a failure to deploy a list of deployables is left to the monitors to judge when
+     * all deployables have a monitor.
+     */
+    public void testDeployListFailureWithMonitors()
+    {
+        FailingRemoteDeployer deployer = new FailingRemoteDeployer(createContainer());
+        deployer.deploy(Arrays.asList(new Deployable[] {new WAR("some/file")}),
+            Arrays.asList(new DeployableMonitor[] {new DeployableMonitorStub("some/file")}));
+    }
+
     /**
      * Create mock container.
      * @return Mock container.
@@ -0,0 +1,101 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.jvm;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Unit tests for {@link ProcessJvmLauncher}.
+ * 
+ */
+public class ProcessJvmLauncherTest extends TestCase
+{
+    /**
+     * @return A new launcher.
+     */
+    private TrackableJvmLauncher createLauncher()
+    {
+        return (TrackableJvmLauncher) new ProcessJvmLauncherFactory().createJvmLauncher(
+            new JvmLauncherRequest(true, new LoggedObject()));
+    }
+
+    /**
+     * Test that the output of the JVM is written to the output file.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testExecuteWithOutputFile() throws Exception
+    {
+        File output = File.createTempFile("cargo-process-launcher-test", ".log");
+        try
+        {
+            TrackableJvmLauncher launcher = createLauncher();
+            launcher.setOutputFile(output);
+            launcher.setMainClass("-version");
+
+            assertEquals(0, launcher.execute());
+            assertTrue(launcher.waitFor(0));
+            String text = new DefaultFileHandler().readTextFile(output.getPath(), null);
+            assertTrue(text, text.contains("version"));
+        }
+        finally
+        {
+            output.delete();
+        }
+    }
+
+    /**
+     * Test that a running JVM can be waited for and killed.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testKill() throws Exception
+    {
+        TrackableJvmLauncher launcher = createLauncher();
+        assertFalse(launcher.waitFor(0));
+        assertEquals(-1, launcher.getPid());
+
+        File buildFile = File.createTempFile("cargo-process-launcher-test", ".xml");
+        new DefaultFileHandler().writeTextFile(buildFile.getPath(),
+            "<project default=\"sleep\"><target name=\"sleep\"><sleep seconds=\"60\"/>"
+                + "</target></project>", null);
+        launcher.addClasspathEntries(System.getProperty("java.class.path"));
+        launcher.setMainClass("org.apache.tools.ant.Main");
+        launcher.addAppArguments("-f", buildFile.getPath());
+        launcher.start();
+        try
+        {
+            assertFalse(launcher.waitFor(200));
+            if (File.separatorChar == '/')
+            {
+                assertTrue(launcher.getPid() > 0);
+            }
+        }
+        finally
+        {
+            launcher.kill();
+            buildFile.delete();
+        }
+        assertTrue(launcher.waitFor(0));
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.startup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.property.GeneralPropertySet;
+import org.codehaus.cargo.container.property.ServletPropertySet;
+import org.codehaus.cargo.container.stub.InstalledLocalContainerStub;
+import org.codehaus.cargo.container.stub.StandaloneLocalConfigurationStub;
+
+/**
+ * Unit tests for {@link LogPatternReadinessStrategy}.
+ * 
+ */
+public class LogPatternReadinessStrategyTest extends TestCase
+{
+    /**
+     * Line logged by the container once started.
+     */
+    private static final String STARTED_LINE = "INFO: Server startup in 42 ms\n";
+
+    /**
+     * Container stub with an output file.
+     */
+    private static class OutputContainerStub extends InstalledLocalContainerStub
+    {
+        /**
+         * Container output.
+         */
+        private String output;
+
+        /**
+         * Whether the container output is appended to.
+         */
+        private boolean append;
+
+        /**
+         * Container timeout.
+         */
+        private long timeout;
+
+        /**
+         * @param output Container output.
+         * @param append Whether the container output is appended to.
+         * @param timeout Container timeout.
+         */
+        public OutputContainerStub(String output, boolean append, long timeout)
+        {
+            super(new StandaloneLocalConfigurationStub("dummy"));
+            getConfiguration().setProperty(GeneralPropertySet.PROTOCOL, "http");
+            getConfiguration().setProperty(GeneralPropertySet.HOSTNAME, "localhost");
+            getConfiguration().setProperty(ServletPropertySet.PORT, "1");
+            this.output = output;
+            this.append = append;
+            this.timeout = timeout;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getOutput()
+        {
+            return this.output;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isAppend()
+        {
+            return this.append;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getTimeout()
+        {
+            return this.timeout;
+        }
+    }
+
+    /**
+     * Container output file.
+     */
+    private File output;
+
+    /**
+     * Strategy to test.
+     */
+    private LogPatternReadinessStrategy strategy;
+
+    /**
+     * Creates the container output with the line of a previous run. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.output = File.createTempFile("cargo-readiness-test", ".log");
+        write(this.output, "previous run\n" + STARTED_LINE);
+        this.strategy = new LogPatternReadinessStrategy("Server startup in");
+        this.strategy.setPingInterval(60000);
+    }
+
+    /**
+     * Deletes the container output. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        this.output.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Appends text to a file.
+     * @param file File to append to.
+     * @param text Text to append.
+     * @throws IOException If anything goes wrong.
+     */
+    private static void write(File file, String text) throws IOException
+    {
+        OutputStream out = new FileOutputStream(file, true);
+        try
+        {
+            out.write(text.getBytes("UTF-8"));
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Test that the container is ready once the line is logged, ignoring previous runs.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testReadyWhenLineLogged() throws Exception
+    {
+        OutputContainerStub container =
+            new OutputContainerStub(this.output.getPath(), true, 20000);
+        this.strategy.prepare(container);
+        assertFalse(this.strategy.readOutput(this.output));
+
+        write(this.output, "INFO: Server startup");
+        assertFalse(this.strategy.readOutput(this.output));
+        write(this.output, " in 42 ms\n");
+
+        long start = System.currentTimeMillis();
+        this.strategy.waitForReadiness(container);
+        assertTrue(System.currentTimeMillis() - start < 10000);
+    }
+
+    /**
+     * Test that a container output which is not appended to is emptied, and that the strategy
+     * fails once the timeout is reached.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testTimeout() throws Exception
+    {
+        OutputContainerStub container =
+            new OutputContainerStub(this.output.getPath(), false, 300);
+        this.strategy.prepare(container);
+        assertEquals(0, this.output.length());
+
+        try
+        {
+            this.strategy.waitForReadiness(container);
+            fail("The container should not be ready");
+        }
+        catch (ContainerException expected)
+        {
+            assertTrue(expected.getMessage(),
+                expected.getMessage().contains("within the timeout period [300]"));
+        }
+    }
+}
@@ -21,6 +21,7 @@ package org.codehaus.cargo.container.stub;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -43,6 +44,11 @@ public class JvmLauncherStub implements JvmLauncher
      */
     private String jvm = JavaEnvUtils.getJreExecutable("java");
 
+    /**
+     * JVM arguments.
+     */
+    private List<String> jvmArguments = new ArrayList<String>();
+
     /**
      * Classpath entries.
      */
@@ -93,6 +99,15 @@ public class JvmLauncherStub implements JvmLauncher
      */
     public void addJvmArguments(String... values)
     {
+        this.jvmArguments.addAll(Arrays.asList(values));
+    }
+
+    /**
+     * @return The JVM arguments added with {@link #addJvmArguments(String...)}.
+     */
+    public List<String> getJvmArguments()
+    {
+        return this.jvmArguments;
     }
 
     /**
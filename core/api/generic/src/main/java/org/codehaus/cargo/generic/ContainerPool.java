@@ -0,0 +1,312 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.generic;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.codehaus.cargo.container.ContainerGroup;
+import org.codehaus.cargo.container.InstalledLocalContainer;
+import org.codehaus.cargo.container.LocalContainer;
+import org.codehaus.cargo.container.configuration.LocalConfiguration;
+import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.deployer.BatchDeployer;
+import org.codehaus.cargo.container.deployer.Deployer;
+import org.codehaus.cargo.container.spi.configuration.AbstractStandaloneLocalConfiguration;
+import org.codehaus.cargo.generic.deployer.DefaultDeployerFactory;
+import org.codehaus.cargo.generic.deployer.DeployerFactory;
+import org.codehaus.cargo.util.CargoException;
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Pool of running installed local containers, reused instead of being stopped and started again.
+ * Acquiring a container returns a running container of the pool with the same container id and
+ * the same configuration, deployables left aside, after replacing its deployables with the
+ * requested ones using its local deployer. A new container is only started when no such container
+ * is available, and an idle container is only stopped when a container with the same id and the
+ * same configuration home but a different configuration is acquired.
+ * 
+ */
+public class ContainerPool extends LoggedObject
+{
+    /**
+     * Containers of the pool.
+     */
+    private List<PooledContainer> containers = new ArrayList<PooledContainer>();
+
+    /**
+     * Factory creating the deployers used to redeploy the deployables of reused containers.
+     */
+    private DeployerFactory deployerFactory = new DefaultDeployerFactory();
+
+    /**
+     * @param deployerFactory the factory creating the deployers used to redeploy the deployables
+     * of reused containers.
+     */
+    public void setDeployerFactory(DeployerFactory deployerFactory)
+    {
+        this.deployerFactory = deployerFactory;
+    }
+
+    /**
+     * Acquires a running container configured like the given container. If the pool has an idle
+     * running container with the same configuration, its deployables are replaced with the
+     * deployables of the given container and it is returned; otherwise the given container is
+     * started and added to the pool.
+     * 
+     * @param container the container to acquire, not started.
+     * @return the running container to use, either the given container or a pooled one.
+     */
+    public InstalledLocalContainer acquire(InstalledLocalContainer container)
+    {
+        String key = computeKey(container);
+        List<LocalContainer> recycled = new ArrayList<LocalContainer>();
+        PooledContainer reused = reserve(container, key, recycled);
+
+        for (LocalContainer recycledContainer : recycled)
+        {
+            getLogger().info("The configuration of the pooled " + recycledContainer.getName()
+                + " container has changed, stopping it", this.getClass().getName());
+            recycledContainer.stop();
+        }
+
+        if (reused != null)
+        {
+            getLogger().info("Reusing the running " + reused.container.getName()
+                + " container of the pool", this.getClass().getName());
+            try
+            {
+                redeploy(reused, container.getConfiguration().getDeployables());
+            }
+            catch (RuntimeException e)
+            {
+                release(container);
+                throw e;
+            }
+            return reused.container;
+        }
+
+        container.start();
+        PooledContainer pooled = new PooledContainer(container, key);
+        pooled.requested = container;
+        synchronized (this)
+        {
+            this.containers.add(pooled);
+        }
+        return container;
+    }
+
+    /**
+     * Reserves an idle running container of the pool with the given configuration for a container
+     * being acquired. Containers which are no longer running are removed from the pool, and so are
+     * the idle containers which use the same home with another configuration, to be stopped by the
+     * caller.
+     * 
+     * @param container the container being acquired.
+     * @param key the configuration key of the container being acquired.
+     * @param recycled list to which the containers to stop are added.
+     * @return the reserved pooled container, <code>null</code> if none.
+     */
+    private synchronized PooledContainer reserve(InstalledLocalContainer container, String key,
+        List<LocalContainer> recycled)
+    {
+        PooledContainer reused = null;
+        for (Iterator<PooledContainer> it = this.containers.iterator(); it.hasNext();)
+        {
+            PooledContainer pooled = it.next();
+            if (pooled.requested != null)
+            {
+                continue;
+            }
+            if (!pooled.container.getState().isStarted())
+            {
+                it.remove();
+            }
+            else if (reused == null && pooled.key.equals(key))
+            {
+                reused = pooled;
+                reused.requested = container;
+            }
+            else if (pooled.container.getId().equals(container.getId())
+                && isSameHome(pooled.container.getConfiguration(), container.getConfiguration()))
+            {
+                it.remove();
+                recycled.add(pooled.container);
+            }
+        }
+        return reused;
+    }
+
+    /**
+     * Releases a container. A container of the pool, or a container whose acquisition returned a
+     * container of the pool, is kept running for later reuse; any other container is stopped.
+     * 
+     * @param container the container to release.
+     */
+    public void release(LocalContainer container)
+    {
+        synchronized (this)
+        {
+            for (PooledContainer pooled : this.containers)
+            {
+                if (pooled.requested == container || pooled.container == container)
+                {
+                    pooled.requested = null;
+                    return;
+                }
+            }
+        }
+        container.stop();
+    }
+
+    /**
+     * Stops all containers of the pool concurrently and empties the pool.
+     */
+    public void stopAll()
+    {
+        ContainerGroup group = new ContainerGroup();
+        group.setLogger(getLogger());
+        synchronized (this)
+        {
+            for (PooledContainer pooled : this.containers)
+            {
+                group.addContainer(String.valueOf(group.getContainers().size()),
+                    pooled.container);
+            }
+            this.containers.clear();
+        }
+        group.stop();
+    }
+
+    /**
+     * Replaces the deployables of a pooled container.
+     * 
+     * @param pooled the pooled container.
+     * @param deployables the deployables to deploy.
+     */
+    private void redeploy(PooledContainer pooled, List<Deployable> deployables)
+    {
+        Deployer deployer = this.deployerFactory.createDeployer(pooled.container);
+        deployer.setLogger(pooled.container.getLogger());
+        for (Deployable deployable : pooled.deployables)
+        {
+            try
+            {
+                deployer.undeploy(deployable);
+            }
+            catch (CargoException e)
+            {
+                getLogger().warn("Cannot undeploy [" + deployable.getFile() + "]: " + e,
+                    this.getClass().getName());
+            }
+        }
+        pooled.deployables = new ArrayList<Deployable>();
+        if (deployer instanceof BatchDeployer)
+        {
+            ((BatchDeployer) deployer).deploy(deployables);
+            pooled.deployables.addAll(deployables);
+        }
+        else
+        {
+            for (Deployable deployable : deployables)
+            {
+                deployer.deploy(deployable);
+                pooled.deployables.add(deployable);
+            }
+        }
+    }
+
+    /**
+     * Computes the pool key of a container, made of its container id, its home and the
+     * fingerprint of its configuration without its deployables.
+     * 
+     * @param container the container.
+     * @return the pool key.
+     */
+    protected String computeKey(InstalledLocalContainer container)
+    {
+        LocalConfiguration configuration = container.getConfiguration();
+        String fingerprint;
+        if (configuration instanceof AbstractStandaloneLocalConfiguration)
+        {
+            fingerprint = ((AbstractStandaloneLocalConfiguration) configuration)
+                .computeFingerprint(container, false);
+        }
+        else
+        {
+            fingerprint = configuration.getClass().getName() + '|' + configuration.getHome() + '|'
+                + new TreeMap<String, String>(configuration.getProperties());
+        }
+        return container.getId() + '|' + container.getHome() + '|' + fingerprint;
+    }
+
+    /**
+     * @param configuration a configuration.
+     * @param otherConfiguration another configuration.
+     * @return <code>true</code> if both configurations have the same home.
+     */
+    private boolean isSameHome(LocalConfiguration configuration,
+        LocalConfiguration otherConfiguration)
+    {
+        return configuration.getHome() == null ? otherConfiguration.getHome() == null
+            : configuration.getHome().equals(otherConfiguration.getHome());
+    }
+
+    /**
+     * Container of the pool.
+     */
+    private static class PooledContainer
+    {
+        /**
+         * The running container.
+         */
+        private InstalledLocalContainer container;
+
+        /**
+         * Pool key of the container.
+         */
+        private String key;
+
+        /**
+         * Deployables currently deployed on the container.
+         */
+        private List<Deployable> deployables;
+
+        /**
+         * Container whose acquisition returned this container, <code>null</code> if the container
+         * is idle.
+         */
+        private LocalContainer requested;
+
+        /**
+         * @param container the running container.
+         * @param key the pool key of the container.
+         */
+        public PooledContainer(InstalledLocalContainer container, String key)
+        {
+            this.container = container;
+            this.key = key;
+            this.deployables =
+                new ArrayList<Deployable>(container.getConfiguration().getDeployables());
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.generic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.InstalledLocalContainer;
+import org.codehaus.cargo.container.State;
+import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.deployable.WAR;
+import org.codehaus.cargo.container.deployer.DeployerType;
+import org.codehaus.cargo.container.property.ServletPropertySet;
+import org.codehaus.cargo.container.stub.InstalledLocalContainerStub;
+import org.codehaus.cargo.container.stub.InstalledLocalDeployerStub;
+import org.codehaus.cargo.container.stub.StandaloneLocalConfigurationStub;
+import org.codehaus.cargo.generic.deployer.DefaultDeployerFactory;
+import org.codehaus.cargo.generic.deployer.DeployerFactory;
+
+/**
+ * Unit tests for {@link ContainerPool}.
+ * 
+ */
+public class ContainerPoolTest extends TestCase
+{
+    /**
+     * Actions done on the containers and deployables, in order.
+     */
+    private static List<String> actions = new ArrayList<String>();
+
+    /**
+     * Container pool to test.
+     */
+    private ContainerPool pool;
+
+    /**
+     * Creates the container pool. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        actions.clear();
+
+        DeployerFactory deployerFactory = new DefaultDeployerFactory();
+        deployerFactory.registerDeployer(InstalledLocalContainerStub.ID, DeployerType.INSTALLED,
+            RecordingDeployer.class);
+        this.pool = new ContainerPool();
+        this.pool.setDeployerFactory(deployerFactory);
+    }
+
+    /**
+     * Creates a container with one deployable.
+     * @param port the port of the container.
+     * @param war the file of its deployable.
+     * @return the container, not started.
+     */
+    private InstalledLocalContainer createContainer(String port, String war)
+    {
+        StandaloneLocalConfigurationStub configuration =
+            new StandaloneLocalConfigurationStub("configuration");
+        configuration.setProperty(ServletPropertySet.PORT, port);
+        configuration.addDeployable(new WAR(war));
+        InstalledLocalContainer container = new RecordingContainer(configuration);
+        container.setHome("home");
+        return container;
+    }
+
+    /**
+     * Test that a released container is reused, with its deployables redeployed.
+     */
+    public void testReuseContainer()
+    {
+        InstalledLocalContainer first = createContainer("8080", "first.war");
+        assertSame(first, this.pool.acquire(first));
+        this.pool.release(first);
+
+        InstalledLocalContainer second = createContainer("8080", "second.war");
+        assertSame(first, this.pool.acquire(second));
+        assertEquals("[start, undeploy first.war, deploy second.war]", actions.toString());
+        assertEquals(State.STARTED, first.getState());
+
+        // The first container is in use, so another one must be started
+        InstalledLocalContainer third = createContainer("8080", "third.war");
+        assertSame(third, this.pool.acquire(third));
+
+        this.pool.release(second);
+        this.pool.stopAll();
+        assertEquals(State.STOPPED, first.getState());
+        assertEquals(State.STOPPED, third.getState());
+    }
+
+    /**
+     * Test that an idle container whose configuration differs is stopped.
+     */
+    public void testRecycleContainer()
+    {
+        InstalledLocalContainer first = createContainer("8080", "first.war");
+        this.pool.acquire(first);
+        this.pool.release(first);
+
+        InstalledLocalContainer second = createContainer("8081", "first.war");
+        assertSame(second, this.pool.acquire(second));
+        assertEquals("[start, stop, start]", actions.toString());
+        assertEquals(State.STOPPED, first.getState());
+    }
+
+    /**
+     * Test that releasing a container which is not pooled stops it.
+     */
+    public void testReleaseContainerNotPooled()
+    {
+        InstalledLocalContainer container = createContainer("8080", "first.war");
+        this.pool.release(container);
+        assertEquals("[stop]", actions.toString());
+    }
+
+    /**
+     * Container stub recording when it is started and stopped.
+     */
+    private static class RecordingContainer extends InstalledLocalContainerStub
+    {
+        /**
+         * {@inheritDoc}
+         * @param configuration Container configuration.
+         */
+        public RecordingContainer(StandaloneLocalConfigurationStub configuration)
+        {
+            super(configuration);
+            setState(State.STOPPED);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void start()
+        {
+            actions.add("start");
+            setState(State.STARTED);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void stop()
+        {
+            actions.add("stop");
+            setState(State.STOPPED);
+        }
+    }
+
+    /**
+     * Deployer stub recording the deployments.
+     */
+    public static class RecordingDeployer extends InstalledLocalDeployerStub
+    {
+        /**
+         * {@inheritDoc}
+         * @param container Ignored.
+         */
+        public RecordingDeployer(InstalledLocalContainer container)
+        {
+            super(container);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void deploy(Deployable deployable)
+        {
+            actions.add("deploy " + deployable.getFile());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void undeploy(Deployable deployable)
+        {
+            actions.add("undeploy " + deployable.getFile());
+        }
+    }
+}
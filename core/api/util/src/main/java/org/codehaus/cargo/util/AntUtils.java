@@ -24,11 +24,11 @@ package org.codehaus.cargo.util;
 
 import java.io.File;
 import java.net.URI;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.Task;
-import org.apache.tools.ant.filters.ReplaceTokens;
 import org.apache.tools.ant.types.Environment;
 import org.apache.tools.ant.types.FilterChain;
 import org.apache.tools.ant.types.Path;
@@ -146,7 +146,11 @@ public class AntUtils
     }
 
     /**
-     * Add a token to an existing filter chain.
+     * Add a token to an existing filter chain. Consecutive tokens are gathered in a single
+     * {@link TokenReplacer}, which replaces all of them in one pass. As with a chain of Ant
+     * <code>ReplaceTokens</code> filters, a token whose key appears in the value of an earlier
+     * token is replaced in that value: such a token starts a new {@link TokenReplacer}, applied
+     * after the earlier one.
      * 
      * @param filterChain the filter chain to augment
      * @param key the token key
@@ -155,12 +159,25 @@ public class AntUtils
     public void addTokenToFilterChain(FilterChain filterChain, String key,
         String value)
     {
-        ReplaceTokens replaceToken = new ReplaceTokens();
-        ReplaceTokens.Token token = new ReplaceTokens.Token();
-        token.setKey(key);
-        token.setValue(value);
-        replaceToken.addConfiguredToken(token);
-        filterChain.addReplaceTokens(replaceToken);
+        // A token already added keeps precedence, and a token used in the value of a token
+        // already added replaces it, as with a chain of ReplaceTokens filters
+        List<?> filterReaders = filterChain.getFilterReaders();
+        TokenReplacer tokenReplacer = null;
+        if (!filterReaders.isEmpty())
+        {
+            Object last = filterReaders.get(filterReaders.size() - 1);
+            if (last instanceof TokenReplacer && !((TokenReplacer) last).hasToken(key)
+                && !((TokenReplacer) last).isTokenInValues(key))
+            {
+                tokenReplacer = (TokenReplacer) last;
+            }
+        }
+        if (tokenReplacer == null)
+        {
+            tokenReplacer = new TokenReplacer();
+            filterChain.add(tokenReplacer);
+        }
+        tokenReplacer.addToken(key, value);
     }
 
     /**
@@ -0,0 +1,416 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.tools.bzip2.CBZip2InputStream;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarInputStream;
+import org.apache.tools.zip.ZipEntry;
+import org.apache.tools.zip.ZipFile;
+import org.codehaus.cargo.util.internal.ParallelTasks;
+
+/**
+ * Extracts zip (including JAR, WAR and EAR) and tar archives. Zip archives are read with random
+ * access, their directories are created in a single pass and their files are then extracted in
+ * parallel on a bounded pool of threads. Tar archives, which can only be read sequentially, are
+ * extracted as they are read, which allows extracting them while they are being downloaded.
+ * Unix permissions stored in the archive are preserved; shell scripts of zip archives without
+ * Unix permissions are made executable.
+ *
+ */
+public class ArchiveExtractor
+{
+    /**
+     * Size of the buffers used to extract entries.
+     */
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * Encoding of the entry names in zip archives, the same as the default of the Ant unzip task.
+     */
+    private static final String ZIP_ENCODING = "UTF8";
+
+    /**
+     * Archive types extracted as zip archives.
+     */
+    private static final String[] ZIP_ENDINGS = {".zip", ".jar", ".war", ".ear", ".rar", ".sar"};
+
+    /**
+     * Unix permission bits making a file executable by anybody.
+     */
+    private static final int EXECUTABLE_MODE = 0111;
+
+    /**
+     * Unix permission bits making a file executable by its owner only.
+     */
+    private static final int OWNER_EXECUTABLE_MODE = 0100;
+
+    /**
+     * Buffer of each thread extracting entries.
+     */
+    private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>()
+    {
+        @Override
+        protected byte[] initialValue()
+        {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    /**
+     * The <code>File.setExecutable(boolean, boolean)</code> method, <code>null</code> on Java 5.
+     */
+    private static final Method SET_EXECUTABLE = getSetExecutableMethod();
+
+    /**
+     * Number of threads extracting files in parallel.
+     */
+    private int threads;
+
+    /**
+     * Creates an extractor using as many threads as there are processors, up to 4.
+     */
+    public ArchiveExtractor()
+    {
+        this(ParallelTasks.getDefaultThreads());
+    }
+
+    /**
+     * @param threads number of threads extracting files in parallel, <code>1</code> to extract
+     * in the calling thread.
+     */
+    public ArchiveExtractor(int threads)
+    {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @return the number of threads extracting files in parallel.
+     */
+    public int getThreads()
+    {
+        return this.threads;
+    }
+
+    /**
+     * Extracts an archive, the archive type being determined by its name: <code>.zip</code>,
+     * <code>.jar</code>, <code>.war</code>, <code>.ear</code>, <code>.rar</code> and
+     * <code>.sar</code> files are zip archives; <code>.tar</code>, <code>.tar.gz</code>,
+     * <code>.tgz</code> and <code>.bz2</code> files are tar archives.
+     *
+     * @param archive the archive to extract.
+     * @param targetDir the directory to extract to, created if necessary.
+     * @throws IOException If the archive cannot be read or extracted.
+     */
+    public void extract(File archive, File targetDir) throws IOException
+    {
+        String archiveName = archive.getName().toLowerCase();
+        for (String ending : ZIP_ENDINGS)
+        {
+            if (archiveName.endsWith(ending))
+            {
+                extractZip(archive, targetDir);
+                return;
+            }
+        }
+
+        InputStream in = new FileInputStream(archive);
+        try
+        {
+            extractTar(in, archive.getName(), targetDir);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Extracts a zip archive. Directories are first created, then files are extracted in
+     * parallel.
+     *
+     * @param archive the zip archive to extract.
+     * @param targetDir the directory to extract to, created if necessary.
+     * @throws IOException If the archive cannot be read or extracted.
+     */
+    public void extractZip(File archive, File targetDir) throws IOException
+    {
+        File root = targetDir.getCanonicalFile();
+        final ZipFile zip = new ZipFile(archive, ZIP_ENCODING);
+        try
+        {
+            // Create all directories upfront, so that extracting files never races on them
+            Set<File> directories = new TreeSet<File>();
+            directories.add(root);
+            List<ZipEntry> files = new ArrayList<ZipEntry>();
+            for (Enumeration entries = zip.getEntries(); entries.hasMoreElements();)
+            {
+                ZipEntry entry = (ZipEntry) entries.nextElement();
+                File file = getTarget(root, entry.getName());
+                if (entry.isDirectory())
+                {
+                    directories.add(file);
+                }
+                else
+                {
+                    directories.add(file.getParentFile());
+                    files.add(entry);
+                }
+            }
+            for (File directory : directories)
+            {
+                if (!directory.isDirectory() && !directory.mkdirs())
+                {
+                    throw new IOException("Cannot create directory [" + directory + "]");
+                }
+            }
+
+            List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(files.size());
+            for (final ZipEntry entry : files)
+            {
+                final File file = getTarget(root, entry.getName());
+                tasks.add(new Callable<Object>()
+                {
+                    public Object call() throws IOException
+                    {
+                        InputStream in = zip.getInputStream(entry);
+                        try
+                        {
+                            write(in, file);
+                        }
+                        finally
+                        {
+                            in.close();
+                        }
+                        setAttributes(file, entry.getTime(), entry.getUnixMode());
+                        return null;
+                    }
+                });
+            }
+            ParallelTasks.execute(tasks, this.threads, "Archive extractor");
+
+            for (Enumeration entries = zip.getEntries(); entries.hasMoreElements();)
+            {
+                ZipEntry entry = (ZipEntry) entries.nextElement();
+                if (entry.isDirectory())
+                {
+                    getTarget(root, entry.getName()).setLastModified(entry.getTime());
+                }
+            }
+        }
+        finally
+        {
+            ZipFile.closeQuietly(zip);
+        }
+    }
+
+    /**
+     * Extracts a tar archive as it is being read.
+     *
+     * @param archive the tar archive to extract, which is left open.
+     * @param archiveName the name of the archive, used to determine its compression:
+     * <code>.tar.gz</code> and <code>.tgz</code> archives are compressed with gzip,
+     * <code>.bz2</code> archives with bzip2.
+     * @param targetDir the directory to extract to, created if necessary.
+     * @throws IOException If the archive cannot be read or extracted.
+     */
+    public void extractTar(InputStream archive, String archiveName, File targetDir)
+        throws IOException
+    {
+        File root = targetDir.getCanonicalFile();
+        root.mkdirs();
+
+        TarInputStream tar = new TarInputStream(decompress(archive, archiveName));
+        for (TarEntry entry = tar.getNextEntry(); entry != null; entry = tar.getNextEntry())
+        {
+            File file = getTarget(root, entry.getName());
+            if (entry.isDirectory())
+            {
+                file.mkdirs();
+            }
+            else
+            {
+                file.getParentFile().mkdirs();
+                OutputStream out = new FileOutputStream(file);
+                try
+                {
+                    tar.copyEntryContents(out);
+                }
+                finally
+                {
+                    out.close();
+                }
+            }
+            setAttributes(file, entry.getModTime().getTime(), entry.getMode());
+        }
+    }
+
+    /**
+     * @param archive the archive stream.
+     * @param archiveName the name of the archive.
+     * @return the stream decompressing the archive, according to the archive name.
+     * @throws IOException If the archive cannot be read or has an invalid header.
+     */
+    private static InputStream decompress(InputStream archive, String archiveName)
+        throws IOException
+    {
+        String name = archiveName.toLowerCase();
+        if (name.endsWith(".tgz") || name.endsWith(".tar.gz"))
+        {
+            return new GZIPInputStream(archive, BUFFER_SIZE);
+        }
+        else if (name.endsWith(".bz2"))
+        {
+            // CBZip2InputStream expects the stream to be positioned after the BZ magic
+            if (archive.read() != 'B' || archive.read() != 'Z')
+            {
+                throw new IOException("Invalid bz2 file [" + archiveName + "]");
+            }
+            return new CBZip2InputStream(archive);
+        }
+        else if (name.endsWith(".tar"))
+        {
+            return archive;
+        }
+        else
+        {
+            throw new IllegalArgumentException("Unsupported archive type: [" + archiveName + "]");
+        }
+    }
+
+    /**
+     * @param root the canonical directory the archive is extracted to.
+     * @param entryName the name of an archive entry.
+     * @return the file the entry is extracted to.
+     * @throws IOException If the entry would be extracted outside of the target directory.
+     */
+    private static File getTarget(File root, String entryName) throws IOException
+    {
+        File file = new File(root, entryName);
+        String path = file.getCanonicalPath();
+        if (!path.equals(root.getPath()) && !path.startsWith(root.getPath() + File.separator))
+        {
+            throw new IOException("Archive entry [" + entryName
+                + "] is outside of the target directory");
+        }
+        return file;
+    }
+
+    /**
+     * Writes a stream to a file, using the buffer of the current thread.
+     *
+     * @param in the stream to write.
+     * @param file the file to write to.
+     * @throws IOException If the stream cannot be read or the file cannot be written.
+     */
+    private static void write(InputStream in, File file) throws IOException
+    {
+        byte[] buffer = BUFFER.get();
+        OutputStream out = new FileOutputStream(file);
+        try
+        {
+            int read = in.read(buffer);
+            while (read != -1)
+            {
+                out.write(buffer, 0, read);
+                read = in.read(buffer);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Sets the modification time and executable permission of an extracted file.
+     *
+     * @param file the extracted file.
+     * @param time the modification time of the entry, <code>-1</code> if unknown.
+     * @param mode the Unix mode of the entry, <code>0</code> if unknown.
+     */
+    private static void setAttributes(File file, long time, int mode)
+    {
+        if (time != -1)
+        {
+            file.setLastModified(time);
+        }
+
+        if (file.isFile() && SET_EXECUTABLE != null)
+        {
+            boolean executable;
+            boolean ownerOnly;
+            if ((mode & 0777) == 0)
+            {
+                executable = file.getName().endsWith(".sh");
+                ownerOnly = false;
+            }
+            else
+            {
+                executable = (mode & EXECUTABLE_MODE) != 0;
+                ownerOnly = (mode & EXECUTABLE_MODE) == OWNER_EXECUTABLE_MODE;
+            }
+
+            if (executable)
+            {
+                try
+                {
+                    SET_EXECUTABLE.invoke(file, Boolean.TRUE, Boolean.valueOf(ownerOnly));
+                }
+                catch (Exception e)
+                {
+                    // Ignored, the file simply stays non-executable
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the <code>File.setExecutable(boolean, boolean)</code> method, <code>null</code> if
+     * not available (Java 5) or not accessible.
+     */
+    private static Method getSetExecutableMethod()
+    {
+        try
+        {
+            return File.class.getMethod("setExecutable", Boolean.TYPE, Boolean.TYPE);
+        }
+        catch (Exception e)
+        {
+            // Java 5, or not allowed by the security manager
+            return null;
+        }
+    }
+}
@@ -32,47 +32,36 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.Vector;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathFactory;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-
-import org.apache.tools.ant.BuildException;
-import org.apache.tools.ant.filters.util.ChainReaderHelper;
-import org.apache.tools.ant.taskdefs.Copy;
-import org.apache.tools.ant.types.FileSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.apache.tools.ant.DirectoryScanner;
 import org.apache.tools.ant.types.FilterChain;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
 import org.apache.tools.ant.util.FileUtils;
 
+import org.codehaus.cargo.util.internal.FilterChains;
+import org.codehaus.cargo.util.internal.ParallelTasks;
 import org.codehaus.cargo.util.log.LoggedObject;
 
 /**
  * File operations that are performed in Cargo. All file operations must use this class.
  * 
  */
-public class DefaultFileHandler extends LoggedObject implements FileHandler
+public class DefaultFileHandler extends LoggedObject implements ExtendedFileHandler
 {
     /**
      * Counter for creating unique temp directories.
@@ -80,38 +69,96 @@ public class DefaultFileHandler extends LoggedObject implements FileHandler
     private static int uniqueNameCounter = -1;
 
     /**
-     * Ant utility class.
+     * Suffix of the files written by replacements before they replace the original file.
+     */
+    private static final String REPLACING_SUFFIX = ".replacing";
+
+    /**
+     * Size of the buffers used to compare the contents of files.
+     */
+    private static final int COMPARE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Size of the buffer used when replacing a file through streams.
+     */
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * The <code>File.toPath()</code> method, <code>null</code> before Java 7.
+     */
+    private static final Method TO_PATH = getMethod(File.class.getName(), "toPath");
+
+    /**
+     * The <code>Files.createLink(Path, Path)</code> method, <code>null</code> before Java 7.
+     */
+    private static final Method CREATE_LINK =
+        getMethod("java.nio.file.Files", "createLink", "java.nio.file.Path", "java.nio.file.Path");
+
+    /**
+     * The <code>Files.getAttribute(Path, String, LinkOption...)</code> method, <code>null</code>
+     * before Java 7.
      */
-    private AntUtils antUtils;
+    private static final Method GET_ATTRIBUTE = getMethod("java.nio.file.Files", "getAttribute",
+        "java.nio.file.Path", String.class.getName(), "[Ljava.nio.file.LinkOption;");
+
+    /**
+     * The <code>Files.move(Path, Path, CopyOption...)</code> method, <code>null</code> before Java
+     * 7.
+     */
+    private static final Method MOVE = getMethod("java.nio.file.Files", "move",
+        "java.nio.file.Path", "java.nio.file.Path", "[Ljava.nio.file.CopyOption;");
+
+    /**
+     * The <code>CopyOption</code> array holding <code>StandardCopyOption.ATOMIC_MOVE</code>,
+     * <code>null</code> before Java 7.
+     */
+    private static final Object ATOMIC_MOVE = getAtomicMoveOptions();
 
     /**
      * Ant helper API to manipulate files.
      */
     private FileUtils fileUtils;
 
+    /**
+     * Engine applying XML replacements.
+     */
+    private XmlFileReplacer xmlFileReplacer = new XmlFileReplacer();
+
     /**
      * Initializations.
      */
     public DefaultFileHandler()
     {
-        this.antUtils = new AntUtils();
         this.fileUtils = FileUtils.newFileUtils();
     }
 
     /**
-     * @return the Ant utility class
+     * @return the File utility class
      */
-    private AntUtils getAntUtils()
+    private FileUtils getFileUtils()
     {
-        return this.antUtils;
+        return this.fileUtils;
     }
 
     /**
-     * @return the File utility class
+     * @return the size above which XML files are streamed by
+     * {@link #replaceInXmlFile(XmlReplacement...)} when all their XPath expressions are simple
+     * element paths, in bytes.
      */
-    private FileUtils getFileUtils()
+    public long getXmlStreamingThreshold()
     {
-        return this.fileUtils;
+        return this.xmlFileReplacer.getStreamingThreshold();
+    }
+
+    /**
+     * @param xmlStreamingThreshold the size above which XML files are streamed by
+     * {@link #replaceInXmlFile(XmlReplacement...)} when all their XPath expressions are simple
+     * element paths, such as <code>//server/socket-binding[@name='http']</code>, in bytes.
+     * Streamed files never need to fit in memory.
+     */
+    public void setXmlStreamingThreshold(long xmlStreamingThreshold)
+    {
+        this.xmlFileReplacer.setStreamingThreshold(xmlStreamingThreshold);
     }
 
     /**
@@ -131,6 +178,7 @@ public class DefaultFileHandler extends LoggedObject implements FileHandler
     {
         try
         {
+            breakHardLink(new File(target));
             getFileUtils().copyFile(new File(source).getAbsolutePath(),
                 new File(target).getAbsolutePath(), null, overwrite);
         }
@@ -154,50 +202,22 @@ public class DefaultFileHandler extends LoggedObject implements FileHandler
      */
     public void copyFile(String source, String target, FilterChain filterChain, String encoding)
     {
-        InputStream fileIS = null;
-
         try
         {
-            fileIS = new FileInputStream(source);
-
-            BufferedReader in = null;
-            BufferedWriter out = null;
+            Reader in = newReader(new FileInputStream(source), encoding);
+            Writer out = null;
             try
             {
-                ChainReaderHelper helper = new ChainReaderHelper();
-                helper.setBufferSize(8192);
-                helper.setPrimaryReader(new BufferedReader(newReader(fileIS, encoding)));
-                Vector<FilterChain> filterChains = new Vector<FilterChain>();
-                filterChains.add(filterChain);
-                helper.setFilterChains(filterChains);
-                in = new BufferedReader(helper.getAssembledReader());
-
                 out = new BufferedWriter(newWriter(target, encoding));
-
-                String line;
-                while ((line = in.readLine()) != null)
-                {
-                    if (line.length() == 0)
-                    {
-                        out.newLine();
-                    }
-                    else
-                    {
-                        out.write(line);
-                        out.newLine();
-                    }
-                }
+                FilterChains.copy(in, out, filterChain);
             }
             finally
             {
-                if (in != null)
-                {
-                    in.close();
-                }
                 if (out != null)
                 {
                     out.close();
                 }
+                in.close();
             }
         }
         catch (IOException e)
@@ -205,22 +225,6 @@ public class DefaultFileHandler extends LoggedObject implements FileHandler
             throw new CargoException("Failed to copy source file [" + source + "] to [" + target
                     + "] with FilterChain", e);
         }
-        finally
-        {
-            if (fileIS != null)
-            {
-                try
-                {
-                    fileIS.close();
-                }
-                catch (IOException ignored)
-                {
-                    // Ignored
-                }
-                fileIS = null;
-                System.gc();
-            }
-        }
     }
 
     /**
@@ -239,34 +243,315 @@ public class DefaultFileHandler extends LoggedObject implements FileHandler
      */
     public void copyDirectory(String source, String target, List<String> excludes)
     {
+        File sourceDirectory = new File(source).getAbsoluteFile();
+        File targetDirectory = new File(target).getAbsoluteFile();
         try
         {
-            Copy copyTask = (Copy) getAntUtils().createAntTask("copy");
-            copyTask.setTodir(new File(target));
+            if (!sourceDirectory.isDirectory())
+            {
+                throw new IOException("Source [" + source + "] is not a directory");
+            }
 
-            FileSet fileSet = new FileSet();
-            fileSet.setDir(new File(source));
+            DirectoryScanner scanner = scan(sourceDirectory, excludes);
 
-            // Exclude files marked by the user to be excluded
-            for (String excludeName : excludes)
+            mkdirs(targetDirectory.getPath());
+            for (String directory : scanner.getIncludedDirectories())
             {
-                fileSet.createExclude().setName(excludeName);
+                mkdirs(new File(targetDirectory, directory).getPath());
             }
 
-            copyTask.addFileset(fileSet);
-            copyTask.setFailOnError(true);
-            copyTask.setIncludeEmptyDirs(true);
-            copyTask.setOverwrite(true);
-
-            copyTask.execute();
+            String[] files = scanner.getIncludedFiles();
+            List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(files.length);
+            for (String file : files)
+            {
+                final File sourceFile = new File(sourceDirectory, file);
+                final File targetFile = new File(targetDirectory, file);
+                tasks.add(new Callable<Object>()
+                {
+                    public Object call() throws IOException
+                    {
+                        transferFile(sourceFile, targetFile);
+                        return null;
+                    }
+                });
+            }
+            ParallelTasks.execute(tasks, ParallelTasks.getDefaultThreads(), "Directory copy");
         }
-        catch (BuildException e)
+        catch (IOException e)
         {
             throw new CargoException("Failed to copy source directory [" + source + "] to ["
                 + target + "]", e);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * @see ExtendedFileHandler#syncDirectory(String, String)
+     */
+    public SyncSummary syncDirectory(String source, String target)
+    {
+        return syncDirectory(source, target, new ArrayList<String>(), false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see ExtendedFileHandler#syncDirectory(String, String, List, boolean)
+     */
+    public SyncSummary syncDirectory(String source, String target, List<String> excludes,
+        final boolean compareContents)
+    {
+        File sourceDirectory = new File(source).getAbsoluteFile();
+        File targetDirectory = new File(target).getAbsoluteFile();
+        final SyncSummary summary = new SyncSummary();
+        try
+        {
+            if (!sourceDirectory.isDirectory())
+            {
+                throw new IOException("Source [" + source + "] is not a directory");
+            }
+            DirectoryScanner sourceScanner = scan(sourceDirectory, excludes);
+            Set<String> sourceDirectories =
+                new HashSet<String>(Arrays.asList(sourceScanner.getIncludedDirectories()));
+            Set<String> sourceFiles =
+                new HashSet<String>(Arrays.asList(sourceScanner.getIncludedFiles()));
+
+            // Delete what is not in the source anymore, excluded files being left alone
+            if (targetDirectory.isDirectory())
+            {
+                DirectoryScanner targetScanner = scan(targetDirectory, excludes);
+                for (String file : targetScanner.getIncludedFiles())
+                {
+                    if (!sourceFiles.contains(file))
+                    {
+                        delete(new File(targetDirectory, file).getPath());
+                        summary.addDeletedFile(file);
+                    }
+                }
+                String[] directories = targetScanner.getIncludedDirectories();
+                Arrays.sort(directories, Collections.reverseOrder());
+                for (String directory : directories)
+                {
+                    if (!sourceDirectories.contains(directory))
+                    {
+                        delete(new File(targetDirectory, directory).getPath());
+                        summary.addDeletedFile(directory);
+                    }
+                }
+            }
+
+            for (String directory : sourceDirectories)
+            {
+                File targetSubDirectory = new File(targetDirectory, directory);
+                if (targetSubDirectory.isFile())
+                {
+                    targetSubDirectory.delete();
+                }
+                mkdirs(targetSubDirectory.getPath());
+            }
+
+            List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(sourceFiles.size());
+            for (final String file : sourceFiles)
+            {
+                final File sourceFile = new File(sourceDirectory, file);
+                final File targetFile = new File(targetDirectory, file);
+                tasks.add(new Callable<Object>()
+                {
+                    public Object call() throws IOException
+                    {
+                        if (isUpToDate(sourceFile, targetFile, compareContents))
+                        {
+                            summary.addUnchangedFile();
+                        }
+                        else
+                        {
+                            if (targetFile.isDirectory())
+                            {
+                                delete(targetFile.getPath());
+                            }
+                            transferFile(sourceFile, targetFile);
+                            summary.addCopiedFile(file);
+                        }
+                        return null;
+                    }
+                });
+            }
+            ParallelTasks.execute(tasks, ParallelTasks.getDefaultThreads(), "Directory sync");
+        }
+        catch (IOException e)
+        {
+            throw new CargoException("Failed to synchronize directory [" + target + "] with ["
+                + source + "]", e);
+        }
+        return summary;
+    }
+
+    /**
+     * Scans a directory the same way the Ant Copy task does, including Ant's default excludes.
+     * 
+     * @param directory the directory to scan.
+     * @param excludes the Ant patterns of the files to exclude.
+     * @return the scanner, after the scan.
+     */
+    private static DirectoryScanner scan(File directory, List<String> excludes)
+    {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(directory);
+        scanner.setExcludes(excludes.toArray(new String[excludes.size()]));
+        scanner.addDefaultExcludes();
+        scanner.scan();
+        return scanner;
+    }
+
+    /**
+     * @param source a source file.
+     * @param target the target file.
+     * @param compareContents <code>true</code> to compare the contents of files having the same
+     * size but a different modification time.
+     * @return <code>true</code> if the target file does not need to be copied. If the contents of
+     * the files are the same but not their modification times, the modification time of the
+     * target file is updated.
+     * @throws IOException If the files cannot be read.
+     */
+    private static boolean isUpToDate(File source, File target, boolean compareContents)
+        throws IOException
+    {
+        if (!target.isFile() || source.length() != target.length())
+        {
+            return false;
+        }
+        if (source.lastModified() == target.lastModified())
+        {
+            return true;
+        }
+        if (compareContents && hasSameContents(source, target))
+        {
+            target.setLastModified(source.lastModified());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param file1 a file.
+     * @param file2 another file, of the same size.
+     * @return <code>true</code> if both files have the same contents.
+     * @throws IOException If the files cannot be read.
+     */
+    private static boolean hasSameContents(File file1, File file2) throws IOException
+    {
+        InputStream in1 = new FileInputStream(file1);
+        try
+        {
+            InputStream in2 = new FileInputStream(file2);
+            try
+            {
+                byte[] buffer1 = new byte[COMPARE_BUFFER_SIZE];
+                byte[] buffer2 = new byte[COMPARE_BUFFER_SIZE];
+                int read = readFully(in1, buffer1);
+                while (read > 0)
+                {
+                    if (readFully(in2, buffer2) != read || !equals(buffer1, buffer2, read))
+                    {
+                        return false;
+                    }
+                    read = readFully(in1, buffer1);
+                }
+                return in2.read() == -1;
+            }
+            finally
+            {
+                in2.close();
+            }
+        }
+        finally
+        {
+            in1.close();
+        }
+    }
+
+    /**
+     * Reads a stream until a buffer is full or the stream ends.
+     * 
+     * @param in the stream to read.
+     * @param buffer the buffer to fill.
+     * @return the number of bytes read, less than the size of the buffer only at the end of the
+     * stream.
+     * @throws IOException If the stream cannot be read.
+     */
+    private static int readFully(InputStream in, byte[] buffer) throws IOException
+    {
+        int length = 0;
+        while (length < buffer.length)
+        {
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read == -1)
+            {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    /**
+     * @param buffer1 a buffer.
+     * @param buffer2 another buffer.
+     * @param length the number of bytes to compare.
+     * @return <code>true</code> if the first <code>length</code> bytes of the buffers are equal.
+     */
+    private static boolean equals(byte[] buffer1, byte[] buffer2, int length)
+    {
+        for (int i = 0; i < length; i++)
+        {
+            if (buffer1[i] != buffer2[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies a file using <code>FileChannel.transferTo</code>, which lets the operating system
+     * copy the bytes without moving them through the JVM where supported. The copy keeps the
+     * modification time of the file, so that later synchronizations find it up to date. The
+     * parent directory of the target file must exist.
+     * 
+     * @param source the file to copy.
+     * @param target the file to copy to, overwritten if it exists.
+     * @throws IOException If the file cannot be copied.
+     */
+    private void transferFile(File source, File target) throws IOException
+    {
+        breakHardLink(target);
+
+        FileInputStream in = new FileInputStream(source);
+        try
+        {
+            FileOutputStream out = new FileOutputStream(target);
+            try
+            {
+                FileChannel inChannel = in.getChannel();
+                FileChannel outChannel = out.getChannel();
+                long size = inChannel.size();
+                long position = 0;
+                while (position < size)
+                {
+                    position += inChannel.transferTo(position, size - position, outChannel);
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        target.setLastModified(source.lastModified());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -315,79 +600,295 @@ public class DefaultFileHandler extends LoggedObject implements FileHandler
             delete(exploded);
         }
 
-        byte[] buf = new byte[1024];
-
-        JarFile archive = null;
         try
         {
-            archive = new JarFile(new File(war).getAbsoluteFile());
-            Enumeration e = archive.entries();
-            while (e.hasMoreElements())
-            {
-                JarEntry j = (JarEntry) e.nextElement();
-                String dst = append(exploded, j.getName());
+            new ArchiveExtractor().extractZip(new File(war), new File(exploded));
+        }
+        catch (IOException e)
+        {
+            throw new CargoException(
+                "Failed to extract file [" + war + "] to [" + exploded + "]", e);
+        }
+    }
 
-                if (j.isDirectory())
-                {
-                    mkdirs(dst);
-                    continue;
-                }
+    /**
+     * {@inheritDoc}
+     * @see ExtendedFileHandler#linkDirectory(String, String)
+     */
+    public void linkDirectory(String source, String target)
+    {
+        linkDirectory(source, target, new ArrayList<String>());
+    }
 
-                mkdirs(getParent(dst));
+    /**
+     * {@inheritDoc}
+     * @see ExtendedFileHandler#linkDirectory(String, String, List)
+     */
+    public void linkDirectory(String source, String target, List<String> copies)
+    {
+        File sourceDirectory = new File(source);
+        if (!sourceDirectory.isDirectory())
+        {
+            throw new CargoException("Source [" + source + "] is not a directory");
+        }
+
+        linkDirectory(sourceDirectory, new File(target), "", copies);
+    }
+
+    /**
+     * Recursively clones a directory with hard links.
+     * 
+     * @param sourceDirectory the directory to clone.
+     * @param targetDirectory the directory to create the clone in.
+     * @param relativePath the path of <code>sourceDirectory</code> relative to the root of the
+     * clone, empty or ending with a separator.
+     * @param copies the Ant patterns of the files to copy rather than link.
+     */
+    private void linkDirectory(File sourceDirectory, File targetDirectory, String relativePath,
+        List<String> copies)
+    {
+        mkdirs(targetDirectory.getPath());
 
-                InputStream in = null;
-                FileOutputStream out = null;
-                try
+        for (File sourceDirectoryContent : sourceDirectory.listFiles())
+        {
+            File targetFile = new File(targetDirectory, sourceDirectoryContent.getName());
+            String path = relativePath + sourceDirectoryContent.getName();
+            if (sourceDirectoryContent.isDirectory())
+            {
+                linkDirectory(sourceDirectoryContent, targetFile, path + File.separator, copies);
+            }
+            else
+            {
+                if (targetFile.exists())
                 {
-                    in = archive.getInputStream(j);
-                    out = new FileOutputStream(dst);
-                    while (true)
-                    {
-                        int sz = in.read(buf);
-                        if (sz < 0)
-                        {
-                            break;
-                        }
-                        out.write(buf, 0, sz);
-                    }
+                    delete(targetFile.getPath());
                 }
-                finally
+                if (isMatching(path, copies) || !createLink(sourceDirectoryContent, targetFile))
                 {
-                    if (in != null)
-                    {
-                        in.close();
-                        in = null;
-                        System.gc();
-                    }
-                    if (out != null)
-                    {
-                        out.close();
-                        out = null;
-                        System.gc();
-                    }
+                    copyFile(sourceDirectoryContent.getAbsolutePath(),
+                        targetFile.getAbsolutePath(), true);
                 }
             }
         }
-        catch (IOException e)
+    }
+
+    /**
+     * @param path a relative path.
+     * @param patterns Ant patterns.
+     * @return <code>true</code> if <code>path</code> matches any of the patterns.
+     */
+    private static boolean isMatching(String path, List<String> patterns)
+    {
+        for (String pattern : patterns)
         {
-            throw new CargoException(
-                "Failed to extract file [" + war + "] to [" + exploded + "]", e);
+            if (SelectorUtils.matchPath(pattern.replace('/', File.separatorChar), path))
+            {
+                return true;
+            }
         }
-        finally
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}. The move is atomic when the JVM supports it.
+     * @see ExtendedFileHandler#move(String, String)
+     */
+    public void move(String source, String target)
+    {
+        File sourceFile = new File(source);
+        if (!sourceFile.exists())
+        {
+            throw new CargoException("Source [" + source + "] does not exist");
+        }
+
+        File targetFile = new File(target);
+        if (targetFile.isDirectory())
         {
-            if (archive != null)
+            // A directory cannot be replaced by a rename, only a file can
+            delete(target);
+        }
+        else
+        {
+            mkdirs(targetFile.getAbsoluteFile().getParent());
+        }
+
+        if (MOVE != null && ATOMIC_MOVE != null)
+        {
+            try
             {
-                try
-                {
-                    archive.close();
-                }
-                catch (IOException ignored)
-                {
-                    // Ignored
-                }
-                archive = null;
-                System.gc();
+                MOVE.invoke(null, TO_PATH.invoke(sourceFile), TO_PATH.invoke(targetFile),
+                    ATOMIC_MOVE);
+                return;
             }
+            catch (Exception e)
+            {
+                getLogger().debug("Cannot move [" + source + "] to [" + target
+                    + "] atomically: " + e, this.getClass().getName());
+            }
+        }
+
+        if (sourceFile.renameTo(targetFile))
+        {
+            return;
+        }
+        if (targetFile.isFile() && targetFile.delete() && sourceFile.renameTo(targetFile))
+        {
+            return;
+        }
+
+        // Typically, the source and the target are not on the same file system
+        if (sourceFile.isDirectory())
+        {
+            copyDirectory(source, target);
+        }
+        else
+        {
+            copyFile(source, target, true);
+        }
+        delete(source);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see ExtendedFileHandler#linkFile(String, String)
+     */
+    public void linkFile(String source, String target)
+    {
+        File sourceFile = new File(source);
+        if (!sourceFile.isFile())
+        {
+            throw new CargoException("Source [" + source + "] is not a file");
+        }
+
+        File targetFile = new File(target);
+        if (targetFile.exists())
+        {
+            delete(target);
+        }
+        else
+        {
+            mkdirs(targetFile.getAbsoluteFile().getParent());
+        }
+
+        if (!createLink(sourceFile, targetFile))
+        {
+            copyFile(source, target, true);
+        }
+    }
+
+    /**
+     * Creates a hard link. Hard links are only created if the number of links of a file can be
+     * read, as {@link #breakHardLink(File)} needs it to never write through a link.
+     * 
+     * @param existing the file to link to.
+     * @param link the link to create.
+     * @return <code>true</code> if the link has been created, <code>false</code> if hard links
+     * are not supported.
+     */
+    private boolean createLink(File existing, File link)
+    {
+        if (CREATE_LINK == null || getLinkCount(existing) < 1)
+        {
+            return false;
+        }
+
+        try
+        {
+            CREATE_LINK.invoke(null, TO_PATH.invoke(link), TO_PATH.invoke(existing));
+            return true;
+        }
+        catch (Exception e)
+        {
+            getLogger().debug("Cannot link [" + link + "] to [" + existing + "], copying it: "
+                + e, this.getClass().getName());
+            return false;
+        }
+    }
+
+    /**
+     * Replaces a file which is a hard link (as created by
+     * {@link #linkDirectory(String, String)}) by a new file, so that writing to that file does not
+     * modify the other links.
+     * 
+     * @param file the file about to be written.
+     */
+    private void breakHardLink(File file)
+    {
+        if (getLinkCount(file) > 1)
+        {
+            getLogger().debug("Breaking hard link [" + file + "]", this.getClass().getName());
+            file.delete();
+        }
+    }
+
+    /**
+     * @param file a file.
+     * @return the number of hard links of the file, <code>-1</code> if the file does not exist or
+     * if the number of links cannot be read.
+     */
+    private static int getLinkCount(File file)
+    {
+        if (GET_ATTRIBUTE == null || !file.isFile())
+        {
+            return -1;
+        }
+
+        try
+        {
+            Object linkOptions = Array.newInstance(
+                GET_ATTRIBUTE.getParameterTypes()[2].getComponentType(), 0);
+            Object linkCount = GET_ATTRIBUTE.invoke(null, TO_PATH.invoke(file), "unix:nlink",
+                linkOptions);
+            return ((Number) linkCount).intValue();
+        }
+        catch (Exception e)
+        {
+            // Typically, a file system without the unix attribute view
+            return -1;
+        }
+    }
+
+    /**
+     * @return a <code>CopyOption</code> array holding <code>StandardCopyOption.ATOMIC_MOVE</code>,
+     * <code>null</code> if not available in this JVM.
+     */
+    private static Object getAtomicMoveOptions()
+    {
+        try
+        {
+            Object atomicMove =
+                Class.forName("java.nio.file.StandardCopyOption").getField("ATOMIC_MOVE").get(null);
+            Object options = Array.newInstance(Class.forName("java.nio.file.CopyOption"), 1);
+            Array.set(options, 0, atomicMove);
+            return options;
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @param className the name of a class.
+     * @param methodName the name of a public method of that class.
+     * @param parameterClassNames the names of the classes of the method parameters.
+     * @return the method, <code>null</code> if not available in this JVM.
+     */
+    private static Method getMethod(String className, String methodName,
+        String... parameterClassNames)
+    {
+        try
+        {
+            Class<?>[] parameterTypes = new Class<?>[parameterClassNames.length];
+            for (int i = 0; i < parameterClassNames.length; i++)
+            {
+                parameterTypes[i] = Class.forName(parameterClassNames[i]);
+            }
+            return Class.forName(className).getMethod(methodName, parameterTypes);
+        }
+        catch (Exception e)
+        {
+            return null;
         }
     }
 
@@ -454,30 +955,107 @@ public class DefaultFileHandler extends LoggedObject implements FileHandler
     public void replaceInFile(String file, Map<String, String> replacements, String encoding,
         boolean ignoreNonExistingProperties) throws CargoException
     {
-        String fileContents = readTextFile(file, encoding);
+        // Stream the file to a sibling file, which then replaces it. Unless replacements affect
+        // each other, the file is streamed once.
+        String source = file;
+        try
+        {
+            List<Map<String, String>> passes = StreamingReplacer.splitPasses(replacements);
+            for (int i = 0; i < passes.size(); i++)
+            {
+                String replaced = file + REPLACING_SUFFIX + i;
+                if (replaceInFile(file, source, replaced, passes.get(i), encoding,
+                    ignoreNonExistingProperties))
+                {
+                    if (!source.equals(file))
+                    {
+                        delete(source);
+                    }
+                    source = replaced;
+                }
+            }
+        }
+        catch (CargoException e)
+        {
+            if (!source.equals(file))
+            {
+                delete(source);
+            }
+            throw e;
+        }
 
-        for (Map.Entry<String, String> replacement : replacements.entrySet())
+        if (!source.equals(file))
         {
-            if (!fileContents.contains(replacement.getKey()))
+            replaceFile(file, source);
+        }
+    }
+
+    /**
+     * Replaces in a file in a single pass, as a {@link StreamingReplacer} does.
+     * 
+     * @param file File to replace in, for messages.
+     * @param source File to read, <code>file</code> or the result of the previous pass.
+     * @param replaced File to write the result to, deleted if nothing is replaced.
+     * @param replacements Map containing replacements.
+     * @param encoding The character encoding to use, may be {@code null} or empty to use the
+     *            platform's default encoding.
+     * @param ignoreNonExistingProperties Whether to ignore if one of the keys cannot be found.
+     * @return <code>true</code> if anything has been replaced.
+     * @throws CargoException If anything fails, most notably if one of the replacements does not
+     * exist in the file.
+     */
+    private boolean replaceInFile(String file, String source, String replaced,
+        Map<String, String> replacements, String encoding, boolean ignoreNonExistingProperties)
+        throws CargoException
+    {
+        Set<String> matched;
+        try
+        {
+            Reader in = newReader(getInputStream(source), encoding);
+            Writer out = null;
+            try
+            {
+                out = new BufferedWriter(newWriter(replaced, encoding));
+                matched = new StreamingReplacer(replacements).replace(in, out);
+            }
+            finally
             {
-                String message = "File " + file + " does not contain replacement key "
-                    + replacement.getKey();
+                if (out != null)
+                {
+                    out.close();
+                }
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            delete(replaced);
+            throw new CargoException("Failed to replace in file [" + file + "]", e);
+        }
+
+        for (String key : replacements.keySet())
+        {
+            if (key.length() > 0 && !matched.contains(key))
+            {
+                String message = "File " + file + " does not contain replacement key " + key;
 
                 if (ignoreNonExistingProperties)
                 {
                     getLogger().debug(message, this.getClass().getName());
-                    continue;
                 }
                 else
                 {
+                    delete(replaced);
                     throw new CargoException(message);
                 }
             }
-
-            fileContents = fileContents.replace(replacement.getKey(), replacement.getValue());
         }
 
-        writeTextFile(file, fileContents, encoding);
+        if (matched.isEmpty())
+        {
+            delete(replaced);
+        }
+        return !matched.isEmpty();
     }
 
     /**
@@ -488,7 +1066,7 @@ public class DefaultFileHandler extends LoggedObject implements FileHandler
         throws CargoException
     {
         Map<String, Map<XmlReplacementDetails, String>> replacements =
-            new HashMap<String, Map<XmlReplacementDetails, String>>();
+            new LinkedHashMap<String, Map<XmlReplacementDetails, String>>();
 
         for (XmlReplacement xmlReplacement : xmlReplacements)
         {
@@ -496,7 +1074,7 @@ public class DefaultFileHandler extends LoggedObject implements FileHandler
                 replacements.get(xmlReplacement.getFile());
             if (replacementDetails == null)
             {
-                replacementDetails = new HashMap<XmlReplacementDetails, String>();
+                replacementDetails = new LinkedHashMap<XmlReplacementDetails, String>();
                 replacements.put(xmlReplacement.getFile(), replacementDetails);
             }
 
@@ -514,7 +1092,8 @@ public class DefaultFileHandler extends LoggedObject implements FileHandler
     }
 
     /**
-     * Replaces using a map of XML replacements in a given file.
+     * Replaces using a map of XML replacements in a given file. The file is only rewritten if
+     * anything changed.
      * 
      * @param file File to replace in.
      * @param replacements Map containing XML replacements.
@@ -524,128 +1103,98 @@ public class DefaultFileHandler extends LoggedObject implements FileHandler
     private void replaceInXmlFile(String file, Map<XmlReplacementDetails, String> replacements)
         throws CargoException
     {
-        InputStream is = null;
-        OutputStream os = null;
+        if (!exists(file))
+        {
+            throw new CargoException("Cannot find file " + file);
+        }
+        if (isDirectory(file))
+        {
+            throw new CargoException("The destination is a directory: " + file);
+        }
 
+        String replaced = file + REPLACING_SUFFIX;
+        List<XmlReplacementDetails> notFound = new ArrayList<XmlReplacementDetails>();
+        boolean changed;
         try
         {
-            DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = domFactory.newDocumentBuilder();
-
-            XPathFactory xPathFactory = XPathFactory.newInstance();
-            XPath xPath = xPathFactory.newXPath();
+            changed = this.xmlFileReplacer.replace(this, file, replaced, replacements, notFound);
+        }
+        catch (Exception e)
+        {
+            delete(replaced);
+            throw new CargoException("Cannot modify XML file " + file, e);
+        }
 
-            TransformerFactory tFactory = TransformerFactory.newInstance();
-            Transformer transformer = tFactory.newTransformer();
+        for (XmlReplacementDetails details : notFound)
+        {
+            String message = "Node " + details.getXpathExpression() + " not found in file " + file;
 
-            if (!exists(file))
+            if (details.isIgnoreIfNonExisting() == Boolean.TRUE)
             {
-                throw new CargoException("Cannot find file " + file);
+                getLogger().debug(message, this.getClass().getName());
             }
-            if (isDirectory(file))
+            else
             {
-                throw new CargoException("The destination is a directory: " + file);
+                delete(replaced);
+                throw new CargoException("Cannot modify XML file " + file,
+                    new CargoException(message));
             }
+        }
+
+        if (changed)
+        {
+            replaceFile(file, replaced);
+        }
+        else
+        {
+            getLogger().debug("XML file " + file + " left unchanged", this.getClass().getName());
+        }
+    }
+
+    /**
+     * Replaces a file with another one, renaming it when both are local files.
+     * 
+     * @param file the file to replace.
+     * @param replaced the file to replace it with, which is deleted.
+     */
+    private void replaceFile(String file, String replaced)
+    {
+        File original = new File(file);
+        File replacement = new File(replaced);
+        if (replacement.isFile() && (replacement.renameTo(original)
+            || (original.delete() && replacement.renameTo(original))))
+        {
+            return;
+        }
 
-            is = getInputStream(file);
-            Document doc;
+        InputStream in = getInputStream(replaced);
+        try
+        {
+            OutputStream out = getOutputStream(file);
             try
             {
-                doc = builder.parse(is);
+                copy(in, out, BUFFER_SIZE);
             }
             finally
             {
-                is.close();
-                is = null;
-                System.gc();
+                out.close();
             }
-
-            for (Map.Entry<XmlReplacementDetails, String> replacement : replacements.entrySet())
-            {
-                String expression = replacement.getKey().getXpathExpression();
-                String attributeName = replacement.getKey().getAttributeName();
-
-                XPathExpression xPathExpr = xPath.compile(expression);
-
-                Node node = (Node) xPathExpr.evaluate(doc, XPathConstants.NODE);
-
-                if (node == null)
-                {
-                    String message = "Node " + expression + " not found in file " + file;
-
-                    if (replacement.getKey().isIgnoreIfNonExisting() == Boolean.TRUE)
-                    {
-                        getLogger().debug(message, this.getClass().getName());
-                        continue;
-                    }
-                    else
-                    {
-                        throw new CargoException(message);
-                    }
-                }
-
-                if (attributeName != null)
-                {
-                    Node attribute = node.getAttributes().getNamedItem(attributeName);
-
-                    if (attribute == null)
-                    {
-                        ((Element) node).setAttribute(attributeName, replacement.getValue());
-                    }
-                    else
-                    {
-                        attribute.setNodeValue(replacement.getValue());
-                    }
-                }
-                else
-                {
-                    node.setTextContent(replacement.getValue());
-                }
-            }
-
-            delete(file);
-            os = getOutputStream(file);
-            transformer.transform(new DOMSource(doc), new StreamResult(os));
         }
-        catch (Exception e)
+        catch (IOException e)
         {
-            throw new CargoException("Cannot modify XML file " + file, e);
+            throw new CargoException("Failed to replace file [" + file + "]", e);
         }
         finally
         {
-            if (is != null)
+            try
             {
-                try
-                {
-                    is.close();
-                }
-                catch (Exception ignored)
-                {
-                    // Ignored
-                }
-                finally
-                {
-                    is = null;
-                }
+                in.close();
             }
-
-            if (os != null)
+            catch (IOException ignored)
             {
-                try
-                {
-                    os.close();
-                }
-                catch (Exception ignored)
-                {
-                    // Ignored
-                }
-                finally
-                {
-                    os = null;
-                }
+                // Ignored
             }
-
-            System.gc();
+            delete(replaced);
         }
     }
 
@@ -714,6 +1263,20 @@ public class DefaultFileHandler extends LoggedObject implements FileHandler
         return fileObject.length();
     }
 
+    /**
+     * {@inheritDoc}
+     * @see ExtendedFileHandler#getLastModified(String)
+     */
+    public long getLastModified(String file)
+    {
+        File fileObject = new File(file).getAbsoluteFile();
+        if (!fileObject.isFile())
+        {
+            throw new CargoException("File [" + file + "] is not a file");
+        }
+        return fileObject.lastModified();
+    }
+
     /**
      * {@inheritDoc}
      * @see org.codehaus.cargo.util.FileHandler#getInputStream(String)
@@ -747,6 +1310,7 @@ public class DefaultFileHandler extends LoggedObject implements FileHandler
         OutputStream os;
         try
         {
+            breakHardLink(new File(file));
             os = new FileOutputStream(file);
         }
         catch (FileNotFoundException e)
@@ -0,0 +1,112 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import java.util.List;
+
+/**
+ * File handler which can also synchronize directories, link files and move them in a single step.
+ * This is a separate interface so that existing {@link FileHandler} implementations keep working;
+ * CARGO copies files instead when a file handler does not implement it.
+ * 
+ */
+public interface ExtendedFileHandler extends FileHandler
+{
+    /**
+     * Incrementally synchronizes a directory with a source directory: files which are new or
+     * whose size or modification time differ are copied, files and directories which do not exist
+     * in the source anymore are deleted and all other files are left untouched.
+     * 
+     * @param source the directory to synchronize from. Must not be <code>null</code>.
+     * @param target the directory to synchronize. Must not be <code>null</code>.
+     * @return a summary of the changes made.
+     */
+    SyncSummary syncDirectory(String source, String target);
+
+    /**
+     * Incrementally synchronizes a directory with a source directory, specifying files to be
+     * excluded. Excluded files are neither copied nor deleted.
+     * 
+     * @param source the directory to synchronize from. Must not be <code>null</code>.
+     * @param target the directory to synchronize. Must not be <code>null</code>.
+     * @param excludes the list of files to be excluded. Each entry in the list is an <a
+     * href="http://ant.apache.org/manual/dirtasks.html#patterns">Ant file pattern</a>.
+     * @param compareContents <code>true</code> to compare the contents of files having the same
+     * size but a different modification time, so that touched but unchanged files are not
+     * copied.
+     * @return a summary of the changes made.
+     */
+    SyncSummary syncDirectory(String source, String target, List<String> excludes,
+        boolean compareContents);
+
+    /**
+     * Creates a copy-on-write clone of a directory: the directory tree is recreated in the
+     * destination, but its files are hard links to the files of the source instead of copies.
+     * Files written through this file handler are replaced rather than written through, so that
+     * the source files are never modified. Files written by anything else, for example by a
+     * container modifying its own files in place, <b>do</b> modify the source files; use
+     * {@link #linkDirectory(String, String, List)} to copy such files. When hard links are not
+     * supported by the JVM or the file system, files are copied instead.
+     * 
+     * @param source the directory to clone. Must not be <code>null</code>.
+     * @param target the directory to create the clone in. Must not be <code>null</code>.
+     */
+    void linkDirectory(String source, String target);
+
+    /**
+     * Creates a copy-on-write clone of a directory like {@link #linkDirectory(String, String)},
+     * except that the files matching the given patterns are copied rather than linked.
+     * 
+     * @param source the directory to clone. Must not be <code>null</code>.
+     * @param target the directory to create the clone in. Must not be <code>null</code>.
+     * @param copies the Ant patterns, relative to <code>source</code>, of the files to copy
+     * rather than link; typically the files modified in place by something else than this file
+     * handler.
+     */
+    void linkDirectory(String source, String target, List<String> copies);
+
+    /**
+     * Creates a hard link to a file, replacing the target if it exists. Files written through this
+     * file handler are replaced rather than written through, so that the source file is never
+     * modified. When hard links are not supported by the JVM or the file system, or when the
+     * source and the target are not on the same file system, the file is copied instead.
+     * 
+     * @param source the file to link to. Must not be <code>null</code>.
+     * @param target the link to create. Must not be <code>null</code>.
+     */
+    void linkFile(String source, String target);
+
+    /**
+     * Moves a file or a directory, replacing the target if it exists. When the source and the
+     * target are on the same file system, the move is a rename, so that the target never is seen
+     * partially written: a file target is replaced in a single step, a directory target is
+     * deleted first. When they are not, the source is copied then deleted.
+     * 
+     * @param source the file or directory to move. Must not be <code>null</code>.
+     * @param target the path to move it to. Must not be <code>null</code>.
+     */
+    void move(String source, String target);
+
+    /**
+     * @param file the file for which to get the modification time
+     * @return long Time the file was last modified, in milliseconds since the epoch
+     */
+    long getLastModified(String file);
+}
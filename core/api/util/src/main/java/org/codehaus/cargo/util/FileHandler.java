@@ -237,7 +237,8 @@ public interface FileHandler extends Loggable
     void copy(InputStream in, OutputStream out);
 
     /**
-     * Replaces using a map of replacements in a given file.
+     * Replaces using a map of replacements in a given file, the same way as
+     * {@link #replaceInFile(String, Map, String, boolean)} does.
      * 
      * @param file File to replace in.
      * @param replacements Map containing replacements.
@@ -250,7 +251,11 @@ public interface FileHandler extends Loggable
         throws CargoException;
 
     /**
-     * Replaces using a map of replacements in a given file.
+     * Replaces using a map of replacements in a given file. The replacements are applied one
+     * after the other, in the iteration order of the map: with the replacements <code>a=b</code>
+     * and <code>b=c</code>, the text <code>a</code> becomes <code>c</code>, and a key only needs
+     * to be in the file once the previous replacements are done. Implementations may apply
+     * replacements which do not affect each other together.
      * 
      * @param file File to replace in.
      * @param replacements Map containing replacements.
@@ -0,0 +1,636 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Replaces a set of literal patterns in a character stream in a single pass. The patterns are
+ * compiled into an Aho-Corasick automaton, so the text is read once whatever the number of
+ * patterns, and only the characters of a potential match are held in memory: everything else,
+ * line endings included, is written out exactly as read.
+ * <p>
+ * When matches overlap, the one starting first wins and, among those starting at the same
+ * position, the longest one. Replacement values are not scanned again for patterns.
+ * </p>
+ * <p>
+ * A replacer is immutable once created and can be used by several threads at once.
+ * </p>
+ *
+ */
+public class StreamingReplacer
+{
+    /**
+     * Size of the buffers used when reading the text.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Root of the automaton.
+     */
+    private Node root;
+
+    /**
+     * Length of the longest pattern.
+     */
+    private int maxPatternLength;
+
+    /**
+     * The patterns and their replacements.
+     */
+    private Map<String, String> replacements;
+
+    /**
+     * @param replacements the patterns to replace and their replacements. Empty patterns are
+     * ignored.
+     */
+    public StreamingReplacer(Map<String, String> replacements)
+    {
+        this.replacements = new LinkedHashMap<String, String>(replacements);
+        this.root = new Node(0);
+
+        for (Map.Entry<String, String> replacement : this.replacements.entrySet())
+        {
+            String pattern = replacement.getKey();
+            if (pattern == null || pattern.length() == 0)
+            {
+                continue;
+            }
+            Node node = this.root;
+            for (int i = 0; i < pattern.length(); i++)
+            {
+                node = node.addChild(pattern.charAt(i));
+            }
+            node.pattern = pattern;
+            node.replacement = replacement.getValue() == null ? "" : replacement.getValue();
+            this.maxPatternLength = Math.max(this.maxPatternLength, pattern.length());
+        }
+        computeFailureLinks();
+    }
+
+    /**
+     * Computes the failure links of the automaton breadth first, then freezes the transitions of
+     * its nodes into arrays.
+     */
+    private void computeFailureLinks()
+    {
+        List<Node> nodes = new ArrayList<Node>();
+        this.root.failure = this.root;
+        nodes.add(this.root);
+        for (int i = 0; i < nodes.size(); i++)
+        {
+            Node node = nodes.get(i);
+            for (Map.Entry<Character, Node> child : node.children.entrySet())
+            {
+                Node target = child.getValue();
+                if (node == this.root)
+                {
+                    target.failure = this.root;
+                }
+                else
+                {
+                    target.failure = next(node.failure, child.getKey().charValue());
+                }
+                target.output = target.pattern != null ? target : target.failure.output;
+                nodes.add(target);
+            }
+        }
+        for (Node node : nodes)
+        {
+            node.freeze();
+        }
+    }
+
+    /**
+     * Splits replacements meant to be applied one after the other into passes of a replacer, so
+     * that replacing each pass in turn gives the same text. Consecutive replacements share a pass
+     * unless an earlier one can change what a later one finds: when a value can form the pattern
+     * of a later replacement, as with <code>a=b</code> then <code>b=c</code>, or when patterns can
+     * overlap in the text. Most replacements therefore take a single pass.
+     *
+     * @param replacements the patterns and their replacements, in the order to apply them.
+     * @return the patterns and replacements of each pass, in order.
+     */
+    public static List<Map<String, String>> splitPasses(Map<String, String> replacements)
+    {
+        List<Map<String, String>> passes = new ArrayList<Map<String, String>>();
+        Map<String, String> pass = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, String> replacement : replacements.entrySet())
+        {
+            if (!pass.isEmpty() && isAffected(replacement.getKey(), pass))
+            {
+                passes.add(pass);
+                pass = new LinkedHashMap<String, String>();
+            }
+            pass.put(replacement.getKey(), replacement.getValue());
+        }
+        if (!pass.isEmpty())
+        {
+            passes.add(pass);
+        }
+        return passes;
+    }
+
+    /**
+     * @param pattern a pattern.
+     * @param replacements earlier patterns and their replacements.
+     * @return <code>true</code> if replacing the earlier patterns can change the occurrences of
+     * <code>pattern</code> in a text.
+     */
+    private static boolean isAffected(String pattern, Map<String, String> replacements)
+    {
+        for (Map.Entry<String, String> replacement : replacements.entrySet())
+        {
+            if (overlaps(replacement.getKey(), pattern)
+                || replacement.getValue() != null && overlaps(replacement.getValue(), pattern))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param text1 a text.
+     * @param text2 another text.
+     * @return <code>true</code> if the texts can share characters where they appear in a text,
+     * that is if one contains the other or one ends with the beginning of the other.
+     */
+    private static boolean overlaps(String text1, String text2)
+    {
+        if (text1.contains(text2) || text2.contains(text1))
+        {
+            return true;
+        }
+        for (int length = 1; length < Math.min(text1.length(), text2.length()); length++)
+        {
+            if (text1.endsWith(text2.substring(0, length))
+                || text2.endsWith(text1.substring(0, length)))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the patterns and their replacements.
+     */
+    public Map<String, String> getReplacements()
+    {
+        return new LinkedHashMap<String, String>(this.replacements);
+    }
+
+    /**
+     * Copies a text, replacing the patterns. Neither stream is closed.
+     *
+     * @param in the text to read.
+     * @param out the writer to write the text with its replacements to.
+     * @return the patterns which have been found and replaced in the text.
+     * @throws IOException If the text cannot be read or written.
+     */
+    public Set<String> replace(Reader in, Writer out) throws IOException
+    {
+        Matcher matcher = new Matcher();
+        char[] buffer = new char[BUFFER_SIZE];
+        for (int read = in.read(buffer); read != -1; read = in.read(buffer))
+        {
+            matcher.feed(buffer, read, out);
+        }
+        matcher.finish(out);
+        return matcher.matched;
+    }
+
+    /**
+     * @param in the text to read.
+     * @return a reader returning the text with its patterns replaced. Closing it closes
+     * <code>in</code>.
+     */
+    public Reader filter(Reader in)
+    {
+        return new ReplacingReader(in);
+    }
+
+    /**
+     * @param state the current state.
+     * @param c the next character.
+     * @return the state of the automaton after reading <code>c</code>.
+     */
+    private Node next(Node state, char c)
+    {
+        Node node = state;
+        while (true)
+        {
+            Node child = node.getChild(c);
+            if (child != null)
+            {
+                return child;
+            }
+            else if (node == this.root)
+            {
+                return this.root;
+            }
+            node = node.failure;
+        }
+    }
+
+    /**
+     * State of the automaton, matching a prefix of one or more patterns.
+     */
+    private static final class Node
+    {
+        /**
+         * Length of the matched prefix.
+         */
+        private int depth;
+
+        /**
+         * The pattern ending at this state, <code>null</code> if none.
+         */
+        private String pattern;
+
+        /**
+         * The replacement of {@link #pattern}.
+         */
+        private String replacement;
+
+        /**
+         * State for the longest proper suffix of this prefix.
+         */
+        private Node failure;
+
+        /**
+         * State of the longest pattern which is a suffix of this prefix, <code>null</code> if
+         * none.
+         */
+        private Node output;
+
+        /**
+         * Transitions while the automaton is being built.
+         */
+        private Map<Character, Node> children = new TreeMap<Character, Node>();
+
+        /**
+         * Sorted characters of the transitions.
+         */
+        private char[] labels;
+
+        /**
+         * States the transitions of {@link #labels} go to.
+         */
+        private Node[] targets;
+
+        /**
+         * @param depth length of the matched prefix.
+         */
+        private Node(int depth)
+        {
+            this.depth = depth;
+        }
+
+        /**
+         * @param c a character.
+         * @return the state for this prefix followed by <code>c</code>, created if necessary.
+         */
+        private Node addChild(char c)
+        {
+            Node child = this.children.get(Character.valueOf(c));
+            if (child == null)
+            {
+                child = new Node(this.depth + 1);
+                this.children.put(Character.valueOf(c), child);
+            }
+            return child;
+        }
+
+        /**
+         * @param c a character.
+         * @return the state for this prefix followed by <code>c</code>, <code>null</code> if no
+         * pattern starts with it.
+         */
+        private Node getChild(char c)
+        {
+            if (this.labels == null)
+            {
+                return this.children.get(Character.valueOf(c));
+            }
+            int low = 0;
+            int high = this.labels.length - 1;
+            while (low <= high)
+            {
+                int middle = (low + high) >>> 1;
+                char label = this.labels[middle];
+                if (label < c)
+                {
+                    low = middle + 1;
+                }
+                else if (label > c)
+                {
+                    high = middle - 1;
+                }
+                else
+                {
+                    return this.targets[middle];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Turns the transitions into sorted arrays.
+         */
+        private void freeze()
+        {
+            this.labels = new char[this.children.size()];
+            this.targets = new Node[this.children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Node> child : this.children.entrySet())
+            {
+                this.labels[i] = child.getKey().charValue();
+                this.targets[i] = child.getValue();
+                i++;
+            }
+            this.children = null;
+        }
+    }
+
+    /**
+     * Matching state of one text. Characters are buffered only as long as they may belong to a
+     * match.
+     */
+    private final class Matcher
+    {
+        /**
+         * The patterns found so far.
+         */
+        private Set<String> matched = new HashSet<String>();
+
+        /**
+         * Characters read and not written yet.
+         */
+        private char[] buffer = new char[BUFFER_SIZE + StreamingReplacer.this.maxPatternLength];
+
+        /**
+         * Number of characters in {@link #buffer}.
+         */
+        private int length;
+
+        /**
+         * Number of characters of {@link #buffer} already given to the automaton.
+         */
+        private int scanned;
+
+        /**
+         * Current state of the automaton.
+         */
+        private Node state = StreamingReplacer.this.root;
+
+        /**
+         * The best match found so far, <code>null</code> if none.
+         */
+        private Node candidate;
+
+        /**
+         * Position of {@link #candidate} in {@link #buffer}.
+         */
+        private int candidateStart;
+
+        /**
+         * Reads characters of the text.
+         *
+         * @param chars the characters.
+         * @param count the number of characters to read.
+         * @param out the writer to write the text with its replacements to.
+         * @throws IOException If writing fails.
+         */
+        private void feed(char[] chars, int count, Writer out) throws IOException
+        {
+            int offset = 0;
+            while (offset < count)
+            {
+                if (this.length == this.buffer.length)
+                {
+                    flush(out);
+                }
+                int copied = Math.min(count - offset, this.buffer.length - this.length);
+                System.arraycopy(chars, offset, this.buffer, this.length, copied);
+                this.length += copied;
+                offset += copied;
+                scan(out);
+            }
+        }
+
+        /**
+         * Ends the text, writing the last replacements and characters.
+         *
+         * @param out the writer to write the text with its replacements to.
+         * @throws IOException If writing fails.
+         */
+        private void finish(Writer out) throws IOException
+        {
+            while (this.candidate != null)
+            {
+                replaceCandidate(out);
+                scan(out);
+            }
+            out.write(this.buffer, 0, this.length);
+            this.length = 0;
+            this.scanned = 0;
+            this.state = StreamingReplacer.this.root;
+        }
+
+        /**
+         * Runs the automaton on the buffered characters, replacing the matches which can no
+         * longer be extended nor preceded by another match.
+         *
+         * @param out the writer to write the text with its replacements to.
+         * @throws IOException If writing fails.
+         */
+        private void scan(Writer out) throws IOException
+        {
+            while (this.scanned < this.length)
+            {
+                this.state = next(this.state, this.buffer[this.scanned]);
+                this.scanned++;
+
+                Node match = this.state.output;
+                if (match != null)
+                {
+                    int start = this.scanned - match.depth;
+                    if (this.candidate == null || start < this.candidateStart
+                        || (start == this.candidateStart && match.depth > this.candidate.depth))
+                    {
+                        this.candidate = match;
+                        this.candidateStart = start;
+                    }
+                }
+
+                // No match can start before the prefix tracked by the automaton anymore
+                if (this.candidate != null
+                    && this.scanned - this.state.depth > this.candidateStart)
+                {
+                    replaceCandidate(out);
+                }
+            }
+        }
+
+        /**
+         * Writes the characters preceding the candidate match and its replacement, and scans the
+         * characters following it again.
+         *
+         * @param out the writer to write the text with its replacements to.
+         * @throws IOException If writing fails.
+         */
+        private void replaceCandidate(Writer out) throws IOException
+        {
+            out.write(this.buffer, 0, this.candidateStart);
+            out.write(this.candidate.replacement);
+            this.matched.add(this.candidate.pattern);
+
+            int end = this.candidateStart + this.candidate.depth;
+            System.arraycopy(this.buffer, end, this.buffer, 0, this.length - end);
+            this.length -= end;
+            this.scanned = 0;
+            this.state = StreamingReplacer.this.root;
+            this.candidate = null;
+        }
+
+        /**
+         * Writes the characters which cannot belong to a match, making room in the buffer.
+         *
+         * @param out the writer to write the text with its replacements to.
+         * @throws IOException If writing fails.
+         */
+        private void flush(Writer out) throws IOException
+        {
+            int safe = this.scanned - this.state.depth;
+            if (this.candidate != null)
+            {
+                safe = Math.min(safe, this.candidateStart);
+                this.candidateStart -= safe;
+            }
+            out.write(this.buffer, 0, safe);
+            System.arraycopy(this.buffer, safe, this.buffer, 0, this.length - safe);
+            this.length -= safe;
+            this.scanned -= safe;
+        }
+    }
+
+    /**
+     * Reader replacing the patterns of the text it reads.
+     */
+    private final class ReplacingReader extends Reader
+    {
+        /**
+         * The text to read.
+         */
+        private Reader in;
+
+        /**
+         * Matching state of the text.
+         */
+        private Matcher matcher = new Matcher();
+
+        /**
+         * Buffer for the text read from {@link #in}.
+         */
+        private char[] input = new char[BUFFER_SIZE];
+
+        /**
+         * Text with its replacements not returned yet.
+         */
+        private CharArrayWriter output = new CharArrayWriter(BUFFER_SIZE);
+
+        /**
+         * Characters of {@link #output} to return.
+         */
+        private char[] chunk = new char[0];
+
+        /**
+         * Position in {@link #chunk}.
+         */
+        private int position;
+
+        /**
+         * Whether the end of {@link #in} has been reached.
+         */
+        private boolean ended;
+
+        /**
+         * @param in the text to read.
+         */
+        private ReplacingReader(Reader in)
+        {
+            this.in = in;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException
+        {
+            while (this.position == this.chunk.length)
+            {
+                if (this.ended)
+                {
+                    return -1;
+                }
+                int read = this.in.read(this.input);
+                if (read == -1)
+                {
+                    this.matcher.finish(this.output);
+                    this.ended = true;
+                }
+                else
+                {
+                    this.matcher.feed(this.input, read, this.output);
+                }
+                this.chunk = this.output.toCharArray();
+                this.position = 0;
+                this.output.reset();
+            }
+
+            int count = Math.min(len, this.chunk.length - this.position);
+            System.arraycopy(this.chunk, this.position, cbuf, off, count);
+            this.position += count;
+            return count;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws IOException
+        {
+            this.in.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summary of the changes made by
+ * {@link ExtendedFileHandler#syncDirectory(String, String, List, boolean)}. Paths are relative to
+ * the synchronized directories.
+ *
+ */
+public class SyncSummary
+{
+    /**
+     * Files copied because they were new or changed.
+     */
+    private List<String> copiedFiles = new ArrayList<String>();
+
+    /**
+     * Files and directories deleted because they no longer exist in the source.
+     */
+    private List<String> deletedFiles = new ArrayList<String>();
+
+    /**
+     * Number of files left untouched.
+     */
+    private int unchangedFiles;
+
+    /**
+     * @param file a file copied because it was new or changed.
+     */
+    public synchronized void addCopiedFile(String file)
+    {
+        this.copiedFiles.add(file);
+    }
+
+    /**
+     * @param file a file or directory deleted because it no longer exists in the source.
+     */
+    public synchronized void addDeletedFile(String file)
+    {
+        this.deletedFiles.add(file);
+    }
+
+    /**
+     * Counts a file left untouched.
+     */
+    public synchronized void addUnchangedFile()
+    {
+        this.unchangedFiles++;
+    }
+
+    /**
+     * @return the files copied because they were new or changed.
+     */
+    public synchronized List<String> getCopiedFiles()
+    {
+        return new ArrayList<String>(this.copiedFiles);
+    }
+
+    /**
+     * @return the files and directories deleted because they no longer exist in the source.
+     */
+    public synchronized List<String> getDeletedFiles()
+    {
+        return new ArrayList<String>(this.deletedFiles);
+    }
+
+    /**
+     * @return the number of files left untouched.
+     */
+    public synchronized int getUnchangedFileCount()
+    {
+        return this.unchangedFiles;
+    }
+
+    /**
+     * @return <code>true</code> if any file has been copied or deleted.
+     */
+    public synchronized boolean hasChanges()
+    {
+        return !this.copiedFiles.isEmpty() || !this.deletedFiles.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString()
+    {
+        return this.copiedFiles.size() + " file(s) copied, " + this.deletedFiles.size()
+            + " deleted, " + this.unchangedFiles + " unchanged";
+    }
+}
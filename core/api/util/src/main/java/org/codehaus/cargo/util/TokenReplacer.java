@@ -0,0 +1,130 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import java.io.Reader;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.tools.ant.filters.ChainableReader;
+
+/**
+ * Filter replacing <code>@key@</code> tokens, like the Ant <code>ReplaceTokens</code> filter
+ * does. All tokens are replaced in a single pass by a {@link StreamingReplacer}, so that a filter
+ * holding hundreds of tokens costs no more than one holding a single token. It can be added to an
+ * Ant <code>FilterChain</code> with <code>FilterChain.add(ChainableReader)</code>.<br>
+ * Unlike a chain of one <code>ReplaceTokens</code> filter per token, the values inserted by this
+ * filter are not scanned again for tokens: a value containing <code>@other@</code> is inserted as
+ * is, even if <code>other</code> is a token of this filter. Tokens replacing tokens in values must
+ * be added to a later filter, as {@link AntUtils#addTokenToFilterChain} does.
+ *
+ */
+public class TokenReplacer implements ChainableReader
+{
+    /**
+     * Character delimiting the tokens.
+     */
+    private static final String TOKEN_DELIMITER = "@";
+
+    /**
+     * The token keys and their values.
+     */
+    private Map<String, String> tokens = new LinkedHashMap<String, String>();
+
+    /**
+     * Replacer for the current tokens, <code>null</code> until needed.
+     */
+    private StreamingReplacer replacer;
+
+    /**
+     * Adds a token, replacing any previous token with the same key.
+     *
+     * @param key the token key, without the <code>@</code> delimiters.
+     * @param value the token value.
+     */
+    public synchronized void addToken(String key, String value)
+    {
+        this.tokens.put(key, value);
+        this.replacer = null;
+    }
+
+    /**
+     * @param key a token key, without the <code>@</code> delimiters.
+     * @return <code>true</code> if this filter has a token with this key.
+     */
+    public synchronized boolean hasToken(String key)
+    {
+        return this.tokens.containsKey(key);
+    }
+
+    /**
+     * @param key a token key, without the <code>@</code> delimiters.
+     * @return <code>true</code> if the value of any token of this filter contains the token with
+     * this key.
+     */
+    public synchronized boolean isTokenInValues(String key)
+    {
+        String token = TOKEN_DELIMITER + key + TOKEN_DELIMITER;
+        for (String value : this.tokens.values())
+        {
+            if (value != null && value.contains(token))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the token keys and their values.
+     */
+    public synchronized Map<String, String> getTokens()
+    {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, String>(this.tokens));
+    }
+
+    /**
+     * @return the replacer for the current tokens.
+     */
+    public synchronized StreamingReplacer getReplacer()
+    {
+        if (this.replacer == null)
+        {
+            Map<String, String> replacements =
+                new LinkedHashMap<String, String>(this.tokens.size());
+            for (Map.Entry<String, String> token : this.tokens.entrySet())
+            {
+                replacements.put(TOKEN_DELIMITER + token.getKey() + TOKEN_DELIMITER,
+                    token.getValue());
+            }
+            this.replacer = new StreamingReplacer(replacements);
+        }
+        return this.replacer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Reader chain(Reader rdr)
+    {
+        return getReplacer().filter(rdr);
+    }
+}
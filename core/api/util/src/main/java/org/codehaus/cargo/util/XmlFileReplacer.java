@@ -0,0 +1,286 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+import org.codehaus.cargo.util.FileHandler.XmlReplacementDetails;
+
+/**
+ * Applies XML replacements to a file. Files are parsed into a DOM and the XPath expressions
+ * evaluated on it; the XML parser, the XPath expressions and the XML serializer are created once
+ * per thread and reused. Files larger than a threshold whose expressions are all simple element
+ * paths, such as <code>//server/socket-binding[@name='http']</code>, are instead streamed by
+ * {@link XmlStreamReplacer} so that they never need to fit in memory.
+ *
+ */
+class XmlFileReplacer
+{
+    /**
+     * Default size above which files are streamed, in bytes.
+     */
+    public static final long DEFAULT_STREAMING_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Maximum number of compiled XPath expressions kept by each thread.
+     */
+    private static final int MAX_CACHED_EXPRESSIONS = 256;
+
+    /**
+     * XML parser of each thread.
+     */
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER =
+        new ThreadLocal<DocumentBuilder>()
+        {
+            @Override
+            protected DocumentBuilder initialValue()
+            {
+                try
+                {
+                    return DocumentBuilderFactory.newInstance().newDocumentBuilder();
+                }
+                catch (Exception e)
+                {
+                    throw new CargoException("Cannot create XML parser", e);
+                }
+            }
+        };
+
+    /**
+     * XML serializer of each thread.
+     */
+    private static final ThreadLocal<Transformer> TRANSFORMER = new ThreadLocal<Transformer>()
+    {
+        @Override
+        protected Transformer initialValue()
+        {
+            try
+            {
+                return TransformerFactory.newInstance().newTransformer();
+            }
+            catch (Exception e)
+            {
+                throw new CargoException("Cannot create XML serializer", e);
+            }
+        }
+    };
+
+    /**
+     * Compiled XPath expressions of each thread.
+     */
+    private static final ThreadLocal<Map<String, XPathExpression>> EXPRESSIONS =
+        new ThreadLocal<Map<String, XPathExpression>>()
+        {
+            @Override
+            protected Map<String, XPathExpression> initialValue()
+            {
+                return new HashMap<String, XPathExpression>();
+            }
+        };
+
+    /**
+     * Size above which files are streamed, in bytes.
+     */
+    private long streamingThreshold = DEFAULT_STREAMING_THRESHOLD;
+
+    /**
+     * @return the size above which files whose XPath expressions are all simple element paths
+     * are streamed, in bytes.
+     */
+    public long getStreamingThreshold()
+    {
+        return this.streamingThreshold;
+    }
+
+    /**
+     * @param streamingThreshold the size above which files whose XPath expressions are all simple
+     * element paths are streamed, in bytes. <code>0</code> streams all such files,
+     * {@link Long#MAX_VALUE} none.
+     */
+    public void setStreamingThreshold(long streamingThreshold)
+    {
+        this.streamingThreshold = streamingThreshold;
+    }
+
+    /**
+     * Applies replacements to a file, writing the result to another file if anything changed.
+     * When several nodes match an XPath expression, only the first one is replaced.
+     *
+     * @param fileHandler the file handler used to read and write the files.
+     * @param source the file to replace in.
+     * @param target the file to write the result to, written only if anything changed.
+     * @param replacements the replacements and their values.
+     * @param notFound list to which the replacements whose XPath expression matches nothing are
+     * added.
+     * @return <code>true</code> if anything changed and <code>target</code> has been written.
+     * @throws Exception If the file cannot be read, parsed or written, or an XPath expression is
+     * invalid.
+     */
+    public boolean replace(FileHandler fileHandler, String source, String target,
+        Map<XmlReplacementDetails, String> replacements, List<XmlReplacementDetails> notFound)
+        throws Exception
+    {
+        // Only local files have a known size
+        File sourceFile = new File(source);
+        if (sourceFile.isFile() && sourceFile.length() > this.streamingThreshold
+            && XmlStreamReplacer.isStreamable(replacements))
+        {
+            return XmlStreamReplacer.replace(fileHandler, source, target, replacements, notFound);
+        }
+        return replaceInDocument(fileHandler, source, target, replacements, notFound);
+    }
+
+    /**
+     * Applies replacements to a DOM.
+     *
+     * @param fileHandler the file handler used to read and write the files.
+     * @param source the file to replace in.
+     * @param target the file to write the result to, written only if anything changed.
+     * @param replacements the replacements and their values.
+     * @param notFound list to which the replacements whose XPath expression matches nothing are
+     * added.
+     * @return <code>true</code> if anything changed and <code>target</code> has been written.
+     * @throws Exception If the file cannot be read, parsed or written, or an XPath expression is
+     * invalid.
+     */
+    private boolean replaceInDocument(FileHandler fileHandler, String source, String target,
+        Map<XmlReplacementDetails, String> replacements, List<XmlReplacementDetails> notFound)
+        throws Exception
+    {
+        DocumentBuilder builder = DOCUMENT_BUILDER.get();
+        builder.reset();
+        Document document;
+        InputStream in = fileHandler.getInputStream(source);
+        try
+        {
+            document = builder.parse(in);
+        }
+        finally
+        {
+            in.close();
+        }
+
+        boolean changed = false;
+        for (Map.Entry<XmlReplacementDetails, String> replacement : replacements.entrySet())
+        {
+            String attributeName = replacement.getKey().getAttributeName();
+            String value = replacement.getValue();
+            Node node = (Node) getExpression(replacement.getKey().getXpathExpression())
+                .evaluate(document, XPathConstants.NODE);
+
+            if (node == null)
+            {
+                notFound.add(replacement.getKey());
+            }
+            else if (attributeName != null)
+            {
+                Element element = (Element) node;
+                if (!element.hasAttribute(attributeName)
+                    || !element.getAttribute(attributeName).equals(value))
+                {
+                    element.setAttribute(attributeName, value);
+                    changed = true;
+                }
+            }
+            else if (!hasText(node, value))
+            {
+                node.setTextContent(value);
+                changed = true;
+            }
+        }
+
+        if (changed)
+        {
+            Transformer transformer = TRANSFORMER.get();
+            transformer.reset();
+            OutputStream out = fileHandler.getOutputStream(target);
+            try
+            {
+                transformer.transform(new DOMSource(document), new StreamResult(out));
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @param expression an XPath expression.
+     * @return the compiled expression, from the cache of the current thread if possible.
+     * @throws Exception If the expression is invalid.
+     */
+    private static XPathExpression getExpression(String expression) throws Exception
+    {
+        Map<String, XPathExpression> expressions = EXPRESSIONS.get();
+        XPathExpression compiled = expressions.get(expression);
+        if (compiled == null)
+        {
+            if (expressions.size() >= MAX_CACHED_EXPRESSIONS)
+            {
+                expressions.clear();
+            }
+            compiled = XPathFactory.newInstance().newXPath().compile(expression);
+            expressions.put(expression, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * @param node a DOM node.
+     * @param value a text.
+     * @return <code>true</code> if the node only contains the given text.
+     */
+    private static boolean hasText(Node node, String value)
+    {
+        switch (node.getChildNodes().getLength())
+        {
+            case 0:
+                return value.length() == 0;
+            case 1:
+                return node.getFirstChild() instanceof Text
+                    && value.equals(node.getFirstChild().getNodeValue());
+            default:
+                return false;
+        }
+    }
+
+}
@@ -0,0 +1,493 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import org.codehaus.cargo.util.FileHandler.XmlReplacementDetails;
+
+/**
+ * Applies XML replacements whose XPath expressions are all simple element paths, such as
+ * <code>//server/socket-binding[@name='http']</code>, while streaming a file with StAX, so that
+ * the file never needs to fit in memory. Used by {@link XmlFileReplacer} for large files.
+ *
+ */
+final class XmlStreamReplacer
+{
+    /**
+     * A step of a simple XPath expression: an element name with an optional attribute value
+     * predicate.
+     */
+    private static final String STEP = "([\\w.:-]+)(?:\\[@([\\w.:-]+)='([^']*)'\\])?";
+
+    /**
+     * Pattern of a step of a simple XPath expression.
+     */
+    private static final Pattern STEP_PATTERN = Pattern.compile(STEP);
+
+    /**
+     * Pattern of a simple XPath expression.
+     */
+    private static final Pattern SIMPLE_XPATH_PATTERN =
+        Pattern.compile("//?" + STEP + "(?:/" + STEP + ")*");
+
+    /**
+     * StAX factories of each thread.
+     */
+    private static final ThreadLocal<StaxFactories> STAX_FACTORIES =
+        new ThreadLocal<StaxFactories>()
+        {
+            @Override
+            protected StaxFactories initialValue()
+            {
+                return new StaxFactories();
+            }
+        };
+
+    /**
+     * Utility classes should not have a public or default constructor.
+     */
+    private XmlStreamReplacer()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param replacements XML replacements.
+     * @return <code>true</code> if the XPath expressions of all replacements are simple element
+     * paths, which can be applied while streaming.
+     */
+    static boolean isStreamable(Map<XmlReplacementDetails, String> replacements)
+    {
+        for (XmlReplacementDetails replacement : replacements.keySet())
+        {
+            if (!SIMPLE_XPATH_PATTERN.matcher(replacement.getXpathExpression()).matches())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applies replacements with simple XPath expressions while streaming a file. When several
+     * elements match an XPath expression, only the first one is replaced.
+     *
+     * @param fileHandler the file handler used to read and write the files.
+     * @param source the file to replace in.
+     * @param target the file to write the result to, deleted if nothing changed.
+     * @param replacements the replacements and their values, see {@link #isStreamable(Map)}.
+     * @param notFound list to which the replacements whose XPath expression matches nothing are
+     * added.
+     * @return <code>true</code> if anything changed and <code>target</code> has been written.
+     * @throws Exception If the file cannot be read, parsed or written.
+     */
+    static boolean replace(FileHandler fileHandler, String source, String target,
+        Map<XmlReplacementDetails, String> replacements, List<XmlReplacementDetails> notFound)
+        throws Exception
+    {
+        List<SimpleReplacement> simpleReplacements =
+            new ArrayList<SimpleReplacement>(replacements.size());
+        for (Map.Entry<XmlReplacementDetails, String> replacement : replacements.entrySet())
+        {
+            simpleReplacements.add(
+                new SimpleReplacement(replacement.getKey(), replacement.getValue()));
+        }
+        return replaceInStream(fileHandler, source, target, simpleReplacements, notFound);
+    }
+
+    /**
+     * Applies replacements with simple XPath expressions while streaming a file.
+     *
+     * @param fileHandler the file handler used to read and write the files.
+     * @param source the file to replace in.
+     * @param target the file to write the result to, deleted if nothing changed.
+     * @param replacements the replacements.
+     * @param notFound list to which the replacements whose XPath expression matches nothing are
+     * added.
+     * @return <code>true</code> if anything changed and <code>target</code> has been written.
+     * @throws Exception If the file cannot be read, parsed or written.
+     */
+    private static boolean replaceInStream(FileHandler fileHandler, String source, String target,
+        List<SimpleReplacement> replacements, List<XmlReplacementDetails> notFound)
+        throws Exception
+    {
+        StaxFactories factories = STAX_FACTORIES.get();
+        StreamState state = new StreamState();
+
+        InputStream in = fileHandler.getInputStream(source);
+        OutputStream out = null;
+        try
+        {
+            XMLEventReader reader = factories.inputFactory.createXMLEventReader(in);
+            XMLEventWriter writer = null;
+            while (reader.hasNext())
+            {
+                XMLEvent event = reader.nextEvent();
+                if (writer == null)
+                {
+                    String encoding = "UTF-8";
+                    if (event.isStartDocument() && ((StartDocument) event).encodingSet())
+                    {
+                        encoding = ((StartDocument) event).getCharacterEncodingScheme();
+                    }
+                    out = fileHandler.getOutputStream(target);
+                    writer = factories.outputFactory.createXMLEventWriter(out, encoding);
+                }
+                state.handle(event, writer, factories.eventFactory, replacements);
+            }
+            if (writer != null)
+            {
+                writer.close();
+            }
+        }
+        finally
+        {
+            in.close();
+            if (out != null)
+            {
+                out.close();
+            }
+        }
+
+        for (SimpleReplacement replacement : replacements)
+        {
+            if (!replacement.matched)
+            {
+                notFound.add(replacement.details);
+            }
+        }
+        if (!state.changed)
+        {
+            fileHandler.delete(target);
+        }
+        return state.changed;
+    }
+
+    /**
+     * @param name the name of an element or attribute.
+     * @return its qualified name, as seen by a parser which is not namespace aware.
+     */
+    private static String getQualifiedName(QName name)
+    {
+        if (name.getPrefix() == null || name.getPrefix().length() == 0)
+        {
+            return name.getLocalPart();
+        }
+        return name.getPrefix() + ":" + name.getLocalPart();
+    }
+
+    /**
+     * StAX factories.
+     */
+    private static final class StaxFactories
+    {
+        /**
+         * Factory for the readers.
+         */
+        private XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+        /**
+         * Factory for the writers.
+         */
+        private XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+        /**
+         * Factory for the modified events.
+         */
+        private XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+    }
+
+    /**
+     * A replacement with a simple XPath expression.
+     */
+    private static final class SimpleReplacement
+    {
+        /**
+         * The replacement.
+         */
+        private XmlReplacementDetails details;
+
+        /**
+         * The replacement value.
+         */
+        private String value;
+
+        /**
+         * Whether the expression is relative to any element rather than to the document.
+         */
+        private boolean anywhere;
+
+        /**
+         * Element names of each step.
+         */
+        private List<String> names = new ArrayList<String>();
+
+        /**
+         * Attribute name of the predicate of each step, <code>null</code> if none.
+         */
+        private List<String> predicateNames = new ArrayList<String>();
+
+        /**
+         * Attribute value of the predicate of each step.
+         */
+        private List<String> predicateValues = new ArrayList<String>();
+
+        /**
+         * Whether an element has already matched.
+         */
+        private boolean matched;
+
+        /**
+         * @param details the replacement.
+         * @param value the replacement value.
+         */
+        private SimpleReplacement(XmlReplacementDetails details, String value)
+        {
+            this.details = details;
+            this.value = value;
+            this.anywhere = details.getXpathExpression().startsWith("//");
+            Matcher step = STEP_PATTERN.matcher(details.getXpathExpression());
+            while (step.find())
+            {
+                this.names.add(step.group(1));
+                this.predicateNames.add(step.group(2));
+                this.predicateValues.add(step.group(3));
+            }
+        }
+
+        /**
+         * @param path the names of the current element and its ancestors, root first.
+         * @param attributes the attributes of the current element and its ancestors.
+         * @return <code>true</code> if the expression matches the current element.
+         */
+        private boolean matches(List<String> path, List<Map<String, String>> attributes)
+        {
+            int offset = path.size() - this.names.size();
+            if (offset < 0 || (offset > 0 && !this.anywhere))
+            {
+                return false;
+            }
+            for (int i = 0; i < this.names.size(); i++)
+            {
+                if (!this.names.get(i).equals(path.get(offset + i)))
+                {
+                    return false;
+                }
+                String predicateName = this.predicateNames.get(i);
+                if (predicateName != null && !this.predicateValues.get(i).equals(
+                    attributes.get(offset + i).get(predicateName)))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * State of a file being streamed.
+     */
+    private static final class StreamState
+    {
+        /**
+         * Names of the current element and its ancestors, root first.
+         */
+        private List<String> path = new ArrayList<String>();
+
+        /**
+         * Attributes of the current element and its ancestors, root first.
+         */
+        private List<Map<String, String>> attributes = new ArrayList<Map<String, String>>();
+
+        /**
+         * Depth of the element whose content is being replaced, <code>-1</code> if none.
+         */
+        private int replacedDepth = -1;
+
+        /**
+         * New text of the element whose content is being replaced.
+         */
+        private String replacedValue;
+
+        /**
+         * Original content of the element whose content is being replaced, <code>null</code> if
+         * it is not only text.
+         */
+        private StringBuilder replacedText;
+
+        /**
+         * Whether anything changed.
+         */
+        private boolean changed;
+
+        /**
+         * Copies an event, applying the replacements.
+         *
+         * @param event the event read.
+         * @param writer the writer to copy the event to.
+         * @param eventFactory the factory for the modified events.
+         * @param replacements the replacements.
+         * @throws Exception If writing fails.
+         */
+        private void handle(XMLEvent event, XMLEventWriter writer, XMLEventFactory eventFactory,
+            List<SimpleReplacement> replacements) throws Exception
+        {
+            if (event.isStartElement())
+            {
+                if (this.replacedDepth != -1)
+                {
+                    this.replacedText = null;
+                }
+                startElement(event.asStartElement(), writer, eventFactory, replacements);
+            }
+            else if (event.isEndElement())
+            {
+                endElement(event, writer);
+            }
+            else if (this.replacedDepth == -1)
+            {
+                writer.add(event);
+            }
+            else if (event.isCharacters() && this.replacedText != null)
+            {
+                this.replacedText.append(event.asCharacters().getData());
+            }
+            else
+            {
+                this.replacedText = null;
+            }
+        }
+
+        /**
+         * Copies an end element, unless it ends an element whose content is being replaced.
+         *
+         * @param end the end element read.
+         * @param writer the writer to copy the element to.
+         * @throws Exception If writing fails.
+         */
+        private void endElement(XMLEvent end, XMLEventWriter writer) throws Exception
+        {
+            if (this.path.size() == this.replacedDepth)
+            {
+                if (this.replacedText == null
+                    || !this.replacedText.toString().equals(this.replacedValue))
+                {
+                    this.changed = true;
+                }
+                this.replacedDepth = -1;
+            }
+            this.path.remove(this.path.size() - 1);
+            this.attributes.remove(this.attributes.size() - 1);
+            if (this.replacedDepth == -1)
+            {
+                writer.add(end);
+            }
+        }
+
+        /**
+         * Copies a start element, applying the replacements matching it.
+         *
+         * @param start the start element read.
+         * @param writer the writer to copy the element to.
+         * @param eventFactory the factory for the modified events.
+         * @param replacements the replacements.
+         * @throws Exception If writing fails.
+         */
+        private void startElement(StartElement start, XMLEventWriter writer,
+            XMLEventFactory eventFactory, List<SimpleReplacement> replacements) throws Exception
+        {
+            Map<String, Attribute> elementAttributes = new LinkedHashMap<String, Attribute>();
+            Map<String, String> attributeValues = new HashMap<String, String>();
+            for (Iterator<?> i = start.getAttributes(); i.hasNext();)
+            {
+                Attribute attribute = (Attribute) i.next();
+                elementAttributes.put(getQualifiedName(attribute.getName()), attribute);
+                attributeValues.put(getQualifiedName(attribute.getName()), attribute.getValue());
+            }
+            this.path.add(getQualifiedName(start.getName()));
+            this.attributes.add(attributeValues);
+            if (this.replacedDepth != -1)
+            {
+                return;
+            }
+
+            String text = null;
+            boolean modified = false;
+            for (SimpleReplacement replacement : replacements)
+            {
+                if (replacement.matched || !replacement.matches(this.path, this.attributes))
+                {
+                    continue;
+                }
+                replacement.matched = true;
+                String attributeName = replacement.details.getAttributeName();
+                if (attributeName == null)
+                {
+                    text = replacement.value;
+                }
+                else if (!replacement.value.equals(attributeValues.get(attributeName)))
+                {
+                    elementAttributes.put(attributeName,
+                        eventFactory.createAttribute(attributeName, replacement.value));
+                    modified = true;
+                }
+            }
+
+            if (modified)
+            {
+                this.changed = true;
+                writer.add(eventFactory.createStartElement(start.getName(),
+                    elementAttributes.values().iterator(), start.getNamespaces()));
+            }
+            else
+            {
+                writer.add(start);
+            }
+            if (text != null)
+            {
+                writer.add(eventFactory.createCharacters(text));
+                this.replacedDepth = this.path.size();
+                this.replacedValue = text;
+                this.replacedText = new StringBuilder();
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util.internal;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+
+import org.apache.tools.ant.filters.util.ChainReaderHelper;
+import org.apache.tools.ant.types.FilterChain;
+import org.codehaus.cargo.util.TokenReplacer;
+
+/**
+ * Applies Ant filter chains to character streams.
+ *
+ */
+public final class FilterChains
+{
+    /**
+     * Size of the buffer used when copying.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Utility classes should not have a public or default constructor.
+     */
+    private FilterChains()
+    {
+        // Utility class
+    }
+
+    /**
+     * Copies a text through a filter chain. The text is copied as is, line endings included,
+     * except for the changes made by the filters. A chain made of a single {@link TokenReplacer}
+     * is applied directly, without going through the Ant filter reader machinery. Neither stream
+     * is closed.
+     *
+     * @param in the text to read.
+     * @param out the writer to write the filtered text to.
+     * @param filterChain the filter chain to apply.
+     * @throws IOException If the text cannot be read or written.
+     */
+    public static void copy(Reader in, Writer out, FilterChain filterChain) throws IOException
+    {
+        List<?> filterReaders = filterChain.getFilterReaders();
+        if (filterReaders.size() == 1 && filterReaders.get(0) instanceof TokenReplacer)
+        {
+            ((TokenReplacer) filterReaders.get(0)).getReplacer().replace(in, out);
+            return;
+        }
+
+        ChainReaderHelper helper = new ChainReaderHelper();
+        helper.setBufferSize(BUFFER_SIZE);
+        helper.setPrimaryReader(in);
+        helper.setFilterChains(new Vector<FilterChain>(Collections.singletonList(filterChain)));
+        Reader filtered = helper.getAssembledReader();
+
+        char[] buffer = new char[BUFFER_SIZE];
+        for (int read = filtered.read(buffer); read != -1; read = filtered.read(buffer))
+        {
+            out.write(buffer, 0, read);
+        }
+    }
+}
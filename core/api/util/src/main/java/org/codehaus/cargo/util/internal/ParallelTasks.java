@@ -0,0 +1,178 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.cargo.util.CargoException;
+
+/**
+ * Runs file I/O tasks on a bounded pool of daemon threads.
+ *
+ */
+public final class ParallelTasks
+{
+    /**
+     * Maximum number of threads used by default.
+     */
+    private static final int MAX_DEFAULT_THREADS = 4;
+
+    /**
+     * Utility classes should not have a public or default constructor.
+     */
+    private ParallelTasks()
+    {
+        // Utility class
+    }
+
+    /**
+     * @return the default number of threads for file I/O tasks: the number of processors, up
+     * to 4.
+     */
+    public static int getDefaultThreads()
+    {
+        return Math.min(MAX_DEFAULT_THREADS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Runs tasks on a pool of threads, or in the calling thread if there is only one thread or one
+     * task, and waits for all of them to complete.
+     *
+     * @param tasks the tasks to run.
+     * @param threads the maximum number of threads.
+     * @param name the name of the threads.
+     * @throws IOException If any task fails with an {@link IOException}, in which case the
+     * remaining tasks are cancelled. Tasks already running are interrupted, and this method only
+     * returns once they have all stopped.
+     */
+    public static void execute(List<Callable<Object>> tasks, int threads, final String name)
+        throws IOException
+    {
+        if (threads <= 1 || tasks.size() <= 1)
+        {
+            executeInCallingThread(tasks, name);
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()),
+            new ThreadFactory()
+            {
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, name);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        try
+        {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>(tasks.size());
+            for (Callable<Object> task : tasks)
+            {
+                futures.add(executor.submit(task));
+            }
+            for (Future<Object> future : futures)
+            {
+                future.get();
+            }
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new CargoException(name + " failed", e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new CargoException(name + " interrupted", e);
+        }
+        finally
+        {
+            executor.shutdownNow();
+            awaitTermination(executor);
+        }
+    }
+
+    /**
+     * Runs tasks one after the other in the calling thread.
+     *
+     * @param tasks the tasks to run.
+     * @param name the name of the tasks.
+     * @throws IOException If any task fails with an {@link IOException}, in which case the
+     * remaining tasks are not run.
+     */
+    private static void executeInCallingThread(List<Callable<Object>> tasks, String name)
+        throws IOException
+    {
+        for (Callable<Object> task : tasks)
+        {
+            try
+            {
+                task.call();
+            }
+            catch (IOException e)
+            {
+                throw e;
+            }
+            catch (Exception e)
+            {
+                throw new CargoException(name + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * Waits for the tasks of a shut down executor to stop, even if the calling thread is
+     * interrupted, so that callers never act on files that tasks are still writing.
+     *
+     * @param executor the shut down executor.
+     */
+    private static void awaitTermination(ExecutorService executor)
+    {
+        boolean interrupted = false;
+        while (!executor.isTerminated())
+        {
+            try
+            {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
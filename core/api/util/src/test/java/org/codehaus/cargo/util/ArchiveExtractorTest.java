@@ -0,0 +1,186 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarOutputStream;
+import org.apache.tools.zip.ZipEntry;
+import org.apache.tools.zip.ZipOutputStream;
+
+/**
+ * Unit tests for {@link ArchiveExtractor}.
+ *
+ */
+public class ArchiveExtractorTest extends TestCase
+{
+    /**
+     * File handler.
+     */
+    private FileHandler fileHandler;
+
+    /**
+     * Directory the test archives are created and extracted in.
+     */
+    private File workDir;
+
+    /**
+     * Creates the work directory. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.fileHandler = new DefaultFileHandler();
+        this.workDir = new File("target/" + UUID.randomUUID().toString()).getAbsoluteFile();
+        this.workDir.mkdirs();
+    }
+
+    /**
+     * Deletes the work directory. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        this.fileHandler.delete(this.workDir.getPath());
+        super.tearDown();
+    }
+
+    /**
+     * Test extracting a zip archive with several threads.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testExtractZip() throws Exception
+    {
+        File archive = new File(this.workDir, "server.zip");
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive));
+        try
+        {
+            zip.putNextEntry(new ZipEntry("server/"));
+            zip.closeEntry();
+            for (int i = 0; i < 10; i++)
+            {
+                zip.putNextEntry(new ZipEntry("server/lib/module" + i + "/file.txt"));
+                zip.write(("file " + i).getBytes("UTF-8"));
+                zip.closeEntry();
+            }
+            ZipEntry script = new ZipEntry("server/bin/startup.sh");
+            script.setUnixMode(0755);
+            zip.putNextEntry(script);
+            zip.write("#!/bin/sh".getBytes("UTF-8"));
+            zip.closeEntry();
+        }
+        finally
+        {
+            zip.close();
+        }
+
+        File target = new File(this.workDir, "server");
+        new ArchiveExtractor(4).extract(archive, target);
+
+        for (int i = 0; i < 10; i++)
+        {
+            assertEquals("file " + i, this.fileHandler.readTextFile(
+                target.getPath() + "/server/lib/module" + i + "/file.txt", "UTF-8"));
+        }
+        File startup = new File(target, "server/bin/startup.sh");
+        assertEquals("#!/bin/sh", this.fileHandler.readTextFile(startup.getPath(), "UTF-8"));
+        if (!System.getProperty("os.name").startsWith("Windows"))
+        {
+            assertTrue(startup + " is not executable", startup.canExecute());
+        }
+    }
+
+    /**
+     * Test extracting a tar.gz archive.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testExtractTarGz() throws Exception
+    {
+        File archive = new File(this.workDir, "server.tar.gz");
+        TarOutputStream tar =
+            new TarOutputStream(new GZIPOutputStream(new FileOutputStream(archive)));
+        try
+        {
+            tar.putNextEntry(new TarEntry("server/bin/"));
+            tar.closeEntry();
+            byte[] content = "#!/bin/sh".getBytes("UTF-8");
+            TarEntry script = new TarEntry("server/bin/startup.sh");
+            script.setSize(content.length);
+            script.setMode(0100755);
+            tar.putNextEntry(script);
+            tar.write(content);
+            tar.closeEntry();
+        }
+        finally
+        {
+            tar.close();
+        }
+
+        File target = new File(this.workDir, "server");
+        new ArchiveExtractor().extract(archive, target);
+
+        File startup = new File(target, "server/bin/startup.sh");
+        assertEquals("#!/bin/sh", this.fileHandler.readTextFile(startup.getPath(), "UTF-8"));
+        if (!System.getProperty("os.name").startsWith("Windows"))
+        {
+            assertTrue(startup + " is not executable", startup.canExecute());
+        }
+    }
+
+    /**
+     * Test that entries outside of the target directory are rejected.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testExtractEntryOutsideOfTargetDirectory() throws Exception
+    {
+        File archive = new File(this.workDir, "evil.zip");
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive));
+        try
+        {
+            zip.putNextEntry(new ZipEntry("../evil.txt"));
+            zip.write("evil".getBytes("UTF-8"));
+            zip.closeEntry();
+        }
+        finally
+        {
+            zip.close();
+        }
+
+        try
+        {
+            new ArchiveExtractor().extract(archive, new File(this.workDir, "evil"));
+            fail("Should have thrown an IOException here");
+        }
+        catch (IOException expected)
+        {
+            assertFalse(new File(this.workDir, "evil.txt").exists());
+        }
+    }
+}
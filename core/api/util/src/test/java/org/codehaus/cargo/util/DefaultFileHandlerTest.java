@@ -19,6 +19,13 @@
  */
 package org.codehaus.cargo.util;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import junit.framework.TestCase;
@@ -34,7 +41,7 @@ public class DefaultFileHandlerTest extends TestCase
     /**
      * File handler.
      */
-    private FileHandler fileHandler;
+    private ExtendedFileHandler fileHandler;
 
     /**
      * Creates the file handler. {@inheritDoc}
@@ -84,6 +91,112 @@ public class DefaultFileHandlerTest extends TestCase
             this.fileHandler.exists("target/" + random + "/random.txt"));
     }
 
+    /**
+     * Test file copy with tokens, which must keep line endings as they are.
+     */
+    public void testCopyWithTokens()
+    {
+        String random = UUID.randomUUID().toString();
+        FilterChain filterChain = new FilterChain();
+        new AntUtils().addTokenToFilterChain(filterChain, "cargo.servlet.port", "8080");
+        new AntUtils().addTokenToFilterChain(filterChain, "cargo.hostname", "localhost");
+        this.fileHandler.writeTextFile("target/" + random + "/server.xml",
+            "<Connector port=\"@cargo.servlet.port@\"/>\r\n<Host name=\"@cargo.hostname@\"/>",
+            "UTF-8");
+        this.fileHandler.copyFile("target/" + random + "/server.xml",
+            "target/" + random + "/copy/server.xml", filterChain, "UTF-8");
+        assertEquals(1, filterChain.getFilterReaders().size());
+        String expected = "<Connector port=\"8080\"/>\r\n<Host name=\"localhost\"/>";
+        assertEquals(expected.length(),
+            this.fileHandler.getSize("target/" + random + "/copy/server.xml"));
+        assertEquals(expected, this.fileHandler.readTextFile(
+            "target/" + random + "/copy/server.xml", "UTF-8").replace(
+                System.getProperty("line.separator"), "\r\n"));
+    }
+
+    /**
+     * Test replacing in a file, including keys the file does not contain.
+     */
+    public void testReplaceInFile()
+    {
+        String file = "target/" + UUID.randomUUID().toString() + "/config.xml";
+        this.fileHandler.writeTextFile(file, "port=8080\r\nhost=localhost\r\n", "UTF-8");
+        Map<String, String> replacements = new HashMap<String, String>();
+        replacements.put("8080", "9090");
+        replacements.put("localhost", "example.com");
+        replacements.put("missing", "value");
+
+        try
+        {
+            this.fileHandler.replaceInFile(file, replacements, "UTF-8");
+            fail("Should have thrown a CargoException here");
+        }
+        catch (CargoException expected)
+        {
+            assertTrue(expected.getMessage().contains("missing"));
+        }
+
+        this.fileHandler.replaceInFile(file, replacements, "UTF-8", true);
+        String expected = "port=9090\r\nhost=example.com\r\n";
+        assertEquals(expected.length(), this.fileHandler.getSize(file));
+        assertTrue(this.fileHandler.readTextFile(file, "UTF-8").endsWith("host=example.com"));
+    }
+
+    /**
+     * Test replacement in file with chained keys: the values inserted by a replacement are
+     * searched for the next keys, as the replacements are applied one after the other.
+     */
+    public void testReplaceInFileWithChainedKeys()
+    {
+        String file = "target/" + UUID.randomUUID().toString() + "/config.properties";
+        this.fileHandler.writeTextFile(file, "host=${host}", "UTF-8");
+        Map<String, String> replacements = new LinkedHashMap<String, String>();
+        replacements.put("${host}", "${hostname}");
+        replacements.put("${hostname}", "localhost");
+
+        this.fileHandler.replaceInFile(file, replacements, "UTF-8");
+        assertEquals("host=localhost", this.fileHandler.readTextFile(file, "UTF-8").trim());
+        assertFalse(this.fileHandler.exists(file + ".replacing0"));
+        assertFalse(this.fileHandler.exists(file + ".replacing1"));
+    }
+
+    /**
+     * Test replacements in a file, where a key is only in the file once an earlier key has been
+     * replaced and the keys overlap.
+     */
+    public void testReplaceInFileWithOverlappingKeys()
+    {
+        String file = "target/" + UUID.randomUUID().toString() + "/config.properties";
+        this.fileHandler.writeTextFile(file, "ab", "UTF-8");
+        Map<String, String> replacements = new LinkedHashMap<String, String>();
+        replacements.put("a", "b");
+        replacements.put("bb", "c");
+
+        this.fileHandler.replaceInFile(file, replacements, "UTF-8");
+        assertEquals("c", this.fileHandler.readTextFile(file, "UTF-8").trim());
+    }
+
+    /**
+     * Test file copy with a token used in the value of an earlier token, which must be replaced
+     * as with a chain of Ant <code>ReplaceTokens</code> filters.
+     */
+    public void testCopyWithChainedTokens()
+    {
+        String random = UUID.randomUUID().toString();
+        FilterChain filterChain = new FilterChain();
+        new AntUtils().addTokenToFilterChain(filterChain, "cargo.url",
+            "http://@cargo.hostname@:@cargo.servlet.port@");
+        new AntUtils().addTokenToFilterChain(filterChain, "cargo.hostname", "localhost");
+        new AntUtils().addTokenToFilterChain(filterChain, "cargo.servlet.port", "8080");
+        this.fileHandler.writeTextFile("target/" + random + "/server.xml",
+            "<url>@cargo.url@</url>", "UTF-8");
+        this.fileHandler.copyFile("target/" + random + "/server.xml",
+            "target/" + random + "/copy/server.xml", filterChain, "UTF-8");
+        assertEquals(2, filterChain.getFilterReaders().size());
+        assertEquals("<url>http://localhost:8080</url>", this.fileHandler.readTextFile(
+            "target/" + random + "/copy/server.xml", "UTF-8").trim());
+    }
+
     /**
      * Test valid XML replacement
      */
@@ -115,6 +228,38 @@ public class DefaultFileHandlerTest extends TestCase
         assertTrue("File " + file + " does not contain: " + new2, read.contains(new2));
     }
 
+    /**
+     * Test XML replacement of a streamed file, and that unchanged files are not rewritten.
+     */
+    public void testStreamedXmlReplacement()
+    {
+        final String file = "target/jboss-standalone-streamed.xml";
+        final String new1 = "port=\"test1\"";
+        final String new2 = "<level name=\"DEBUG\"";
+        final String new3 = ">test3</virtual-server>";
+
+        ((DefaultFileHandler) this.fileHandler).setXmlStreamingThreshold(0);
+        this.fileHandler.copyFile("src/test/resources/jboss-standalone.xml", file, true);
+
+        this.fileHandler.replaceInXmlFile(
+            new XmlReplacement(file, "//server/socket-binding-group/socket-binding[@name='http']",
+                "port", false, "test1"),
+            new XmlReplacement(file, "//server/profile/subsystem/console-handler/level", "name",
+                false, "DEBUG"),
+            new XmlReplacement(file, "//server/profile/subsystem/virtual-server", null, false,
+                "test3"));
+        String read = this.fileHandler.readTextFile(file, "UTF-8");
+        assertTrue("File " + file + " does not contain: " + new1, read.contains(new1));
+        assertTrue("File " + file + " does not contain: " + new2, read.contains(new2));
+        assertTrue("File " + file + " does not contain: " + new3, read.contains(new3));
+
+        new File(file).setLastModified(0);
+        this.fileHandler.replaceInXmlFile(
+            new XmlReplacement(file, "//server/socket-binding-group/socket-binding[@name='http']",
+                "port", false, "test1"));
+        assertEquals(0, new File(file).lastModified());
+    }
+
     /**
      * Test valid XML replacement for replacing a neighbor
      */
@@ -191,4 +336,207 @@ public class DefaultFileHandlerTest extends TestCase
         assertTrue("File " + file + " does not contain: " + test, read.contains(test));
     }
 
+    /**
+     * Test that writing to a file of a linked directory does not modify the source directory.
+     */
+    public void testLinkDirectoryIsCopyOnWrite()
+    {
+        String random = UUID.randomUUID().toString();
+        String source = "target/" + random + "/source";
+        String target = "target/" + random + "/target";
+        this.fileHandler.writeTextFile(source + "/conf/server.xml", "<server/>", "UTF-8");
+
+        this.fileHandler.linkDirectory(source, target);
+        assertEquals("<server/>",
+            this.fileHandler.readTextFile(target + "/conf/server.xml", "UTF-8"));
+
+        this.fileHandler.writeTextFile(target + "/conf/server.xml", "<server port=\"1\"/>",
+            "UTF-8");
+        assertEquals("<server port=\"1\"/>",
+            this.fileHandler.readTextFile(target + "/conf/server.xml", "UTF-8"));
+        assertEquals("<server/>",
+            this.fileHandler.readTextFile(source + "/conf/server.xml", "UTF-8"));
+    }
+
+    /**
+     * Test that files matching the copies of a linked directory are copied, hence that writing to
+     * them outside of the file handler (as a container does) does not modify the source directory.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testLinkDirectoryCopiesFilesModifiedInPlace() throws Exception
+    {
+        String random = UUID.randomUUID().toString();
+        String source = "target/" + random + "/source";
+        String target = "target/" + random + "/target";
+        this.fileHandler.writeTextFile(source + "/configuration/standalone.xml", "<server/>",
+            "UTF-8");
+        this.fileHandler.writeTextFile(source + "/lib/readme.txt", "readme", "UTF-8");
+
+        List<String> copies = new ArrayList<String>();
+        copies.add("configuration/**");
+        this.fileHandler.linkDirectory(source, target, copies);
+
+        FileOutputStream out = new FileOutputStream(target + "/configuration/standalone.xml");
+        try
+        {
+            out.write("<server port=\"1\"/>".getBytes("UTF-8"));
+        }
+        finally
+        {
+            out.close();
+        }
+        assertEquals("<server port=\"1\"/>",
+            this.fileHandler.readTextFile(target + "/configuration/standalone.xml", "UTF-8"));
+        assertEquals("<server/>",
+            this.fileHandler.readTextFile(source + "/configuration/standalone.xml", "UTF-8"));
+        assertEquals("readme", this.fileHandler.readTextFile(target + "/lib/readme.txt", "UTF-8"));
+    }
+
+    /**
+     * Test that a linked file replaces an existing file and that writing to it does not modify
+     * the source file.
+     */
+    public void testLinkFileIsCopyOnWrite()
+    {
+        String random = UUID.randomUUID().toString();
+        String source = "target/" + random + "/source/app.ear";
+        String target = "target/" + random + "/target/app.ear";
+        this.fileHandler.writeTextFile(source, "ear", "UTF-8");
+        this.fileHandler.writeTextFile(target, "old", "UTF-8");
+
+        this.fileHandler.linkFile(source, target);
+        assertEquals("ear", this.fileHandler.readTextFile(target, "UTF-8"));
+
+        this.fileHandler.writeTextFile(target, "modified", "UTF-8");
+        assertEquals("modified", this.fileHandler.readTextFile(target, "UTF-8"));
+        assertEquals("ear", this.fileHandler.readTextFile(source, "UTF-8"));
+    }
+
+    /**
+     * Test that moving replaces existing files and directories.
+     */
+    public void testMove()
+    {
+        String random = UUID.randomUUID().toString();
+        String source = "target/" + random + "/source";
+        String target = "target/" + random + "/target";
+
+        this.fileHandler.writeTextFile(source + "/app.war", "new", "UTF-8");
+        this.fileHandler.writeTextFile(target + "/app.war", "old", "UTF-8");
+        this.fileHandler.move(source + "/app.war", target + "/app.war");
+        assertFalse(this.fileHandler.exists(source + "/app.war"));
+        assertEquals("new", this.fileHandler.readTextFile(target + "/app.war", "UTF-8"));
+
+        this.fileHandler.writeTextFile(source + "/app/index.html", "new", "UTF-8");
+        this.fileHandler.writeTextFile(target + "/app/old.html", "old", "UTF-8");
+        this.fileHandler.move(source + "/app", target + "/app");
+        assertFalse(this.fileHandler.exists(source + "/app"));
+        assertEquals("new", this.fileHandler.readTextFile(target + "/app/index.html", "UTF-8"));
+        assertFalse(this.fileHandler.exists(target + "/app/old.html"));
+    }
+
+    /**
+     * Test directory copy with excludes.
+     */
+    public void testCopyDirectoryWithExcludes()
+    {
+        String random = UUID.randomUUID().toString();
+        String source = "target/" + random + "/source";
+        String target = "target/" + random + "/target";
+        this.fileHandler.writeTextFile(source + "/WEB-INF/web.xml", "<web-app/>", "UTF-8");
+        this.fileHandler.writeTextFile(source + "/WEB-INF/lib/excluded.jar", "jar", "UTF-8");
+        this.fileHandler.writeTextFile(source + "/.svn/entries", "svn", "UTF-8");
+        this.fileHandler.mkdirs(source + "/empty");
+
+        List<String> excludes = new ArrayList<String>();
+        excludes.add("**/*.jar");
+        this.fileHandler.copyDirectory(source, target, excludes);
+
+        assertEquals("<web-app/>",
+            this.fileHandler.readTextFile(target + "/WEB-INF/web.xml", "UTF-8"));
+        assertTrue(this.fileHandler.isDirectory(target + "/WEB-INF/lib"));
+        assertFalse(this.fileHandler.exists(target + "/WEB-INF/lib/excluded.jar"));
+        assertFalse(this.fileHandler.exists(target + "/.svn"));
+        assertTrue(this.fileHandler.isDirectory(target + "/empty"));
+    }
+
+    /**
+     * Test incremental directory synchronization.
+     */
+    public void testSyncDirectory()
+    {
+        String random = UUID.randomUUID().toString();
+        String source = "target/" + random + "/source";
+        String target = "target/" + random + "/target";
+        this.fileHandler.writeTextFile(source + "/index.jsp", "index", "UTF-8");
+        this.fileHandler.writeTextFile(source + "/WEB-INF/classes/Changed.class", "v1", "UTF-8");
+        this.fileHandler.writeTextFile(source + "/WEB-INF/classes/Removed.class", "v1", "UTF-8");
+
+        SyncSummary summary = this.fileHandler.syncDirectory(source, target);
+        assertEquals(3, summary.getCopiedFiles().size());
+
+        this.fileHandler.writeTextFile(source + "/WEB-INF/classes/Changed.class", "v22", "UTF-8");
+        this.fileHandler.delete(source + "/WEB-INF/classes/Removed.class");
+        summary = this.fileHandler.syncDirectory(source, target);
+
+        assertEquals(1, summary.getCopiedFiles().size());
+        assertEquals(1, summary.getDeletedFiles().size());
+        assertEquals(1, summary.getUnchangedFileCount());
+        assertEquals("v22",
+            this.fileHandler.readTextFile(target + "/WEB-INF/classes/Changed.class", "UTF-8"));
+        assertFalse(this.fileHandler.exists(target + "/WEB-INF/classes/Removed.class"));
+        assertFalse(this.fileHandler.syncDirectory(source, target).hasChanges());
+    }
+
+    /**
+     * Test that a directory copy keeps the modification times of the files, so that a
+     * synchronization right after the copy finds all files up to date.
+     */
+    public void testSyncDirectoryAfterCopy()
+    {
+        String random = UUID.randomUUID().toString();
+        String source = "target/" + random + "/source";
+        String target = "target/" + random + "/target";
+        this.fileHandler.writeTextFile(source + "/index.jsp", "index", "UTF-8");
+        this.fileHandler.writeTextFile(source + "/WEB-INF/web.xml", "<web-app/>", "UTF-8");
+        File sourceFile = new File(source, "index.jsp");
+        sourceFile.setLastModified(sourceFile.lastModified() - 60000);
+
+        this.fileHandler.copyDirectory(source, target);
+        assertEquals(sourceFile.lastModified(), new File(target, "index.jsp").lastModified());
+
+        SyncSummary summary = this.fileHandler.syncDirectory(source, target);
+        assertFalse(summary.hasChanges());
+        assertEquals(2, summary.getUnchangedFileCount());
+    }
+
+    /**
+     * Test that a synchronization comparing contents finds files of several buffers with the same
+     * contents up to date, and copies files differing in their last byte only.
+     */
+    public void testSyncDirectoryComparingContents()
+    {
+        String random = UUID.randomUUID().toString();
+        String source = "target/" + random + "/source";
+        String target = "target/" + random + "/target";
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < 20000; i++)
+        {
+            contents.append("line ").append(i).append('\n');
+        }
+        this.fileHandler.writeTextFile(source + "/large.txt", contents + "a", "UTF-8");
+        this.fileHandler.writeTextFile(target + "/large.txt", contents + "a", "UTF-8");
+        File sourceFile = new File(source, "large.txt");
+        sourceFile.setLastModified(sourceFile.lastModified() - 60000);
+        List<String> excludes = new ArrayList<String>();
+
+        SyncSummary summary = this.fileHandler.syncDirectory(source, target, excludes, true);
+        assertFalse(summary.hasChanges());
+        assertEquals(sourceFile.lastModified(), new File(target, "large.txt").lastModified());
+
+        this.fileHandler.writeTextFile(target + "/large.txt", contents + "b", "UTF-8");
+        summary = this.fileHandler.syncDirectory(source, target, excludes, true);
+        assertEquals(1, summary.getCopiedFiles().size());
+        assertTrue(this.fileHandler.readTextFile(target + "/large.txt", "UTF-8").endsWith("a"));
+    }
 }
@@ -0,0 +1,137 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link StreamingReplacer}.
+ *
+ */
+public class StreamingReplacerTest extends TestCase
+{
+    /**
+     * Replaces the patterns of a text.
+     * @param replacements the patterns and their replacements.
+     * @param text the text.
+     * @return the text with its replacements.
+     * @throws Exception If anything goes wrong.
+     */
+    private String replace(Map<String, String> replacements, String text) throws Exception
+    {
+        StringWriter out = new StringWriter();
+        new StreamingReplacer(replacements).replace(new StringReader(text), out);
+        return out.toString();
+    }
+
+    /**
+     * Test that the leftmost match wins, then the longest one.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testOverlappingPatterns() throws Exception
+    {
+        Map<String, String> replacements = new HashMap<String, String>();
+        replacements.put("bc", "1");
+        replacements.put("abcd", "2");
+        replacements.put("cd", "3");
+        replacements.put("ab", "4");
+        assertEquals("x2y", replace(replacements, "xabcdy"));
+        assertEquals("x4cy", replace(replacements, "xabcy"));
+        assertEquals("x13", replace(replacements, "xbccd"));
+    }
+
+    /**
+     * Test replacements are only split into several passes when they affect each other.
+     */
+    public void testSplitPasses()
+    {
+        Map<String, String> replacements = new LinkedHashMap<String, String>();
+        replacements.put("${host}", "localhost");
+        replacements.put("${port}", "8080");
+        assertEquals(1, StreamingReplacer.splitPasses(replacements).size());
+
+        replacements = new LinkedHashMap<String, String>();
+        replacements.put("${url}", "http://${host}:${port}");
+        replacements.put("${host}", "localhost");
+        replacements.put("${port}", "8080");
+        replacements.put("${port}0", "80800");
+        List<Map<String, String>> passes = StreamingReplacer.splitPasses(replacements);
+        assertEquals(3, passes.size());
+        assertEquals(1, passes.get(0).size());
+        assertEquals(2, passes.get(1).size());
+        assertTrue(passes.get(2).containsKey("${port}0"));
+    }
+
+    /**
+     * Test tokens are replaced like the Ant <code>ReplaceTokens</code> filter does, keeping line
+     * endings as they are.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testTokens() throws Exception
+    {
+        TokenReplacer tokenReplacer = new TokenReplacer();
+        tokenReplacer.addToken("port", "8080");
+        tokenReplacer.addToken("empty", "");
+
+        StringWriter out = new StringWriter();
+        Set<String> matched = tokenReplacer.getReplacer().replace(
+            new StringReader("@unknown@port@\r\n@empty@port=@port@\n\n@port"), out);
+        assertEquals("@unknown8080\r\nport=8080\n\n@port", out.toString());
+        assertEquals(2, matched.size());
+    }
+
+    /**
+     * Test matches across buffer boundaries, with both the writer and the reader APIs.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testLargeText() throws Exception
+    {
+        Map<String, String> replacements = new HashMap<String, String>();
+        StringBuilder text = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++)
+        {
+            replacements.put("@token" + i + "@", "value" + i);
+            text.append("line @token").append(i).append("@ @token").append(i).append("\n");
+            expected.append("line value").append(i).append(" @token").append(i).append("\n");
+        }
+        assertEquals(expected.toString(), replace(replacements, text.toString()));
+
+        Reader reader = new StreamingReplacer(replacements).filter(
+            new StringReader(text.toString()));
+        StringBuilder filtered = new StringBuilder();
+        char[] buffer = new char[100];
+        for (int read = reader.read(buffer); read != -1; read = reader.read(buffer))
+        {
+            filtered.append(buffer, 0, read);
+        }
+        reader.close();
+        assertEquals(expected.toString(), filtered.toString());
+    }
+}
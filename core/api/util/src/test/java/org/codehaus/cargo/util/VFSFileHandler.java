@@ -101,6 +101,54 @@ public class VFSFileHandler extends DefaultFileHandler
         copyDirectory(source, target);
     }
 
+    /**
+     * Copy a directory, as hard links are not supported by VFS. {@inheritDoc}
+     * @param source Source directory.
+     * @param target Destination directory.
+     */
+    @Override
+    public void linkDirectory(String source, String target)
+    {
+        copyDirectory(source, target);
+    }
+
+    /**
+     * Copy a directory, as hard links are not supported by VFS. {@inheritDoc}
+     * @param source Source directory.
+     * @param target Destination directory.
+     * @param copies Ignored, as all files are copied.
+     */
+    @Override
+    public void linkDirectory(String source, String target, List<String> copies)
+    {
+        copyDirectory(source, target);
+    }
+
+    /**
+     * Move a file or a directory by copying then deleting it, as not all VFS providers rename
+     * folders with their children. {@inheritDoc}
+     * @param source Source file or directory.
+     * @param target Destination file or directory.
+     */
+    @Override
+    public void move(String source, String target)
+    {
+        delete(target);
+        copyDirectory(source, target);
+        delete(source);
+    }
+
+    /**
+     * Copy a file, as hard links are not supported by VFS. {@inheritDoc}
+     * @param source Source file.
+     * @param target Destination file.
+     */
+    @Override
+    public void linkFile(String source, String target)
+    {
+        copyFile(source, target);
+    }
+
     /**
      * Copy a file, ignoring the <code>overwrite</code> parameter. {@inheritDoc}
      * @param source Source file.
@@ -223,6 +271,43 @@ public class VFSFileHandler extends DefaultFileHandler
         return result;
     }
 
+    /**
+     * Gets the size of a given file. {@inheritDoc}
+     * @param file File.
+     * @return Size of <code>file</code>, in bytes.
+     */
+    @Override
+    public long getSize(String file)
+    {
+        try
+        {
+            return getFileSystemManager().resolveFile(file).getContent().getSize();
+        }
+        catch (FileSystemException e)
+        {
+            throw new CargoException("Failed to get size of file [" + file + "]", e);
+        }
+    }
+
+    /**
+     * Gets the modification time of a given file. {@inheritDoc}
+     * @param file File.
+     * @return Time <code>file</code> was last modified, in milliseconds since the epoch.
+     */
+    @Override
+    public long getLastModified(String file)
+    {
+        try
+        {
+            return getFileSystemManager().resolveFile(file).getContent().getLastModifiedTime();
+        }
+        catch (FileSystemException e)
+        {
+            throw new CargoException("Failed to get modification time of file [" + file + "]",
+                e);
+        }
+    }
+
     /**
      * Gets the parent of a given path. {@inheritDoc}
      * @param path Path
@@ -0,0 +1,88 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link ParallelTasks}.
+ *
+ */
+public class ParallelTasksTest extends TestCase
+{
+    /**
+     * Test that a failing task is only reported once the other running tasks have stopped.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testFailureWaitsForRunningTasks() throws Exception
+    {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean stopped = new AtomicBoolean(false);
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        tasks.add(new Callable<Object>()
+        {
+            public Object call() throws Exception
+            {
+                started.await(2, TimeUnit.SECONDS);
+                throw new IOException("Failed task");
+            }
+        });
+        tasks.add(new Callable<Object>()
+        {
+            public Object call() throws Exception
+            {
+                started.countDown();
+                long end = System.currentTimeMillis() + 500;
+                while (System.currentTimeMillis() < end)
+                {
+                    try
+                    {
+                        Thread.sleep(end - System.currentTimeMillis());
+                    }
+                    catch (InterruptedException e)
+                    {
+                        // Keep writing, as a task which does not check for interruptions
+                    }
+                }
+                stopped.set(true);
+                return null;
+            }
+        });
+
+        try
+        {
+            ParallelTasks.execute(tasks, 2, "Test");
+            fail("Should have thrown an IOException here");
+        }
+        catch (IOException expected)
+        {
+            assertEquals("Failed task", expected.getMessage());
+        }
+        assertTrue(stopped.get());
+    }
+}
@@ -39,6 +39,8 @@ import org.codehaus.cargo.container.property.RemotePropertySet;
 import org.codehaus.cargo.container.spi.AbstractInstalledLocalContainer;
 import org.codehaus.cargo.container.spi.configuration.AbstractLocalConfiguration;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncher;
+import org.codehaus.cargo.container.spi.startup.LogPatternReadinessStrategy;
+import org.codehaus.cargo.container.spi.startup.ReadinessStrategy;
 
 /**
  * JBoss 7.x series container implementation.
@@ -159,6 +161,18 @@ public class JBoss7xInstalledLocalContainer extends AbstractInstalledLocalContai
         return version;
     }
 
+    /**
+     * {@inheritDoc}. JBoss 7.x logs <code>JBoss AS 7.x.y "Codename" started in ...ms</code> once
+     * started and all deployments are done, or
+     * <code>JBoss AS 7.x.y "Codename" started (with errors) in ...ms</code> if some services or
+     * deployments failed.
+     */
+    @Override
+    protected ReadinessStrategy createReadinessStrategy()
+    {
+        return new LogPatternReadinessStrategy(" started( \\(with errors\\))? in \\d+ms");
+    }
+
     /**
      * @return Config admin directory.
      */
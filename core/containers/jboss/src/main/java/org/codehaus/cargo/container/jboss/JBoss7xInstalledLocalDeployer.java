@@ -69,6 +69,16 @@ public class JBoss7xInstalledLocalDeployer extends JBossInstalledLocalDeployer
         }
     }
 
+    /**
+     * {@inheritDoc}. The modified copy and the <code>.dodeploy</code> marker of a deployable are
+     * named after the deployable, so the deployables can be deployed concurrently.
+     */
+    @Override
+    protected int getConcurrentDeployments()
+    {
+        return CONCURRENT_DEPLOYMENTS;
+    }
+
     /**
      * {@inheritDoc}
      * @see org.codehaus.cargo.container.spi.deployer.AbstractCopyingInstalledLocalDeployer#deploy(Deployable)
@@ -24,6 +24,7 @@ import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -59,6 +60,13 @@ public class JBoss7xStandaloneLocalConfiguration extends AbstractStandaloneLocal
      */
     public static final String CONFIGURATION = "standalone";
 
+    /**
+     * Files of the base configuration JBoss modifies in place, hence never hard linked: the server
+     * persists its configuration and writes its data, logs and temporary files there.
+     */
+    private static final List<String> MODIFIED_FILES = Arrays.asList(
+        "configuration/**", "data/**", "log/**", "tmp/**");
+
     /**
      * JBoss container capability.
      */
@@ -124,7 +132,9 @@ public class JBoss7xStandaloneLocalConfiguration extends AbstractStandaloneLocal
     @Override
     protected void performXmlReplacements(LocalContainer container) 
     {
-        // JBoss 7.x actually supports port offset
+        // JBoss 7.x actually supports port offset, which is written as is into its configuration
+        // and hence must be a number by now
+        getPortOffset();
         this.revertPortOffset();
         super.performXmlReplacements(container);
         this.applyPortOffset();
@@ -262,7 +272,7 @@ public class JBoss7xStandaloneLocalConfiguration extends AbstractStandaloneLocal
 
         // Copy initial configuration
         String initialConfiguration = getFileHandler().append(container.getHome(), CONFIGURATION);
-        getFileHandler().copyDirectory(initialConfiguration, getHome());
+        copyContainerDirectory(initialConfiguration, getHome(), MODIFIED_FILES);
 
         String configurationXML = getFileHandler().append(getHome(), configurationXmlFile);
         if (!getFileHandler().exists(configurationXML))
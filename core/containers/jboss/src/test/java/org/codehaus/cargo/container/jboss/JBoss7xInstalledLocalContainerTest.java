@@ -0,0 +1,82 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.jboss;
+
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.spi.startup.LogPatternReadinessStrategy;
+
+/**
+ * Unit tests for {@link JBoss7xInstalledLocalContainer}.
+ * 
+ */
+public class JBoss7xInstalledLocalContainerTest extends TestCase
+{
+    /**
+     * Pattern of the log line of JBoss 7.x telling that it is started.
+     */
+    private Pattern pattern;
+
+    /**
+     * Creates the container and gets its readiness pattern. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        JBoss7xInstalledLocalContainer container = new JBoss7xInstalledLocalContainer(
+            new JBoss7xStandaloneLocalConfiguration("target/jboss7x"));
+        this.pattern =
+            ((LogPatternReadinessStrategy) container.createReadinessStrategy()).getPattern();
+    }
+
+    /**
+     * Test that the container is ready once it logs that it started.
+     */
+    public void testReadyWhenStarted()
+    {
+        assertTrue(this.pattern.matcher("12:00:01,234 INFO  [org.jboss.as] (Controller Boot "
+            + "Thread) JBAS015874: JBoss AS 7.1.1.Final \"Brontes\" started in 2345ms - Started "
+            + "133 of 208 services (74 services are passive or on-demand)").find());
+    }
+
+    /**
+     * Test that the container is ready once it logs that it started with errors.
+     */
+    public void testReadyWhenStartedWithErrors()
+    {
+        assertTrue(this.pattern.matcher("12:00:01,234 ERROR [org.jboss.as] (Controller Boot "
+            + "Thread) JBAS015875: JBoss AS 7.1.1.Final \"Brontes\" started (with errors) in "
+            + "3032ms - Started 130 of 208 services (3 services failed or missing dependencies, "
+            + "74 services are passive or on-demand)").find());
+    }
+
+    /**
+     * Test that the container is not ready while it is starting.
+     */
+    public void testNotReadyWhenStarting()
+    {
+        assertFalse(this.pattern.matcher("12:00:00,123 INFO  [org.jboss.as] MSC service thread "
+            + "1-6 JBAS015899: JBoss AS 7.1.1.Final \"Brontes\" starting").find());
+    }
+}
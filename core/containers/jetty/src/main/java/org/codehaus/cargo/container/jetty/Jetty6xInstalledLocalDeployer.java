@@ -67,6 +67,16 @@ public class Jetty6xInstalledLocalDeployer extends AbstractCopyingInstalledLocal
         return getFileHandler().append(getContainer().getConfiguration().getHome(), "contexts");
     }
 
+    /**
+     * {@inheritDoc}. Each WAR gets its own Jetty context file, so the deployables can be deployed
+     * concurrently.
+     */
+    @Override
+    protected int getConcurrentDeployments()
+    {
+        return CONCURRENT_DEPLOYMENTS;
+    }
+
     /**
      * {@inheritDoc}. We override the base implementation because Jetty requires a context XML file
      * deployed in its context dir to perform hot deployment. Thus we need to create that context
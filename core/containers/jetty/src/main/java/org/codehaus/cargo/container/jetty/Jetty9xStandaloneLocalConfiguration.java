@@ -62,7 +62,7 @@ public class Jetty9xStandaloneLocalConfiguration extends Jetty8xStandaloneLocalC
         String startD = getFileHandler().append(installedContainer.getHome(), "start.d");
         if (getFileHandler().isDirectory(startD))
         {
-            getFileHandler().copyDirectory(startD, getHome() + "/start.d");
+            copyContainerDirectory(startD, getHome() + "/start.d");
             httpIni = getFileHandler().append(getHome(), "start.d/http.ini");
         }
         else
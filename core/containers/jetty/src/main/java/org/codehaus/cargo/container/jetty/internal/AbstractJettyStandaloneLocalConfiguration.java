@@ -88,8 +88,7 @@ public abstract class AbstractJettyStandaloneLocalConfiguration extends
         FilterChain filterChain = createJettyFilterChain();
 
         String etcDir = getFileHandler().createDirectory(getHome(), "etc");
-        getFileHandler().copyDirectory(
-            getFileHandler().append(ilContainer.getHome(), "etc"), etcDir);
+        copyContainerDirectory(getFileHandler().append(ilContainer.getHome(), "etc"), etcDir);
         Map<String, String> replaceJettyHome = new HashMap<String, String>(1);
         replaceJettyHome.put("jetty.home", "config.home");
         for (String etcChild : getFileHandler().getChildren(etcDir))
@@ -22,6 +22,8 @@
  */
 package org.codehaus.cargo.container.jonas;
 
+import java.util.List;
+
 import org.codehaus.cargo.container.LocalContainer;
 import org.codehaus.cargo.container.deployable.Deployable;
 import org.codehaus.cargo.container.spi.deployer.AbstractCopyingInstalledLocalDeployer;
@@ -72,6 +74,20 @@ public class Jonas5xInstalledLocalDeployer extends AbstractCopyingInstalledLocal
         super.deploy(deployable);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @see AbstractCopyingInstalledLocalDeployer#deploy(List)
+     */
+    @Override
+    public void deploy(List<Deployable> deployables)
+    {
+        // If necessary, warn the user about this deployer's limitations
+        warn();
+
+        super.deploy(deployables);
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -75,6 +75,16 @@ public class TomcatCopyingInstalledLocalDeployer extends AbstractCopyingInstalle
         this.shouldCopyWars = shouldCopyWars;
     }
 
+    /**
+     * {@inheritDoc}. Tomcat context files are written to a file of their own per web context, so
+     * the deployables can be deployed concurrently.
+     */
+    @Override
+    protected int getConcurrentDeployments()
+    {
+        return CONCURRENT_DEPLOYMENTS;
+    }
+
     /**
      * {@inheritDoc}. We override the base implementation in order to handle the special Tomcat
      * scenarios: if the deployable is a {@link TomcatWAR} instance and it contains a
@@ -33,6 +33,8 @@ import org.codehaus.cargo.container.internal.ServletContainerCapability;
 import org.codehaus.cargo.container.property.GeneralPropertySet;
 import org.codehaus.cargo.container.spi.AbstractInstalledLocalContainer;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncher;
+import org.codehaus.cargo.container.spi.startup.LogPatternReadinessStrategy;
+import org.codehaus.cargo.container.spi.startup.ReadinessStrategy;
 
 /**
  * Base support for Catalina based installed local containers.
@@ -61,6 +63,15 @@ public abstract class AbstractCatalinaInstalledLocalContainer extends
         super(configuration);
     }
 
+    /**
+     * {@inheritDoc}. Catalina logs <code>Server startup in</code> once started.
+     */
+    @Override
+    protected ReadinessStrategy createReadinessStrategy()
+    {
+        return new LogPatternReadinessStrategy("Server startup in");
+    }
+
     /**
      * Returns the version of the Tomcat installation.
      * 
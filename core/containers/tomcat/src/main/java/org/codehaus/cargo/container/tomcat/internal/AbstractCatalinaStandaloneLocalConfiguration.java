@@ -20,10 +20,12 @@
 package org.codehaus.cargo.container.tomcat.internal;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -56,6 +58,11 @@ import org.codehaus.cargo.container.tomcat.TomcatPropertySet;
 public abstract class AbstractCatalinaStandaloneLocalConfiguration extends
     AbstractStandaloneLocalConfigurationWithXMLConfigurationBuilder implements ResourceSupport
 {
+    /**
+     * Files of the <code>conf</code> directory Tomcat modifies in place, hence never hard linked:
+     * the user database is saved back to <code>tomcat-users.xml</code>.
+     */
+    private static final List<String> MODIFIED_CONF_FILES = Arrays.asList("tomcat-users.xml");
 
     /**
      * {@inheritDoc}
@@ -119,7 +126,7 @@ public abstract class AbstractCatalinaStandaloneLocalConfiguration extends
 
             String sourceConf = getFileHandler().append(installedContainer.getHome(), "conf");
             String targetConf = getFileHandler().createDirectory(getHome(), "conf");
-            getFileHandler().copyDirectory(sourceConf, targetConf);
+            copyContainerDirectory(sourceConf, targetConf, MODIFIED_CONF_FILES);
 
             setupConfFiles(targetConf);
         }
@@ -36,6 +36,7 @@ import org.codehaus.cargo.container.property.RemotePropertySet;
 import org.codehaus.cargo.container.property.ServletPropertySet;
 import org.codehaus.cargo.container.spi.deployer.AbstractRemoteDeployer;
 import org.codehaus.cargo.container.spi.deployer.DeployerWatchdog;
+import org.codehaus.cargo.util.internal.ParallelTasks;
 
 /**
  * Common code to perform both local or remote deployments using a Tomcat manager-based deployer.
@@ -76,7 +77,7 @@ public abstract class AbstractTomcatManagerDeployer extends AbstractRemoteDeploy
     /**
      * @return the tomcat manager instance
      */
-    protected TomcatManager getTomcatManager()
+    protected synchronized TomcatManager getTomcatManager()
     {
         if (this.manager == null)
         {
@@ -86,6 +87,15 @@ public abstract class AbstractTomcatManagerDeployer extends AbstractRemoteDeploy
         return this.manager;
     }
 
+    /**
+     * {@inheritDoc}. The Tomcat manager accepts concurrent uploads.
+     */
+    @Override
+    protected int getConcurrentDeployments()
+    {
+        return ParallelTasks.getDefaultThreads();
+    }
+
     /**
      * {@inheritDoc}
      * @see org.codehaus.cargo.container.deployer.Deployer#deploy(org.codehaus.cargo.container.deployable.Deployable)
@@ -606,13 +606,7 @@ public class TomcatManager extends LoggedObject
                     }
 
                     String ha1 = this.username + ":" + realm + ":" + this.password;
-                    byte[] hash = md5.digest(ha1.getBytes("UTF-8"));
-                    StringBuilder sb = new StringBuilder();
-                    for (byte hashByte : hash)
-                    {
-                        sb.append(String.format("%02x", hashByte));
-                    }
-                    ha1 = sb.toString();
+                    ha1 = md5Hex(ha1);
 
                     String uri = invokeURL.getPath();
                     String ha2;
@@ -625,13 +619,7 @@ public class TomcatManager extends LoggedObject
                         ha2 = "PUT";
                     }
                     ha2 += ":" + uri;
-                    hash = md5.digest(ha2.getBytes("UTF-8"));
-                    sb = new StringBuilder();
-                    for (byte hashByte : hash)
-                    {
-                        sb.append(String.format("%02x", hashByte));
-                    }
-                    ha2 = sb.toString();
+                    ha2 = md5Hex(ha2);
 
                     String nc = String.format("%08x", System.currentTimeMillis());
                     nc = nc.substring(nc.length() - 8);
@@ -647,13 +635,7 @@ public class TomcatManager extends LoggedObject
                     {
                         ha3 = ha1 + ":" + nonce + ":" + ha2;
                     }
-                    hash = md5.digest(ha3.getBytes("UTF-8"));
-                    sb = new StringBuilder();
-                    for (byte hashByte : hash)
-                    {
-                        sb.append(String.format("%02x", hashByte));
-                    }
-                    ha3 = sb.toString();
+                    ha3 = md5Hex(ha3);
 
                     wwwAuthenticate = "Digest username=\"" + this.username + "\", "
                         + "realm=\"" + realm + "\", "
@@ -786,6 +768,28 @@ public class TomcatManager extends LoggedObject
         return "Basic " + new String(Base64.encodeBase64(buffer.toString().getBytes()));
     }
 
+    /**
+     * Computes the MD5 hash of a text. The digest is shared by the threads using this manager.
+     * 
+     * @param text the text.
+     * @return the hexadecimal MD5 hash of the UTF-8 bytes of the text.
+     * @throws IOException if UTF-8 is not supported.
+     */
+    private String md5Hex(String text) throws IOException
+    {
+        byte[] hash;
+        synchronized (this.md5)
+        {
+            hash = this.md5.digest(text.getBytes("UTF-8"));
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte hashByte : hash)
+        {
+            sb.append(String.format("%02x", hashByte));
+        }
+        return sb.toString();
+    }
+
     /**
      * Reads all the data from the specified input stream and writes it to the specified output
      * stream. Both streams are also closed.
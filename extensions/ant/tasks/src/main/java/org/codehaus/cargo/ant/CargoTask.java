@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -42,15 +43,19 @@ import org.apache.tools.ant.types.Environment.Variable;
 import org.apache.tools.ant.types.Path;
 import org.apache.tools.ant.types.Reference;
 import org.codehaus.cargo.container.Container;
+import org.codehaus.cargo.container.ContainerGroup;
 import org.codehaus.cargo.container.ContainerType;
 import org.codehaus.cargo.container.InstalledLocalContainer;
 import org.codehaus.cargo.container.LocalContainer;
 import org.codehaus.cargo.container.RemoteContainer;
 import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.deployer.BatchDeployer;
 import org.codehaus.cargo.container.deployer.DeployableMonitor;
 import org.codehaus.cargo.container.deployer.Deployer;
 import org.codehaus.cargo.container.installer.ZipURLInstaller;
-import org.codehaus.cargo.container.spi.deployer.DeployerWatchdog;
+import org.codehaus.cargo.container.lifecycle.LifecycleTimingReport;
+import org.codehaus.cargo.container.spi.AbstractLocalContainer;
+import org.codehaus.cargo.container.spi.deployer.DeployerWatchdogGroup;
 import org.codehaus.cargo.container.spi.util.ContainerUtils;
 import org.codehaus.cargo.generic.ContainerFactory;
 import org.codehaus.cargo.generic.DefaultContainerFactory;
@@ -137,6 +142,11 @@ public class CargoTask extends Task
      */
     private static final String ACTION_DEPLOY = "deploy";
 
+    /**
+     * Prefix of the Ant references of the timing reports, followed by the report file.
+     */
+    private static final String TIMING_REPORT_REFERENCE = "cargo.timingReport.";
+
     /**
      * Represents an undeploy from container action.
      * @see #setAction(String)
@@ -174,6 +184,27 @@ public class CargoTask extends Task
      */
     private Reference refid;
 
+    /**
+     * If specified, the container is added to the {@link ContainerGroup} with this reference id,
+     * which is created if needed.
+     */
+    private String group;
+
+    /**
+     * Comma-separated names of the containers of the group this container depends on.
+     */
+    private String dependsOn;
+
+    /**
+     * File to write the duration of the lifecycle phases of the containers to.
+     */
+    private File timingReport;
+
+    /**
+     * Global timeout for all the deployables to be deployed or undeployed, in milliseconds.
+     */
+    private long deployablesPingTimeout;
+
     /**
      * An id representing the container (unique per container type).
      */
@@ -348,6 +379,46 @@ public class CargoTask extends Task
         this.refid = refid;
     }
 
+    /**
+     * @param group the Ant reference id of the container group to add the container to. The
+     * container is named after its <code>id</code> in the group, or after its container id if it
+     * has no <code>id</code>. Using a group as <code>refid</code> starts or stops all its
+     * containers concurrently.
+     */
+    public void setGroup(String group)
+    {
+        this.group = group;
+    }
+
+    /**
+     * @param timingReport file to write the duration of the lifecycle phases of the local
+     * containers to, as CSV if its name ends with <code>.csv</code> and as JSON otherwise. All
+     * tasks using the same file in the Ant project share the same report.
+     */
+    public void setTimingReport(File timingReport)
+    {
+        this.timingReport = timingReport;
+    }
+
+    /**
+     * @param deployablesPingTimeout global timeout for all the deployables with a ping URL to be
+     * deployed or undeployed, in milliseconds, <code>0</code> (the default) to only use the ping
+     * timeout of each deployable.
+     */
+    public void setDeployablesPingTimeout(long deployablesPingTimeout)
+    {
+        this.deployablesPingTimeout = deployablesPingTimeout;
+    }
+
+    /**
+     * @param dependsOn comma-separated names of the containers of the group which must be started
+     * before this container, and stopped after it.
+     */
+    public void setDependsOn(String dependsOn)
+    {
+        this.dependsOn = dependsOn;
+    }
+
     /**
      * @return the configured {@link ZipURLInstallerElement} element
      */
@@ -545,6 +616,19 @@ public class CargoTask extends Task
     @Override
     public void execute()
     {
+        if (getRefid() != null && getContainerReference() instanceof ContainerGroup)
+        {
+            try
+            {
+                executeGroupActions((ContainerGroup) getContainerReference());
+            }
+            finally
+            {
+                writeTimingReport();
+            }
+            return;
+        }
+
         this.container = makeContainer();
 
         // Verify that the task is correctly set up.
@@ -552,6 +636,7 @@ public class CargoTask extends Task
 
         // Setup all attributes and nested elements
         setupLogger();
+        setupTimingReport();
 
         if (getContainer().getType().isLocal())
         {
@@ -573,7 +658,139 @@ public class CargoTask extends Task
             getProject().addReference(getId(), getContainer());
         }
 
-        executeActions();
+        if (getGroup() != null)
+        {
+            addToGroup();
+        }
+
+        try
+        {
+            executeActions();
+        }
+        finally
+        {
+            writeTimingReport();
+        }
+    }
+
+    /**
+     * @return the timing report shared by the tasks writing to the <code>timingReport</code>
+     * file, <code>null</code> if no timing report is requested.
+     */
+    protected LifecycleTimingReport getTimingReport()
+    {
+        if (getTimingReportFile() == null)
+        {
+            return null;
+        }
+        String reference = TIMING_REPORT_REFERENCE + getTimingReportFile().getAbsolutePath();
+        Object report = getProject().getReference(reference);
+        if (report == null)
+        {
+            report = new LifecycleTimingReport();
+            getProject().addReference(reference, report);
+        }
+        return (LifecycleTimingReport) report;
+    }
+
+    /**
+     * Adds the timing report, if any, to the listeners of the container.
+     */
+    protected void setupTimingReport()
+    {
+        LifecycleTimingReport report = getTimingReport();
+        if (report != null && getContainer() instanceof AbstractLocalContainer
+            && !((AbstractLocalContainer) getContainer()).getLifecycleListeners().contains(report))
+        {
+            ((AbstractLocalContainer) getContainer()).addLifecycleListener(report);
+        }
+    }
+
+    /**
+     * Writes the timing report, if any. A report that cannot be written is only logged, so that
+     * it never hides the outcome of the execution.
+     */
+    protected void writeTimingReport()
+    {
+        LifecycleTimingReport report = getTimingReport();
+        if (report != null)
+        {
+            String reportFile = getTimingReportFile().getAbsolutePath();
+            try
+            {
+                report.write(reportFile);
+            }
+            catch (RuntimeException e)
+            {
+                log("Failed to write the timing report to [" + reportFile + "]", e,
+                    Project.MSG_WARN);
+            }
+        }
+    }
+
+    /**
+     * Adds the container to its container group, creating the group if needed.
+     */
+    protected void addToGroup()
+    {
+        if (!getContainer().getType().isLocal())
+        {
+            throw new BuildException("Only local containers can be part of a container group");
+        }
+
+        Object reference = getProject().getReference(getGroup());
+        ContainerGroup containerGroup;
+        if (reference == null)
+        {
+            containerGroup = new ContainerGroup();
+            containerGroup.setLogger(getLogger());
+            getProject().addReference(getGroup(), containerGroup);
+        }
+        else if (reference instanceof ContainerGroup)
+        {
+            containerGroup = (ContainerGroup) reference;
+        }
+        else
+        {
+            throw new BuildException("The [" + getGroup() + "] reference must point to a "
+                + "container group, it is pointing to a [" + reference.getClass().getName()
+                    + "] object");
+        }
+
+        String name = getId() != null ? getId() : getContainerId();
+        containerGroup.addContainer(name, (LocalContainer) getContainer());
+        if (getDependsOn() != null)
+        {
+            for (String dependency : getDependsOn().split(","))
+            {
+                if (dependency.trim().length() > 0)
+                {
+                    containerGroup.addDependency(name, dependency.trim());
+                }
+            }
+        }
+    }
+
+    /**
+     * Execute the action specified by the user on all containers of a container group.
+     * 
+     * @param containerGroup the container group.
+     */
+    protected void executeGroupActions(ContainerGroup containerGroup)
+    {
+        if (ACTION_START.equalsIgnoreCase(getAction()))
+        {
+            containerGroup.start();
+        }
+        else if (ACTION_STOP.equalsIgnoreCase(getAction()))
+        {
+            containerGroup.stop();
+        }
+        else
+        {
+            throw new BuildException("Valid actions for container groups are: "
+                + Arrays.asList(new String[] {ACTION_START, ACTION_STOP}));
+        }
     }
 
     /**
@@ -757,6 +974,10 @@ public class CargoTask extends Task
             Deployer deployer = deployerFactory.createDeployer(getContainer());
             deployer.setLogger(getLogger());
 
+            // Deployments and redeployments are handed to the deployer as a single batch
+            List<Deployable> deployables = new ArrayList<Deployable>();
+            List<DeployableMonitor> deployableMonitors = new ArrayList<DeployableMonitor>();
+
             for (DeployableElement deployableElement : getConfiguration().getDeployables())
             {
                 if (ACTION_UNDEPLOY.equalsIgnoreCase(getAction())
@@ -769,16 +990,11 @@ public class CargoTask extends Task
                 Deployable deployable = deployableElement.createDeployable(getContainerId());
                 DeployableMonitor deployableMonitor = deployableElement.createDeployableMonitor();
 
-                if (ACTION_DEPLOY.equalsIgnoreCase(getAction()))
+                if (ACTION_DEPLOY.equalsIgnoreCase(getAction())
+                    || ACTION_REDEPLOY.equalsIgnoreCase(getAction()))
                 {
-                    if (deployableMonitor == null)
-                    {
-                        deployer.deploy(deployable);
-                    }
-                    else
-                    {
-                        deployer.deploy(deployable, deployableMonitor);
-                    }
+                    deployables.add(deployable);
+                    deployableMonitors.add(deployableMonitor);
                 }
                 else if (ACTION_UNDEPLOY.equalsIgnoreCase(getAction()))
                 {
@@ -791,23 +1007,68 @@ public class CargoTask extends Task
                         deployer.undeploy(deployable, deployableMonitor);
                     }
                 }
-                else if (ACTION_REDEPLOY.equalsIgnoreCase(getAction()))
-                {
-                    if (deployableMonitor == null)
-                    {
-                        deployer.redeploy(deployable);
-                    }
-                    else
-                    {
-                        deployer.redeploy(deployable, deployableMonitor);
-                    }
-                }
                 else
                 {
                     throw new BuildException("Unknown action [" + getAction()
                         + "] for deployer");
                 }
             }
+
+            if (!deployables.isEmpty())
+            {
+                deployAll(deployer, deployables, deployableMonitors,
+                    ACTION_REDEPLOY.equalsIgnoreCase(getAction()));
+            }
+        }
+    }
+
+    /**
+     * Deploys or redeploys deployables, as a single batch if the deployer supports it.
+     * 
+     * @param deployer the deployer.
+     * @param deployables the deployables.
+     * @param deployableMonitors the monitors of the deployables, <code>null</code> for the
+     * deployables not to wait for.
+     * @param redeploy <code>true</code> to redeploy the deployables, <code>false</code> to deploy
+     * them.
+     */
+    private void deployAll(Deployer deployer, List<Deployable> deployables,
+        List<DeployableMonitor> deployableMonitors, boolean redeploy)
+    {
+        if (deployer instanceof BatchDeployer)
+        {
+            BatchDeployer batchDeployer = (BatchDeployer) deployer;
+            if (redeploy)
+            {
+                batchDeployer.redeploy(deployables, deployableMonitors);
+            }
+            else
+            {
+                batchDeployer.deploy(deployables, deployableMonitors);
+            }
+            return;
+        }
+
+        for (int i = 0; i < deployables.size(); i++)
+        {
+            Deployable deployable = deployables.get(i);
+            DeployableMonitor deployableMonitor = deployableMonitors.get(i);
+            if (deployableMonitor == null && redeploy)
+            {
+                deployer.redeploy(deployable);
+            }
+            else if (deployableMonitor == null)
+            {
+                deployer.deploy(deployable);
+            }
+            else if (redeploy)
+            {
+                deployer.redeploy(deployable, deployableMonitor);
+            }
+            else
+            {
+                deployer.deploy(deployable, deployableMonitor);
+            }
         }
     }
 
@@ -1180,6 +1441,33 @@ public class CargoTask extends Task
         return this.refid;
     }
 
+    /**
+     * @see #setGroup(String)
+     * @return the reference id of the container group.
+     */
+    protected String getGroup()
+    {
+        return this.group;
+    }
+
+    /**
+     * @see #setTimingReport(File)
+     * @return the file to write the timing report to.
+     */
+    protected File getTimingReportFile()
+    {
+        return this.timingReport;
+    }
+
+    /**
+     * @see #setDependsOn(String)
+     * @return the names of the containers this container depends on.
+     */
+    protected String getDependsOn()
+    {
+        return this.dependsOn;
+    }
+
     /**
      * Checks if the task is correctly initialized and that the container is ready to be used.
      */
@@ -1281,7 +1569,8 @@ public class CargoTask extends Task
     }
 
     /**
-     * Waits until all deployables with a deployable monitor are deployed / undeployed.
+     * Waits until all deployables with a deployable monitor are deployed / undeployed. The
+     * deployables are all monitored concurrently.
      * 
      * @param starting <code>true</code> if container is starting (i.e., wait for deployment),
      * <code>false</code> otherwise.
@@ -1290,17 +1579,19 @@ public class CargoTask extends Task
     {
         if (getConfiguration() != null && getConfiguration().getDeployables() != null)
         {
+            DeployerWatchdogGroup watchdog = new DeployerWatchdogGroup();
+            watchdog.setLogger(container.getLogger());
+            watchdog.setTimeout(this.deployablesPingTimeout);
             for (DeployableElement deployableElement : getConfiguration().getDeployables())
             {
                 DeployableMonitor deployableMonitor = deployableElement.createDeployableMonitor();
                 if (deployableMonitor != null)
                 {
-                    DeployerWatchdog watchdog = new DeployerWatchdog(deployableMonitor);
-                    watchdog.setLogger(container.getLogger());
                     deployableMonitor.setLogger(container.getLogger());
-                    watchdog.watch(starting);
+                    watchdog.addMonitor(deployableMonitor);
                 }
             }
+            watchdog.watch(starting);
         }
     }
 }
@@ -45,6 +45,22 @@ public class ZipURLInstallerElement
      */
     private String extractDir;
 
+    /**
+     * Maximum size in bytes of all installations sharing the same extract directory, negative for
+     * unlimited.
+     */
+    private long maxCacheSize = -1;
+
+    /**
+     * Whether tar archives are extracted while being downloaded.
+     */
+    private boolean streaming;
+
+    /**
+     * Directory in which a copy-on-write clone of the container home is created.
+     */
+    private String cloneDir;
+
     /**
      * Proxy properties.
      */
@@ -100,6 +116,56 @@ public class ZipURLInstallerElement
         return this.installURL;
     }
 
+    /**
+     * @param maxCacheSize the maximum size in bytes of all installations sharing the same extract
+     * directory, the least recently used installations being removed when it is exceeded.
+     */
+    public void setMaxCacheSize(long maxCacheSize)
+    {
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * @return the maximum size in bytes of all installations sharing the same extract directory.
+     */
+    public long getMaxCacheSize()
+    {
+        return this.maxCacheSize;
+    }
+
+    /**
+     * @param streaming <code>true</code> to extract tar archives while they are being downloaded.
+     */
+    public void setStreaming(boolean streaming)
+    {
+        this.streaming = streaming;
+    }
+
+    /**
+     * @return <code>true</code> if tar archives are extracted while they are being downloaded.
+     */
+    public boolean isStreaming()
+    {
+        return this.streaming;
+    }
+
+    /**
+     * @param cloneDir directory in which a fresh copy-on-write clone of the container home is
+     * created on every installation, the clone being used as the container home.
+     */
+    public void setCloneDir(String cloneDir)
+    {
+        this.cloneDir = cloneDir;
+    }
+
+    /**
+     * @return the directory in which a copy-on-write clone of the container home is created.
+     */
+    public String getCloneDir()
+    {
+        return this.cloneDir;
+    }
+
     /**
      * @return proxy properties.
      */
@@ -133,6 +199,9 @@ public class ZipURLInstallerElement
         {
             installer.setProxy(getProxy());
         }
+        installer.setMaxCacheSize(getMaxCacheSize());
+        installer.setStreaming(isStreaming());
+        installer.setCloneDir(getCloneDir());
         return installer;
     }
 }
@@ -26,6 +26,7 @@ import junit.framework.TestCase;
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.types.Reference;
+import org.codehaus.cargo.container.ContainerGroup;
 import org.codehaus.cargo.container.ContainerType;
 import org.codehaus.cargo.container.LocalContainer;
 import org.codehaus.cargo.container.deployable.Deployable;
@@ -118,6 +119,45 @@ public class CargoTaskTest extends TestCase
         task2.execute();
     }
 
+    /**
+     * Test execution of a container group.
+     */
+    public void testExecuteContainerGroup()
+    {
+        Project antProject = new Project();
+        antProject.init();
+
+        this.task.setProject(antProject);
+        this.task.setId("auth");
+        this.task.setHome("home");
+        this.task.setGroup("testGroup");
+        this.task.execute();
+
+        CargoTask task2 = new CargoTask();
+        task2.setProject(antProject);
+        task2.setContainerId("app");
+        task2.setClass(InstalledLocalContainerStub.class);
+        ConfigurationElement configurationElement2 = task2.createConfiguration();
+        configurationElement2.setClass(StandaloneLocalConfigurationStub.class);
+        configurationElement2.setType("standalone");
+        configurationElement2.setHome("elsewhere");
+        task2.setHome("home");
+        task2.setGroup("testGroup");
+        task2.setDependsOn("auth");
+        task2.setAction("configure");
+        task2.execute();
+
+        ContainerGroup group = (ContainerGroup) antProject.getReference("testGroup");
+        assertEquals(2, group.getContainers().size());
+        assertTrue(group.getDependencies("app").contains("auth"));
+
+        CargoTask task3 = new CargoTask();
+        task3.setProject(antProject);
+        task3.setRefId(new Reference("testGroup"));
+        task3.setAction("start");
+        task3.execute();
+    }
+
     /**
      * Test execution with an invalid <code>RefId</code>.
      */
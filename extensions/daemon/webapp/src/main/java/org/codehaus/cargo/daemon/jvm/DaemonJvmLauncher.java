@@ -34,14 +34,14 @@ import com.sun.jna.platform.win32.Kernel32;
 import com.sun.jna.platform.win32.WinNT.HANDLE;
 
 import org.apache.tools.ant.types.Commandline;
-import org.codehaus.cargo.container.spi.jvm.JvmLauncher;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncherException;
+import org.codehaus.cargo.container.spi.jvm.TrackableJvmLauncher;
 
 /**
  * A JVM launcher that launches a new Process, that can be forcibly killed if needed.
  *
  */
-class DaemonJvmLauncher implements JvmLauncher
+class DaemonJvmLauncher implements TrackableJvmLauncher
 {
     /**
      * The working directory.
@@ -441,6 +441,81 @@ class DaemonJvmLauncher implements JvmLauncher
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public long getPid()
+    {
+        if (process == null)
+        {
+            return -1;
+        }
+        if (process.getClass().getName().equals("java.lang.UNIXProcess"))
+        {
+            try
+            {
+                Field f = process.getClass().getDeclaredField("pid");
+                f.setAccessible(true);
+                return f.getInt(process);
+            }
+            catch (Throwable e)
+            {
+                // Ignore, we tried our best
+            }
+        }
+        else if (process.getClass().getName().equals("java.lang.Win32Process")
+            || process.getClass().getName().equals("java.lang.ProcessImpl"))
+        {
+            try
+            {
+                Field f = process.getClass().getDeclaredField("handle");
+                f.setAccessible(true);
+                long handleId = f.getLong(process);
+
+                Kernel32 kernel = Kernel32.INSTANCE;
+                HANDLE handle = new HANDLE();
+                handle.setPointer(Pointer.createConstant(handleId));
+                return kernel.GetProcessId(handle);
+            }
+            catch (Throwable e)
+            {
+                // Ignore, we tried our best
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean waitFor(long millis) throws InterruptedException
+    {
+        Process process = this.process;
+        if (process == null)
+        {
+            return false;
+        }
+
+        long deadline = System.currentTimeMillis() + millis;
+        while (true)
+        {
+            try
+            {
+                process.exitValue();
+                return true;
+            }
+            catch (IllegalThreadStateException e)
+            {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0)
+                {
+                    return false;
+                }
+                Thread.sleep(Math.min(remaining, 100));
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -529,43 +604,25 @@ class DaemonJvmLauncher implements JvmLauncher
      */
     private void nativeKill()
     {
-        if (process == null)
+        long pid = getPid();
+        if (pid == -1)
         {
             return;
         }
-        if (process.getClass().getName().equals("java.lang.UNIXProcess"))
+        try
         {
-            try
+            if (process.getClass().getName().equals("java.lang.UNIXProcess"))
             {
-                Field f = process.getClass().getDeclaredField("pid");
-                f.setAccessible(true);
-                int pid = f.getInt(process);
                 Runtime.getRuntime().exec("kill -9 " + pid);
             }
-            catch (Throwable e)
+            else
             {
-                // Ignore, we tried our best
+                Runtime.getRuntime().exec("taskkill /PID " + pid + " /F");
             }
         }
-        else if (process.getClass().getName().equals("java.lang.Win32Process")
-            || process.getClass().getName().equals("java.lang.ProcessImpl"))
+        catch (Throwable e)
         {
-            try
-            {
-                Field f = process.getClass().getDeclaredField("handle");
-                f.setAccessible(true);
-                long handleId = f.getLong(process);
-
-                Kernel32 kernel = Kernel32.INSTANCE;
-                HANDLE handle = new HANDLE();
-                handle.setPointer(Pointer.createConstant(handleId));
-                int pid = kernel.GetProcessId(handle);
-                Runtime.getRuntime().exec("taskkill /PID " + pid + " /F");
-            }
-            catch (Throwable e)
-            {
-                // Ignore, we tried our best
-            }
+            // Ignore, we tried our best
         }
     }
 
@@ -43,7 +43,9 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.settings.Proxy;
 import org.apache.maven.settings.Server;
 import org.apache.maven.settings.Settings;
+import org.codehaus.cargo.container.ContainerGroup;
 import org.codehaus.cargo.container.ContainerType;
+import org.codehaus.cargo.container.InstalledLocalContainer;
 import org.codehaus.cargo.container.LocalContainer;
 import org.codehaus.cargo.container.RemoteContainer;
 import org.codehaus.cargo.container.configuration.ConfigurationType;
@@ -52,13 +54,17 @@ import org.codehaus.cargo.container.configuration.RuntimeConfiguration;
 import org.codehaus.cargo.container.deployer.DeployableMonitor;
 import org.codehaus.cargo.container.deployer.URLDeployableMonitor;
 import org.codehaus.cargo.container.internal.util.ResourceUtils;
-import org.codehaus.cargo.container.spi.deployer.DeployerWatchdog;
+import org.codehaus.cargo.container.lifecycle.LifecycleTimingReport;
+import org.codehaus.cargo.container.spi.AbstractLocalContainer;
+import org.codehaus.cargo.container.spi.deployer.DeployerWatchdogGroup;
+import org.codehaus.cargo.generic.ContainerPool;
 import org.codehaus.cargo.maven2.configuration.ArtifactInstaller;
 import org.codehaus.cargo.maven2.configuration.Configuration;
 import org.codehaus.cargo.maven2.configuration.Container;
 import org.codehaus.cargo.maven2.configuration.Daemon;
 import org.codehaus.cargo.maven2.configuration.Deployable;
 import org.codehaus.cargo.maven2.configuration.Deployer;
+import org.codehaus.cargo.maven2.configuration.GroupedContainer;
 import org.codehaus.cargo.maven2.configuration.ZipUrlInstaller;
 import org.codehaus.cargo.maven2.log.MavenLogger;
 import org.codehaus.cargo.maven2.util.CargoProject;
@@ -86,6 +92,24 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
     public static final String CONTEXT_KEY_CONTAINER =
         AbstractCargoMojo.class.getName() + "-Container";
 
+    /**
+     * Name of the container defined by the <code>&lt;container&gt;</code> element in its container
+     * group.
+     */
+    public static final String MAIN_GROUPED_CONTAINER = "main";
+
+    /**
+     * Pool of the running installed containers, shared by all executions of the plugin. The pooled
+     * containers are stopped when Maven exits.
+     */
+    private static ContainerPool containerPool;
+
+    /**
+     * Timing reports shared by all executions of the plugin, by report file.
+     */
+    private static final Map<String, LifecycleTimingReport> TIMING_REPORTS =
+        new HashMap<String, LifecycleTimingReport>();
+
     /**
      * File utility class.
      */
@@ -139,6 +163,26 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
      */
     private Deployable[] deployables;
 
+    /**
+     * Containers started and stopped concurrently with the container defined by the
+     * <code>&lt;container&gt;</code> element, which is named <code>main</code> in the group. Each
+     * of them has a <code>&lt;name&gt;</code>, its own <code>&lt;container&gt;</code>,
+     * <code>&lt;configuration&gt;</code> and <code>&lt;deployables&gt;</code> elements and can
+     * declare the containers it depends on with a comma-separated <code>&lt;dependsOn&gt;</code>
+     * element.
+     * 
+     * @parameter
+     */
+    private GroupedContainer[] groupedContainers;
+
+    /**
+     * Comma-separated names of the grouped containers which must be started before the container
+     * defined by the <code>&lt;container&gt;</code> element, and stopped after it.
+     * 
+     * @parameter
+     */
+    private String dependsOn;
+
     /**
      * The metadata source.
      * 
@@ -182,6 +226,33 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
      */
     private boolean skip;
 
+    /**
+     * Set this to 'true' to keep installed containers running once stopped and reuse them, only
+     * redeploying their deployables, when a container with the same configuration is started
+     * again in the same Maven build.
+     * 
+     * @parameter property="cargo.maven.pool" default-value="false"
+     */
+    private boolean pool;
+
+    /**
+     * File to write the duration of the lifecycle phases of the local containers to, as CSV if
+     * its name ends with <code>.csv</code> and as JSON otherwise. The report covers all
+     * executions of the plugin using the same file in the Maven build. Relative paths are resolved
+     * against the project base directory.
+     * 
+     * @parameter property="cargo.maven.timingReport"
+     */
+    private File timingReport;
+
+    /**
+     * Global timeout for all the deployables with a ping URL to be deployed or undeployed, in
+     * milliseconds. The default, <code>0</code>, only uses the ping timeout of each deployable.
+     * 
+     * @parameter property="cargo.maven.deployablesPingTimeout" default-value="0"
+     */
+    private long deployablesPingTimeout;
+
     /**
      * The artifact factory is used to create valid Maven {@link org.apache.maven.artifact.Artifact}
      * objects. This is used to pass Maven artifacts to the artifact resolver so that it can
@@ -302,6 +373,25 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
         this.deployables = deployablesElement;
     }
 
+    /**
+     * @return the containers to start and stop together with the main container, <code>null</code>
+     * if none.
+     */
+    protected GroupedContainer[] getGroupedContainersElement()
+    {
+        return this.groupedContainers;
+    }
+
+    /**
+     * @param groupedContainersElement the containers to start and stop together with the main
+     * container.
+     * @see #getGroupedContainersElement()
+     */
+    protected void setGroupedContainersElement(GroupedContainer[] groupedContainersElement)
+    {
+        this.groupedContainers = groupedContainersElement;
+    }
+
     /**
      * @return the user configuration of a Cargo
      * {@link org.codehaus.cargo.container.configuration.Configuration}. See the <a
@@ -361,6 +451,37 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
         return this.cargoProject;
     }
 
+    /**
+     * @param container a local container.
+     * @return <code>true</code> if the container is to be acquired from and released to the
+     * container pool rather than started and stopped.
+     */
+    protected boolean isPooled(LocalContainer container)
+    {
+        return this.pool && container instanceof InstalledLocalContainer;
+    }
+
+    /**
+     * @return the container pool shared by all executions of the plugin.
+     */
+    protected static synchronized ContainerPool getContainerPool()
+    {
+        if (containerPool == null)
+        {
+            final ContainerPool pool = new ContainerPool();
+            Runtime.getRuntime().addShutdownHook(new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    pool.stopAll();
+                }
+            });
+            containerPool = pool;
+        }
+        return containerPool;
+    }
+
     /**
      * {@inheritDoc}
      * 
@@ -435,6 +556,7 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
         }
         finally
         {
+            writeTimingReport();
             for (Map.Entry<String, String> previousProperty : previousProperties.entrySet())
             {
                 if (previousProperty.getValue() != null)
@@ -449,6 +571,52 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
         }
     }
 
+    /**
+     * @return the timing report shared by the executions writing to the
+     * <code>timingReport</code> file, <code>null</code> if no timing report is requested.
+     */
+    protected LifecycleTimingReport getTimingReport()
+    {
+        if (this.timingReport == null)
+        {
+            return null;
+        }
+        String reportFile = this.timingReport.getAbsolutePath();
+        synchronized (TIMING_REPORTS)
+        {
+            LifecycleTimingReport report = TIMING_REPORTS.get(reportFile);
+            if (report == null)
+            {
+                report = new LifecycleTimingReport();
+                TIMING_REPORTS.put(reportFile, report);
+            }
+            return report;
+        }
+    }
+
+    /**
+     * Writes the timing report, if any. A report that cannot be written is only logged, so that
+     * it never hides the outcome of the execution.
+     */
+    private void writeTimingReport()
+    {
+        LifecycleTimingReport report = getTimingReport();
+        if (report == null)
+        {
+            return;
+        }
+        String reportFile = this.timingReport.getAbsolutePath();
+        try
+        {
+            report.write(reportFile);
+            getLog().debug("Wrote the timing report to [" + reportFile + "]");
+        }
+        catch (RuntimeException e)
+        {
+            getLog().warn("Failed to write the timing report to [" + reportFile + "]", e);
+        }
+    }
+
     /**
      * Executes the plugin.
      * 
@@ -633,53 +801,161 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
         }
         else if (getConfigurationElement() != null)
         {
-            createDefaultContainerElementIfNecessary();
-            org.codehaus.cargo.container.configuration.Configuration configuration =
-                createConfiguration();
-            configuration.setLogger(container.getLogger());
-
-            // CARGO-1053: Update the container's configuration, since different executions might
-            //             have defined different configurations but the "put the container in the
-            //             Maven2 context" (for handling multiple containers and also for handling
-            //             embedded containers) mechanism will reuse existing container along with
-            //             its configuration.
-            if (container instanceof RemoteContainer)
+            updateConfiguration(container);
+        }
+
+        if (context != null)
+        {
+            context.put(containerKey, container);
+        }
+
+        setupTimingReport(container);
+        return container;
+    }
+
+    /**
+     * Updates the configuration of a container found in the Maven Plugin Context.
+     * 
+     * @param container the container found in the Maven Plugin Context.
+     * @throws MojoExecutionException in case of error
+     */
+    private void updateConfiguration(org.codehaus.cargo.container.Container container)
+        throws MojoExecutionException
+    {
+        createDefaultContainerElementIfNecessary();
+        org.codehaus.cargo.container.configuration.Configuration configuration =
+            createConfiguration();
+        configuration.setLogger(container.getLogger());
+
+        // CARGO-1053: Update the container's configuration, since different executions might
+        //             have defined different configurations but the "put the container in the
+        //             Maven2 context" (for handling multiple containers and also for handling
+        //             embedded containers) mechanism will reuse existing container along with
+        //             its configuration.
+        if (container instanceof RemoteContainer)
+        {
+            if (!(configuration instanceof RuntimeConfiguration))
             {
-                if (!(configuration instanceof RuntimeConfiguration))
-                {
-                    throw new MojoExecutionException("Expected a "
-                        + RuntimeConfiguration.class.getName()
-                        + " but got a " + configuration.getClass().getName());
-                }
+                throw new MojoExecutionException("Expected a "
+                    + RuntimeConfiguration.class.getName()
+                    + " but got a " + configuration.getClass().getName());
+            }
 
-                ((RemoteContainer) container).setConfiguration(
-                    (RuntimeConfiguration) configuration);
+            ((RemoteContainer) container).setConfiguration(
+                (RuntimeConfiguration) configuration);
+        }
+        else if (container instanceof LocalContainer)
+        {
+            if (!(configuration instanceof LocalConfiguration))
+            {
+                throw new MojoExecutionException("Expected a "
+                    + LocalConfiguration.class.getName()
+                    + " but got a " + configuration.getClass().getName());
             }
-            else if (container instanceof LocalContainer)
+
+            ((LocalContainer) container).setConfiguration(
+                (LocalConfiguration) configuration);
+        }
+        else
+        {
+            throw new MojoExecutionException("Unknown container type "
+                + container.getClass().getName());
+        }
+    }
+
+    /**
+     * Adds the timing report, if any, to the listeners of a container.
+     * 
+     * @param container the container.
+     */
+    private void setupTimingReport(org.codehaus.cargo.container.Container container)
+    {
+        LifecycleTimingReport report = getTimingReport();
+        if (report != null && container instanceof AbstractLocalContainer
+            && !((AbstractLocalContainer) container).getLifecycleListeners().contains(report))
+        {
+            ((AbstractLocalContainer) container).addLifecycleListener(report);
+        }
+    }
+
+    /**
+     * Creates the group made of the main container and of the grouped containers, with their
+     * dependencies. Each grouped container is created like the main container, from its own
+     * <code>&lt;container&gt;</code>, <code>&lt;configuration&gt;</code> and
+     * <code>&lt;deployables&gt;</code> elements.
+     * 
+     * @param mainContainer the container defined by the <code>&lt;container&gt;</code> element.
+     * @return the container group.
+     * @throws MojoExecutionException in case of error
+     */
+    protected ContainerGroup createContainerGroup(LocalContainer mainContainer)
+        throws MojoExecutionException
+    {
+        ContainerGroup group = new ContainerGroup();
+        group.setLogger(mainContainer.getLogger());
+        group.addContainer(MAIN_GROUPED_CONTAINER, mainContainer);
+
+        Container mainContainerElement = getContainerElement();
+        Configuration mainConfigurationElement = getConfigurationElement();
+        Deployable[] mainDeployablesElement = getDeployablesElement();
+        try
+        {
+            for (GroupedContainer groupedContainer : getGroupedContainersElement())
             {
-                if (!(configuration instanceof LocalConfiguration))
+                if (groupedContainer.getName() == null || groupedContainer.getContainer() == null)
                 {
-                    throw new MojoExecutionException("Expected a "
-                        + LocalConfiguration.class.getName()
-                        + " but got a " + configuration.getClass().getName());
+                    throw new MojoExecutionException("Each grouped container needs a <name> and "
+                        + "a <container> element");
                 }
+                setContainerElement(groupedContainer.getContainer());
+                setConfigurationElement(groupedContainer.getConfiguration());
+                setDeployablesElement(groupedContainer.getDeployables());
 
-                ((LocalContainer) container).setConfiguration(
-                    (LocalConfiguration) configuration);
-            }
-            else
-            {
-                throw new MojoExecutionException("Unknown container type "
-                    + container.getClass().getName());
+                org.codehaus.cargo.container.Container container = createContainer();
+                if (!container.getType().isLocal())
+                {
+                    throw new MojoExecutionException("The grouped container ["
+                        + groupedContainer.getName() + "] is not a local container");
+                }
+                group.addContainer(groupedContainer.getName(), (LocalContainer) container);
             }
         }
+        finally
+        {
+            setContainerElement(mainContainerElement);
+            setConfigurationElement(mainConfigurationElement);
+            setDeployablesElement(mainDeployablesElement);
+        }
 
-        if (context != null)
+        addGroupDependencies(group, MAIN_GROUPED_CONTAINER, this.dependsOn);
+        for (GroupedContainer groupedContainer : getGroupedContainersElement())
         {
-            context.put(containerKey, container);
+            addGroupDependencies(group, groupedContainer.getName(),
+                groupedContainer.getDependsOn());
         }
+        return group;
+    }
 
-        return container;
+    /**
+     * Adds the dependencies of a container to its container group.
+     * 
+     * @param group the container group.
+     * @param name the name of the container in the group.
+     * @param dependencies comma-separated names of the containers it depends on, can be
+     * <code>null</code>.
+     */
+    private void addGroupDependencies(ContainerGroup group, String name, String dependencies)
+    {
+        if (dependencies != null)
+        {
+            for (String dependency : dependencies.split(","))
+            {
+                if (dependency.trim().length() > 0)
+                {
+                    group.addDependency(name, dependency.trim());
+                }
+            }
+        }
     }
 
     /**
@@ -976,36 +1252,64 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
     }
 
     /**
-     * Waits until all deployables with a deployable monitor are deployed / undeployed.
+     * Waits until all deployables with a deployable monitor are deployed / undeployed. The
+     * deployables are all monitored concurrently.
      * 
      * @param starting <code>true</code> if container is starting (i.e., wait for deployment),
      * <code>false</code> otherwise.
      */
     protected void waitDeployableMonitor(boolean starting)
     {
-        if (getDeployablesElement() != null)
+        List<DeployableMonitor> monitors = new ArrayList<DeployableMonitor>();
+        addDeployableMonitors(monitors, getDeployablesElement());
+        if (getGroupedContainersElement() != null)
+        {
+            for (GroupedContainer groupedContainer : getGroupedContainersElement())
+            {
+                addDeployableMonitors(monitors, groupedContainer.getDeployables());
+            }
+        }
+
+        if (!monitors.isEmpty())
         {
             Logger watchdogLogger = createLogger();
+            DeployerWatchdogGroup watchdog = new DeployerWatchdogGroup();
+            watchdog.setLogger(watchdogLogger);
+            watchdog.setTimeout(this.deployablesPingTimeout);
+            for (DeployableMonitor monitor : monitors)
+            {
+                monitor.setLogger(watchdogLogger);
+                watchdog.addMonitor(monitor);
+            }
+            watchdog.watch(starting);
+        }
+    }
 
-            for (Deployable deployable : getDeployablesElement())
+    /**
+     * Creates a monitor for each of the given deployables with a ping URL.
+     * 
+     * @param monitors the list to add the monitors to.
+     * @param deployables the deployables, can be <code>null</code>.
+     */
+    private void addDeployableMonitors(List<DeployableMonitor> monitors,
+        Deployable[] deployables)
+    {
+        if (deployables != null)
+        {
+            for (Deployable deployable : deployables)
             {
                 URL pingURL = deployable.getPingURL();
                 if (pingURL != null)
                 {
-                    DeployableMonitor monitor;
                     Long pingTimeout = deployable.getPingTimeout();
                     if (pingTimeout == null)
                     {
-                        monitor = new URLDeployableMonitor(pingURL);
+                        monitors.add(new URLDeployableMonitor(pingURL));
                     }
                     else
                     {
-                        monitor = new URLDeployableMonitor(pingURL, pingTimeout.longValue());
+                        monitors.add(new URLDeployableMonitor(pingURL, pingTimeout.longValue()));
                     }
-                    DeployerWatchdog watchdog = new DeployerWatchdog(monitor);
-                    watchdog.setLogger(watchdogLogger);
-                    monitor.setLogger(watchdogLogger);
-                    watchdog.watch(starting);
                 }
             }
         }
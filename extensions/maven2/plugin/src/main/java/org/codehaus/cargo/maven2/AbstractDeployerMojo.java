@@ -156,13 +156,17 @@ public abstract class AbstractDeployerMojo extends AbstractCargoMojo
             }
         }
 
+        List<org.codehaus.cargo.container.deployable.Deployable> deployables =
+            new ArrayList<org.codehaus.cargo.container.deployable.Deployable>();
+        List<URL> pingURLs = new ArrayList<URL>();
+        List<Long> pingTimeouts = new ArrayList<Long>();
+
         for (Deployable deployableElement : deployableElements)
         {
-            org.codehaus.cargo.container.deployable.Deployable deployable =
-                deployableElement.createDeployable(container.getId(), getCargoProject());
-            URL pingURL = deployableElement.getPingURL();
-            Long pingTimeout = deployableElement.getPingTimeout();
-            performDeployerActionOnSingleDeployable(deployer, deployable, pingURL, pingTimeout);
+            deployables.add(deployableElement.createDeployable(container.getId(),
+                getCargoProject()));
+            pingURLs.add(deployableElement.getPingURL());
+            pingTimeouts.add(deployableElement.getPingTimeout());
         }
 
         // Perform deployment action on the autodeployable (if any).
@@ -176,10 +180,63 @@ public abstract class AbstractDeployerMojo extends AbstractCargoMojo
                 // The ping URL is always null here because if the user has specified a ping URL
                 // then the auto deployable has already been deployed as it's been explicitely
                 // specified by the user...
-                performDeployerActionOnSingleDeployable(deployer,
-                    createAutoDeployDeployable(container), null, null);
+                deployables.add(createAutoDeployDeployable(container));
+                pingURLs.add(null);
+                pingTimeouts.add(null);
+            }
+        }
+
+        performDeployerActionOnDeployables(deployer, deployables, pingURLs, pingTimeouts);
+    }
+
+    /**
+     * Perform a deployer action on a list of deployables. The default implementation performs the
+     * action on each deployable in turn; deployer actions that the {@link
+     * org.codehaus.cargo.container.deployer.Deployer} can handle as a batch override this.
+     * @param deployer Deployer.
+     * @param deployables Deployables.
+     * @param pingURLs Application ping URLs, in the same order as the deployables.
+     * @param pingTimeouts Timeouts (milliseconds), in the same order as the deployables.
+     */
+    protected void performDeployerActionOnDeployables(
+        org.codehaus.cargo.container.deployer.Deployer deployer,
+        List<org.codehaus.cargo.container.deployable.Deployable> deployables, List<URL> pingURLs,
+        List<Long> pingTimeouts)
+    {
+        for (int i = 0; i < deployables.size(); i++)
+        {
+            performDeployerActionOnSingleDeployable(deployer, deployables.get(i),
+                pingURLs.get(i), pingTimeouts.get(i));
+        }
+    }
+
+    /**
+     * Create the deployable monitors of a list of deployables.
+     * @param deployables Deployables.
+     * @param pingURLs Application ping URLs, in the same order as the deployables.
+     * @param pingTimeouts Timeouts (milliseconds), in the same order as the deployables.
+     * @return Deployable monitors, in the same order as the deployables, <code>null</code> for
+     * the deployables without ping URL.
+     */
+    protected List<DeployableMonitor> createDeployableMonitors(
+        List<org.codehaus.cargo.container.deployable.Deployable> deployables, List<URL> pingURLs,
+        List<Long> pingTimeouts)
+    {
+        List<DeployableMonitor> monitors = new ArrayList<DeployableMonitor>(deployables.size());
+        for (int i = 0; i < deployables.size(); i++)
+        {
+            URL pingURL = pingURLs.get(i);
+            if (pingURL == null)
+            {
+                monitors.add(null);
+            }
+            else
+            {
+                monitors.add(createDeployableMonitor(pingURL, pingTimeouts.get(i),
+                    deployables.get(i)));
             }
         }
+        return monitors;
     }
 
     /**
@@ -36,4 +36,15 @@ public class ContainerRestartMojo extends ContainerStartMojo
     {
         this.localContainer.restart();
     }
+
+    /**
+     * {@inheritDoc}
+     * @see org.codehaus.cargo.maven2.ContainerStartMojo#executeContainerGroupAction()
+     */
+    @Override
+    protected void executeContainerGroupAction()
+    {
+        this.containerGroup.stop();
+        this.containerGroup.start();
+    }
 }
@@ -24,7 +24,9 @@ import java.net.URL;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.codehaus.cargo.container.ContainerType;
+import org.codehaus.cargo.container.spi.deployer.DeployableWatcher;
 import org.codehaus.cargo.container.spi.util.ContainerUtils;
+import org.codehaus.cargo.generic.deployer.DefaultDeployerFactory;
 import org.codehaus.cargo.maven2.configuration.Container;
 import org.codehaus.cargo.maven2.configuration.ZipUrlInstaller;
 
@@ -50,6 +52,24 @@ public class ContainerRunMojo extends ContainerStartMojo
      */
     private String containerUrl;
 
+    /**
+     * Keeps the deployed deployables in sync with their files while the container runs, by
+     * redeploying them when their files change. If a <code>&lt;deployer&gt;</code> element is
+     * specified, the deployer it defines also reloads the deployables after changes to their
+     * classes, libraries or deployment descriptors.
+     * 
+     * @parameter property="cargo.maven.liveSync" default-value="false"
+     */
+    private boolean liveSync;
+
+    /**
+     * Interval between two checks of the deployable files for changes when live synchronization
+     * is enabled, in milliseconds.
+     * 
+     * @parameter property="cargo.maven.liveSync.interval" default-value="1000"
+     */
+    private long liveSyncInterval;
+
     /**
      * {@inheritDoc}
      * @see org.codehaus.cargo.maven2.AbstractCargoMojo#doExecute()
@@ -65,7 +85,11 @@ public class ContainerRunMojo extends ContainerStartMojo
             {
                 try 
                 {
-                    if (ContainerRunMojo.this.localContainer != null
+                    if (ContainerRunMojo.this.containerGroup != null)
+                    {
+                        ContainerRunMojo.this.containerGroup.stop();
+                    }
+                    else if (ContainerRunMojo.this.localContainer != null
                         && (org.codehaus.cargo.container.State.STARTED
                             == ContainerRunMojo.this.localContainer.getState()
                         ||
@@ -84,8 +108,44 @@ public class ContainerRunMojo extends ContainerStartMojo
 
         super.doExecute();
 
-        getLog().info("Press Ctrl-C to stop the container...");
-        ContainerUtils.waitTillContainerIsStopped(this.localContainer);
+        DeployableWatcher watcher = null;
+        if (this.liveSync)
+        {
+            watcher = createDeployableWatcher();
+            watcher.start();
+        }
+
+        try
+        {
+            getLog().info("Press Ctrl-C to stop the container...");
+            ContainerUtils.waitTillContainerIsStopped(this.localContainer);
+        }
+        finally
+        {
+            if (watcher != null)
+            {
+                watcher.stop();
+            }
+        }
+    }
+
+    /**
+     * @return Watcher redeploying the deployables of the local container when their files change.
+     * @throws MojoExecutionException If the deployer creation fails.
+     */
+    private DeployableWatcher createDeployableWatcher() throws MojoExecutionException
+    {
+        DeployableWatcher watcher = new DeployableWatcher(
+            new DefaultDeployerFactory().createDeployer(this.localContainer),
+            this.localContainer.getConfiguration().getDeployables());
+        watcher.setLogger(this.localContainer.getLogger());
+        watcher.setInterval(this.liveSyncInterval);
+        if (getDeployerElement() != null)
+        {
+            watcher.setReloadDeployer(getDeployerElement().createDeployer(this.localContainer));
+        }
+        getLog().info("Keeping the deployables in sync with their files...");
+        return watcher;
     }
 
     /**
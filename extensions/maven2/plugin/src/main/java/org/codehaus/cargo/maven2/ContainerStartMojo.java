@@ -22,6 +22,8 @@ package org.codehaus.cargo.maven2;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.codehaus.cargo.container.Container;
+import org.codehaus.cargo.container.ContainerGroup;
+import org.codehaus.cargo.container.InstalledLocalContainer;
 import org.codehaus.cargo.container.LocalContainer;
 import org.codehaus.cargo.container.configuration.LocalConfiguration;
 
@@ -38,6 +40,12 @@ public class ContainerStartMojo extends AbstractCargoMojo
      */
     protected LocalContainer localContainer;
 
+    /**
+     * Group of the local container and of the grouped containers, <code>null</code> if there are no
+     * grouped containers.
+     */
+    protected ContainerGroup containerGroup;
+
     /**
      * {@inheritDoc}
      * @see org.codehaus.cargo.maven2.AbstractCargoMojo#doExecute()
@@ -54,7 +62,15 @@ public class ContainerStartMojo extends AbstractCargoMojo
 
         this.localContainer = (LocalContainer) container;
         addAutoDeployDeployable(this.localContainer);
-        executeLocalContainerAction();
+        if (getGroupedContainersElement() == null || getGroupedContainersElement().length == 0)
+        {
+            executeLocalContainerAction();
+        }
+        else
+        {
+            this.containerGroup = createContainerGroup(this.localContainer);
+            executeContainerGroupAction();
+        }
         waitDeployableMonitor(true);
     }
 
@@ -63,7 +79,24 @@ public class ContainerStartMojo extends AbstractCargoMojo
      */
     protected void executeLocalContainerAction()
     {
-        this.localContainer.start();
+        if (isPooled(this.localContainer))
+        {
+            getContainerPool().setLogger(this.localContainer.getLogger());
+            this.localContainer =
+                getContainerPool().acquire((InstalledLocalContainer) this.localContainer);
+        }
+        else
+        {
+            this.localContainer.start();
+        }
+    }
+
+    /**
+     * Executes the action on the group of the local container and of the grouped containers.
+     */
+    protected void executeContainerGroupAction()
+    {
+        this.containerGroup.start();
     }
 
     /**
@@ -45,7 +45,20 @@ public class ContainerStopMojo extends AbstractCargoMojo
             throw new MojoExecutionException("Only local containers can be stopped");
         }
 
-        ((LocalContainer) container).stop();
+        if (getGroupedContainersElement() != null && getGroupedContainersElement().length > 0)
+        {
+            createContainerGroup((LocalContainer) container).stop();
+        }
+        else if (isPooled((LocalContainer) container))
+        {
+            // The pooled container keeps running, its deployables stay deployed
+            getContainerPool().release((LocalContainer) container);
+            return;
+        }
+        else
+        {
+            ((LocalContainer) container).stop();
+        }
         waitDeployableMonitor(false);
     }
 }
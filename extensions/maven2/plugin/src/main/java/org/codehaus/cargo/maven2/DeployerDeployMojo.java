@@ -20,6 +20,9 @@
 package org.codehaus.cargo.maven2;
 
 import java.net.URL;
+import java.util.List;
+
+import org.codehaus.cargo.container.deployer.BatchDeployer;
 
 /**
  * Deploy a deployable to a container.
@@ -55,4 +58,34 @@ public class DeployerDeployMojo extends AbstractDeployerMojo
             deployer.deploy(deployable);
         }
     }
+
+    /**
+     * {@inheritDoc}. All deployables are handed at once to deployers which support batches, which
+     * lets them check and copy or upload the deployables together.
+     * @param deployer Deployer.
+     * @param deployables Deployables.
+     * @param pingURLs Application ping URLs.
+     * @param pingTimeouts Timeouts (milliseconds).
+     */
+    @Override
+    protected void performDeployerActionOnDeployables(
+        org.codehaus.cargo.container.deployer.Deployer deployer,
+        List<org.codehaus.cargo.container.deployable.Deployable> deployables, List<URL> pingURLs,
+        List<Long> pingTimeouts)
+    {
+        if (deployables.size() == 1 || !(deployer instanceof BatchDeployer))
+        {
+            super.performDeployerActionOnDeployables(deployer, deployables, pingURLs,
+                pingTimeouts);
+        }
+        else if (!deployables.isEmpty())
+        {
+            for (org.codehaus.cargo.container.deployable.Deployable deployable : deployables)
+            {
+                getLog().debug("Deploying [" + deployable.getFile() + "] ...");
+            }
+            ((BatchDeployer) deployer).deploy(deployables,
+                createDeployableMonitors(deployables, pingURLs, pingTimeouts));
+        }
+    }
 }
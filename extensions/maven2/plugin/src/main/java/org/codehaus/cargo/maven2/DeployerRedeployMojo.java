@@ -20,6 +20,9 @@
 package org.codehaus.cargo.maven2;
 
 import java.net.URL;
+import java.util.List;
+
+import org.codehaus.cargo.container.deployer.BatchDeployer;
 
 /**
  * Redeploy a deployable (i.e. undeploy and deploy it again) in a container.
@@ -49,4 +52,34 @@ public class DeployerRedeployMojo extends AbstractDeployerMojo
             deployer.redeploy(deployable);
         }
     }
+
+    /**
+     * {@inheritDoc}. All deployables are handed at once to deployers which support batches, which
+     * lets them check and copy or upload the deployables together.
+     * @param deployer Deployer.
+     * @param deployables Deployables.
+     * @param pingURLs Application ping URLs.
+     * @param pingTimeouts Timeouts (milliseconds).
+     */
+    @Override
+    protected void performDeployerActionOnDeployables(
+        org.codehaus.cargo.container.deployer.Deployer deployer,
+        List<org.codehaus.cargo.container.deployable.Deployable> deployables, List<URL> pingURLs,
+        List<Long> pingTimeouts)
+    {
+        if (deployables.size() == 1 || !(deployer instanceof BatchDeployer))
+        {
+            super.performDeployerActionOnDeployables(deployer, deployables, pingURLs,
+                pingTimeouts);
+        }
+        else if (!deployables.isEmpty())
+        {
+            for (org.codehaus.cargo.container.deployable.Deployable deployable : deployables)
+            {
+                getLog().debug("Redeploying [" + deployable.getFile() + "] ...");
+            }
+            ((BatchDeployer) deployer).redeploy(deployables,
+                createDeployableMonitors(deployables, pingURLs, pingTimeouts));
+        }
+    }
 }
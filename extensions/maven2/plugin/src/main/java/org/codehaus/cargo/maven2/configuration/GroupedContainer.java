@@ -0,0 +1,135 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.maven2.configuration;
+
+/**
+ * Holds configuration data for the <code>&lt;groupedContainer&gt;</code> tags used to define the
+ * containers started and stopped together with the main container of the plugin in the
+ * <code>pom.xml</code> file.
+ * 
+ */
+public class GroupedContainer
+{
+    /**
+     * Name of the container in the group.
+     */
+    private String name;
+
+    /**
+     * Comma-separated names of the containers of the group this container depends on.
+     */
+    private String dependsOn;
+
+    /**
+     * Container configuration.
+     */
+    private Container container;
+
+    /**
+     * Configuration of the container.
+     */
+    private Configuration configuration;
+
+    /**
+     * Deployables of the container.
+     */
+    private Deployable[] deployables;
+
+    /**
+     * @return Name of the container in the group.
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * @param name Name of the container in the group.
+     */
+    public void setName(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * @return Comma-separated names of the containers of the group this container depends on.
+     */
+    public String getDependsOn()
+    {
+        return this.dependsOn;
+    }
+
+    /**
+     * @param dependsOn Comma-separated names of the containers of the group this container depends
+     * on.
+     */
+    public void setDependsOn(String dependsOn)
+    {
+        this.dependsOn = dependsOn;
+    }
+
+    /**
+     * @return Container configuration.
+     */
+    public Container getContainer()
+    {
+        return this.container;
+    }
+
+    /**
+     * @param container Container configuration.
+     */
+    public void setContainer(Container container)
+    {
+        this.container = container;
+    }
+
+    /**
+     * @return Configuration of the container.
+     */
+    public Configuration getConfiguration()
+    {
+        return this.configuration;
+    }
+
+    /**
+     * @param configuration Configuration of the container.
+     */
+    public void setConfiguration(Configuration configuration)
+    {
+        this.configuration = configuration;
+    }
+
+    /**
+     * @return Deployables of the container.
+     */
+    public Deployable[] getDeployables()
+    {
+        return this.deployables;
+    }
+
+    /**
+     * @param deployables Deployables of the container.
+     */
+    public void setDeployables(Deployable[] deployables)
+    {
+        this.deployables = deployables;
+    }
+}
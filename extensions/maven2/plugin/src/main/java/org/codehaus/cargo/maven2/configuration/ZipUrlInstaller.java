@@ -52,6 +52,21 @@ public class ZipUrlInstaller
      */
     private String extractDir;
 
+    /**
+     * Maximum size in bytes of all installations sharing the same extract directory.
+     */
+    private Long maxCacheSize;
+
+    /**
+     * Whether tar archives are extracted while being downloaded.
+     */
+    private boolean streaming;
+
+    /**
+     * Directory in which a copy-on-write clone of the container home is created.
+     */
+    private String cloneDir;
+
     /**
      * Proxy properties.
      */
@@ -107,6 +122,56 @@ public class ZipUrlInstaller
         return this.url;
     }
 
+    /**
+     * @param maxCacheSize the maximum size in bytes of all installations sharing the same extract
+     * directory, the least recently used installations being removed when it is exceeded.
+     */
+    public void setMaxCacheSize(Long maxCacheSize)
+    {
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * @return the maximum size in bytes of all installations sharing the same extract directory.
+     */
+    public Long getMaxCacheSize()
+    {
+        return this.maxCacheSize;
+    }
+
+    /**
+     * @param streaming <code>true</code> to extract tar archives while they are being downloaded.
+     */
+    public void setStreaming(boolean streaming)
+    {
+        this.streaming = streaming;
+    }
+
+    /**
+     * @return <code>true</code> if tar archives are extracted while they are being downloaded.
+     */
+    public boolean isStreaming()
+    {
+        return this.streaming;
+    }
+
+    /**
+     * @param cloneDir directory in which a fresh copy-on-write clone of the container home is
+     * created on every installation, the clone being used as the container home.
+     */
+    public void setCloneDir(String cloneDir)
+    {
+        this.cloneDir = cloneDir;
+    }
+
+    /**
+     * @return the directory in which a copy-on-write clone of the container home is created.
+     */
+    public String getCloneDir()
+    {
+        return this.cloneDir;
+    }
+
     /**
      * @return Proxy properties.
      */
@@ -146,6 +211,12 @@ public class ZipUrlInstaller
         {
             installer.setProxy(getProxy());
         }
+        if (getMaxCacheSize() != null)
+        {
+            installer.setMaxCacheSize(getMaxCacheSize().longValue());
+        }
+        installer.setStreaming(isStreaming());
+        installer.setCloneDir(getCloneDir());
         return installer;
     }
 